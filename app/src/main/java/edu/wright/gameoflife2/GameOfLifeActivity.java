@@ -1,18 +1,28 @@
 package edu.wright.gameoflife2;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import android.content.DialogInterface;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.InputType;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.SeekBar;
+import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 
 /**
- * This is the main Android Activity for the application. It interacts with the GameOfLifeModel and
+ * This is the main Android Activity for the application. It interacts with a LifeEngine and
  * one or more Android.View instances to provide a user interface.
  *
  * Note: to enable assertions, make sure the application is compiled with DEBUG enabled. In
@@ -24,36 +34,251 @@ import java.util.HashMap;
  */
 public class GameOfLifeActivity extends AppCompatActivity {
 
-    // These are traditional start configurations for Game of Life
-    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
-    private static final int smallExplosionsCellPositions[][] = {{0, 1}, {0, 2}, {1, 0}, {1, 1}, {1, 3}, {2, 1}, {2, 2},};
-    private static final int explosionsCellPositions[][] = {{0, 0}, {0, 1}, {0, 2}, {0, 3}, {0, 4}, {2, 0}, {2, 4}, {4, 0}, {4, 1}, {4, 2}, {4, 3}, {4, 4},};
-    private static final int fishCellPositions[][] = {{0, 1}, {0, 3}, {1, 0}, {2, 0}, {3, 0}, {3, 3}, {4, 0}, {4, 1}, {4, 2}};
-    private static final int tenInARowCellPositions[][] = {{-4, 0}, {-3, 0}, {-2, 0}, {-1, 0}, {0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0},};
-    private static final int pumpCellPositions[][] = {{0, 3}, {0, 4}, {0, 5}, {1, 0}, {1, 1}, {1, 5}, {2, 0}, {2, 1}, {2, 2}, {2, 3}, {2, 4}, {4, 0}, {4, 1}, {4, 2}, {4, 3}, {4, 4}, {5, 0}, {5, 1}, {5, 5}, {6, 3}, {6, 4}, {6, 5},};
-    private static final int shooterCellPositions[][] = {{0, 2}, {0, 3}, {1, 2}, {1, 3}, {8, 3}, {8, 4}, {9, 2}, {9, 4}, {10, 2}, {10, 3}, {16, 4}, {16, 5}, {16, 6}, {17, 4}, {18, 5}, {22, 1}, {22, 2}, {23, 0}, {23, 2}, {24, 0}, {24, 1}, {24, 12}, {24, 13}, {25, 12}, {25, 14}, {26, 12}, {34, 0}, {34, 1}, {35, 0}, {35, 1}, {35, 7}, {35, 8}, {35, 9}, {36, 7}, {37, 8},};
-    private static final int clearCellPositions[][] = {};
+    private static final String snapshotFileName = "universe.snapshot";
+    private static final long checkpointPeriodMs = 30000;
+    private static final double warpGenerationsPerSecond = 1000;
+    private static final long tileMemoryBudgetBytes = TileStore.defaultMemoryBudgetBytes;
+    private static final String evolutionCacheDirectoryName = "evolution";
+    private static final long warmGenerations = 4096;
+    // This outlives Activity instances so that a recreated Activity restores from memory
+    private static SnapshotCheckpointer sCheckpointer;
+    private static EvolutionCache sEvolutionCache;
+    // Results computed in the background are handed to the user interface thread through this
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
     private GameOfLifeView mGameView;
+    private LifeEngineType mEngineType = LifeEngineType.SPARSE_HASH;
+    private LifeRule mRule = LifeRule.conway;
+    // The preset pattern the displayed game started from or null if it is not known
+    private int[][] mPattern;
+    // The pending jump, if any. Only the result of the jump with the current token is shown.
+    private EvolutionCache.Jump mJump;
+    private int mJumpToken;
+    // Only the result of the restore with the current token is shown
+    private int mRestoreToken;
+    private boolean mIsDestroyed;
+    private final Runnable mCheckpointCommand = new Runnable() {
+        @Override
+        public void run() {
+            checkpoint();
+            mGameView.postDelayed(this, checkpointPeriodMs);
+        }
+    };
 
     // This provides a convenient initial positions look-up by resource id
     private static HashMap<Integer, int[][]> initialCellPositions() {
         final HashMap<Integer, int[][]> map = new HashMap<>();
-        map.put(R.id.action_clear, clearCellPositions);
-        map.put(R.id.action_glider, gliderCellPositions);
-        map.put(R.id.action_small_explosion, smallExplosionsCellPositions);
-        map.put(R.id.action_explosion, explosionsCellPositions);
-        map.put(R.id.action_fish, fishCellPositions);
-        map.put(R.id.action_ten_in_a_row, tenInARowCellPositions);
-        map.put(R.id.action_pump, pumpCellPositions);
-        map.put(R.id.action_shooter, shooterCellPositions);
+        map.put(R.id.action_clear, Patterns.clearCellPositions);
+        map.put(R.id.action_glider, Patterns.gliderCellPositions);
+        map.put(R.id.action_small_explosion, Patterns.smallExplosionsCellPositions);
+        map.put(R.id.action_explosion, Patterns.explosionsCellPositions);
+        map.put(R.id.action_fish, Patterns.fishCellPositions);
+        map.put(R.id.action_ten_in_a_row, Patterns.tenInARowCellPositions);
+        map.put(R.id.action_pump, Patterns.pumpCellPositions);
+        map.put(R.id.action_shooter, Patterns.shooterCellPositions);
+        return map;
+    }
+
+    // This provides a convenient engine type look-up by resource id
+    private static HashMap<Integer, LifeEngineType> engineTypes() {
+        final HashMap<Integer, LifeEngineType> map = new HashMap<>();
+        map.put(R.id.action_engine_sparse, LifeEngineType.SPARSE_HASH);
+        map.put(R.id.action_engine_tiled, LifeEngineType.TILED_BITBOARD);
+        map.put(R.id.action_engine_hashlife, LifeEngineType.HASHLIFE);
+        map.put(R.id.action_engine_hybrid, LifeEngineType.HYBRID);
+        map.put(R.id.action_engine_bounded, LifeEngineType.BOUNDED_BOARD);
+        map.put(R.id.action_engine_torus, LifeEngineType.TOROIDAL_BOARD);
+        return map;
+    }
+
+    // This provides a convenient rule look-up by resource id
+    private static HashMap<Integer, String> rules() {
+        final HashMap<Integer, String> map = new HashMap<>();
+        map.put(R.id.action_rule_conway, "B3/S23");
+        map.put(R.id.action_rule_high_life, "B36/S23");
+        map.put(R.id.action_rule_day_and_night, "B3678/S34678");
         return map;
     }
 
+    private SnapshotCheckpointer getCheckpointer() {
+        if (null == sCheckpointer) {
+            sCheckpointer = new SnapshotCheckpointer(new File(getFilesDir(), snapshotFileName));
+        }
+        return sCheckpointer;
+    }
+
+    private EvolutionCache getEvolutionCache() {
+        if (null == sEvolutionCache) {
+            sEvolutionCache = new EvolutionCache(
+                    new File(getCacheDir(), evolutionCacheDirectoryName));
+        }
+        return sEvolutionCache;
+    }
+
+    /**
+     * Asks the evolution cache to compute keyframes of the preset pattern the displayed game
+     * started from under the selected rule in the background, so that jumping to one of the
+     * warmed generations simulates at most a keyframe interval's worth of generations. This
+     * method does not mutate the Activity's GameOfLifeView.
+     */
+    private void warmEvolutionCache() {
+        if (null != mPattern) {
+            getEvolutionCache().warm(mPattern, mRule, warmGenerations, mEngineType);
+        }
+    }
+
+    /**
+     * Cancels the pending jump, if any, and makes sure that its result is never displayed, for
+     * example because the user chose another game, engine type, or rule since requesting it.
+     */
+    private void cancelJump() {
+        mJumpToken += 1;
+        if (null != mJump) {
+            mJump.cancel();
+            mJump = null;
+        }
+    }
+
+    /**
+     * Displays the result of a jump unless the jump has been cancelled or the Activity destroyed
+     * since the jump was requested. This must be called from the user interface thread.
+     *
+     * @param token  the value of mJumpToken when the jump was requested
+     * @param engine the generation jumped to
+     */
+    private void showJumpResult(int token, LifeEngine engine) {
+        if (mIsDestroyed || token != mJumpToken) {
+            return;
+        }
+        mJump = null;
+        setModel(engine);
+    }
+
+    /**
+     * Asks the user for a generation of the preset pattern the displayed game started from and
+     * then displays that generation, computed in the background from the nearest cached keyframe.
+     */
+    private void showJumpDialog() {
+        if (null == mPattern) {
+            Toast.makeText(this, getString(R.string.jump_needs_pattern), Toast.LENGTH_LONG).show();
+            return;
+        }
+        final EditText generationText = new EditText(this);
+        generationText.setInputType(InputType.TYPE_CLASS_NUMBER);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.jump_title)
+                .setView(generationText)
+                .setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            jumpTo(Long.parseLong(generationText.getText().toString()));
+                        } catch (NumberFormatException e) {
+                            Log.w("GameOfLifeActivity", "Not a generation", e);
+                        }
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Cancels any pending jump and asks the evolution cache to compute a generation of the
+     * preset pattern the displayed game started from in the background. The generation is
+     * displayed when it is ready unless the jump is cancelled first.
+     *
+     * @param generation the generation to display
+     */
+    private void jumpTo(long generation) {
+        if (null == mPattern || mIsDestroyed) {
+            return;
+        }
+        final long maximumGeneration = EvolutionCache.getMaximumGeneration(mEngineType);
+        if (0 > generation || maximumGeneration < generation) {
+            Toast.makeText(this, getString(R.string.jump_too_far, maximumGeneration),
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+        cancelJump();
+        pause();
+        mJump = getEvolutionCache().jump(mPattern, mRule, generation, mEngineType,
+                new JumpResultListener(this, mJumpToken));
+    }
+
+    /**
+     * Saves the displayed generation in the background so that it can be restored after the
+     * application's process is killed. This method does not mutate the Activity's
+     * GameOfLifeView.
+     */
+    private void checkpoint() {
+        final LifeSnapshot snapshot = mGameView.getSnapshot();
+        if (null != snapshot) {
+            getCheckpointer().save(snapshot, mEngineType);
+        }
+    }
+
+    /**
+     * Asks the checkpointer to restore the most recently checkpointed universe in the
+     * background. The restored universe is displayed by showRestoredModel() unless another model
+     * is set first. This method does not mutate the Activity's GameOfLifeView.
+     */
+    private void restoreModel() {
+        mRestoreToken += 1;
+        getCheckpointer().restore(new RestoreResultListener(this, mRestoreToken));
+    }
+
+    /**
+     * Displays a restored universe or, if there is none, a new LifeEngine of the selected engine
+     * type initialized from a preset pattern, unless another model has been set or the Activity
+     * destroyed since the restore was requested. This must be called from the user interface
+     * thread.
+     *
+     * @param token    the value of mRestoreToken when the restore was requested
+     * @param engine   the restored universe or null if there is none
+     * @param snapshot a snapshot of engine's current generation or null if engine is null
+     */
+    private void showRestoredModel(int token, LifeEngine engine, LifeSnapshot snapshot) {
+        if (mIsDestroyed || token != mRestoreToken) {
+            return;
+        }
+        if (null != engine) {
+            mEngineType = LifeEngineType.of(engine);
+            mRule = engine.getRule();
+            mRestoreToken += 1;
+            mGameView.setModel(engine, snapshot);
+            mGameView.center();
+        } else {
+            final IOException error = getCheckpointer().getLastError();
+            if (null != error) {
+                Log.w("GameOfLifeActivity", "Cannot restore snapshot", error);
+            }
+            mPattern = Patterns.tenInARowCellPositions;
+            setModel(mEngineType.create(mPattern));
+            warmEvolutionCache();
+        }
+    }
+
+    /**
+     * Stops the Activity's GameOfLifeView running if it is running and shows the play icon on
+     * the floating action button.
+     */
+    private void pause() {
+        if (mGameView.getIsRunning()) {
+            mGameView.toggleIsRunning();
+            final FloatingActionButton fab = (FloatingActionButton) findViewById(R.id.fab);
+            if (null != fab) {
+                fab.setImageResource(android.R.drawable.ic_media_play);
+            }
+        }
+    }
+
     /**
      * Set the model to be displayed via the user interface. model is not mutated by this method.
      * @param model The model to display (cannot be null)
      */
-    private void setModel(GameOfLifeModel model) {
+    private void setModel(LifeEngine model) {
+        // A restore still in progress must not replace model
+        mRestoreToken += 1;
         mGameView.setModel(model);
         mGameView.center();
     }
@@ -62,11 +287,15 @@ public class GameOfLifeActivity extends AppCompatActivity {
      * This is a Template Method: See https://en.wikipedia.org/wiki/Template_method_pattern
      * This method is called automatically by Android when Android wants and Activity to start.
      * This implementation initializes the Activity's GameOfLifeView by "inflating" it from
-     * resources.  This implementation then creates and initializes a GameOfLifeModel instance,
-     * and then makes the new instance the GameOfLifeView's model to display.
+     * resources.  This implementation then asks for the most recently checkpointed LifeEngine
+     * to be restored in the background. When it is restored or, if there is none, a LifeEngine
+     * instance of the selected engine type is created and initialized, that instance becomes the
+     * GameOfLifeView's model to display. The displayed generation is checkpointed periodically
+     * from then on, and cycles detected by the GameOfLifeView are shown as the toolbar's
+     * subtitle.
      *
-     * When this method returns, the Activity's GameOfLifeView and that view's GameOfLifeModel
-     * are guaranteed to be non-null.
+     * When this method returns, the Activity's GameOfLifeView is guaranteed to be non-null. The
+     * view displays nothing until its LifeEngine is set.
      *
      * This method may load and initialize user interface elements besides just the GameOfLifeView,
      * but such user interface elements are typically defined in resource files separate from this
@@ -85,6 +314,20 @@ public class GameOfLifeActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
 
         mGameView = (GameOfLifeView) findViewById(R.id.gameoflife);
+        mGameView.setCycleListener(new GameOfLifeView.CycleListener() {
+            @Override
+            public void onCycleChanged(int period, long startGeneration) {
+                final Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
+                if (0 == period) {
+                    toolbar.setSubtitle(null);
+                } else if (1 == period) {
+                    toolbar.setSubtitle(getString(R.string.cycle_still, startGeneration));
+                } else {
+                    toolbar.setSubtitle(getString(R.string.cycle_period, period,
+                            startGeneration));
+                }
+            }
+        });
 
         final SeekBar speedSlider = (SeekBar) findViewById(R.id.speed_slider);
         if (null != speedSlider) {
@@ -113,7 +356,10 @@ public class GameOfLifeActivity extends AppCompatActivity {
             });
 
         }
-        setModel(new GameOfLifeModel(tenInARowCellPositions));
+        // Quiescent tiles of long runs go off-heap and then to a file in the app's cache
+        mGameView.setTileStorage(tileMemoryBudgetBytes, getCacheDir());
+        restoreModel();
+        mGameView.postDelayed(mCheckpointCommand, checkpointPeriodMs);
     }
 
     /**
@@ -128,6 +374,32 @@ public class GameOfLifeActivity extends AppCompatActivity {
         if (mGameView.getIsRunning())  mGameView.toggleIsRunning();
     }
 
+    /**
+     * This is a Template Method: See https://en.wikipedia.org/wiki/Template_method_pattern
+     * This method is called automatically by Android when the Activity is no longer visible,
+     * after which Android may kill the application's process without further notice.
+     * This implementation stops periodic checkpoints and checkpoints the displayed generation
+     * one last time. This method does not mutate the Activity's GameOfLifeView.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mGameView.removeCallbacks(mCheckpointCommand);
+        checkpoint();
+    }
+
+    /**
+     * This is a Template Method: See https://en.wikipedia.org/wiki/Template_method_pattern
+     * This method is called automatically by Android when the Activity is destroyed.
+     * This implementation cancels any pending jump so that its result is never displayed.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mIsDestroyed = true;
+        cancelJump();
+    }
+
     /**
      * This is a Template Method: See https://en.wikipedia.org/wiki/Template_method_pattern
      * This method is called automatically by Android when Android wants to create an "options" menu
@@ -152,13 +424,22 @@ public class GameOfLifeActivity extends AppCompatActivity {
      * This method is called automatically by Android when a menu item is selected by a user.
      * This implementation checks whether the selected menu item id is one that corresponds
      * to one of the available GameOfLife initial position configurations. If so, this method calls
-     * setModel() passing a new GameOfLifeModel initialized from the initial position configuration
-     * and then returns true.
+     * setModel() passing a new LifeEngine of the selected engine type initialized from the initial
+     * position configuration, asks the evolution cache to warm up that configuration's keyframes,
+     * and then returns true. If the item corresponds to one of the engine types, this method
+     * selects that type and asks the GameOfLifeView to continue the current game with an engine of
+     * that type and then returns true. If the item is the warp command, this method turns the
+     * GameOfLifeView's warp mode on or off and then returns true. If the item is the jump command,
+     * this method asks the user for a generation of the preset configuration the game started from
+     * and displays it when the evolution cache has computed it unless another game, engine type, or
+     * rule is selected first, and then returns true. If the item is one of the history commands,
+     * this method stops the GameOfLifeView running and asks it to step back, step forward, or
+     * rewind to the oldest retained generation and then returns true.
      * Otherwise, this method returns teh result of calling super.onOptionsItemSelected(item).
      *
      * This method potentially mutates the Activity's GameOfLifeView by replacing the
-     * GameOfLifeModel displayed by the view to a new GameOfLifeModel instance. In all cases, when
-     * this method returns, the Activity's GameOfLifeView and GameOfLifeModel are non-null.
+     * LifeEngine displayed by the view to a new LifeEngine instance. In all cases, when
+     * this method returns, the Activity's GameOfLifeView and LifeEngine are non-null.
      *
      * @param item The item selected
      * @return true if and only if item selection was correctly handled.
@@ -170,10 +451,110 @@ public class GameOfLifeActivity extends AppCompatActivity {
         int id = item.getItemId();
 
         if (GameOfLifeActivity.initialCellPositions().containsKey(id)) {
-            setModel(new GameOfLifeModel(GameOfLifeActivity.initialCellPositions().get(id)));
+            cancelJump();
+            mPattern = GameOfLifeActivity.initialCellPositions().get(id);
+            final LifeEngine model = mEngineType.create(mPattern);
+            model.setRule(mRule);
+            setModel(model);
+            warmEvolutionCache();
+            return true;
+        }
+        if (GameOfLifeActivity.engineTypes().containsKey(id)) {
+            cancelJump();
+            mEngineType = GameOfLifeActivity.engineTypes().get(id);
+            mGameView.setEngineType(mEngineType);
+            warmEvolutionCache();
+            return true;
+        }
+        if (GameOfLifeActivity.rules().containsKey(id)) {
+            cancelJump();
+            mRule = LifeRule.parse(GameOfLifeActivity.rules().get(id));
+            mGameView.setRule(mRule);
+            warmEvolutionCache();
+            return true;
+        }
+        if (R.id.action_warp == id) {
+            mGameView.setWarpGenerationsPerSecond(
+                    (0 < mGameView.getWarpGenerationsPerSecond()) ? 0 : warpGenerationsPerSecond);
+            return true;
+        }
+        if (R.id.action_jump == id) {
+            showJumpDialog();
+            return true;
+        }
+        if (R.id.action_metrics == id) {
+            mGameView.setShowsMetrics(!mGameView.getShowsMetrics());
+            return true;
+        }
+        if (R.id.action_step_back == id || R.id.action_step_forward == id ||
+                R.id.action_rewind == id) {
+            pause();
+            if (R.id.action_step_back == id) {
+                mGameView.stepBack();
+            } else if (R.id.action_step_forward == id) {
+                mGameView.stepForward();
+            } else {
+                mGameView.rewind();
+            }
             return true;
         }
         boolean result = super.onOptionsItemSelected(item);
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Each instance receives the result of one jump on the evolution cache's thread and hands it
+     * to the user interface thread. The Activity is only weakly referenced, because the cache
+     * outlives Activity instances and holds the listener until the jump completes.
+     */
+    private static class JumpResultListener implements EvolutionCache.JumpListener {
+        final WeakReference<GameOfLifeActivity> mActivity;
+        final int mToken;
+
+        JumpResultListener(GameOfLifeActivity activity, int token) {
+            mActivity = new WeakReference<>(activity);
+            mToken = token;
+        }
+
+        @Override
+        public void onJumped(final LifeEngine engine) {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    final GameOfLifeActivity activity = mActivity.get();
+                    if (null != activity) {
+                        activity.showJumpResult(mToken, engine);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Each instance receives a universe restored on the checkpointer's thread and hands it to
+     * the user interface thread. As with JumpResultListener, the Activity is only weakly
+     * referenced because the checkpointer outlives Activity instances.
+     */
+    private static class RestoreResultListener implements SnapshotCheckpointer.RestoreListener {
+        final WeakReference<GameOfLifeActivity> mActivity;
+        final int mToken;
+
+        RestoreResultListener(GameOfLifeActivity activity, int token) {
+            mActivity = new WeakReference<>(activity);
+            mToken = token;
+        }
+
+        @Override
+        public void onRestored(final LifeEngine engine, final LifeSnapshot snapshot) {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    final GameOfLifeActivity activity = mActivity.get();
+                    if (null != activity) {
+                        activity.showRestoredModel(mToken, engine, snapshot);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -1,24 +1,71 @@
 package edu.wright.gameoflife2;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.os.Handler;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.os.Trace;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+
+import java.io.File;
+import java.util.Arrays;
 
 
 /**
- * Each instance of this class encapsulates and instance of GameOfLifeModel and displays the current
- * state of the encapsulated GameOfLifeModel each time the onDrawPanned() method is called. Note:
+ * Each instance of this class encapsulates and instance of LifeEngine and displays the current
+ * state of the encapsulated LifeEngine each time the onDrawPanned() method is called. Note:
  * onDrawPanned() is called automatically by the superclass, PanCapableView, and should not be
  * called at any other time from any other place. The implementation of onDrawPanned() relies upon
  * consistent appropriate external state provided by PanCapableView prior to calling onDrawPanned().
  * <p/>
- * Each instance of this class periodically calls its encapsulated GameOfLifeModel's update()
- * method. The frequency of the calls is determined by the update period in milliseconds specified
- * using the setUpdatePeriodMs() method and whether the GameOfLifeView is "running". If
- * setUpdatePeriodMs() is not called, a reasonable default update period is used.
+ * The encapsulated LifeEngine is updated on a simulation thread by a LifeSimulation, and the view
+ * only ever draws the newest complete LifeSnapshot, so a slow generation never blocks drawing or
+ * touch handling. While the GameOfLifeView is "running", generations are displayed from the
+ * display's frame callback (see Choreographer), so they appear in step with the display's
+ * refresh. A FrameScheduler decides how many generations each frame displays: one every update
+ * period specified using the setUpdatePeriodMs() method (at most one per frame), or in warp mode
+ * (see setWarpGenerationsPerSecond()) as many as the warp rate requires, limited to what fits in
+ * the scheduler's frame budget and reduced automatically when frames are missed. If
+ * setUpdatePeriodMs() is not called, a reasonable default update period is used. If the
+ * simulation thread has not finished the next generation when it is due, the current generation
+ * stays on screen until a later frame.
+ * <p/>
+ * Once the simulation detects that the universe repeats an earlier generation, the view replays
+ * the generations of the cycle without computing them, and a universe that no longer changes
+ * stops the view's periodic updates altogether until the model changes. The detected cycle is
+ * reported to a CycleListener.
+ * <p/>
+ * The type of the encapsulated engine can be changed with setEngineType() at any time, even while
+ * the game is running. The cells and generation counter are carried over to the new engine.
+ * <p/>
+ * When cells are smaller than a pixel, drawing one shape per cell would make the cost of each
+ * frame proportional to the population. Instead, the view draws one pixel per block of cells from
+ * a DensityPyramid, shaded by the fraction of the block that is occupied, so the cost of each
+ * frame is bounded by the size of the screen. The pyramid follows the running game
+ * incrementally, and the zoom range extends far enough that the coarsest level of the pyramid
+ * spans a pixel.
+ * <p/>
+ * When cells are at least a pixel wide, they are drawn from a persistent bitmap with one pixel
+ * per cell that covers the visible cells (see CellRaster). Each displayed generation patches
+ * the bitmap with only the generation's births and deaths and invalidates only the area of the
+ * view that covers them, and panning and zooming just draw the same bitmap again with a
+ * different scale and translation, so the steady state cost of each frame depends on the rate
+ * of change rather than on the population. The grid is one rectangle drawn over the cells and
+ * filled with a cached bitmap of a single grid cell repeated by a BitmapShader. Each kind of
+ * element has its own Paint, so no Paint state changes while drawing, and drawing allocates no
+ * memory unless the visible region grows.
+ * <p/>
+ * The time spent drawing each frame is recorded in the simulation's LifeMetrics next to the
+ * metrics of each generation, and drawing and computing generations are marked as sections of
+ * system traces with android.os.Trace. setShowsMetrics() shows an overlay with the rate of
+ * generations and the median and 95th percentile generation and frame times. The overlay is
+ * formatted into a reusable character array, so showing it does not allocate either.
  *
  * Note: to enable assertions, make sure the application is compiled with DEBUG enabled. In
  * Android Studio, use the Build->Edit Build Types...  menu. Select the "Debug" build type and make
@@ -28,14 +75,59 @@ import android.util.AttributeSet;
  * @version %G%
  */
 public class GameOfLifeView extends PanCapableView {
+    /**
+     * Implementations are informed when the simulation detects a cycle or forgets it.
+     */
+    public interface CycleListener {
+        /**
+         * @param period          the number of generations after which the universe repeats
+         *                        itself: 1 if it no longer changes, or 0 if there is no known
+         *                        cycle
+         * @param startGeneration the first generation of the cycle. This is undefined if period
+         *                        is 0.
+         */
+        void onCycleChanged(int period, long startGeneration);
+    }
+
     private static final int defaultUpdatePeriodMs = 50;
+    private static final long nanosPerMs = 1000000L;
+    private static final float cellSize = 45;
+    private static final float minimumScale = 1f / (cellSize * (1 << DensityPyramid.levelCount));
+    private static final float maximumScale = 5.0f;
+    private static final float gridLineWidth = 3;
+    private static final float minimumGridScale = 0.5f;
+    private static final float metricsTextSize = 36;
 
-    private android.graphics.Paint mPaint;
-    private GameOfLifeModel mModel;
-    private Handler mHandler;
+    private Paint mGridPaint;
+    private Paint mCellPaint;
+    private Paint mDensityPaint;
+    private LifeSimulation mSimulation;
+    private FrameScheduler mScheduler;
     private boolean mIsRunning;
-    private int mUpdatePeriodMs = defaultUpdatePeriodMs;
+    // True while running if periodic updates stopped because the universe no longer changes
+    private boolean mIsIdle;
+    private CycleListener mCycleListener;
+    private int mReportedCyclePeriod;
     private Animator mRunnable;
+    private final int mVisibleCells[] = new int[4];
+    // The visible rectangle most recently passed to LifeSimulation.setResidentArea()
+    private final int mResidentCells[] = new int[4];
+    private CellRaster mCellRaster;
+    private CellUploader mCellUploader;
+    private Bitmap mCellBitmap;
+    private final Rect mCellSource = new Rect();
+    private final RectF mCellDestination = new RectF();
+    private final int mChangedCells[] = new int[4];
+    private DensityPyramid mDensityPyramid;
+    private DensityPainter mDensityPainter;
+    private boolean mIsDrawingDensity;
+    private Bitmap mDensityBitmap;
+    private final Rect mDensitySource = new Rect();
+    private final RectF mDensityDestination = new RectF();
+    private boolean mShowsMetrics;
+    private Paint mMetricsPaint;
+    private Paint mMetricsBackgroundPaint;
+    private MetricsText mMetricsText;
 
      /**
      * This constructor is only implemented because it is required by the superclass, PanCapableView.
@@ -76,7 +168,7 @@ public class GameOfLifeView extends PanCapableView {
      * the Android View class. Any implementation that overrides this method MUST call this
      * implementation via super.init(attrs, defStyle).
      *
-     * When this method returns, the encapsulated model is null, and the GAmeOfLifeView is not
+     * When this method returns, there is no encapsulated model, and the GAmeOfLifeView is not
      * running.
      *
      * @param attrs    See View init(AttributeSet attrs, int defStyle)
@@ -85,11 +177,88 @@ public class GameOfLifeView extends PanCapableView {
     @Override
     protected void init(AttributeSet attrs, int defStyle) {
         super.init(attrs, defStyle);
-        mModel = null;
+        mSimulation = new LifeSimulation();
         mIsRunning = false;
-        mHandler = new Handler();
-        mPaint = new Paint();
+        mScheduler = new FrameScheduler();
+        mScheduler.setGenerationPeriodNanos(defaultUpdatePeriodMs * nanosPerMs);
+        mGridPaint = new Paint();
+        mGridPaint.setShader(new BitmapShader(createGridCellBitmap(), Shader.TileMode.REPEAT,
+                Shader.TileMode.REPEAT));
+        // Each pixel of the cell bitmap is scaled to a whole cell with hard edges
+        mCellPaint = new Paint();
+        mCellPaint.setFilterBitmap(false);
+        mDensityPaint = new Paint();
+        mDensityPaint.setFilterBitmap(false);
         mRunnable = new Animator(this);
+        mCellRaster = new CellRaster(Color.GREEN, Color.TRANSPARENT);
+        mCellUploader = new CellUploader();
+        mDensityPyramid = new DensityPyramid();
+        mDensityPainter = new DensityPainter();
+        mIsDrawingDensity = false;
+        mSimulation.getMetrics().setTracer(new SystemTracer());
+        mMetricsPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mMetricsPaint.setColor(Color.WHITE);
+        mMetricsPaint.setTextSize(metricsTextSize);
+        mMetricsBackgroundPaint = new Paint();
+        mMetricsBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+        mMetricsText = new MetricsText();
+        setScaleRange(minimumScale, maximumScale);
+    }
+
+    /**
+     * This implementation measures the time spent by the superclass's implementation, which
+     * calls onDrawPanned(), records it in the simulation's LifeMetrics, and then draws the
+     * metrics overlay in view coordinates if it is shown.
+     *
+     * @param canvas The Android Canvas instance upon which drawing should occur (cannot be null)
+     */
+    @Override
+    public void onDraw(Canvas canvas) {
+        final LifeMetrics metrics = mSimulation.getMetrics();
+        metrics.beginSection(LifeMetrics.drawSection);
+        final long start = System.nanoTime();
+        super.onDraw(canvas);
+        metrics.recordFrame(System.nanoTime() - start);
+        metrics.endSection();
+        if (mShowsMetrics) {
+            drawMetrics(canvas, metrics);
+        }
+    }
+
+    /**
+     * Draws the metrics overlay in the top left corner of the view: generations per second,
+     * the median and 95th percentile time to compute a generation and to draw a frame, the
+     * population and evaluated cells of the newest generation, and the scheduler's limit of
+     * generations per frame and count of missed frames.
+     */
+    private void drawMetrics(Canvas canvas, LifeMetrics metrics) {
+        final float lineHeight = metricsTextSize * 1.25f;
+        canvas.drawRect(0, 0, metricsTextSize * 16, lineHeight * 5 + metricsTextSize * 0.5f,
+                mMetricsBackgroundPaint);
+        final MetricsText text = mMetricsText;
+        final float x = metricsTextSize * 0.5f;
+        float y = lineHeight;
+
+        text.clear().append("gen/s ").appendTenths(Math.round(
+                metrics.getGenerationsPerSecond() * 10));
+        canvas.drawText(text.mChars, 0, text.mLength, x, y, mMetricsPaint);
+        y += lineHeight;
+        text.clear().append("update ms p50 ").appendMillis(metrics.getUpdateNanos(0.5))
+                .append(" p95 ").appendMillis(metrics.getUpdateNanos(0.95));
+        canvas.drawText(text.mChars, 0, text.mLength, x, y, mMetricsPaint);
+        y += lineHeight;
+        text.clear().append("frame ms p50 ").appendMillis(metrics.getFrameNanos(0.5))
+                .append(" p95 ").appendMillis(metrics.getFrameNanos(0.95));
+        canvas.drawText(text.mChars, 0, text.mLength, x, y, mMetricsPaint);
+        y += lineHeight;
+        text.clear().append("cells ").append(metrics.getPopulation()).append(" evaluated ")
+                .append(metrics.getEvaluatedCellCount());
+        canvas.drawText(text.mChars, 0, text.mLength, x, y, mMetricsPaint);
+        y += lineHeight;
+        text.clear().append("gen/frame ").append(mScheduler.isWarping() ?
+                mScheduler.getGenerationLimit() : 1).append(" missed frames ")
+                .append(mScheduler.getMissedFrameCount());
+        canvas.drawText(text.mChars, 0, text.mLength, x, y, mMetricsPaint);
     }
 
     /**
@@ -101,53 +270,241 @@ public class GameOfLifeView extends PanCapableView {
      * than the implementation of this class. Any override of this method MUST call this
      * implementation.
      *
-     * This implementation draws the GameOfLifeView's model. This method does not mutate the model
-     * or change the values of any the GameOfLifeView's instance variables.
+     * This implementation draws the cells of the displayed snapshot of the GameOfLifeView's
+     * model that are inside the visible rectangle computed by getVisibleCells() with
+     * drawCells() and then draws the grid over them. When cells are smaller than a pixel, the
+     * density of the visible cells is drawn instead by drawDensity(). This method does not
+     * mutate the model, and it never waits for the simulation thread.
      *
      * @param canvas The already scaled and translated Android Canvas instance upon which drawing
      *               should occur. This method may mutate the canvas.
      */
     @Override
     protected void onDrawPanned(Canvas canvas) {
-        final float cellSize = 45;
         final float scaleFactor = getScaleFactor();
-        if(0.5f <= scaleFactor) {
-            float left = ((float) Math.floor((getLeft() - getTranslationX()) / cellSize) - 1);
-            float top = ((float) Math.floor((getTop() - getTranslationY()) / cellSize) - 1);
-            float right = (float) Math.ceil((getRight() - getTranslationX()) / cellSize) / getScaleFactor();
-            float bottom = (float) Math.ceil((getBottom() - getTranslationY()) / cellSize) / getScaleFactor();
-
-            mPaint.setStrokeWidth(3);
-            mPaint.setColor(Color.GRAY);
-            for (float y = top; y <= bottom; y += 1) {
-                canvas.drawLine(left * cellSize, y * cellSize, right * cellSize, y * cellSize, mPaint);
-            }
-            for (float x = left; x <= right; x += 1) {
-                canvas.drawLine(x * cellSize, top * cellSize, x * cellSize, bottom * cellSize, mPaint);
+        final int visibleCells[] = mVisibleCells;
+        getVisibleCells(visibleCells);
+        if (!Arrays.equals(visibleCells, mResidentCells)) {
+            System.arraycopy(visibleCells, 0, mResidentCells, 0, 4);
+            mSimulation.setResidentArea(visibleCells[0], visibleCells[1], visibleCells[2],
+                    visibleCells[3]);
+        }
+
+        final LifeSnapshot snapshot = mSimulation.getSnapshot();
+        mIsDrawingDensity = null != snapshot && 1.0f > cellSize * scaleFactor;
+        if (mIsDrawingDensity) {
+            drawDensity(canvas, snapshot, visibleCells);
+        } else if (null != snapshot) {
+            drawCells(canvas, snapshot, visibleCells);
+        }
+
+        if(minimumGridScale <= scaleFactor) {
+            // The shader repeats the grid cell bitmap in canvas coordinates, so one rectangle
+            // draws every visible grid line
+            canvas.drawRect(visibleCells[0] * cellSize, visibleCells[1] * cellSize,
+                    (visibleCells[2] + 1) * cellSize, (visibleCells[3] + 1) * cellSize,
+                    mGridPaint);
+        }
+    }
+
+    /**
+     * Brings the CellRaster up to date with snapshot, copies the blocks of the raster that
+     * changed into the cell bitmap, and draws the bitmap scaled so that each pixel covers one
+     * cell. Only births and deaths are copied while a running game is followed, and nothing is
+     * copied when the view is only panned or zoomed within the raster's region.
+     *
+     * @param canvas       The already scaled and translated Android Canvas instance upon which
+     *                     drawing should occur.
+     * @param snapshot     the snapshot to draw (cannot be null)
+     * @param visibleCells the visible rectangle of cell coordinates. See getVisibleCells().
+     */
+    private void drawCells(Canvas canvas, LifeSnapshot snapshot, int visibleCells[]) {
+        final CellRaster raster = mCellRaster;
+        raster.update(snapshot, visibleCells[0], visibleCells[1], visibleCells[2],
+                visibleCells[3]);
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        if (null == mCellBitmap || mCellBitmap.getWidth() != width ||
+                mCellBitmap.getHeight() != height) {
+            if (null != mCellBitmap) {
+                mCellBitmap.recycle();
             }
+            mCellBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCellUploader.mBitmap = mCellBitmap;
+            mCellUploader.visit(raster.getLeft(), raster.getTop(), raster.getRight(),
+                    raster.getBottom());
+        } else {
+            raster.forEachDirtyRectangle(mCellUploader);
+        }
+        raster.clean();
+
+        mCellSource.set(0, 0, width, height);
+        mCellDestination.set(raster.getLeft() * cellSize, raster.getTop() * cellSize,
+                (raster.getLeft() + (float) width) * cellSize,
+                (raster.getTop() + (float) height) * cellSize);
+        canvas.drawBitmap(mCellBitmap, mCellSource, mCellDestination, mCellPaint);
+    }
+
+    /**
+     * Draws one pixel of a bitmap per block of cells from the level of the DensityPyramid whose
+     * blocks are at least one pixel wide. Each pixel is shaded by the fraction of its block that
+     * is occupied, so sparse areas remain visible and the number of pixels drawn is bounded by the
+     * size of the screen rather than by the population.
+     *
+     * @param canvas       The already scaled and translated Android Canvas instance upon which
+     *                     drawing should occur.
+     * @param snapshot     the snapshot to draw (cannot be null)
+     * @param visibleCells the visible rectangle of cell coordinates. See getVisibleCells().
+     */
+    private void drawDensity(Canvas canvas, LifeSnapshot snapshot, int visibleCells[]) {
+        mDensityPyramid.update(snapshot);
+
+        final float cellPixels = cellSize * getScaleFactor();
+        int level = 1;
+        while (level < DensityPyramid.levelCount && 1.0f > cellPixels * (1 << level)) {
+            level++;
+        }
+        final int left = visibleCells[0] >> level;
+        final int top = visibleCells[1] >> level;
+        final int right = visibleCells[2] >> level;
+        final int bottom = visibleCells[3] >> level;
+        final int width = right - left + 1;
+        final int height = bottom - top + 1;
+
+        final DensityPainter painter = mDensityPainter;
+        if (null == painter.mPixels || painter.mPixels.length < width * height) {
+            painter.mPixels = new int[width * height];
         }
-        
-        mPaint.setColor(Color.GREEN);
-        for (GameOfLifeModel.CellCoordinate pos : mModel.getPositions()) {
-            canvas.drawCircle((pos.getX() + 0.5f) * cellSize, (pos.getY() + 0.5f) * cellSize,
-                    cellSize * 0.5f, mPaint);
+        Arrays.fill(painter.mPixels, 0, width * height, Color.TRANSPARENT);
+        painter.mLeft = left;
+        painter.mTop = top;
+        painter.mWidth = width;
+        painter.mBlockArea = 1L << (2 * level);
+        mDensityPyramid.forEachBlockIn(level, left, top, right, bottom, painter);
+
+        if (null == mDensityBitmap || mDensityBitmap.getWidth() < width ||
+                mDensityBitmap.getHeight() < height) {
+            if (null != mDensityBitmap) {
+                mDensityBitmap.recycle();
+            }
+            mDensityBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
         }
+        mDensityBitmap.setPixels(painter.mPixels, 0, width, 0, 0, width, height);
+        mDensitySource.set(0, 0, width, height);
+        final float blockSize = cellSize * (1 << level);
+        mDensityDestination.set(left * blockSize, top * blockSize, (right + 1) * blockSize,
+                (bottom + 1) * blockSize);
+        canvas.drawBitmap(mDensityBitmap, mDensitySource, mDensityDestination, mDensityPaint);
+    }
+
+    /**
+     * @return a new bitmap of one grid cell with half of a grid line along each edge so that
+     * repeating the bitmap draws grid lines of gridLineWidth centered on cell boundaries
+     */
+    private static Bitmap createGridCellBitmap() {
+        final int size = (int) cellSize;
+        final Bitmap result = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(result);
+        final Paint paint = new Paint();
+        paint.setColor(Color.GRAY);
+        final float halfWidth = gridLineWidth * 0.5f;
+        canvas.drawRect(0, 0, size, halfWidth, paint);
+        canvas.drawRect(0, size - halfWidth, size, size, paint);
+        canvas.drawRect(0, 0, halfWidth, size, paint);
+        canvas.drawRect(size - halfWidth, 0, size, size, paint);
+        return result;
+    }
+
+    /**
+     * Computes the rectangle of cell coordinates that is at least partly visible with the
+     * current pan translation and scale factor. Cells outside this rectangle are not drawn.
+     *
+     * @param visibleCells an array of at least 4 ints that receives the smallest visible x,
+     *                     smallest visible y, largest visible x, and largest visible y cell
+     *                     coordinates (in that order)
+     */
+    void getVisibleCells(int visibleCells[]) {
+        // The canvas is scaled and then translated, so view position v shows game position
+        // v / scale - translation
+        final float scaleFactor = getScaleFactor();
+        final float width = getRight() - getLeft();
+        final float height = getBottom() - getTop();
+        visibleCells[0] = (int) Math.floor(-getTranslationX() / cellSize);
+        visibleCells[1] = (int) Math.floor(-getTranslationY() / cellSize);
+        visibleCells[2] = (int) Math.floor((width / scaleFactor - getTranslationX()) / cellSize);
+        visibleCells[3] = (int) Math.floor((height / scaleFactor - getTranslationY()) / cellSize);
     }
 
     /**
      * Set the amount of time in milliseconds that should elapse between automatic updates of the
-     * encapsulated GameOfLifeModel instance. Note: This update period is only used when the game
-     * is "running". This method does not mutate the encapsulated GameOfLifeModel instance.
+     * encapsulated LifeEngine instance. Note: This update period is only used when the game
+     * is "running" and not in warp mode, and periods shorter than the display's refresh period
+     * display one generation per frame. This method does not mutate the encapsulated LifeEngine
+     * instance.
      *
-     * @param someMs The number of milliseconds between encapsulated GameOfLifeModel instance updates.
+     * @param someMs The number of milliseconds between encapsulated LifeEngine instance updates.
      */
     public void setUpdatePeriodMs(int someMs) {
-        mUpdatePeriodMs = someMs;
+        mScheduler.setGenerationPeriodNanos(Math.max(0, someMs) * nanosPerMs);
+    }
+
+    /**
+     * Enters or leaves warp mode, in which the running game displays as many generations per
+     * frame as needed to reach a rate of generations, as far as they fit in the frame budget.
+     * The simulation computes further ahead while warping so that it can keep up.
+     *
+     * @param generationsPerSecond the target rate of generations, Double.POSITIVE_INFINITY for
+     *                             as many as fit in each frame, or 0 to leave warp mode
+     */
+    public void setWarpGenerationsPerSecond(double generationsPerSecond) {
+        mScheduler.setWarpGenerationsPerSecond(generationsPerSecond);
+        if (!mScheduler.isWarping()) {
+            mSimulation.setLookahead(LifeSimulation.defaultLookahead);
+        }
+    }
+
+    /**
+     * @return the target rate of generations in warp mode or 0 if warp mode is off
+     */
+    public double getWarpGenerationsPerSecond() {
+        return mScheduler.getWarpGenerationsPerSecond();
+    }
+
+    /**
+     * @return the scheduler that decides how many generations each frame displays
+     */
+    public FrameScheduler getScheduler() {
+        return mScheduler;
+    }
+
+    /**
+     * Shows or hides the metrics overlay. See LifeMetrics. Metrics are recorded whether or not
+     * the overlay is shown.
+     *
+     * @param showsMetrics true to show the overlay
+     */
+    public void setShowsMetrics(boolean showsMetrics) {
+        mShowsMetrics = showsMetrics;
+        this.invalidate();
+    }
+
+    /**
+     * @return true if and only if the metrics overlay is shown
+     */
+    public boolean getShowsMetrics() {
+        return mShowsMetrics;
+    }
+
+    /**
+     * @return the metrics of the generations computed and frames drawn for this view
+     */
+    public LifeMetrics getMetrics() {
+        return mSimulation.getMetrics();
     }
 
     /**
      * @return true if and only if the game is "running" meaning that the game is automatically
-     * updating its encapsulated GameOfLifeModel instance at some frequency > 0Hz.
+     * updating its encapsulated LifeEngine instance at some frequency > 0Hz.
      */
     public boolean getIsRunning() {
         return mIsRunning;
@@ -155,52 +512,384 @@ public class GameOfLifeView extends PanCapableView {
 
     /**
      * If the game is "running", this method stops it from running which means automatic updating
-     * the encapsulated GameOfLifeModel stops. If the game is not running, this method resumes
-     * running the game by automatic updating the encapsulated GameOfLifeModel.
+     * the encapsulated LifeEngine stops. If the game is not running, this method resumes
+     * running the game by automatic updating the encapsulated LifeEngine.
      */
     public void toggleIsRunning() {
         mIsRunning = !mIsRunning;
+        mIsIdle = false;
         if (mIsRunning) {
-            mHandler.postDelayed(mRunnable, 0);
+            mSimulation.requestFill();
+            mRunnable.start();
+        } else {
+            mRunnable.stop();
         }
     }
 
     /**
      *
-     * @return the model to display
+     * @return the newest complete snapshot of the model or null if there is no model
+     */
+    LifeSnapshot getSnapshot() {
+        return mSimulation.getSnapshot();
+    }
+    /**
+     * Makes tiled engines set later with setModel() or setEngineType() keep the tiles that stop
+     * changing outside of the heap. See LifeSimulation.setTileStorage().
+     *
+     * @param memoryBudgetBytes the most memory for the stored tiles of each engine before they
+     *                          are spilled to a file, or a negative number to store no tiles
+     * @param spillDirectory    the directory of the spill file or null to never spill tiles
+     */
+    public void setTileStorage(long memoryBudgetBytes, File spillDirectory) {
+        mSimulation.setTileStorage(memoryBudgetBytes, spillDirectory);
+    }
+
+    /**
+     * This is a Template Method: See https://en.wikipedia.org/wiki/Template_method_pattern
+     * This method is called automatically by Android when the view is removed from its window.
+     * This implementation releases the simulated engine's threads and TileStore. The displayed
+     * generation remains available from getSnapshot(), and setModel() starts simulating again.
      */
-    GameOfLifeModel getModel() {
-        return mModel;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mSimulation.release();
     }
+
     /**
      * Set the model to be encapsulated. The model can be set at any time (even while the game
-     * is "running").
+     * is "running"). The model is updated on the simulation thread from now on, so the caller
+     * must not use model after calling this method.
      *
      * @param model The model to be displayed and updated.
      */
-    public void setModel(GameOfLifeModel model) {
-        mModel = model;
+    public void setModel(LifeEngine model) {
+        mSimulation.setModel(model);
+        didChangeSimulation();
+        this.invalidate();
+    }
+
+    /**
+     * Set the model to be encapsulated like setModel(LifeEngine) but display an existing
+     * snapshot of model, for example one taken on a background thread.
+     *
+     * @param model    The model to be displayed and updated.
+     * @param snapshot a snapshot of model's current generation (cannot be null)
+     */
+    public void setModel(LifeEngine model, LifeSnapshot snapshot) {
+        mSimulation.setModel(model, snapshot);
+        didChangeSimulation();
+        this.invalidate();
+    }
+
+    /**
+     * Replaces the encapsulated model with a new engine of the specified type holding the cells
+     * and generation counter currently displayed. Nothing is replaced if there is no model or if
+     * the model is already of the specified type. The engine can be changed at any time (even
+     * while the game is "running").
+     *
+     * @param type the type of engine to use from now on (cannot be null)
+     */
+    public void setEngineType(LifeEngineType type) {
+        mSimulation.setEngineType(type);
+        didChangeSimulation();
+        this.invalidate();
+    }
+
+    /**
+     * Applies rule to every generation after the generation currently displayed. Generations
+     * after the displayed generation computed with the previous rule are discarded. The rule can
+     * be changed at any time (even while the game is "running").
+     *
+     * @param rule the rule to use from now on (cannot be null)
+     */
+    public void setRule(LifeRule rule) {
+        mSimulation.setRule(rule);
+        didChangeSimulation();
         this.invalidate();
     }
 
+    /**
+     * @param listener informed when a cycle is detected or forgotten from now on (can be null)
+     */
+    public void setCycleListener(CycleListener listener) {
+        mCycleListener = listener;
+    }
+
+    /**
+     * Displays the generation before the displayed generation if it is still retained by the
+     * simulation's history. The encapsulated LifeEngine instance is not mutated.
+     *
+     * @return true if and only if the displayed generation changed
+     */
+    public boolean stepBack() {
+        final LifeSnapshot snapshot = mSimulation.getSnapshot();
+        return null != snapshot && showGeneration(snapshot.getGeneration() - 1);
+    }
+
+    /**
+     * Displays the generation after the displayed generation. Generations retained by the
+     * simulation's history are replayed without simulating them again.
+     *
+     * @return true if and only if the displayed generation changed. The result is false if the
+     * next generation has not been computed yet.
+     */
+    public boolean stepForward() {
+        if (!mSimulation.advance()) {
+            return false;
+        }
+        didChangeDisplayedGeneration();
+        return true;
+    }
+
+    /**
+     * Displays the oldest generation retained by the simulation's history. The encapsulated
+     * LifeEngine instance is not mutated.
+     *
+     * @return true if and only if the displayed generation changed
+     */
+    public boolean rewind() {
+        final LifeHistory history = mSimulation.getHistory();
+        return !history.isEmpty() && showGeneration(history.getOldestGeneration());
+    }
+
+    private boolean showGeneration(long generation) {
+        if (!mSimulation.showGeneration(generation)) {
+            return false;
+        }
+        didChangeDisplayedGeneration();
+        return true;
+    }
+
+    private void didChangeDisplayedGeneration() {
+        final LifeSnapshot snapshot = mSimulation.getSnapshot();
+        if (mIsDrawingDensity) {
+            mDensityPyramid.update(snapshot);
+            this.invalidate();
+        } else {
+            invalidateChangedCells(snapshot);
+        }
+        didChangeSimulation();
+    }
+
+    /**
+     * Brings the CellRaster up to date with snapshot and invalidates only the area of the view
+     * covering the cells that changed. Nothing is invalidated if no visible cell changed.
+     */
+    private void invalidateChangedCells(LifeSnapshot snapshot) {
+        final int visibleCells[] = mVisibleCells;
+        getVisibleCells(visibleCells);
+        mCellRaster.update(snapshot, visibleCells[0], visibleCells[1], visibleCells[2],
+                visibleCells[3]);
+        final int changedCells[] = mChangedCells;
+        if (mCellRaster.getDirtyBounds(changedCells)) {
+            // View position v shows game position v / scale - translation, so game position g
+            // is shown at view position (g + translation) * scale
+            final float scaleFactor = getScaleFactor();
+            final float left = (changedCells[0] * cellSize + getTranslationX()) * scaleFactor;
+            final float top = (changedCells[1] * cellSize + getTranslationY()) * scaleFactor;
+            final float right = ((changedCells[2] + 1.0f) * cellSize + getTranslationX()) *
+                    scaleFactor;
+            final float bottom = ((changedCells[3] + 1.0f) * cellSize + getTranslationY()) *
+                    scaleFactor;
+            this.invalidate((int) Math.floor(left), (int) Math.floor(top),
+                    (int) Math.ceil(right), (int) Math.ceil(bottom));
+        }
+    }
+
+    /**
+     * Reports a changed cycle to the CycleListener and resumes periodic updates if they stopped
+     * while the universe was not changing but there are generations to display again.
+     */
+    private void didChangeSimulation() {
+        final int period = mSimulation.getCyclePeriod();
+        if (period != mReportedCyclePeriod) {
+            mReportedCyclePeriod = period;
+            if (null != mCycleListener) {
+                mCycleListener.onCycleChanged(period, mSimulation.getCycleStartGeneration());
+            }
+        }
+        if (mIsIdle && !mSimulation.isIdle()) {
+            mIsIdle = false;
+            mRunnable.start();
+        }
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * A single instance copies each visited rectangle of the CellRaster's pixels into the cell
+     * bitmap, which has the same size as the raster's region.
+     */
+    private class CellUploader implements CellRaster.RectangleVisitor {
+        Bitmap mBitmap;
+
+        @Override
+        public void visit(int left, int top, int right, int bottom) {
+            final CellRaster raster = mCellRaster;
+            final int x = left - raster.getLeft();
+            final int y = top - raster.getTop();
+            mBitmap.setPixels(raster.getPixels(), y * raster.getWidth() + x, raster.getWidth(),
+                    x, y, right - left + 1, bottom - top + 1);
+        }
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * A single instance is reused for every frame. Each visited block sets one pixel to green with
+     * an opacity that grows with the fraction of the block that is occupied.
+     */
+    private static class DensityPainter implements DensityPyramid.BlockVisitor {
+        private static final int minimumAlpha = 64;
+        int mPixels[];
+        int mLeft;
+        int mTop;
+        int mWidth;
+        long mBlockArea;
+
+        @Override
+        public void visit(int blockX, int blockY, int population) {
+            // Half occupied blocks are already fully opaque: few patterns are denser than that
+            final long alpha = minimumAlpha +
+                    (255 - minimumAlpha) * Math.min(mBlockArea, 2L * population) / mBlockArea;
+            mPixels[(blockY - mTop) * mWidth + (blockX - mLeft)] =
+                    Color.argb((int) alpha, 0, 255, 0);
+        }
+    }
+
+    /**
+     * Each instance is a line of overlay text built in a reusable character array. Numbers are
+     * formatted digit by digit because String.format() and string concatenation allocate.
+     */
+    private static class MetricsText {
+        char mChars[] = new char[64];
+        int mLength;
+
+        MetricsText clear() {
+            mLength = 0;
+            return this;
+        }
+
+        MetricsText append(String string) {
+            final int length = Math.min(string.length(), mChars.length - mLength);
+            string.getChars(0, length, mChars, mLength);
+            mLength += length;
+            return this;
+        }
+
+        MetricsText append(long value) {
+            if (0 > value) {
+                append("-");
+                value = -value;
+            }
+            // Digits are produced least significant first and then reversed in place
+            final int start = mLength;
+            do {
+                if (mLength < mChars.length) {
+                    mChars[mLength++] = (char) ('0' + value % 10);
+                }
+                value /= 10;
+            } while (0 != value);
+            for (int i = start, j = mLength - 1; i < j; i++, j--) {
+                final char swap = mChars[i];
+                mChars[i] = mChars[j];
+                mChars[j] = swap;
+            }
+            return this;
+        }
+
+        /**
+         * Appends tenths / 10 with one decimal place.
+         */
+        MetricsText appendTenths(long tenths) {
+            append(tenths / 10).append(".");
+            return append(Math.abs(tenths % 10));
+        }
+
+        /**
+         * Appends nanos as milliseconds with one decimal place.
+         */
+        MetricsText appendMillis(long nanos) {
+            return appendTenths((nanos + 50000) / 100000);
+        }
+    }
+
+    /**
+     * This class implements the Adapter Pattern. See https://en.wikipedia.org/wiki/Adapter_pattern
+     * The single instance forwards the sections measured by LifeMetrics to android.os.Trace so
+     * they appear in system traces. Trace sections are nearly free while no trace is recorded.
+     */
+    private static class SystemTracer implements LifeMetrics.Tracer {
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+    }
+
     /**
      * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
-     * Call the run() method to invoke a single update of the encapsulated GameOfLifeView instance
-     * and schedule another invocation to occur after the GameOfLifeView instances mUpdatePeriodMs.
+     * Once started, doFrame() is called for every frame of the display. Each call displays the
+     * generations computed by the simulation thread that the GameOfLifeView's FrameScheduler
+     * says are due and fit in the frame budget, and then waits for the next frame, unless the
+     * game stopped running or the universe no longer changes.
      */
-    private static class Animator implements Runnable {
+    private static class Animator implements Choreographer.FrameCallback {
         final GameOfLifeView mView;
 
         Animator(GameOfLifeView view) {
             mView = view;
         }
 
+        /**
+         * Starts calling doFrame() every frame. Calling this method while already started is
+         * harmless.
+         */
+        void start() {
+            mView.mScheduler.restart();
+            final Choreographer choreographer = Choreographer.getInstance();
+            choreographer.removeFrameCallback(this);
+            choreographer.postFrameCallback(this);
+        }
+
+        /**
+         * Stops calling doFrame().
+         */
+        void stop() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
         @Override
-        public void run() {
-            mView.mModel.update();
-            mView.invalidate();
-            if (mView.mIsRunning) {
-                mView.mHandler.postDelayed(this, mView.mUpdatePeriodMs);
+        public void doFrame(long frameTimeNanos) {
+            final GameOfLifeView view = mView;
+            if (!view.mIsRunning) {
+                return;
+            }
+            final FrameScheduler scheduler = view.mScheduler;
+            final long start = System.nanoTime();
+            final int dueGenerations = scheduler.beginFrame(frameTimeNanos);
+            int displayedGenerations = 0;
+            // Follow every generation so the cell raster and density pyramid can be updated
+            // incrementally even when several generations are displayed in one frame
+            while (displayedGenerations < dueGenerations &&
+                    scheduler.hasTimeFor(System.nanoTime() - start) && view.stepForward()) {
+                displayedGenerations += 1;
+            }
+            scheduler.endFrame(displayedGenerations, System.nanoTime() - start);
+            if (scheduler.isWarping()) {
+                // Keep the next frame's generations queued while this one is drawn
+                view.mSimulation.setLookahead(Math.max(LifeSimulation.defaultLookahead,
+                        2 * scheduler.getGenerationLimit()));
+            }
+
+            if (view.mSimulation.isIdle()) {
+                view.mIsIdle = true;
+            } else {
+                Choreographer.getInstance().postFrameCallback(this);
             }
         }
     }
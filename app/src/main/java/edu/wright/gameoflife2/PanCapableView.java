@@ -25,11 +25,26 @@ import android.view.View;
  */
 public class PanCapableView extends View {
     private float mScale = 1f;
+    private float mMinimumScale = 0.1f;
+    private float mMaximumScale = 5.0f;
     private class ZoomOnScaleGestureListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
+            final float oldScale = mScale;
             mScale *= detector.getScaleFactor();
-            mScale = Math.max(0.1f, Math.min(mScale, 5.0f));
+            mScale = Math.max(mMinimumScale, Math.min(mScale, mMaximumScale));
+
+            // Keep the content under the gesture's focus point in place. This matters when the
+            // scale range spans many orders of magnitude.
+            final float focusX = detector.getFocusX();
+            final float focusY = detector.getFocusY();
+            mTranslateX += focusX / mScale - focusX / oldScale;
+            mTranslateY += focusY / mScale - focusY / oldScale;
+            mPreviousTranslateX = mTranslateX;
+            mPreviousTranslateY = mTranslateY;
+            mStartX = mLastTouchX;
+            mStartY = mLastTouchY;
+            invalidate();
             return true;
         }
     }
@@ -43,6 +58,8 @@ public class PanCapableView extends View {
     private float mTranslateY = 0f;
     private float mPreviousTranslateX = 0f;
     private float mPreviousTranslateY = 0f;
+    private float mLastTouchX = 0f;
+    private float mLastTouchY = 0f;
 
     /**
      * This constructor is only implemented because it is required by the superclass, View.
@@ -112,6 +129,20 @@ public class PanCapableView extends View {
      */
     public float  getScaleFactor() { return mScale; }
 
+    /**
+     * Sets the range of scale factors that pinch gestures can produce. The default range is 0.1
+     * to 5.0.
+     *
+     * @param minimumScale the smallest scale factor ( > 0)
+     * @param maximumScale the largest scale factor ( >= minimumScale)
+     */
+    public void setScaleRange(float minimumScale, float maximumScale) {
+        mMinimumScale = minimumScale;
+        mMaximumScale = maximumScale;
+        mScale = Math.max(mMinimumScale, Math.min(mScale, mMaximumScale));
+        invalidate();
+    }
+
     /**
      * Process user touch events.
      * @param event the motion event to be processed (typically a finger or pointer gesture in some
@@ -125,22 +156,19 @@ public class PanCapableView extends View {
         switch (event.getAction() & MotionEvent.ACTION_MASK) {
 
             case MotionEvent.ACTION_DOWN:
-                // Assign the current X and Y coordinate of the finger to startX and startY minus
-                // the previously translated amount for each coordinates This works even when we are
-                // translating the first time.
-                mStartX = event.getX() - mPreviousTranslateX;
-                mStartY = event.getY() - mPreviousTranslateY;
+                // Remember where the finger started. The translation is measured from there.
+                mStartX = event.getX();
+                mStartY = event.getY();
                 break;
 
             case MotionEvent.ACTION_MOVE:
-                mTranslateX = event.getX() - mStartX;
-                mTranslateY = event.getY() - mStartY;
+                // The canvas is translated after it is scaled, so the distance the finger moved
+                // is divided by the scale to make content follow the finger at any scale.
+                mTranslateX = mPreviousTranslateX + (event.getX() - mStartX) / mScale;
+                mTranslateY = mPreviousTranslateY + (event.getY() - mStartY) / mScale;
 
-                // We cannot use startX and startY directly because we have adjusted their values
-                // using the previous translation values. This is why we need to add those values to
-                // startX and startY so that we can get the actual coordinates of the finger.
-                double distanceSquared = Math.pow(event.getX() - (mStartX + mPreviousTranslateX), 2) +
-                        Math.pow(event.getY() - (mStartY + mPreviousTranslateY), 2);
+                double distanceSquared = Math.pow(event.getX() - mStartX, 2) +
+                        Math.pow(event.getY() - mStartY, 2);
 
                 if (distanceSquared > 1) {
                     invalidate(); // The translation has changed enough to warrant redrawing
@@ -155,6 +183,8 @@ public class PanCapableView extends View {
                 break;
         }
 
+        mLastTouchX = event.getX();
+        mLastTouchY = event.getY();
         mDetector.onTouchEvent(event);
 
         return true;
@@ -213,8 +243,8 @@ public class PanCapableView extends View {
      * rectangle defined by getRight(), getLeft(), getBottom(), and getTop().
      */
     public void center() {
-        mTranslateX = (getRight() - getLeft()) * 0.5f;
-        mTranslateY = (getBottom() - getTop()) * 0.5f;
+        mTranslateX = (getRight() - getLeft()) * 0.5f / mScale;
+        mTranslateY = (getBottom() - getTop()) * 0.5f / mScale;
         mPreviousTranslateX = mTranslateX;
         mPreviousTranslateY = mTranslateY;
         this.invalidate();
@@ -0,0 +1,71 @@
+package edu.wright.gameoflife2;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class provides the start configurations measured by the benchmarks: the application's
+ * presets, a few well-known long-lived patterns (methuselahs), and seeded random soups.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class BenchmarkPatterns {
+    /** Stabilizes after 1103 generations */
+    static final int rPentominoCellPositions[][] = {{1, 0}, {2, 0}, {0, 1}, {1, 1}, {1, 2},};
+    /** Stabilizes after 5206 generations */
+    static final int acornCellPositions[][] = {{1, 0}, {3, 1}, {0, 2}, {1, 2}, {4, 2}, {5, 2},
+            {6, 2},};
+    /** Stabilizes after 17331 generations */
+    static final int rabbitsCellPositions[][] = {{0, 0}, {4, 0}, {5, 0}, {6, 0}, {0, 1}, {1, 1},
+            {2, 1}, {5, 1}, {1, 2},};
+
+    /** The fraction of a soup's square that starts alive */
+    static final double soupDensity = 0.25;
+
+    private BenchmarkPatterns() {
+    }
+
+    /**
+     * @return Patterns.byName() plus "r-pentomino", "acorn", and "rabbits"
+     */
+    static Map<String, int[][]> byName() {
+        final Map<String, int[][]> map = Patterns.byName();
+        map.put("r-pentomino", rPentominoCellPositions);
+        map.put("acorn", acornCellPositions);
+        map.put("rabbits", rabbitsCellPositions);
+        return map;
+    }
+
+    /**
+     * Soups are returned as flat {x0, y0, x1, y1, ...} arrays because millions of two element
+     * arrays would dominate the heap of the benchmark JVM.
+     *
+     * @param cellCount the number of random positions to generate
+     * @param seed      the random number generator seed; equal seeds produce equal soups
+     * @return cellCount random positions in a square centered on the origin and sized so that
+     * about soupDensity of the square is alive. Positions may repeat.
+     */
+    static int[] soup(int cellCount, long seed) {
+        final int size = Math.max(1, (int) Math.sqrt(cellCount / soupDensity));
+        final Random random = new Random(seed);
+        final int result[] = new int[cellCount * 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = random.nextInt(size) - size / 2;
+        }
+        return result;
+    }
+
+    /**
+     * @param engineType   the kind of engine to create
+     * @param coordinates  flat {x0, y0, x1, y1, ...} positions such as returned by soup()
+     * @return a new engine containing live cells at coordinates
+     */
+    static LifeEngine create(LifeEngineType engineType, int coordinates[]) {
+        final LifeEngine engine = engineType.create(Patterns.clearCellPositions);
+        for (int i = 0; i < coordinates.length; i += 2) {
+            engine.spawnCellAt(coordinates[i], coordinates[i + 1]);
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,78 @@
+package edu.wright.gameoflife2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures LifeEngine.update() for each engine on the application's presets and on
+ * long-lived patterns. Each iteration is a single shot that computes the first
+ * generationsPerIteration generations of the pattern, and one operation is one generation, so the
+ * reported score is the average time per generation and the GC profiler's gc.alloc.rate.norm is
+ * bytes allocated per generation.
+ * <p/>
+ * Growing patterns such as "shooter" would otherwise get slower with every iteration, so each
+ * iteration starts again from the start configuration. The engine is created in an iteration
+ * level setup, so its time is not part of the score, and no setup runs between the timed
+ * generations: invocation level setups distort measurements of operations as short as a
+ * generation of a small pattern. The GC profiler counts every allocation of an iteration, setups
+ * included, so gc.alloc.rate.norm still includes the seeding amortized over
+ * generationsPerIteration.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 20)
+@Fork(1)
+public class PatternBenchmark {
+    /** The number of generations timed in each iteration */
+    public static final int generationsPerIteration = 1000;
+
+    @Param({"glider", "pump", "shooter", "ten-in-a-row", "r-pentomino", "acorn", "rabbits"})
+    public String pattern;
+
+    @Param({"SPARSE_HASH", "TILED_BITBOARD", "HASHLIFE", "HYBRID"})
+    public LifeEngineType engineType;
+
+    private int mPositions[][];
+    private LifeEngine mEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mPositions = BenchmarkPatterns.byName().get(pattern);
+        if (null == mPositions) {
+            throw new IllegalArgumentException("unknown pattern " + pattern);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        mEngine = engineType.create(mPositions);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(generationsPerIteration)
+    public int update() {
+        final LifeEngine engine = mEngine;
+        for (int i = 0; i < generationsPerIteration; i++) {
+            engine.update();
+        }
+        return engine.getPopulation();
+    }
+}
@@ -0,0 +1,78 @@
+package edu.wright.gameoflife2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures LifeEngine.update() for each engine on seeded random soups of 1k to 10M
+ * cells. Each iteration is a single shot that computes generationsPerIteration generations of a
+ * freshly seeded soup, and one operation is one generation, so the reported score is the average
+ * time per generation and the GC profiler's gc.alloc.rate.norm is bytes allocated per generation.
+ * <p/>
+ * Soups die down as they evolve, so each iteration starts again from the soup to keep measuring
+ * populations near cellCount. Seeding happens in an iteration level setup, so its time is not
+ * part of the score, and no setup runs between the timed generations: invocation level setups
+ * distort measurements of operations as short as a generation of a small soup. The GC profiler
+ * counts every allocation of an iteration, setups included, so gc.alloc.rate.norm still includes
+ * the seeding amortized over generationsPerIteration.
+ * The same seed produces the same soup for every engine and every run. BOUNDED_BOARD holds only
+ * the soups that fit on its board, so its results for 10M cells measure a clipped soup.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SoupBenchmark {
+    /** The number of generations timed in each iteration */
+    public static final int generationsPerIteration = 100;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int cellCount;
+
+    @Param({"SPARSE_HASH", "TILED_BITBOARD", "HASHLIFE", "HYBRID", "BOUNDED_BOARD"})
+    public LifeEngineType engineType;
+
+    @Param("1")
+    public long seed;
+
+    private int mCoordinates[];
+    private LifeEngine mEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mCoordinates = BenchmarkPatterns.soup(cellCount, seed);
+    }
+
+    @Setup(Level.Iteration)
+    public void seed() {
+        mEngine = BenchmarkPatterns.create(engineType, mCoordinates);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(generationsPerIteration)
+    public int update() {
+        final LifeEngine engine = mEngine;
+        for (int i = 0; i < generationsPerIteration; i++) {
+            engine.update();
+        }
+        return engine.getPopulation();
+    }
+}
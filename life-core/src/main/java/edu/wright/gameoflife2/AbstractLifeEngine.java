@@ -0,0 +1,174 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class provides the parts of LifeEngine that are the same for every engine: the generation
+ * counter, the rule, the count of evaluated cells, seeding, batch spawning, and straightforward
+ * implementations of step(), getBounds(), and forEachPositionIn() in terms of the other methods.
+ * Subclasses implement computeNextGeneration() and override the other methods when the way they
+ * store cells allows something faster.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+abstract class AbstractLifeEngine implements LifeEngine {
+    private long mGeneration;
+    private LifeRule mRule = LifeRule.conway;
+    private long mEvaluatedCellCount;
+
+    /**
+     * This is a Template Method. See https://en.wikipedia.org/wiki/Template_method_pattern
+     * This method is called by update() to apply the logic (rules) of the Game of Life to every
+     * cell once. Implementations must not change the generation counter.
+     */
+    protected abstract void computeNextGeneration();
+
+    @Override
+    public void seed(int positions[][]) {
+        for (int coordinates[] : positions) {
+            spawnCellAt(coordinates[0], coordinates[1]);
+        }
+    }
+
+    @Override
+    public void spawnCells(int coordinates[], int count) {
+        for (int i = 0; i < count * 2; i += 2) {
+            spawnCellAt(coordinates[i], coordinates[i + 1]);
+        }
+    }
+
+    @Override
+    public void setRule(LifeRule rule) {
+        if (null == rule) {
+            throw new NullPointerException("rule");
+        }
+        if (!rule.equals(mRule)) {
+            mRule = rule;
+            ruleChanged();
+        }
+    }
+
+    @Override
+    public LifeRule getRule() {
+        return mRule;
+    }
+
+    /**
+     * This is a Template Method. See https://en.wikipedia.org/wiki/Template_method_pattern
+     * This method is called by setRule() after getRule() starts returning a different rule.
+     * Subclasses that cache anything derived from the rule or from earlier generations override
+     * it to discard what is no longer valid. This implementation does nothing.
+     */
+    protected void ruleChanged() {
+    }
+
+    @Override
+    public void update() {
+        mEvaluatedCellCount = 0;
+        computeNextGeneration();
+        mGeneration += 1;
+    }
+
+    @Override
+    public void step(long generations) {
+        if (0 > generations) {
+            throw new IllegalArgumentException("generations must be >= 0");
+        }
+        long evaluatedCellCount = 0;
+        for (long i = 0; i < generations; i++) {
+            update();
+            evaluatedCellCount += mEvaluatedCellCount;
+        }
+        mEvaluatedCellCount = evaluatedCellCount;
+    }
+
+    @Override
+    public long getEvaluatedCellCount() {
+        return mEvaluatedCellCount;
+    }
+
+    /**
+     * Adds count to the value returned by getEvaluatedCellCount(). Subclasses call this from
+     * computeNextGeneration() as they evaluate the rule.
+     *
+     * @param count the number of positions whose next state was just computed
+     */
+    protected void countEvaluatedCells(long count) {
+        mEvaluatedCellCount += count;
+    }
+
+    /**
+     * Sets the value returned by getEvaluatedCellCount() to 0. This is used by engines that
+     * advance several generations at once without calling update().
+     */
+    void resetEvaluatedCellCount() {
+        mEvaluatedCellCount = 0;
+    }
+
+    @Override
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Sets the generation counter. This is used when an engine takes over the cells of another
+     * engine and by engines that advance several generations at once.
+     *
+     * @param generation the new value of the generation counter
+     */
+    void setGeneration(long generation) {
+        mGeneration = generation;
+    }
+
+    @Override
+    public boolean getBounds(int bounds[]) {
+        final BoundsVisitor visitor = new BoundsVisitor();
+        forEachPosition(visitor);
+        if (visitor.mIsEmpty) {
+            return false;
+        }
+        bounds[0] = visitor.mLeft;
+        bounds[1] = visitor.mTop;
+        bounds[2] = visitor.mRight;
+        bounds[3] = visitor.mBottom;
+        return true;
+    }
+
+    @Override
+    public void forEachPositionIn(final int left, final int top, final int right, final int bottom,
+                                  final CellVisitor visitor) {
+        forEachPosition(new CellVisitor() {
+            @Override
+            public void visit(int x, int y) {
+                if (x >= left && x <= right && y >= top && y <= bottom) {
+                    visitor.visit(x, y);
+                }
+            }
+        });
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance accumulates the smallest rectangle containing every visited position.
+     */
+    private static class BoundsVisitor implements CellVisitor {
+        boolean mIsEmpty = true;
+        int mLeft;
+        int mTop;
+        int mRight;
+        int mBottom;
+
+        @Override
+        public void visit(int x, int y) {
+            if (mIsEmpty) {
+                mIsEmpty = false;
+                mLeft = mRight = x;
+                mTop = mBottom = y;
+            } else {
+                mLeft = Math.min(mLeft, x);
+                mRight = Math.max(mRight, x);
+                mTop = Math.min(mTop, y);
+                mBottom = Math.max(mBottom, y);
+            }
+        }
+    }
+}
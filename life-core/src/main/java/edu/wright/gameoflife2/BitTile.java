@@ -0,0 +1,191 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates a square block of size x size cells in the Game of Life grid stored as
+ * one bit per cell. Each row of the block is a single long: bit i of rows[r] is the cell at
+ * {tileX * size + i, tileY * size + r}. Storing whole rows in words lets the rules be applied to
+ * 64 cells at once with bitwise operations. See TiledGameOfLifeModel.
+ * <p/>
+ * Each tile holds three row buffers: the current generation, the previous generation, and a
+ * buffer into which the next generation is computed while every tile still exposes the current
+ * generation to its neighbors. The previous generation lets tiles whose neighborhood repeats with
+ * period 2 (such as blinkers) reuse it instead of computing the next generation.
+ * <p/>
+ * The changed and changedSinceTwo flags record whether the current generation differs from the
+ * previous generation and from the generation before that respectively. Tiles that do not exist
+ * are empty and unchanged.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class BitTile {
+    static final int shift = 6;
+    static final int size = 1 << shift;
+    static final int mask = size - 1;
+
+    static final byte keepRows = 0;
+    static final byte restorePreviousRows = 1;
+    static final byte useNextRows = 2;
+
+    long[] rows = new long[size];
+    long[] previousRows = new long[size];
+    long[] nextRows = new long[size];
+    int tileX;
+    int tileY;
+    int population;
+    boolean changed;
+    boolean changedSinceTwo;
+    /**
+     * True if cells were spawned since the tile's generation was last computed. The previous
+     * generation is then not the predecessor of the current generation, so the next computed
+     * generation must not be treated as a repeat of the generation before last.
+     */
+    boolean spawned;
+    /**
+     * One of keepRows, restorePreviousRows, or useNextRows chosen while computing the next
+     * generation
+     */
+    byte nextAction;
+    /**
+     * The population of the next generation and, if nextAction is useNextRows, its changed and
+     * changedSinceTwo flags, recorded while computing the next generation. See summarizeNext().
+     */
+    int nextPopulation;
+    boolean nextChanged;
+    boolean nextChangedSinceTwo;
+    /**
+     * The number of generations in a row in which the tile kept its rows because its
+     * neighborhood did not change. See TiledGameOfLifeModel.setTileStore().
+     */
+    int quietGenerations;
+    /**
+     * True if the tile changed in the last generation it was computed and stored tiles near it
+     * have been loaded. See TiledGameOfLifeModel.setTileStore().
+     */
+    boolean isActive;
+
+    /**
+     * Constructs an empty tile at the specified tile coordinates.
+     *
+     * @param tileX the x coordinate of the tile (cell x coordinate >> shift)
+     * @param tileY the y coordinate of the tile (cell y coordinate >> shift)
+     */
+    BitTile(int tileX, int tileY) {
+        this.tileX = tileX;
+        this.tileY = tileY;
+    }
+
+    /**
+     * Clears all row buffers and flags and moves the tile to new tile coordinates so that the
+     * tile can be reused instead of allocating a new one.
+     *
+     * @param tileX the new x coordinate of the tile
+     * @param tileY the new y coordinate of the tile
+     */
+    void reset(int tileX, int tileY) {
+        Arrays.fill(rows, 0L);
+        Arrays.fill(previousRows, 0L);
+        Arrays.fill(nextRows, 0L);
+        population = 0;
+        changed = false;
+        changedSinceTwo = false;
+        spawned = false;
+        quietGenerations = 0;
+        isActive = false;
+        this.tileX = tileX;
+        this.tileY = tileY;
+    }
+
+    /**
+     * Records nextPopulation, nextChanged, and nextChangedSinceTwo for the next generation chosen
+     * by nextAction. This only reads the tile's own buffers, so it may be called for different
+     * tiles concurrently while the next generation is computed, which leaves only swapping
+     * buffers to useNextRows() and restorePreviousRows().
+     */
+    void summarizeNext() {
+        if (useNextRows == nextAction) {
+            int count = 0;
+            long differences = 0;
+            long differencesSinceTwo = 0;
+            for (int r = 0; r < size; r++) {
+                final long row = nextRows[r];
+                count += Long.bitCount(row);
+                differences |= row ^ rows[r];
+                differencesSinceTwo |= row ^ previousRows[r];
+            }
+            nextPopulation = count;
+            nextChanged = 0 != differences;
+            nextChangedSinceTwo = spawned || 0 != differencesSinceTwo;
+        } else if (restorePreviousRows == nextAction) {
+            int count = 0;
+            for (long row : previousRows) {
+                count += Long.bitCount(row);
+            }
+            nextPopulation = count;
+        } else {
+            nextPopulation = population;
+        }
+    }
+
+    /**
+     * Makes the next generation in nextRows the current generation and makes the current
+     * generation the previous generation. summarizeNext() must have been called since nextRows
+     * was computed.
+     */
+    void useNextRows() {
+        final long[] older = previousRows;
+        previousRows = rows;
+        rows = nextRows;
+        nextRows = older;
+        population = nextPopulation;
+        changed = nextChanged;
+        changedSinceTwo = nextChangedSinceTwo;
+        spawned = false;
+    }
+
+    /**
+     * Makes the previous generation the current generation and the current generation the
+     * previous generation. This is the next generation of a tile whose neighborhood is the same
+     * as two generations ago. summarizeNext() must have been called since nextAction was chosen.
+     */
+    void restorePreviousRows() {
+        final long[] older = previousRows;
+        previousRows = rows;
+        rows = older;
+        population = nextPopulation;
+        changedSinceTwo = false;
+    }
+
+    /**
+     * Leaves the current generation in place. This is the next generation of a tile whose
+     * neighborhood did not change in the last generation.
+     */
+    void keepRows() {
+        changed = false;
+        changedSinceTwo = false;
+    }
+
+    /**
+     * @return the number of live cells in the current generation of the tile
+     */
+    int countCells() {
+        int result = 0;
+        for (long row : rows) {
+            result += Long.bitCount(row);
+        }
+        return result;
+    }
+
+    /**
+     * @return the bitwise OR of all rows. Bit i is set if and only if column i has a live cell.
+     */
+    long occupiedColumns() {
+        long result = 0;
+        for (long row : rows) {
+            result |= row;
+        }
+        return result;
+    }
+}
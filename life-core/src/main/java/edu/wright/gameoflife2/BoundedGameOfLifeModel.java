@@ -0,0 +1,421 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class is a LifeEngine for a finite board of width x height positions centered on the
+ * origin: x coordinates from getLeft() to getRight() and y coordinates from getTop() to
+ * getBottom(). Positions beyond the edges are either always empty (Topology.DEAD_EDGES) or are
+ * the positions at the opposite edges, so that the board is a torus (Topology.TORUS).
+ * <p/>
+ * The board is stored as two flat arrays of bits, one for the current generation and one that
+ * receives the next generation, with each row of the board stored as consecutive longs. Each
+ * generation is computed 64 cells at a time with the same bitwise full adders as
+ * TiledGameOfLifeModel, scanning the rows in memory order, so there are no hash lookups, no
+ * tiles to find or create, and no branches per cell. Words whose 3x3 word neighborhood is empty
+ * stay empty (LifeRule does not allow births without neighbors), so they are skipped.
+ * <p/>
+ * Inside its edges, a board produces exactly the same generations as the "infinite" engines, so
+ * it is interchangeable with them for patterns that stay on the board. Cells spawned beyond the
+ * edges are discarded with dead edges and wrap around to the opposite edges on a torus.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class BoundedGameOfLifeModel extends AbstractLifeEngine {
+    /** The width and height of boards created by LifeEngineType */
+    public static final int defaultSize = 2048;
+    private static final int shift = 6;
+    private static final int bitsPerWord = 1 << shift;
+    private static final int mask = bitsPerWord - 1;
+
+    /**
+     * These are the ways a board can treat positions beyond its edges.
+     */
+    public enum Topology {
+        /** Positions beyond the edges are always empty */
+        DEAD_EDGES,
+        /** Each edge is adjacent to the opposite edge */
+        TORUS
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mLeft;
+    private final int mTop;
+    private final Topology mTopology;
+    private final int mWordsPerRow;
+    // The bit of the last word of each row that holds the rightmost column
+    private final int mLastBit;
+    private final long mLastWordMask;
+    // Bit c & mask of mRows[r * mWordsPerRow + (c >> shift)] is the cell at column c of row r
+    private long[] mRows;
+    private long[] mNextRows;
+    // An empty row used beyond the top and bottom edges when they are dead
+    private final long[] mEmptyRow;
+    private int mPopulation;
+
+    /**
+     * Constructs a board of defaultSize x defaultSize positions with cells at all positions in
+     * initialPositions.
+     *
+     * @param topology         what is beyond the edges of the board (cannot be null)
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    BoundedGameOfLifeModel(Topology topology, final int initialPositions[][]) {
+        this(defaultSize, defaultSize, topology, initialPositions);
+    }
+
+    /**
+     * Constructs a board with cells at all positions in initialPositions.
+     *
+     * @param width            the number of positions in each row ( >= 1)
+     * @param height           the number of positions in each column ( >= 1)
+     * @param topology         what is beyond the edges of the board (cannot be null)
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    public BoundedGameOfLifeModel(int width, int height, Topology topology,
+                                  final int initialPositions[][]) {
+        if (1 > width || 1 > height) {
+            throw new IllegalArgumentException("width and height must be >= 1");
+        }
+        if (null == topology) {
+            throw new NullPointerException("topology");
+        }
+        mWidth = width;
+        mHeight = height;
+        mLeft = -(width / 2);
+        mTop = -(height / 2);
+        mTopology = topology;
+        mWordsPerRow = (width + mask) >> shift;
+        if ((long) mWordsPerRow * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("board is too large");
+        }
+        mLastBit = (width - 1) & mask;
+        mLastWordMask = -1L >>> (mask - mLastBit);
+        mRows = new long[mWordsPerRow * height];
+        mNextRows = new long[mWordsPerRow * height];
+        mEmptyRow = new long[mWordsPerRow];
+        this.seed(initialPositions);
+    }
+
+    /**
+     * @return what is beyond the edges of the board
+     */
+    public Topology getTopology() {
+        return mTopology;
+    }
+
+    /**
+     * @return the number of positions in each row of the board
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the number of positions in each column of the board
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return the smallest x coordinate on the board
+     */
+    public int getLeft() {
+        return mLeft;
+    }
+
+    /**
+     * @return the smallest y coordinate on the board
+     */
+    public int getTop() {
+        return mTop;
+    }
+
+    /**
+     * @return the largest x coordinate on the board
+     */
+    public int getRight() {
+        return mLeft + mWidth - 1;
+    }
+
+    /**
+     * @return the largest y coordinate on the board
+     */
+    public int getBottom() {
+        return mTop + mHeight - 1;
+    }
+
+    /**
+     * Update the state of all encapsulated cells by applying the logic (rules) of the Game of Life
+     * to every word of every row of the board. The next generation is written to the spare array,
+     * which then becomes current. This method is called by update().
+     */
+    @Override
+    protected void computeNextGeneration() {
+        final long[] rows = mRows;
+        final long[] next = mNextRows;
+        final int wordsPerRow = mWordsPerRow;
+        final int lastWord = wordsPerRow - 1;
+        final boolean isTorus = Topology.TORUS == mTopology;
+        final LifeRule rule = getRule();
+        int population = 0;
+        long evaluatedWordCount = 0;
+
+        for (int r = 0; r < mHeight; r++) {
+            // Each row is read from its own array and offset so that the rows beyond dead edges
+            // can be the empty row
+            final long[] aboveRows;
+            final int above;
+            if (0 < r) {
+                aboveRows = rows;
+                above = (r - 1) * wordsPerRow;
+            } else {
+                aboveRows = isTorus ? rows : mEmptyRow;
+                above = isTorus ? (mHeight - 1) * wordsPerRow : 0;
+            }
+            final long[] belowRows;
+            final int below;
+            if (mHeight - 1 > r) {
+                belowRows = rows;
+                below = (r + 1) * wordsPerRow;
+            } else {
+                belowRows = isTorus ? rows : mEmptyRow;
+                below = 0;
+            }
+            final int row = r * wordsPerRow;
+
+            // The bits carried in from the west across word boundaries: the rightmost column
+            // wraps around to the leftmost column on a torus
+            long aboveWest = isTorus ? (aboveRows[above + lastWord] >>> mLastBit) & 1L : 0;
+            long rowWest = isTorus ? (rows[row + lastWord] >>> mLastBit) & 1L : 0;
+            long belowWest = isTorus ? (belowRows[below + lastWord] >>> mLastBit) & 1L : 0;
+            for (int w = 0; w < wordsPerRow; w++) {
+                final long a = aboveRows[above + w];
+                final long c = rows[row + w];
+                final long b = belowRows[below + w];
+
+                // The bits carried in from the east: the leftmost column wraps around to the
+                // column after the rightmost column on a torus
+                final long aboveEast;
+                final long rowEast;
+                final long belowEast;
+                if (lastWord > w) {
+                    aboveEast = aboveRows[above + w + 1] << mask;
+                    rowEast = rows[row + w + 1] << mask;
+                    belowEast = belowRows[below + w + 1] << mask;
+                } else if (isTorus) {
+                    aboveEast = (aboveRows[above] & 1L) << mLastBit;
+                    rowEast = (rows[row] & 1L) << mLastBit;
+                    belowEast = (belowRows[below] & 1L) << mLastBit;
+                } else {
+                    aboveEast = 0;
+                    rowEast = 0;
+                    belowEast = 0;
+                }
+
+                long result;
+                if (0 == (a | c | b | aboveWest | rowWest | belowWest |
+                        aboveEast | rowEast | belowEast)) {
+                    result = 0;
+                } else {
+                    // The eight neighbor words: bit i of each word is one neighbor of cell i
+                    final long nw = (a << 1) | aboveWest;
+                    final long ne = (a >>> 1) | aboveEast;
+                    final long we = (c << 1) | rowWest;
+                    final long ea = (c >>> 1) | rowEast;
+                    final long sw = (b << 1) | belowWest;
+                    final long se = (b >>> 1) | belowEast;
+
+                    // Full adders reduce the eight one-bit neighbors to a count of ones, twos,
+                    // fours, and eights
+                    final long s0 = nw ^ a ^ ne;
+                    final long c0 = (nw & a) | (ne & (nw ^ a));
+                    final long s1 = we ^ ea ^ sw;
+                    final long c1 = (we & ea) | (sw & (we ^ ea));
+                    final long s2 = b ^ se;
+                    final long c2 = b & se;
+                    final long ones = s0 ^ s1 ^ s2;
+                    final long c3 = (s0 & s1) | (s2 & (s0 ^ s1));
+                    final long t0 = c0 ^ c1 ^ c2;
+                    final long c4 = (c0 & c1) | (c2 & (c0 ^ c1));
+                    final long twos = t0 ^ c3;
+                    final long c5 = t0 & c3;
+                    final long fours = c4 ^ c5;
+                    final long eights = c4 & c5;
+
+                    result = rule.nextRow(c, ones, twos, fours, eights);
+                    if (lastWord == w) {
+                        // Columns beyond the right edge are always empty
+                        result &= mLastWordMask;
+                    }
+                    evaluatedWordCount += 1;
+                }
+                next[row + w] = result;
+                population += Long.bitCount(result);
+
+                aboveWest = a >>> mask;
+                rowWest = c >>> mask;
+                belowWest = b >>> mask;
+            }
+        }
+
+        mNextRows = rows;
+        mRows = next;
+        mPopulation = population;
+        countEvaluatedCells(evaluatedWordCount * bitsPerWord);
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. Occupied positions are
+     * found a word at a time by scanning the rows in memory order. This method does not mutate
+     * the model, and it does not allocate any memory.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPosition(CellVisitor visitor) {
+        visitRows(0, 0, mHeight - 1, mWidth - 1, visitor);
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. Only the
+     * rows and words that overlap the rectangle are examined, and the words at its left and
+     * right edges are masked to the rectangle before their cells are visited.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor) {
+        final long firstColumn = Math.max(0, (long) left - mLeft);
+        final long lastColumn = Math.min(mWidth - 1, (long) right - mLeft);
+        final long firstRow = Math.max(0, (long) top - mTop);
+        final long lastRow = Math.min(mHeight - 1, (long) bottom - mTop);
+        if (firstColumn <= lastColumn && firstRow <= lastRow) {
+            visitRows((int) firstColumn, (int) firstRow, (int) lastRow, (int) lastColumn,
+                    visitor);
+        }
+    }
+
+    private void visitRows(int firstColumn, int firstRow, int lastRow, int lastColumn,
+                           CellVisitor visitor) {
+        final int firstWord = firstColumn >> shift;
+        final int lastWord = lastColumn >> shift;
+        final long firstMask = -1L << (firstColumn & mask);
+        final long lastMask = -1L >>> (mask - (lastColumn & mask));
+        for (int r = firstRow; r <= lastRow; r++) {
+            final int row = r * mWordsPerRow;
+            for (int w = firstWord; w <= lastWord; w++) {
+                long word = mRows[row + w];
+                if (firstWord == w) {
+                    word &= firstMask;
+                }
+                if (lastWord == w) {
+                    word &= lastMask;
+                }
+                final int x = mLeft + (w << shift);
+                while (0 != word) {
+                    visitor.visit(x + Long.numberOfTrailingZeros(word), mTop + r);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the smallest rectangle that contains every cell by examining whole words rather
+     * than each cell.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any cell (in that order) if there are cells
+     * @return true if there are cells and bounds has been set and false otherwise
+     */
+    @Override
+    public boolean getBounds(int bounds[]) {
+        if (0 == mPopulation) {
+            return false;
+        }
+        int firstRow = Integer.MAX_VALUE;
+        int lastRow = -1;
+        int firstColumn = Integer.MAX_VALUE;
+        int lastColumn = -1;
+        for (int r = 0; r < mHeight; r++) {
+            final int row = r * mWordsPerRow;
+            for (int w = 0; w < mWordsPerRow; w++) {
+                final long word = mRows[row + w];
+                if (0 != word) {
+                    firstRow = Math.min(firstRow, r);
+                    lastRow = r;
+                    firstColumn = Math.min(firstColumn,
+                            (w << shift) + Long.numberOfTrailingZeros(word));
+                    lastColumn = Math.max(lastColumn,
+                            (w << shift) + mask - Long.numberOfLeadingZeros(word));
+                }
+            }
+        }
+        bounds[0] = mLeft + firstColumn;
+        bounds[1] = mTop + firstRow;
+        bounds[2] = mLeft + lastColumn;
+        bounds[3] = mTop + lastRow;
+        return true;
+    }
+
+    /**
+     * @return the number of cells in the game
+     */
+    @Override
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise. Positions beyond the edges
+     * of the board are never occupied.
+     */
+    @Override
+    public boolean containsCellAt(int x, int y) {
+        final long column = (long) x - mLeft;
+        final long row = (long) y - mTop;
+        if (0 > column || mWidth <= column || 0 > row || mHeight <= row) {
+            return false;
+        }
+        return 0 != (mRows[(int) row * mWordsPerRow + ((int) column >> shift)] &
+                (1L << column));
+    }
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless. Positions beyond the edges of the board are ignored with
+     * dead edges and wrap around to the opposite edges on a torus.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    @Override
+    public void spawnCellAt(int x, int y) {
+        long column = (long) x - mLeft;
+        long row = (long) y - mTop;
+        if (Topology.TORUS == mTopology) {
+            column = Math.floorMod(column, (long) mWidth);
+            row = Math.floorMod(row, (long) mHeight);
+        } else if (0 > column || mWidth <= column || 0 > row || mHeight <= row) {
+            return;
+        }
+        final int index = (int) row * mWordsPerRow + ((int) column >> shift);
+        final long bit = 1L << column;
+        if (0 == (mRows[index] & bit)) {
+            mRows[index] |= bit;
+            mPopulation += 1;
+        }
+    }
+}
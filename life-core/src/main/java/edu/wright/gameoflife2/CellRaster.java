@@ -0,0 +1,305 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates one pixel per cell for a rectangular region of the grid: an array of
+ * colors in which the pixel of position {x, y} is at index (y - getTop()) * getWidth() +
+ * (x - getLeft()). The region is aligned to blocks of blockSize x blockSize positions and
+ * includes a margin of one block around the rectangle it was last asked to cover, so small pans
+ * do not change it.
+ * <p/>
+ * The raster is kept up to date with update(). When the new snapshot records the births and
+ * deaths since the snapshot the raster was last updated from, only the pixels of those births
+ * and deaths change, so following a running game costs time proportional to the number of
+ * changed cells rather than to the population. Otherwise, or when the region changes, the
+ * raster is redrawn from the cells in the region.
+ * <p/>
+ * Changed pixels are tracked per block until clean() is called, so a copy of the raster such as
+ * a bitmap can be patched by copying only the changed blocks (see forEachDirtyRectangle()), and
+ * only the area covering the changes needs to be redrawn on screen (see getDirtyBounds()).
+ * <p/>
+ * GameOfLifeView uses a raster to draw cells that are at least one pixel wide. Instances are not
+ * thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class CellRaster {
+    public static final int blockShift = LifeSnapshot.tileShift;
+    public static final int blockSize = 1 << blockShift;
+    // The region is replaced when it is this many times larger than it needs to be
+    private static final int maximumWasteFactor = 4;
+
+    /**
+     * This interface is implemented by objects that visit rectangles of positions. See
+     * forEachDirtyRectangle().
+     */
+    public interface RectangleVisitor {
+        /**
+         * Called once for each visited rectangle.
+         *
+         * @param left   the smallest x coordinate in the rectangle
+         * @param top    the smallest y coordinate in the rectangle
+         * @param right  the largest x coordinate in the rectangle
+         * @param bottom the largest y coordinate in the rectangle
+         */
+        void visit(int left, int top, int right, int bottom);
+    }
+
+    private final int mEmptyColor;
+    private final CellPlotter mBirthPlotter;
+    private final CellPlotter mDeathPlotter;
+    private int mPixels[] = new int[0];
+    private int mLeft;
+    private int mTop;
+    private int mWidth;
+    private int mHeight;
+    // One flag per block of the region, row by row
+    private boolean mDirtyBlocks[] = new boolean[0];
+    private int mDirtyLeft;
+    private int mDirtyTop;
+    private int mDirtyRight;
+    private int mDirtyBottom;
+    private boolean mIsEmpty = true;
+    private long mGeneration;
+    private int mEpoch;
+
+    /**
+     * Constructs a raster without a region.
+     *
+     * @param liveColor  the color of pixels of occupied positions
+     * @param emptyColor the color of pixels of unoccupied positions
+     */
+    public CellRaster(int liveColor, int emptyColor) {
+        mEmptyColor = emptyColor;
+        mBirthPlotter = new CellPlotter(liveColor);
+        mDeathPlotter = new CellPlotter(emptyColor);
+        clean();
+    }
+
+    /**
+     * Makes the raster show the cells of snapshot in a region that covers a rectangle. The
+     * update is incremental when the region does not change and snapshot is the successor of
+     * the snapshot most recently passed to this method, and nothing changes if the region does
+     * not change and snapshot has the same generation and epoch as that snapshot.
+     *
+     * @param snapshot the snapshot to show (cannot be null)
+     * @param left     the smallest x coordinate to cover
+     * @param top      the smallest y coordinate to cover
+     * @param right    the largest x coordinate to cover ( >= left)
+     * @param bottom   the largest y coordinate to cover ( >= top)
+     */
+    public void update(LifeSnapshot snapshot, int left, int top, int right, int bottom) {
+        final long neededWidth = alignedEnd(right) - alignedStart(left);
+        final long neededHeight = alignedEnd(bottom) - alignedStart(top);
+        if (mIsEmpty || left < mLeft || top < mTop || right >= (long) mLeft + mWidth ||
+                bottom >= (long) mTop + mHeight ||
+                (long) mWidth * mHeight > maximumWasteFactor * neededWidth * neededHeight) {
+            setRegion(alignedStart(left), alignedStart(top), neededWidth, neededHeight);
+            redraw(snapshot);
+        } else if (mEpoch == snapshot.getEpoch() && mGeneration == snapshot.getGeneration()) {
+            return;
+        } else if (snapshot.isSuccessorOf(mGeneration, mEpoch)) {
+            snapshot.forEachDeath(mDeathPlotter);
+            snapshot.forEachBirth(mBirthPlotter);
+        } else {
+            redraw(snapshot);
+        }
+        mIsEmpty = false;
+        mGeneration = snapshot.getGeneration();
+        mEpoch = snapshot.getEpoch();
+    }
+
+    /**
+     * @return the smallest x coordinate of the region one block outside the block containing x
+     */
+    private static long alignedStart(int x) {
+        return ((long) (x >> blockShift) - 1) << blockShift;
+    }
+
+    /**
+     * @return the x coordinate after the region one block outside the block containing x
+     */
+    private static long alignedEnd(int x) {
+        return ((long) (x >> blockShift) + 2) << blockShift;
+    }
+
+    private void setRegion(long left, long top, long width, long height) {
+        if (Integer.MAX_VALUE < width * height) {
+            throw new IllegalArgumentException("region is too large");
+        }
+        // The region is clamped to the grid, which is a multiple of blockSize wide
+        mLeft = (int) Math.max(Integer.MIN_VALUE, left);
+        mTop = (int) Math.max(Integer.MIN_VALUE, top);
+        mWidth = (int) (Math.min((long) Integer.MAX_VALUE + 1, left + width) - mLeft);
+        mHeight = (int) (Math.min((long) Integer.MAX_VALUE + 1, top + height) - mTop);
+        if (mPixels.length < mWidth * mHeight) {
+            mPixels = new int[mWidth * mHeight];
+        }
+        final int blockCount = (mWidth >> blockShift) * (mHeight >> blockShift);
+        if (mDirtyBlocks.length < blockCount) {
+            mDirtyBlocks = new boolean[blockCount];
+        }
+    }
+
+    private void redraw(LifeSnapshot snapshot) {
+        Arrays.fill(mPixels, 0, mWidth * mHeight, mEmptyColor);
+        snapshot.forEachPositionIn(mLeft, mTop, getRight(), getBottom(), mBirthPlotter);
+        Arrays.fill(mDirtyBlocks, 0, (mWidth >> blockShift) * (mHeight >> blockShift), true);
+        mDirtyLeft = mLeft;
+        mDirtyTop = mTop;
+        mDirtyRight = getRight();
+        mDirtyBottom = getBottom();
+    }
+
+    /**
+     * @return the array of pixel colors. Only the first getWidth() * getHeight() elements are
+     * used, and the array must not be modified.
+     */
+    public int[] getPixels() {
+        return mPixels;
+    }
+
+    /**
+     * @return the smallest x coordinate in the region
+     */
+    public int getLeft() {
+        return mLeft;
+    }
+
+    /**
+     * @return the smallest y coordinate in the region
+     */
+    public int getTop() {
+        return mTop;
+    }
+
+    /**
+     * @return the largest x coordinate in the region
+     */
+    public int getRight() {
+        return mLeft + mWidth - 1;
+    }
+
+    /**
+     * @return the largest y coordinate in the region
+     */
+    public int getBottom() {
+        return mTop + mHeight - 1;
+    }
+
+    /**
+     * @return the number of pixels in each row of the region (0 before the first update())
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the number of rows of pixels in the region (0 before the first update())
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Computes the smallest rectangle containing every pixel changed since clean() was last
+     * called.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any changed pixel (in that order) if pixels
+     *               changed
+     * @return true if pixels changed and bounds has been set and false otherwise
+     */
+    public boolean getDirtyBounds(int bounds[]) {
+        if (mDirtyLeft > mDirtyRight) {
+            return false;
+        }
+        bounds[0] = mDirtyLeft;
+        bounds[1] = mDirtyTop;
+        bounds[2] = mDirtyRight;
+        bounds[3] = mDirtyBottom;
+        return true;
+    }
+
+    /**
+     * Calls visitor.visit() for rectangles that together cover every block containing a pixel
+     * changed since clean() was last called. Horizontally adjacent changed blocks are visited as
+     * one rectangle. The pixels of the visited rectangles are all in the region.
+     *
+     * @param visitor the object to be informed of each rectangle (cannot be null)
+     */
+    public void forEachDirtyRectangle(RectangleVisitor visitor) {
+        if (mDirtyLeft > mDirtyRight) {
+            return;
+        }
+        final int columns = mWidth >> blockShift;
+        final int rows = mHeight >> blockShift;
+        for (int row = 0; row < rows; row++) {
+            int column = 0;
+            while (column < columns) {
+                if (!mDirtyBlocks[row * columns + column]) {
+                    column++;
+                    continue;
+                }
+                final int start = column;
+                while (column < columns && mDirtyBlocks[row * columns + column]) {
+                    column++;
+                }
+                final int top = mTop + (row << blockShift);
+                visitor.visit(mLeft + (start << blockShift), top,
+                        mLeft + (column << blockShift) - 1, top + blockSize - 1);
+            }
+        }
+    }
+
+    /**
+     * Forgets which pixels changed.
+     */
+    public void clean() {
+        Arrays.fill(mDirtyBlocks, false);
+        mDirtyLeft = 0;
+        mDirtyTop = 0;
+        mDirtyRight = -1;
+        mDirtyBottom = -1;
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance sets the pixel of each visited position in the region to one color and marks
+     * its block changed.
+     */
+    private class CellPlotter implements LifeEngine.CellVisitor {
+        final int mColor;
+
+        CellPlotter(int color) {
+            mColor = color;
+        }
+
+        @Override
+        public void visit(int x, int y) {
+            // long differences cannot overflow when the region is far from {x, y}
+            final long columnOffset = (long) x - mLeft;
+            final long rowOffset = (long) y - mTop;
+            if (0 > columnOffset || mWidth <= columnOffset || 0 > rowOffset ||
+                    mHeight <= rowOffset) {
+                return;
+            }
+            final int column = (int) columnOffset;
+            final int row = (int) rowOffset;
+            mPixels[row * mWidth + column] = mColor;
+            mDirtyBlocks[(row >> blockShift) * (mWidth >> blockShift) + (column >> blockShift)] =
+                    true;
+            if (mDirtyLeft > mDirtyRight) {
+                mDirtyLeft = mDirtyRight = x;
+                mDirtyTop = mDirtyBottom = y;
+            } else {
+                mDirtyLeft = Math.min(mDirtyLeft, x);
+                mDirtyRight = Math.max(mDirtyRight, x);
+                mDirtyTop = Math.min(mDirtyTop, y);
+                mDirtyBottom = Math.max(mDirtyBottom, y);
+            }
+        }
+    }
+}
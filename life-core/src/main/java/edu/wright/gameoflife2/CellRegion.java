@@ -0,0 +1,296 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates a square block of size x size positions of the Game of Life grid in
+ * one of two layouts chosen by how many cells it holds (see HybridGameOfLifeModel):
+ * <ul>
+ * <li>Sparse: the positions of the cells in an array of chars, each row * size + column. A
+ * region with a few cells costs a few bytes per cell.</li>
+ * <li>Dense: one bit per position, with each row of the block in a long as in BitTile, so the
+ * rules can be applied to 64 cells at once. A dense region costs 2 x 512 bytes regardless of how
+ * many cells it holds.</li>
+ * </ul>
+ * Both layouts answer the same questions, such as rowAt() and columnAt(), so neighbors can be
+ * read across the boundary between regions of different layouts. The next generation of a
+ * region is prepared in the next buffers of the layout it will have, so the current generation
+ * stays readable by its neighbors until commit() is called.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class CellRegion {
+    static final int shift = BitTile.shift;
+    static final int size = BitTile.size;
+    static final int mask = BitTile.mask;
+    private static final char[] noCells = new char[0];
+
+    final int tileX;
+    final int tileY;
+    // The dense layout: bit c of rows[r] is the cell at column c of row r, or null if sparse
+    long[] rows;
+    long[] nextRows;
+    // The sparse layout: cells[0] up to cells[population] are the occupied positions in no
+    // particular order, each row << shift | column
+    char[] cells = noCells;
+    char[] nextCells = noCells;
+    int population;
+    int nextPopulation;
+    /** True if the current generation differs from the previous generation */
+    boolean changed;
+    /** True if the next generation has been prepared and differs from the current generation */
+    boolean nextChanged;
+    /** True if the next generation has been prepared (otherwise the cells are kept) */
+    boolean isPrepared;
+    /** True if the prepared next generation is in nextRows and false if it is in nextCells */
+    boolean isNextDense;
+
+    /**
+     * Constructs an empty sparse region at the specified tile coordinates.
+     *
+     * @param tileX the x coordinate of the region (cell x coordinate >> shift)
+     * @param tileY the y coordinate of the region (cell y coordinate >> shift)
+     */
+    CellRegion(int tileX, int tileY) {
+        this.tileX = tileX;
+        this.tileY = tileY;
+    }
+
+    /**
+     * @return true if and only if the region uses the dense layout
+     */
+    boolean isDense() {
+        return null != rows;
+    }
+
+    /**
+     * @param r a row of the region ( >= 0 and < size)
+     * @return bit c is set if the position at column c of row r is occupied
+     */
+    long rowAt(int r) {
+        if (null != rows) {
+            return rows[r];
+        }
+        long result = 0;
+        for (int i = 0; i < population; i++) {
+            if (cells[i] >>> shift == r) {
+                result |= 1L << (cells[i] & mask);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores one column of the region in a column of an array of rows.
+     *
+     * @param column         the column of the region to read ( >= 0 and < size)
+     * @param destination    receives bit destinationBit of destination[r + 1] set if the
+     *                       position at column of row r is occupied and clear otherwise, for
+     *                       every row r
+     * @param destinationBit the bit of each element of destination that receives the column
+     */
+    void columnAt(int column, long[] destination, int destinationBit) {
+        if (null != rows) {
+            for (int r = 0; r < size; r++) {
+                destination[r + 1] = ((rows[r] >>> column) & 1L) << destinationBit;
+            }
+        } else {
+            Arrays.fill(destination, 1, size + 1, 0L);
+            for (int i = 0; i < population; i++) {
+                if ((cells[i] & mask) == column) {
+                    destination[(cells[i] >>> shift) + 1] = 1L << destinationBit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores every row of the region.
+     *
+     * @param destination receives row r of the region in destination[r + 1] for every row r
+     */
+    void copyRows(long[] destination) {
+        if (null != rows) {
+            System.arraycopy(rows, 0, destination, 1, size);
+        } else {
+            Arrays.fill(destination, 1, size + 1, 0L);
+            for (int i = 0; i < population; i++) {
+                destination[(cells[i] >>> shift) + 1] |= 1L << (cells[i] & mask);
+            }
+        }
+    }
+
+    /**
+     * @return bit c is set if any position in column c is occupied
+     */
+    long occupiedColumns() {
+        long result = 0;
+        if (null != rows) {
+            for (long row : rows) {
+                result |= row;
+            }
+        } else {
+            for (int i = 0; i < population; i++) {
+                result |= 1L << (cells[i] & mask);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param position row << shift | column
+     * @return true if and only if the position is occupied
+     */
+    boolean contains(int position) {
+        if (null != rows) {
+            return 0 != (rows[position >>> shift] & (1L << (position & mask)));
+        }
+        for (int i = 0; i < population; i++) {
+            if (cells[i] == position) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Occupies a position in the current generation.
+     *
+     * @param position row << shift | column
+     * @return true if the position was not already occupied
+     */
+    boolean add(int position) {
+        if (contains(position)) {
+            return false;
+        }
+        if (null != rows) {
+            rows[position >>> shift] |= 1L << (position & mask);
+        } else {
+            if (population == cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(4, population * 2));
+            }
+            cells[population] = (char) position;
+        }
+        population += 1;
+        return true;
+    }
+
+    /**
+     * Stores the prepared next generation of the region in the layout chosen by isNextDense.
+     *
+     * @param next     the next generation: bit c of next[r] is the cell at column c of row r
+     * @param rowsPool supplies zeroed arrays for the dense layout
+     */
+    void prepare(long[] next, RowsPool rowsPool) {
+        if (isNextDense) {
+            if (null == nextRows) {
+                nextRows = rowsPool.take();
+            }
+            System.arraycopy(next, 0, nextRows, 0, size);
+        } else {
+            if (nextCells.length < nextPopulation) {
+                nextCells = new char[Math.max(nextPopulation, nextCells.length * 2)];
+            }
+            int count = 0;
+            for (int r = 0; r < size; r++) {
+                long row = next[r];
+                while (0 != row) {
+                    nextCells[count++] = (char) (r << shift | Long.numberOfTrailingZeros(row));
+                    row &= row - 1;
+                }
+            }
+        }
+        isPrepared = true;
+    }
+
+    /**
+     * Makes the prepared next generation the current generation, changing the layout if it
+     * was prepared in the other layout, or keeps the current generation if none was prepared.
+     *
+     * @param rowsPool receives the arrays of the dense layout when the region becomes sparse
+     */
+    void commit(RowsPool rowsPool) {
+        if (!isPrepared) {
+            changed = false;
+            return;
+        }
+        isPrepared = false;
+        changed = nextChanged;
+        if (isNextDense) {
+            final long[] older = rows;
+            rows = nextRows;
+            nextRows = (null == older) ? rowsPool.take() : older;
+            cells = noCells;
+            nextCells = noCells;
+        } else {
+            if (null != rows) {
+                rowsPool.give(rows);
+                rowsPool.give(nextRows);
+                rows = null;
+                nextRows = null;
+            }
+            final char[] older = cells;
+            cells = nextCells;
+            nextCells = older;
+        }
+        population = nextPopulation;
+    }
+
+    /**
+     * Switches to the dense layout without changing the cells.
+     *
+     * @param rowsPool supplies zeroed arrays for the dense layout
+     */
+    void makeDense(RowsPool rowsPool) {
+        if (null == rows) {
+            final long[] dense = rowsPool.take();
+            for (int i = 0; i < population; i++) {
+                dense[cells[i] >>> shift] |= 1L << (cells[i] & mask);
+            }
+            rows = dense;
+            nextRows = rowsPool.take();
+            cells = noCells;
+            nextCells = noCells;
+        }
+    }
+
+    /**
+     * Releases the arrays of the dense layout, if any, to rowsPool.
+     */
+    void release(RowsPool rowsPool) {
+        if (null != rows) {
+            rowsPool.give(rows);
+            rowsPool.give(nextRows);
+            rows = null;
+            nextRows = null;
+        }
+    }
+
+    /**
+     * Each instance keeps arrays of size longs that are no longer used by dense regions so
+     * that regions changing layout back and forth do not allocate memory each time.
+     */
+    static final class RowsPool {
+        private static final int capacity = 256;
+        private final long[][] mRows = new long[capacity][];
+        private int mCount;
+
+        /**
+         * @return an array of size zeros
+         */
+        long[] take() {
+            return (0 == mCount) ? new long[size] : mRows[--mCount];
+        }
+
+        /**
+         * @param rows an array of size longs that is no longer used
+         */
+        void give(long[] rows) {
+            if (mCount < capacity) {
+                Arrays.fill(rows, 0L);
+                mRows[mCount++] = rows;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class detects when a sequence of consecutive generations returns to an earlier state,
+ * which is how still lifes and oscillators settle. Only the hashes of the most recent
+ * maximumPeriod generations are remembered (see LifeSnapshot.getHash()), so adding a generation
+ * takes constant time and memory regardless of the population.
+ * <p/>
+ * A matching hash is very strong evidence of a repeated state but not proof. Callers that
+ * cannot tolerate the rare false match compare the cells of the two generations before acting
+ * on a match, as LifeSimulation does.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class CycleDetector {
+    public static final int defaultMaximumPeriod = 1024;
+    /** The value returned by add() when no earlier generation has the same hash */
+    public static final long noRepeat = Long.MIN_VALUE;
+
+    private final int mMaximumPeriod;
+    private final long[] mHashes;
+    // Maps each remembered hash to the newest remembered generation with that hash
+    private final LongObjectMap<Long> mGenerations = new LongObjectMap<>();
+    private long mOldestGeneration;
+    private long mNewestGeneration;
+    private boolean mIsEmpty = true;
+
+    /**
+     * Constructs a detector of cycles with periods up to defaultMaximumPeriod.
+     */
+    public CycleDetector() {
+        this(defaultMaximumPeriod);
+    }
+
+    /**
+     * @param maximumPeriod the longest detected period ( >= 1)
+     */
+    public CycleDetector(int maximumPeriod) {
+        if (1 > maximumPeriod) {
+            throw new IllegalArgumentException("maximumPeriod must be >= 1");
+        }
+        mMaximumPeriod = maximumPeriod;
+        // A generation and the generation maximumPeriod earlier are remembered at the same time
+        mHashes = new long[maximumPeriod + 1];
+    }
+
+    /**
+     * Remembers the hash of snapshot. If snapshot is not of the generation after the previously
+     * added generation, the earlier generations are forgotten first.
+     *
+     * @param snapshot the next generation (cannot be null)
+     * @return the newest remembered earlier generation with the same hash as snapshot or
+     * noRepeat. The difference between the generations is the period of the detected cycle.
+     */
+    public long add(LifeSnapshot snapshot) {
+        final long generation = snapshot.getGeneration();
+        if (mIsEmpty || mNewestGeneration + 1 != generation) {
+            clear();
+            mOldestGeneration = generation;
+            mIsEmpty = false;
+        } else if (generation - mOldestGeneration > mMaximumPeriod) {
+            // Forget the oldest generation unless a newer generation has the same hash
+            final long oldestHash = hashAt(mOldestGeneration);
+            final Long newest = mGenerations.get(oldestHash);
+            if (null != newest && newest == mOldestGeneration) {
+                mGenerations.remove(oldestHash);
+            }
+            mOldestGeneration += 1;
+        }
+        mNewestGeneration = generation;
+
+        final long hash = snapshot.getHash();
+        final Long earlier = mGenerations.get(hash);
+        mHashes[(int) Math.floorMod(generation, (long) mHashes.length)] = hash;
+        mGenerations.put(hash, generation);
+        return (null == earlier) ? noRepeat : earlier;
+    }
+
+    /**
+     * Forgets every added generation.
+     */
+    public void clear() {
+        mGenerations.clear();
+        mIsEmpty = true;
+    }
+
+    private long hashAt(long generation) {
+        return mHashes[(int) Math.floorMod(generation, (long) mHashes.length)];
+    }
+}
@@ -0,0 +1,154 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class encapsulates a multi-resolution count of the cells in a LifeSnapshot. Level n of
+ * the pyramid stores the number of cells in each aligned block of 2^n x 2^n grid positions, for
+ * n from 1 to levelCount. Block {blockX, blockY} of level n contains the positions {x, y} with
+ * x >> n == blockX and y >> n == blockY.
+ * <p/>
+ * The pyramid is kept up to date with update(). When the new snapshot records the births and
+ * deaths since the snapshot the pyramid was last updated from, only the blocks containing those
+ * births and deaths change, so following a running game costs time proportional to the number
+ * of changed cells rather than to the population. Otherwise the pyramid is rebuilt.
+ * <p/>
+ * GameOfLifeView uses the pyramid to draw one pixel per block instead of one shape per cell
+ * when cells are smaller than pixels. Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class DensityPyramid {
+    public static final int levelCount = 12;
+
+    /**
+     * This interface is implemented by objects that visit the non-empty blocks of one level of
+     * the pyramid. See forEachBlockIn().
+     */
+    public interface BlockVisitor {
+        /**
+         * Called once for each visited block.
+         *
+         * @param blockX     the x coordinate of the block
+         * @param blockY     the y coordinate of the block
+         * @param population the number of cells in the block ( > 0)
+         */
+        void visit(int blockX, int blockY, int population);
+    }
+
+    private final LongIntCounts[] mLevels = new LongIntCounts[levelCount + 1];
+    private final CellCounter mAdder = new CellCounter(1);
+    private final CellCounter mRemover = new CellCounter(-1);
+    private boolean mIsEmpty = true;
+    private long mGeneration;
+    private int mEpoch;
+
+    /**
+     * Constructs an empty pyramid.
+     */
+    public DensityPyramid() {
+        for (int level = 1; level <= levelCount; level++) {
+            mLevels[level] = new LongIntCounts();
+        }
+    }
+
+    /**
+     * Makes the pyramid count the cells of snapshot. The update is incremental when snapshot
+     * is the successor of the snapshot most recently passed to this method, and nothing changes
+     * if snapshot has the same generation and epoch as that snapshot.
+     *
+     * @param snapshot the snapshot to count (cannot be null)
+     */
+    public void update(LifeSnapshot snapshot) {
+        if (!mIsEmpty && mEpoch == snapshot.getEpoch() &&
+                mGeneration == snapshot.getGeneration()) {
+            return;
+        }
+        if (!mIsEmpty && snapshot.isSuccessorOf(mGeneration, mEpoch)) {
+            snapshot.forEachDeath(mRemover);
+            snapshot.forEachBirth(mAdder);
+        } else {
+            for (int level = 1; level <= levelCount; level++) {
+                mLevels[level].clear();
+            }
+            snapshot.forEachPosition(mAdder);
+        }
+        mIsEmpty = false;
+        mGeneration = snapshot.getGeneration();
+        mEpoch = snapshot.getEpoch();
+    }
+
+    /**
+     * @param level  a level >= 1 and <= levelCount
+     * @param blockX the x coordinate of a block
+     * @param blockY the y coordinate of a block
+     * @return the number of cells in the block
+     */
+    public int getPopulation(int level, int blockX, int blockY) {
+        return mLevels[level].get(LongCellSet.pack(blockX, blockY));
+    }
+
+    /**
+     * Calls visitor.visit() once for each non-empty block of a level in a rectangle of block
+     * coordinates. When the rectangle contains fewer blocks than the level has hash table slots,
+     * each block in the rectangle is looked up. Otherwise, each non-empty block is tested
+     * against the rectangle. Either way, the cost is bounded by the size of the rectangle.
+     *
+     * @param level   a level >= 1 and <= levelCount
+     * @param left    the smallest block x coordinate in the rectangle
+     * @param top     the smallest block y coordinate in the rectangle
+     * @param right   the largest block x coordinate in the rectangle
+     * @param bottom  the largest block y coordinate in the rectangle
+     * @param visitor the object to be informed of each non-empty block (cannot be null)
+     */
+    public void forEachBlockIn(int level, int left, int top, int right, int bottom,
+                               BlockVisitor visitor) {
+        if (left > right || top > bottom) {
+            return;
+        }
+        final LongIntCounts blocks = mLevels[level];
+        final long width = (long) right - left + 1;
+        final long height = (long) bottom - top + 1;
+        if (width < blocks.slotCount() && width * height < blocks.slotCount()) {
+            // long loop counters cannot overflow when right or bottom is Integer.MAX_VALUE
+            for (long y = top; y <= bottom; y++) {
+                for (long x = left; x <= right; x++) {
+                    final int population = blocks.get(LongCellSet.pack((int) x, (int) y));
+                    if (0 != population) {
+                        visitor.visit((int) x, (int) y, population);
+                    }
+                }
+            }
+        } else {
+            for (int slot = 0; slot < blocks.slotCount(); slot++) {
+                if (blocks.isSlotOccupied(slot)) {
+                    final long block = blocks.slotKey(slot);
+                    final int x = LongCellSet.unpackX(block);
+                    final int y = LongCellSet.unpackY(block);
+                    if (x >= left && x <= right && y >= top && y <= bottom) {
+                        visitor.visit(x, y, blocks.slotValue(slot));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance adds a fixed amount to the blocks containing each visited position at every
+     * level.
+     */
+    private class CellCounter implements LifeEngine.CellVisitor {
+        final int mAmount;
+
+        CellCounter(int amount) {
+            mAmount = amount;
+        }
+
+        @Override
+        public void visit(int x, int y) {
+            for (int level = 1; level <= levelCount; level++) {
+                mLevels[level].increment(LongCellSet.pack(x >> level, y >> level), mAmount);
+            }
+        }
+    }
+}
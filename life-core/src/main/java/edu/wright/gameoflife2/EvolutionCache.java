@@ -0,0 +1,506 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps keyframes of the evolution of patterns in a directory so that a later
+ * generation of a pattern can be reached without simulating every generation before it again.
+ * <p/>
+ * A keyframe is a SnapshotFile of the generation of a pattern under a rule at a multiple of the
+ * keyframe interval. Keyframes are identified by the content hash of the pattern (see
+ * LifeSnapshot.getHash()), the rule, the topology, and the generation, so they outlive the
+ * process and are shared by every caller asking about the same pattern. engineAt() starts from
+ * the newest keyframe at or before the requested generation, simulates only the remaining
+ * generations, and writes a keyframe at every multiple of the interval it passes, so the cache
+ * fills as it is used. warm() does the same ahead of time on a background thread.
+ * <p/>
+ * Every engine type on the unbounded grid produces the same generations, so they share keyframes
+ * computed by a TiledGameOfLifeModel, or by a HashLifeGameOfLifeModel when more than
+ * hashLifeIntervals keyframe intervals remain, in which case only the last keyframe before the
+ * requested generation is written. The board types (see LifeEngineType.BOUNDED_BOARD) compute
+ * their own keyframes with engines of their type. getMaximumGeneration() limits how far each
+ * type can jump. A jump that is no longer wanted can be cancelled; see jump().
+ * <p/>
+ * The keyframes take at most the maximum bytes on disk: the least recently used keyframes are
+ * deleted when a new keyframe would exceed the limit. Keyframes that cannot be read are deleted
+ * and recomputed. Failing to write a keyframe does not fail the request that computed it; see
+ * getLastError().
+ * <p/>
+ * All methods can be called from any thread.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class EvolutionCache {
+    public static final long defaultMaximumBytes = 8L * 1024 * 1024;
+    public static final int defaultKeyframeInterval = 256;
+    private static final String keyframeSuffix = ".keyframe";
+    private static final long idleThreadTimeoutSeconds = 10;
+    /** The most generations of the unbounded grid engineAt() computes */
+    public static final long maximumGeneration = 1L << 20;
+    /** The most generations of a board type engineAt() computes */
+    public static final long maximumBoardGeneration = 1L << 15;
+    /** More intervals than this between a keyframe and a requested generation use HashLife */
+    public static final int hashLifeIntervals = 16;
+    // Keyframes of the unbounded grid are computed by engines of this type
+    private static final LifeEngineType unboundedEngineType = LifeEngineType.TILED_BITBOARD;
+
+    private final File mDirectory;
+    private final long mMaximumBytes;
+    private final int mKeyframeInterval;
+    // The lengths of the keyframe files by name from least to most recently used
+    private final LinkedHashMap<String, Long> mKeyframes = new LinkedHashMap<>(16, 0.75f, true);
+    private long mStoredBytes;
+    private boolean mIsIndexed;
+    private volatile IOException mLastError;
+    // At most one background thread exists at a time, and it exits after being idle
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(0, 1,
+            idleThreadTimeoutSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new CacheThreadFactory());
+
+    /**
+     * This interface is implemented by objects that receive the results of jump().
+     */
+    public interface JumpListener {
+        /**
+         * Called on a background thread when a jump completes.
+         *
+         * @param engine a new engine at the requested generation that is owned by the receiver
+         */
+        void onJumped(LifeEngine engine);
+    }
+
+    /**
+     * Each instance is a jump requested with jump() that can be cancelled.
+     */
+    public static final class Jump {
+        private volatile boolean mIsCancelled;
+
+        Jump() {
+        }
+
+        /**
+         * Stops the jump as soon as possible. The listener is not called for a cancelled jump,
+         * but keyframes it already computed stay cached.
+         */
+        public void cancel() {
+            mIsCancelled = true;
+        }
+
+        /**
+         * @return true if and only if cancel() has been called
+         */
+        public boolean isCancelled() {
+            return mIsCancelled;
+        }
+    }
+
+    /**
+     * Constructs a cache with defaultMaximumBytes and defaultKeyframeInterval.
+     *
+     * @param directory the directory holding the keyframes, which is created when needed
+     *                  (cannot be null)
+     */
+    public EvolutionCache(File directory) {
+        this(directory, defaultMaximumBytes, defaultKeyframeInterval);
+    }
+
+    /**
+     * @param directory        the directory holding the keyframes, which is created when needed
+     *                         (cannot be null)
+     * @param maximumBytes     the most bytes the keyframes may take on disk ( > 0)
+     * @param keyframeInterval the number of generations between keyframes ( > 0)
+     */
+    public EvolutionCache(File directory, long maximumBytes, int keyframeInterval) {
+        if (0 >= maximumBytes) {
+            throw new IllegalArgumentException("maximumBytes must be > 0");
+        }
+        if (0 >= keyframeInterval) {
+            throw new IllegalArgumentException("keyframeInterval must be > 0");
+        }
+        mDirectory = directory;
+        mMaximumBytes = maximumBytes;
+        mKeyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Asks the background thread to compute the keyframes of pattern up to generation that are
+     * not already cached.
+     *
+     * @param pattern    the cells at generation 0 (cannot be null). pattern is not mutated.
+     * @param rule       the rule the pattern evolves under (cannot be null)
+     * @param generation the last generation to compute ( >= 0 and <= getMaximumGeneration())
+     * @param engineType the type of engine whose keyframes are computed (cannot be null)
+     */
+    public void warm(int[][] pattern, LifeRule rule, long generation, LifeEngineType engineType) {
+        checkGeneration(generation, engineType);
+        mExecutor.execute(new WarmCommand(pattern, rule, generation, engineType));
+    }
+
+    /**
+     * Asks the background thread to call engineAt() and pass the result to listener. Jumps are
+     * completed in the order requested, after any warming requested before them.
+     *
+     * @param pattern    the cells at generation 0 (cannot be null). pattern is not mutated.
+     * @param rule       the rule the pattern evolves under (cannot be null)
+     * @param generation the generation to jump to ( >= 0 and <= getMaximumGeneration())
+     * @param engineType the type of engine to pass to listener (cannot be null)
+     * @param listener   receives the engine on the background thread unless the jump is
+     *                   cancelled first (cannot be null). The cache holds listener until then,
+     *                   so it should not hold objects with a shorter life, such as an Activity.
+     * @return the requested jump, which can be cancelled
+     */
+    public Jump jump(int[][] pattern, LifeRule rule, long generation, LifeEngineType engineType,
+                     JumpListener listener) {
+        checkGeneration(generation, engineType);
+        final Jump result = new Jump();
+        mExecutor.execute(new JumpCommand(pattern, rule, generation, engineType, listener,
+                result));
+        return result;
+    }
+
+    /**
+     * @param engineType a type of engine (cannot be null)
+     * @return the largest generation engineAt() computes for engines of engineType
+     */
+    public static long getMaximumGeneration(LifeEngineType engineType) {
+        return (unboundedEngineType == computedTypeOf(engineType)) ? maximumGeneration :
+                maximumBoardGeneration;
+    }
+
+    private static void checkGeneration(long generation, LifeEngineType engineType) {
+        if (0 > generation || getMaximumGeneration(engineType) < generation) {
+            throw new IllegalArgumentException("generation must be >= 0 and <= " +
+                    getMaximumGeneration(engineType));
+        }
+    }
+
+    /**
+     * @return the type of engine that computes the keyframes of engines of engineType
+     */
+    private static LifeEngineType computedTypeOf(LifeEngineType engineType) {
+        return (LifeEngineType.BOUNDED_BOARD == engineType ||
+                LifeEngineType.TOROIDAL_BOARD == engineType) ? engineType : unboundedEngineType;
+    }
+
+    /**
+     * Computes a generation of pattern starting from the newest cached keyframe at or before
+     * that generation, caching the keyframes passed on the way. This method may take a long time
+     * and should not be called from a user interface thread.
+     *
+     * @param pattern    the cells at generation 0 (cannot be null). pattern is not mutated.
+     * @param rule       the rule the pattern evolves under (cannot be null)
+     * @param generation the generation to compute ( >= 0 and <= getMaximumGeneration())
+     * @param engineType the type of engine to return (cannot be null)
+     * @return a new engine of engineType holding the generation of pattern
+     */
+    public LifeEngine engineAt(int[][] pattern, LifeRule rule, long generation,
+                               LifeEngineType engineType) {
+        return engineAt(pattern, rule, generation, engineType, null);
+    }
+
+    /**
+     * @param jump the jump that needs the result or null if it cannot be cancelled
+     * @return a new engine of engineType holding the generation of pattern or null if jump was
+     * cancelled
+     */
+    private synchronized LifeEngine engineAt(int[][] pattern, LifeRule rule, long generation,
+                                             LifeEngineType engineType, Jump jump) {
+        checkGeneration(generation, engineType);
+        index();
+        final LifeEngineType computedType = computedTypeOf(engineType);
+        final String prefix = keyframePrefix(pattern, rule, computedType);
+        LifeEngine engine = null;
+        while (null == engine) {
+            final long start = keyframeGenerationAtOrBefore(prefix, generation);
+            if (0 == start) {
+                engine = computedType.create(pattern);
+                engine.setRule(rule);
+            } else {
+                engine = readKeyframe(prefix + start + keyframeSuffix, start, rule);
+            }
+        }
+        final long lastKeyframe = generation - generation % mKeyframeInterval;
+        if (unboundedEngineType == computedType &&
+                lastKeyframe - engine.getGeneration() > (long) hashLifeIntervals *
+                        mKeyframeInterval) {
+            engine = LifeEngineType.HASHLIFE.copyOf(engine);
+            // One power of two at a time, so that a cancelled jump stops after one HashLife step
+            long remaining = lastKeyframe - engine.getGeneration();
+            while (0 != remaining) {
+                if (isCancelled(jump)) {
+                    return null;
+                }
+                final long part = Long.lowestOneBit(remaining);
+                engine.step(part);
+                remaining -= part;
+            }
+            final String name = prefix + lastKeyframe + keyframeSuffix;
+            if (!mKeyframes.containsKey(name)) {
+                writeKeyframe(name, engine, computedType);
+            }
+        }
+        while (engine.getGeneration() < generation) {
+            if (isCancelled(jump)) {
+                return null;
+            }
+            final long next = Math.min(generation,
+                    (engine.getGeneration() / mKeyframeInterval + 1) * mKeyframeInterval);
+            engine.step(next - engine.getGeneration());
+            final String name = prefix + next + keyframeSuffix;
+            if (0 == next % mKeyframeInterval && !mKeyframes.containsKey(name)) {
+                writeKeyframe(name, engine, computedType);
+            }
+        }
+        return (LifeEngineType.of(engine) == engineType) ? engine : engineType.copyOf(engine);
+    }
+
+    private static boolean isCancelled(Jump jump) {
+        return null != jump && jump.isCancelled();
+    }
+
+    /**
+     * @param pattern    the cells at generation 0 (cannot be null). pattern is not mutated.
+     * @param rule       the rule the pattern evolves under (cannot be null)
+     * @param generation a generation ( >= 0)
+     * @param engineType a type of engine (cannot be null)
+     * @return the generation of the newest cached keyframe of pattern at or before generation
+     * usable by engines of engineType, or 0 if there is none
+     */
+    synchronized long getKeyframeGeneration(int[][] pattern, LifeRule rule, long generation,
+                                            LifeEngineType engineType) {
+        index();
+        return keyframeGenerationAtOrBefore(
+                keyframePrefix(pattern, rule, computedTypeOf(engineType)), generation);
+    }
+
+    /**
+     * @return the number of cached keyframes
+     */
+    public synchronized int getKeyframeCount() {
+        index();
+        return mKeyframes.size();
+    }
+
+    /**
+     * @return the number of bytes the cached keyframes take on disk
+     */
+    public synchronized long getStoredBytes() {
+        index();
+        return mStoredBytes;
+    }
+
+    /**
+     * @return the exception thrown by the most recent failure to read or write a keyframe or
+     * null if none failed
+     */
+    public IOException getLastError() {
+        return mLastError;
+    }
+
+    /**
+     * @return the start of the names of the keyframes of pattern under rule computed by engines
+     * of computedType, which is followed by the generation and keyframeSuffix
+     */
+    private static String keyframePrefix(int[][] pattern, LifeRule rule,
+                                         LifeEngineType computedType) {
+        final long hash = LifeSnapshot.of(LifeEngineType.SPARSE_HASH.create(pattern), 0).getHash();
+        return String.format("%016x_%s_%s_", hash, rule.toString().replace('/', '-'),
+                computedType.name());
+    }
+
+    /**
+     * Reads the existing keyframes, least recently used first, the first time the cache is used.
+     * Files left behind by interrupted writes are deleted.
+     */
+    private void index() {
+        if (mIsIndexed) {
+            return;
+        }
+        mIsIndexed = true;
+        final File[] files = mDirectory.listFiles();
+        if (null == files) {
+            return;
+        }
+        final List<File> keyframes = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(keyframeSuffix)) {
+                keyframes.add(file);
+            } else if (file.getName().endsWith(keyframeSuffix + ".tmp")) {
+                file.delete();
+            }
+        }
+        Collections.sort(keyframes, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : keyframes) {
+            mKeyframes.put(file.getName(), file.length());
+            mStoredBytes += file.length();
+        }
+    }
+
+    private long keyframeGenerationAtOrBefore(String prefix, long generation) {
+        long result = 0;
+        for (String name : mKeyframes.keySet()) {
+            if (name.startsWith(prefix)) {
+                try {
+                    final long keyframeGeneration = Long.parseLong(name.substring(
+                            prefix.length(), name.length() - keyframeSuffix.length()));
+                    if (keyframeGeneration <= generation && keyframeGeneration > result) {
+                        result = keyframeGeneration;
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a keyframe of this cache
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a keyframe and marks it most recently used.
+     *
+     * @return a new engine holding the keyframe or null if the keyframe cannot be read, in which
+     * case it is deleted
+     */
+    private LifeEngine readKeyframe(String name, long generation, LifeRule rule) {
+        final File file = new File(mDirectory, name);
+        try {
+            final LifeEngine result = SnapshotFile.read(file);
+            if (generation != result.getGeneration() || !rule.equals(result.getRule())) {
+                throw new IOException(file + " is not the expected keyframe");
+            }
+            mKeyframes.get(name);
+            file.setLastModified(System.currentTimeMillis());
+            return result;
+        } catch (IOException e) {
+            mLastError = e;
+            removeKeyframe(name);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a keyframe of engine's generation that is read as an engine of computedType and
+     * then deletes the least recently used keyframes until the keyframes fit in the maximum bytes.
+     */
+    private void writeKeyframe(String name, LifeEngine engine, LifeEngineType computedType) {
+        final File file = new File(mDirectory, name);
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("cannot create " + mDirectory);
+            }
+            SnapshotFile.write(LifeSnapshot.of(engine, 0), computedType, file);
+        } catch (IOException e) {
+            mLastError = e;
+            return;
+        }
+        mKeyframes.put(name, file.length());
+        mStoredBytes += file.length();
+        final Iterator<Map.Entry<String, Long>> iterator = mKeyframes.entrySet().iterator();
+        while (mStoredBytes > mMaximumBytes && 1 < mKeyframes.size()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mStoredBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private void removeKeyframe(String name) {
+        final Long length = mKeyframes.remove(name);
+        if (null != length) {
+            mStoredBytes -= length;
+        }
+        new File(mDirectory, name).delete();
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * Each instance computes the missing keyframes of a pattern up to a generation.
+     */
+    private class WarmCommand implements Runnable {
+        final int[][] mPattern;
+        final LifeRule mRule;
+        final long mGeneration;
+        final LifeEngineType mEngineType;
+
+        WarmCommand(int[][] pattern, LifeRule rule, long generation, LifeEngineType engineType) {
+            mPattern = pattern;
+            mRule = rule;
+            mGeneration = generation;
+            mEngineType = engineType;
+        }
+
+        @Override
+        public void run() {
+            // The last keyframe up to the generation is all that is needed
+            final LifeEngineType computedType = computedTypeOf(mEngineType);
+            engineAt(mPattern, mRule, mGeneration - mGeneration % mKeyframeInterval,
+                    computedType);
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * Each instance computes a generation of a pattern and passes it to a listener unless the
+     * jump is cancelled.
+     */
+    private class JumpCommand implements Runnable {
+        final int[][] mPattern;
+        final LifeRule mRule;
+        final long mGeneration;
+        final LifeEngineType mEngineType;
+        final JumpListener mListener;
+        final Jump mJump;
+
+        JumpCommand(int[][] pattern, LifeRule rule, long generation, LifeEngineType engineType,
+                    JumpListener listener, Jump jump) {
+            mPattern = pattern;
+            mRule = rule;
+            mGeneration = generation;
+            mEngineType = engineType;
+            mListener = listener;
+            mJump = jump;
+        }
+
+        @Override
+        public void run() {
+            if (mJump.isCancelled()) {
+                return;
+            }
+            final LifeEngine engine = engineAt(mPattern, mRule, mGeneration, mEngineType, mJump);
+            if (null != engine && !mJump.isCancelled()) {
+                mListener.onJumped(engine);
+            }
+        }
+    }
+
+    /**
+     * Each instance creates low priority daemon threads so that computing keyframes never keeps
+     * the application alive or competes with the user interface thread.
+     */
+    private static class CacheThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread result = new Thread(runnable, "GameOfLife evolution cache");
+            result.setDaemon(true);
+            result.setPriority(Thread.MIN_PRIORITY);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class decides how many generations to display in each frame of an animation driven by
+ * the display's frame callback (for example android.view.Choreographer), so that generations
+ * are displayed in step with the display's refresh instead of on an unrelated timer.
+ * <p/>
+ * Generations become due at a rate: one every generation period, but never more than one per
+ * frame, or in warp mode (see setWarpGenerationsPerSecond()) at the warp rate, as many per frame
+ * as the rate requires. Generations that are due but cannot be displayed, for example because
+ * the simulation has not computed them yet, are carried over to the next frame, but no more than
+ * one frame's worth, so a stall is never followed by a burst.
+ * <p/>
+ * Displaying generations must not make frames late. Each frame may spend at most the frame
+ * budget displaying generations: hasTimeFor() predicts from the average cost of the generations
+ * displayed recently whether another one still fits. In addition, the number of generations
+ * displayed per frame is limited by an additive increase, multiplicative decrease controller
+ * (see https://en.wikipedia.org/wiki/Additive_increase/multiplicative_decrease): the limit is
+ * halved whenever a frame overruns the budget or the frame callback reports missed frames, for
+ * example because computing generations on other threads starves the user interface, and grows
+ * by one after each frame that used the whole limit with budget to spare.
+ * <p/>
+ * Missed frames are detected from the frame times: the refresh period is estimated from the
+ * intervals between consecutive frames, and an interval of one and a half periods or more means
+ * frames were missed.
+ * <p/>
+ * All times are in nanoseconds from the same clock as the frame times, such as
+ * System.nanoTime(). Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class FrameScheduler {
+    /** The initial estimate of the refresh period: 60 frames per second */
+    public static final long defaultFramePeriodNanos = 1000000000L / 60;
+    /** Half of defaultFramePeriodNanos leaves the rest of each frame for drawing */
+    public static final long defaultFrameBudgetNanos = defaultFramePeriodNanos / 2;
+    private static final double nanosPerSecond = 1e9;
+    // Intervals this many times the refresh period or longer mean frames were missed
+    private static final double missedFrameFactor = 1.5;
+    // The weight of the newest sample in the running averages
+    private static final double averageWeight = 0.125;
+    // The weight of intervals with missed frames in the refresh period estimate, which lets a
+    // display that is slower than the initial estimate correct it within a few dozen frames
+    private static final double missedFrameAverageWeight = 1.0 / 64;
+
+    private long mFrameBudgetNanos = defaultFrameBudgetNanos;
+    private long mGenerationPeriodNanos;
+    private double mWarpGenerationsPerSecond;
+    private double mFramePeriodNanos = defaultFramePeriodNanos;
+    private long mLastFrameNanos;
+    private boolean mIsStarted;
+    private double mDueGenerations;
+    private int mGenerationLimit = 1;
+    private double mGenerationCostNanos;
+    private int mFrameMissedCount;
+    private long mMissedFrameCount;
+    private long mFrameCount;
+
+    /**
+     * Constructs a scheduler that displays one generation per frame until
+     * setGenerationPeriodNanos() or setWarpGenerationsPerSecond() is called.
+     */
+    public FrameScheduler() {
+    }
+
+    /**
+     * @param budgetNanos the most time each frame may spend displaying generations ( > 0)
+     */
+    public void setFrameBudgetNanos(long budgetNanos) {
+        if (0 >= budgetNanos) {
+            throw new IllegalArgumentException("budgetNanos must be > 0");
+        }
+        mFrameBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * @return the most time each frame may spend displaying generations
+     */
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /**
+     * Sets the time between displayed generations outside of warp mode. Periods shorter than
+     * the refresh period display one generation per frame.
+     *
+     * @param periodNanos the time between generations ( >= 0)
+     */
+    public void setGenerationPeriodNanos(long periodNanos) {
+        if (0 > periodNanos) {
+            throw new IllegalArgumentException("periodNanos must be >= 0");
+        }
+        mGenerationPeriodNanos = periodNanos;
+    }
+
+    /**
+     * @return the time between displayed generations outside of warp mode
+     */
+    public long getGenerationPeriodNanos() {
+        return mGenerationPeriodNanos;
+    }
+
+    /**
+     * Enters or leaves warp mode, in which generations are due at a rate that may display many
+     * generations per frame. The rate is a target: frames display fewer generations when they
+     * would otherwise exceed the frame budget or miss frames.
+     *
+     * @param generationsPerSecond the rate of generations in warp mode, which may be
+     *                             Double.POSITIVE_INFINITY to display as many generations as
+     *                             fit in every frame, or 0 to leave warp mode ( >= 0)
+     */
+    public void setWarpGenerationsPerSecond(double generationsPerSecond) {
+        if (!(0 <= generationsPerSecond)) {
+            throw new IllegalArgumentException("generationsPerSecond must be >= 0");
+        }
+        mWarpGenerationsPerSecond = generationsPerSecond;
+    }
+
+    /**
+     * @return the rate of generations in warp mode or 0 if warp mode is off
+     */
+    public double getWarpGenerationsPerSecond() {
+        return mWarpGenerationsPerSecond;
+    }
+
+    /**
+     * @return true if and only if warp mode is on
+     */
+    public boolean isWarping() {
+        return 0 < mWarpGenerationsPerSecond;
+    }
+
+    /**
+     * Forgets the previous frame so that the next call to beginFrame() starts a new animation
+     * with one generation due immediately. Call this when an animation starts or resumes.
+     */
+    public void restart() {
+        mIsStarted = false;
+    }
+
+    /**
+     * Starts a frame.
+     *
+     * @param frameTimeNanos the time the frame started, such as the time passed to
+     *                       Choreographer.FrameCallback.doFrame()
+     * @return the number of generations due in this frame. Display generations while this
+     * many have not been displayed and hasTimeFor() returns true, then call endFrame().
+     */
+    public int beginFrame(long frameTimeNanos) {
+        mFrameMissedCount = 0;
+        if (!mIsStarted) {
+            mIsStarted = true;
+            mDueGenerations = 1;
+        } else {
+            final long interval = Math.max(0, frameTimeNanos - mLastFrameNanos);
+            if (interval >= missedFrameFactor * mFramePeriodNanos) {
+                mFrameMissedCount = (int) Math.min(Integer.MAX_VALUE,
+                        Math.round(interval / mFramePeriodNanos) - 1);
+                mMissedFrameCount += mFrameMissedCount;
+                mFramePeriodNanos += missedFrameAverageWeight * (interval - mFramePeriodNanos);
+            } else if (0 < interval) {
+                mFramePeriodNanos += averageWeight * (interval - mFramePeriodNanos);
+            }
+            // Nothing more is due in a repeated frame
+            if (0 < interval) {
+                if (isWarping()) {
+                    mDueGenerations += interval * mWarpGenerationsPerSecond / nanosPerSecond;
+                } else if (0 == mGenerationPeriodNanos) {
+                    mDueGenerations = 1;
+                } else {
+                    mDueGenerations += (double) interval / mGenerationPeriodNanos;
+                }
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        mFrameCount += 1;
+        // Generations carried over are limited to one frame's worth
+        final int limit = isWarping() ? mGenerationLimit : 1;
+        mDueGenerations = Math.min(mDueGenerations, limit);
+        return (int) mDueGenerations;
+    }
+
+    /**
+     * @param elapsedNanos the time spent displaying generations so far in the current frame
+     * @return true if and only if displaying another generation is expected to fit in the frame
+     * budget. The first generation of a frame always fits.
+     */
+    public boolean hasTimeFor(long elapsedNanos) {
+        return 0 == elapsedNanos || elapsedNanos + mGenerationCostNanos <= mFrameBudgetNanos;
+    }
+
+    /**
+     * Ends the frame started by the most recent call to beginFrame() and adjusts the number of
+     * generations that later frames may display.
+     *
+     * @param displayedGenerations the number of generations displayed in the frame ( >= 0)
+     * @param elapsedNanos         the time spent displaying them
+     */
+    public void endFrame(int displayedGenerations, long elapsedNanos) {
+        mDueGenerations = Math.max(0, mDueGenerations - displayedGenerations);
+        if (0 < displayedGenerations) {
+            final double cost = (double) elapsedNanos / displayedGenerations;
+            mGenerationCostNanos = (0 == mGenerationCostNanos) ? cost :
+                    mGenerationCostNanos + averageWeight * (cost - mGenerationCostNanos);
+        }
+        if (0 < mFrameMissedCount || elapsedNanos > mFrameBudgetNanos) {
+            mGenerationLimit = Math.max(1, mGenerationLimit / 2);
+        } else if (displayedGenerations >= mGenerationLimit &&
+                elapsedNanos + mGenerationCostNanos <= mFrameBudgetNanos) {
+            mGenerationLimit += 1;
+        }
+    }
+
+    /**
+     * @return the most generations the next frame may display in warp mode
+     */
+    public int getGenerationLimit() {
+        return mGenerationLimit;
+    }
+
+    /**
+     * @return the average time spent displaying one generation in recent frames
+     */
+    public long getGenerationCostNanos() {
+        return (long) mGenerationCostNanos;
+    }
+
+    /**
+     * @return the estimated time between frames
+     */
+    public long getFramePeriodNanos() {
+        return (long) mFramePeriodNanos;
+    }
+
+    /**
+     * @return the number of frames started since construction
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return the number of frames missed between frames since construction
+     */
+    public long getMissedFrameCount() {
+        return mMissedFrameCount;
+    }
+}
@@ -0,0 +1,341 @@
+package edu.wright.gameoflife2;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * This class encapsulates an arbitrary number of cells which apply the logic (rules) for the Game
+ * of Life documented at http://www.bitstorm.org/gameoflife/ or another LifeRule. Cells conceptually
+ * exist in a regular 2D grid using signed integer coordinates to identify each grid position that
+ * may be occupied by a cell. At all times, there is at most one cell at each grid position.
+ * <p/>
+ * This implementation supports an "infinite" game area limited only by the use of integer cell
+ * coordinates and the amount of available memory. This implementation does not use concurrency,
+ * but the rules for evaluating the presence of neighbors simulate simultaneous evaluation for
+ * every cell. In other words, upon each update of the game, all cells evaluate the same
+ * environment prior to any cells modifying the environment. As a result, the order in which cells
+ * evaluate the environment is immaterial.
+ * <p/>
+ * Occupied positions are stored as primitive longs in a LongCellSet, so evaluating the rules does
+ * not create any objects per cell or per neighbor lookup.
+ * <p/>
+ * This class is the sparse hash implementation of LifeEngine. See LifeEngineType for
+ * alternatives.
+ * <p/>
+ * This implementation has no dependencies on the way a Game of Life model may or may not be
+ * displayed to users. After construction, call the update() method periodically to update the game
+ * state. The frequency of calls to update() does not affect game logic (rules).
+ * <p/>
+ * Note: to enable assertions, make sure the application is compiled with DEBUG enabled. In
+ * Android Studio, use the Build->Edit Build Types...  menu. Select the "Debug" build type and make
+ * sure the "debuggable" option is set to true.
+ *
+ * When assertions are enabled for this file, the maximum update rate achievable for a
+ * GameOfLifeModel is approximately 1/20 the rate achievable with assertions disabled.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class GameOfLifeModel extends AbstractLifeEngine {
+    private LongCellSet mCells;
+    private LongCellSet mNextCells;
+    private final LongCellCounts mCounts = new LongCellCounts();
+
+    /**
+     * Constructs a GameOfLifeModel with cells at all positions in initialPositions.
+     *
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    GameOfLifeModel(final int initialPositions[][]) {
+        this.mCells = new LongCellSet(initialPositions.length);
+        this.mNextCells = new LongCellSet(initialPositions.length);
+
+        this.seed(initialPositions);
+    }
+
+    /**
+     * Update the state of all encapsulated cells by applying the logic (rules) of the Game of Life
+     * to every position in the game grid. The new generation is computed in a single pass over
+     * the current cells:
+     * <ol>
+     * <li>Each live cell adds 1 to its own entry in a scratch count table and adds 2 to the entries
+     * of each of its eight neighbors. An entry's value is therefore (2 * neighbors) + alive.</li>
+     * <li>Every position with an entry is then decided from its value alone by looking up bit
+     * value of the rule's next state mask (see LifeRule.getNextStates()). Positions without an
+     * entry have no neighbors and are unpopulated because rules with births from no neighbors are
+     * not supported.</li>
+     * </ol>
+     * The next generation is written into a second cell set which then replaces the current one.
+     * The two sets and the count table are reused by every update, so after the first few updates
+     * no memory is allocated unless the population grows.
+     * <p/>
+     * This method is called by update().
+     */
+    @Override
+    protected void computeNextGeneration() {
+        final LongCellSet cells = mCells;
+        final LongCellSet nextCells = mNextCells;
+        final LongCellCounts counts = mCounts;
+        final int nextStates = getRule().getNextStates();
+
+        counts.clear();
+        for (int slot = 0; slot < cells.slotCount(); slot++) {
+            if (cells.isSlotOccupied(slot)) {
+                final long cell = cells.slotKey(slot);
+                final int x = LongCellSet.unpackX(cell);
+                final int y = LongCellSet.unpackY(cell);
+
+                counts.increment(cell, 1);
+                counts.increment(LongCellSet.pack(x - 1, y - 1), 2);
+                counts.increment(LongCellSet.pack(x, y - 1), 2);
+                counts.increment(LongCellSet.pack(x + 1, y - 1), 2);
+                counts.increment(LongCellSet.pack(x - 1, y), 2);
+                counts.increment(LongCellSet.pack(x + 1, y), 2);
+                counts.increment(LongCellSet.pack(x - 1, y + 1), 2);
+                counts.increment(LongCellSet.pack(x, y + 1), 2);
+                counts.increment(LongCellSet.pack(x + 1, y + 1), 2);
+            }
+        }
+
+        nextCells.clear();
+        for (int slot = 0; slot < counts.slotCount(); slot++) {
+            if (counts.isSlotOccupied(slot)) {
+                final int value = counts.slotValue(slot);
+
+                // For B3/S23, births have the value 6 and survivals the values 5 and 7
+                if (0 != ((nextStates >>> value) & 1)) {
+                    nextCells.add(counts.slotKey(slot));
+                }
+            }
+        }
+
+        mCells = nextCells;
+        mNextCells = cells;
+        countEvaluatedCells(counts.size());
+    }
+
+    /**
+     * @return A Collection view of the CellCoordinates occupied by cells.  This method does not
+     * mutate the GameOfLifeModel object. Note: CellCoordinate instances are immutable. The
+     * position of a cell cannot be changed once the cell is constructed. There is no way to mutate
+     * cells using the Collection returned by this method. The CellCoordinates are created each
+     * time the Collection is iterated, so prefer forEachPosition() when iterating in performance
+     * critical code.
+     */
+    public Collection<CellCoordinate> getPositions() {
+        return new AbstractCollection<CellCoordinate>() {
+            @Override
+            public Iterator<CellCoordinate> iterator() {
+                final ArrayList<CellCoordinate> positions = new ArrayList<>(getPopulation());
+                forEachPosition(new CellVisitor() {
+                    @Override
+                    public void visit(int x, int y) {
+                        positions.add(new CellCoordinate(x, y));
+                    }
+                });
+                return Collections.unmodifiableList(positions).iterator();
+            }
+
+            @Override
+            public int size() {
+                return getPopulation();
+            }
+
+            @Override
+            public boolean contains(Object other) {
+                return other instanceof CellCoordinate && containsCellAt((CellCoordinate) other);
+            }
+        };
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. This method does not
+     * mutate the GameOfLifeModel object, and it does not allocate any memory.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPosition(CellVisitor visitor) {
+        final LongCellSet cells = mCells;
+        for (int slot = 0; slot < cells.slotCount(); slot++) {
+            if (cells.isSlotOccupied(slot)) {
+                final long cell = cells.slotKey(slot);
+                visitor.visit(LongCellSet.unpackX(cell), LongCellSet.unpackY(cell));
+            }
+        }
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. When the
+     * rectangle contains fewer positions than there are hash table slots, each position in the
+     * rectangle is looked up. Otherwise, each cell is tested against the rectangle. This method
+     * does not mutate the GameOfLifeModel object, and it does not allocate any memory.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor) {
+        if (left > right || top > bottom) {
+            return;
+        }
+        final LongCellSet cells = mCells;
+        final long width = (long) right - left + 1;
+        final long height = (long) bottom - top + 1;
+        if (width < cells.slotCount() && width * height < cells.slotCount()) {
+            // long loop counters cannot overflow when right or bottom is Integer.MAX_VALUE
+            for (long y = top; y <= bottom; y++) {
+                for (long x = left; x <= right; x++) {
+                    if (cells.contains(LongCellSet.pack((int) x, (int) y))) {
+                        visitor.visit((int) x, (int) y);
+                    }
+                }
+            }
+        } else {
+            for (int slot = 0; slot < cells.slotCount(); slot++) {
+                if (cells.isSlotOccupied(slot)) {
+                    final long cell = cells.slotKey(slot);
+                    final int x = LongCellSet.unpackX(cell);
+                    final int y = LongCellSet.unpackY(cell);
+                    if (x >= left && x <= right && y >= top && y <= bottom) {
+                        visitor.visit(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of cells in the game
+     */
+    @Override
+    public int getPopulation() {
+        return mCells.size();
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise
+     */
+    @Override
+    public boolean containsCellAt(int x, int y) {
+        return mCells.contains(LongCellSet.pack(x, y));
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param pos a position in the game grid (cannot be null)
+     * @return true if there is a cell at pos and false otherwise
+     */
+    private boolean containsCellAt(CellCoordinate pos) {
+        boolean result = containsCellAt(pos.x, pos.y);
+        return result;
+    }
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    @Override
+    public void spawnCellAt(int x, int y) {
+        mCells.add(LongCellSet.pack(x, y));
+    }
+
+    /**
+     * This class encapsulates the coordinates of a cell in the Game of Life. Once
+     * constructed, instances of this class are immutable.
+     */
+    public class CellCoordinate {
+        private final int x;
+        private final int y;
+
+        /**
+         * Constructs a new CellCoordinate with the specified x and y coordinates.
+         *
+         * @param x the specified x coordinate
+         * @param y the specified y coordinate
+         */
+        public CellCoordinate(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Constructs a new CellCoordinate with x equal to xy[0] and y equal to xy[1].
+         *
+         * @param xy an array of exactly 2 integers.
+         */
+        public CellCoordinate(int xy[]) {
+            this.x = xy[0];
+            this.y = xy[1];
+        }
+
+        /**
+         * Constructs a new CellCoordinate with x equal to original.x + dx and y equal to
+         * original.y + dy.
+         *
+         * @param original A CellCoordinate that (cannot be null)
+         * @param dx       arbitrary delta added to original.x
+         * @param dy       arbitrary delta added to original.y
+         */
+        public CellCoordinate(final CellCoordinate original, int dx, int dy) {
+            this.x = original.x + dx;
+            this.y = original.y + dy;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * @return Returns a string representation of the object.
+         */
+        @Override
+        public String toString() {
+            return "{" + x + ", " + y + "} ";
+        }
+
+        /**
+         * @return Returns a hash code value for the object.
+         */
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+
+        /**
+         * Indicates whether some other object is "equal to" this one. Note: It is required that
+         * any two objects that are equal return the same value from hashCode().
+         *
+         * @param other the object to compare to the receiver.
+         * @return true if the receiver and other are equal to each other and false otherwise.
+         */
+        @Override
+        public boolean equals(Object other) {
+            boolean result = (other != null &&
+                    getClass() == other.getClass() &&
+                    x == ((CellCoordinate) other).x &&
+                    y == ((CellCoordinate) other).y);
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,617 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class is a LifeEngine that implements Bill Gosper's HashLife algorithm. See
+ * https://en.wikipedia.org/wiki/Hashlife
+ * <p/>
+ * The universe is a quadtree of canonical QuadNodes centered on the origin. Because identical
+ * regions share one node, and because the future of each node's center is memoized in the node,
+ * patterns with repetition in space or time (such as the Gosper glider gun and the gliders it
+ * emits) can be advanced by millions of generations in a small number of steps. Call advance()
+ * to jump any number of generations, or advanceByPowerOfTwo() to jump 2^n generations. update()
+ * advances a single generation so this class can be displayed and animated by GameOfLifeView like
+ * any other LifeEngine.
+ * <p/>
+ * Population is stored in every node, so getPopulation(), getPopulationIn(), containsCellAt(), and
+ * getBounds() are answered by descending the tree without expanding it. forEachPosition() and
+ * forEachPositionIn() visit only the non-empty parts of the tree.
+ * <p/>
+ * Level 2 nodes are advanced with the 4x4 block table of the engine's LifeRule, so any rule
+ * supported by LifeRule can be used. Changing the rule discards all memoized results.
+ * <p/>
+ * The memo cache is bounded: when the number of canonical nodes exceeds the limit specified at
+ * construction, every node that is not part of the current universe is discarded along with all
+ * memoized results. The limit may be exceeded temporarily while a single step is computed.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class HashLifeGameOfLifeModel extends AbstractLifeEngine {
+    private static final int defaultMaximumNodeCount = 1 << 18;
+    private static final int minimumRootLevel = 3;
+    private static final int maximumRootLevel = 62;
+
+    private final int mMaximumNodeCount;
+    // See LifeRule.getCenterOfBlock()
+    private byte[] mCenterOfBlock = getRule().getCenterOfBlock();
+    private final QuadNodeTable mNodes = new QuadNodeTable();
+    private final QuadNode[] mEmptyNodes = new QuadNode[maximumRootLevel + 1];
+    private final QuadNode[] mLevelOneNodes = new QuadNode[16];
+    private final QuadNode mDeadCell;
+    private final QuadNode mLiveCell;
+    private long mNextId;
+    private int mRetainedNodeCount;
+    private QuadNode mRoot;
+
+    /**
+     * Constructs a HashLifeGameOfLifeModel with cells at all positions in initialPositions and a
+     * default limit on the number of memoized nodes.
+     *
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    HashLifeGameOfLifeModel(final int initialPositions[][]) {
+        this(initialPositions, defaultMaximumNodeCount);
+    }
+
+    /**
+     * Constructs a HashLifeGameOfLifeModel with cells at all positions in initialPositions.
+     *
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     * @param maximumNodeCount the number of canonical nodes above which nodes that are not part
+     *                         of the current universe and all memoized results are discarded
+     */
+    HashLifeGameOfLifeModel(final int initialPositions[][], int maximumNodeCount) {
+        mMaximumNodeCount = maximumNodeCount;
+        mDeadCell = new QuadNode(false, mNextId++);
+        mLiveCell = new QuadNode(true, mNextId++);
+        mEmptyNodes[0] = mDeadCell;
+        for (int bits = 0; bits < 16; bits++) {
+            mLevelOneNodes[bits] = new QuadNode(cell(bits, 1), cell(bits, 2), cell(bits, 4),
+                    cell(bits, 8), mNextId++);
+        }
+        mEmptyNodes[1] = mLevelOneNodes[0];
+        for (int level = 2; level <= maximumRootLevel; level++) {
+            final QuadNode quadrant = mEmptyNodes[level - 1];
+            mEmptyNodes[level] = new QuadNode(quadrant, quadrant, quadrant, quadrant, mNextId++);
+        }
+        mRoot = mEmptyNodes[minimumRootLevel];
+
+        this.seed(initialPositions);
+    }
+
+    /**
+     * Discards every memoized result because results computed with the previous rule are wrong
+     * for the new rule.
+     */
+    @Override
+    protected void ruleChanged() {
+        mCenterOfBlock = getRule().getCenterOfBlock();
+        collectGarbage();
+    }
+
+    /**
+     * Advances the universe by one generation. This method is called by update().
+     */
+    @Override
+    protected void computeNextGeneration() {
+        advanceRoot(0);
+    }
+
+    /**
+     * Advances the universe by the specified number of generations. See advance().
+     *
+     * @param generations the number of generations to advance ( >= 0)
+     */
+    @Override
+    public void step(long generations) {
+        advance(generations);
+    }
+
+    /**
+     * Advances the universe by the specified number of generations. The cost depends on the
+     * amount of repetition in the pattern rather than on the number of generations: each set bit
+     * of generations is performed as one advanceByPowerOfTwo() step.
+     *
+     * @param generations the number of generations to advance ( >= 0)
+     */
+    public void advance(long generations) {
+        if (0 > generations) {
+            throw new IllegalArgumentException("generations must be >= 0");
+        }
+        final long generation = getGeneration() + generations;
+        resetEvaluatedCellCount();
+        for (int log2 = 0; 0 != generations; log2++, generations >>>= 1) {
+            if (0 != (generations & 1)) {
+                advanceRoot(log2);
+            }
+        }
+        setGeneration(generation);
+    }
+
+    /**
+     * Advances the universe by 2^log2Generations generations in a single HashLife step.
+     *
+     * @param log2Generations the base 2 logarithm of the number of generations ( >= 0 and < 60)
+     */
+    public void advanceByPowerOfTwo(int log2Generations) {
+        if (0 > log2Generations || maximumRootLevel - 2 <= log2Generations) {
+            throw new IllegalArgumentException("log2Generations must be >= 0 and < " +
+                    (maximumRootLevel - 2));
+        }
+        resetEvaluatedCellCount();
+        advanceRoot(log2Generations);
+        setGeneration(getGeneration() + (1L << log2Generations));
+    }
+
+    private void advanceRoot(int log2Generations) {
+        collectGarbageIfNeeded();
+
+        // The pattern must lie in the central quarter of a root large enough that the pattern
+        // cannot grow out of the root's center (the area a step returns) in 2^log2 generations.
+        QuadNode root = mRoot;
+        while (root.level < log2Generations + 3 || !isPadded(root)) {
+            root = expand(root);
+        }
+        mRoot = successor(root, log2Generations);
+    }
+
+    /**
+     * @return the number of cells in the game or Integer.MAX_VALUE if there are more
+     */
+    @Override
+    public int getPopulation() {
+        return (int) Math.min(Integer.MAX_VALUE, mRoot.population);
+    }
+
+    /**
+     * Counts the cells in a rectangle without visiting the cells individually. Quadrants that
+     * are entirely inside or outside the rectangle are answered from the population stored in
+     * each node.
+     *
+     * @param left   the smallest x coordinate in the rectangle
+     * @param top    the smallest y coordinate in the rectangle
+     * @param right  the largest x coordinate in the rectangle
+     * @param bottom the largest y coordinate in the rectangle
+     * @return the number of cells at positions {x, y} with left <= x <= right and
+     * top <= y <= bottom
+     */
+    public long getPopulationIn(int left, int top, int right, int bottom) {
+        final long half = 1L << (mRoot.level - 1);
+        return populationIn(mRoot, -half, -half, left, top, right, bottom);
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise
+     */
+    @Override
+    public boolean containsCellAt(int x, int y) {
+        QuadNode node = mRoot;
+        long half = 1L << (node.level - 1);
+        if (x < -half || x >= half || y < -half || y >= half) {
+            return false;
+        }
+        long originX = -half;
+        long originY = -half;
+        while (0 < node.level && 0 != node.population) {
+            half = 1L << (node.level - 1);
+            final boolean isEast = x >= originX + half;
+            final boolean isSouth = y >= originY + half;
+            if (isEast) originX += half;
+            if (isSouth) originY += half;
+            node = isSouth ? (isEast ? node.se : node.sw) : (isEast ? node.ne : node.nw);
+        }
+        return 0 != node.population;
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. Empty quadrants are
+     * skipped without being visited. Cells whose coordinates are outside the range of int are
+     * not visited.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPosition(CellVisitor visitor) {
+        final long half = 1L << (mRoot.level - 1);
+        visit(mRoot, -half, -half, visitor);
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. Quadrants
+     * that are empty or outside the rectangle are skipped without being visited.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor) {
+        final long half = 1L << (mRoot.level - 1);
+        visitIn(mRoot, -half, -half, left, top, right, bottom, visitor);
+    }
+
+    /**
+     * Computes the smallest rectangle that contains every cell. Quadrants that are empty or that
+     * lie entirely inside the rectangle found so far are skipped.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any cell (in that order) if there are cells
+     * @return true if there are cells and bounds has been set and false otherwise
+     */
+    @Override
+    public boolean getBounds(int bounds[]) {
+        if (0 == mRoot.population) {
+            return false;
+        }
+        final long half = 1L << (mRoot.level - 1);
+        final long[] result = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+        extendBounds(mRoot, -half, -half, result);
+        for (int i = 0; i < 4; i++) {
+            bounds[i] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result[i]));
+        }
+        return true;
+    }
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    @Override
+    public void spawnCellAt(int x, int y) {
+        QuadNode root = mRoot;
+        long half = 1L << (root.level - 1);
+        while (x < -half || x >= half || y < -half || y >= half) {
+            root = expand(root);
+            half = 1L << (root.level - 1);
+        }
+        mRoot = withCell(root, x + half, y + half);
+    }
+
+    /**
+     * Inserts new cells at the first count positions in coordinates. Cells are partitioned by
+     * quadrant on the way down the tree so that each node on the path to several new cells is
+     * replaced once per batch rather than once per cell. Canonical nodes that are no longer part
+     * of the universe are discarded after the batch when there are too many of them.
+     *
+     * @param coordinates positions stored as {x0, y0, x1, y1, ...}
+     * @param count       the number of positions to spawn ( >= 0 and <= coordinates.length / 2)
+     */
+    @Override
+    public void spawnCells(int coordinates[], int count) {
+        if (0 == count) {
+            return;
+        }
+        final int xs[] = new int[count];
+        final int ys[] = new int[count];
+        int minimum = Integer.MAX_VALUE;
+        int maximum = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            xs[i] = coordinates[i * 2];
+            ys[i] = coordinates[i * 2 + 1];
+            minimum = Math.min(minimum, Math.min(xs[i], ys[i]));
+            maximum = Math.max(maximum, Math.max(xs[i], ys[i]));
+        }
+        QuadNode root = mRoot;
+        long half = 1L << (root.level - 1);
+        while (minimum < -half || maximum >= half) {
+            root = expand(root);
+            half = 1L << (root.level - 1);
+        }
+        mRoot = withCells(root, -half, -half, xs, ys, 0, count);
+        collectGarbageIfNeeded();
+    }
+
+    private QuadNode cell(int bits, int bit) {
+        return (0 != (bits & bit)) ? mLiveCell : mDeadCell;
+    }
+
+    private QuadNode withCell(QuadNode node, long x, long y) {
+        if (0 == node.level) {
+            return mLiveCell;
+        }
+        if (1 == node.level) {
+            return mLevelOneNodes[node.bits | (1 << (int) (y * 2 + x))];
+        }
+        final long half = 1L << (node.level - 1);
+        QuadNode nw = node.nw;
+        QuadNode ne = node.ne;
+        QuadNode sw = node.sw;
+        QuadNode se = node.se;
+        if (y < half) {
+            if (x < half) nw = withCell(nw, x, y);
+            else ne = withCell(ne, x - half, y);
+        } else {
+            if (x < half) sw = withCell(sw, x, y - half);
+            else se = withCell(se, x - half, y - half);
+        }
+        return join(nw, ne, sw, se);
+    }
+
+    /**
+     * @return node with live cells added at the positions {xs[i], ys[i]} for from <= i < to. The
+     * positions are relative to the universe and node's top left cell is at {left, top}. The
+     * order of the positions is changed.
+     */
+    private QuadNode withCells(QuadNode node, long left, long top, int xs[], int ys[], int from,
+                               int to) {
+        if (0 == node.level) {
+            return mLiveCell;
+        }
+        if (1 == to - from) {
+            return withCell(node, xs[from] - left, ys[from] - top);
+        }
+        if (1 == node.level) {
+            int bits = node.bits;
+            for (int i = from; i < to; i++) {
+                bits |= 1 << (int) ((ys[i] - top) * 2 + (xs[i] - left));
+            }
+            return mLevelOneNodes[bits];
+        }
+        final long centerX = left + (1L << (node.level - 1));
+        final long centerY = top + (1L << (node.level - 1));
+        final int south = partition(ys, xs, from, to, centerY);
+        final int northEast = partition(xs, ys, from, south, centerX);
+        final int southEast = partition(xs, ys, south, to, centerX);
+        return join(
+                (from < northEast) ?
+                        withCells(node.nw, left, top, xs, ys, from, northEast) : node.nw,
+                (northEast < south) ?
+                        withCells(node.ne, centerX, top, xs, ys, northEast, south) : node.ne,
+                (south < southEast) ?
+                        withCells(node.sw, left, centerY, xs, ys, south, southEast) : node.sw,
+                (southEast < to) ?
+                        withCells(node.se, centerX, centerY, xs, ys, southEast, to) : node.se);
+    }
+
+    /**
+     * Reorders the entries from <= i < to of keys, and the corresponding entries of others, so
+     * that every key less than pivot comes first.
+     *
+     * @return the index of the first key that is >= pivot or to if there is none
+     */
+    private static int partition(int keys[], int others[], int from, int to, long pivot) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            if (keys[low] < pivot) {
+                low++;
+            } else {
+                final int key = keys[low];
+                keys[low] = keys[high];
+                keys[high] = key;
+                final int other = others[low];
+                others[low] = others[high];
+                others[high] = other;
+                high--;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the canonical node with the specified quadrants which must all have the same level
+     */
+    private QuadNode join(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se) {
+        if (0 == nw.level) {
+            return mLevelOneNodes[nw.bits | (ne.bits << 1) | (sw.bits << 2) | (se.bits << 3)];
+        }
+        final QuadNode empty = mEmptyNodes[nw.level];
+        if (nw == empty && ne == empty && sw == empty && se == empty) {
+            return mEmptyNodes[nw.level + 1];
+        }
+        QuadNode result = mNodes.find(nw, ne, sw, se);
+        if (null == result) {
+            result = new QuadNode(nw, ne, sw, se, mNextId++);
+            mNodes.add(result);
+        }
+        return result;
+    }
+
+    /**
+     * @return a node one level larger than node with node at its center
+     */
+    private QuadNode expand(QuadNode node) {
+        if (maximumRootLevel <= node.level) {
+            throw new IllegalStateException("The universe is too large.");
+        }
+        final QuadNode empty = mEmptyNodes[node.level - 1];
+        return join(join(empty, empty, empty, node.nw), join(empty, empty, node.ne, empty),
+                join(empty, node.sw, empty, empty), join(node.se, empty, empty, empty));
+    }
+
+    /**
+     * @return true if and only if all of node's cells are in the central quarter of node
+     */
+    private static boolean isPadded(QuadNode node) {
+        return node.population == node.nw.se.se.population + node.ne.sw.sw.population +
+                node.sw.ne.ne.population + node.se.nw.nw.population;
+    }
+
+    /**
+     * Computes the center of node (one level smaller than node) advanced 2^log2Generations
+     * generations, or fewer if node is too small: a level L node can be advanced at most
+     * 2^(L-2) generations. Results are memoized in node.
+     *
+     * @param node            a node of level 2 or more
+     * @param log2Generations the base 2 logarithm of the number of generations ( >= 0)
+     * @return the advanced center of node
+     */
+    private QuadNode successor(QuadNode node, int log2Generations) {
+        if (0 == node.population) {
+            return mEmptyNodes[node.level - 1];
+        }
+        final int step = Math.min(log2Generations, node.level - 2);
+        if (node.resultStep == step) {
+            return node.result;
+        }
+
+        final QuadNode result;
+        if (2 == node.level) {
+            final int block = spread(node.nw.bits) | (spread(node.ne.bits) << 2) |
+                    (spread(node.sw.bits) << 8) | (spread(node.se.bits) << 10);
+            result = mLevelOneNodes[mCenterOfBlock[block]];
+            countEvaluatedCells(4);
+        } else {
+            // Nine overlapping nodes one level smaller than node, each advanced 2^step or
+            // 2^(step-1) generations depending on whether node is advanced at full speed.
+            final QuadNode c1 = successor(node.nw, step);
+            final QuadNode c2 = successor(join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw),
+                    step);
+            final QuadNode c3 = successor(node.ne, step);
+            final QuadNode c4 = successor(join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne),
+                    step);
+            final QuadNode c5 = successor(join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw),
+                    step);
+            final QuadNode c6 = successor(join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne),
+                    step);
+            final QuadNode c7 = successor(node.sw, step);
+            final QuadNode c8 = successor(join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw),
+                    step);
+            final QuadNode c9 = successor(node.se, step);
+
+            if (step < node.level - 2) {
+                // The nine nodes are already advanced 2^step generations: keep their centers
+                result = join(join(c1.se, c2.sw, c4.ne, c5.nw), join(c2.se, c3.sw, c5.ne, c6.nw),
+                        join(c4.se, c5.sw, c7.ne, c8.nw), join(c5.se, c6.sw, c8.ne, c9.nw));
+            } else {
+                // The nine nodes are advanced half way: advance their four overlaps the rest
+                result = join(successor(join(c1, c2, c4, c5), step),
+                        successor(join(c2, c3, c5, c6), step),
+                        successor(join(c4, c5, c7, c8), step),
+                        successor(join(c5, c6, c8, c9), step));
+            }
+        }
+
+        node.result = result;
+        node.resultStep = step;
+        return result;
+    }
+
+    /**
+     * @param bits the bits of a level 1 node (bit y * 2 + x)
+     * @return the same cells as the bits of the top left 2x2 corner of a 4x4 block
+     * (bit y * 4 + x) as expected by LifeRule.getCenterOfBlock()
+     */
+    private static int spread(int bits) {
+        return (bits & 3) | ((bits & 12) << 2);
+    }
+
+    private long populationIn(QuadNode node, long originX, long originY, int left, int top,
+                              int right, int bottom) {
+        final long size = 1L << node.level;
+        if (0 == node.population || originX > right || originY > bottom ||
+                originX + size <= left || originY + size <= top) {
+            return 0;
+        }
+        if (originX >= left && originY >= top &&
+                originX + size - 1 <= right && originY + size - 1 <= bottom) {
+            return node.population;
+        }
+        final long half = size >> 1;
+        return populationIn(node.nw, originX, originY, left, top, right, bottom) +
+                populationIn(node.ne, originX + half, originY, left, top, right, bottom) +
+                populationIn(node.sw, originX, originY + half, left, top, right, bottom) +
+                populationIn(node.se, originX + half, originY + half, left, top, right, bottom);
+    }
+
+    private void visitIn(QuadNode node, long originX, long originY, int left, int top, int right,
+                         int bottom, CellVisitor visitor) {
+        final long size = 1L << node.level;
+        if (0 == node.population || originX > right || originY > bottom ||
+                originX + size <= left || originY + size <= top) {
+            return;
+        }
+        if (0 == node.level) {
+            visitor.visit((int) originX, (int) originY);
+            return;
+        }
+        final long half = size >> 1;
+        visitIn(node.nw, originX, originY, left, top, right, bottom, visitor);
+        visitIn(node.ne, originX + half, originY, left, top, right, bottom, visitor);
+        visitIn(node.sw, originX, originY + half, left, top, right, bottom, visitor);
+        visitIn(node.se, originX + half, originY + half, left, top, right, bottom, visitor);
+    }
+
+    private void extendBounds(QuadNode node, long originX, long originY, long bounds[]) {
+        final long size = 1L << node.level;
+        if (0 == node.population || (originX >= bounds[0] && originY >= bounds[1] &&
+                originX + size - 1 <= bounds[2] && originY + size - 1 <= bounds[3])) {
+            return;
+        }
+        if (0 == node.level) {
+            bounds[0] = Math.min(bounds[0], originX);
+            bounds[1] = Math.min(bounds[1], originY);
+            bounds[2] = Math.max(bounds[2], originX);
+            bounds[3] = Math.max(bounds[3], originY);
+            return;
+        }
+        final long half = size >> 1;
+        extendBounds(node.nw, originX, originY, bounds);
+        extendBounds(node.ne, originX + half, originY, bounds);
+        extendBounds(node.sw, originX, originY + half, bounds);
+        extendBounds(node.se, originX + half, originY + half, bounds);
+    }
+
+    private void visit(QuadNode node, long originX, long originY, CellVisitor visitor) {
+        if (0 == node.population) {
+            return;
+        }
+        if (0 == node.level) {
+            if (originX >= Integer.MIN_VALUE && originX <= Integer.MAX_VALUE &&
+                    originY >= Integer.MIN_VALUE && originY <= Integer.MAX_VALUE) {
+                visitor.visit((int) originX, (int) originY);
+            }
+            return;
+        }
+        final long half = 1L << (node.level - 1);
+        visit(node.nw, originX, originY, visitor);
+        visit(node.ne, originX + half, originY, visitor);
+        visit(node.sw, originX, originY + half, visitor);
+        visit(node.se, originX + half, originY + half, visitor);
+    }
+
+    /**
+     * Calls collectGarbage() when the number of canonical nodes exceeds the limit and is at least
+     * twice the number that survived the previous collection. The second condition keeps large
+     * universes, which may need more nodes than the limit, from being collected after every step.
+     */
+    private void collectGarbageIfNeeded() {
+        if (mNodes.size() > mMaximumNodeCount && mNodes.size() >= 2 * mRetainedNodeCount) {
+            collectGarbage();
+        }
+    }
+
+    /**
+     * Discards every canonical node that is not part of the current universe together with all
+     * memoized results, which keeps the memory used by the memo cache bounded.
+     */
+    private void collectGarbage() {
+        mNodes.clear();
+        retain(mRoot);
+        mRetainedNodeCount = mNodes.size();
+    }
+
+    private void retain(QuadNode node) {
+        if (2 > node.level || node == mEmptyNodes[node.level] || mNodes.contains(node)) {
+            return;
+        }
+        node.result = null;
+        node.resultStep = -1;
+        retain(node.nw);
+        retain(node.ne);
+        retain(node.sw);
+        retain(node.se);
+        mNodes.add(node);
+    }
+}
@@ -0,0 +1,266 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class is a command line program that simulates a Game of Life pattern without any user
+ * interface so that engine throughput can be measured on ordinary JVMs and with ordinary
+ * profilers. It loads a pattern, advances it the requested number of generations with the
+ * requested engine, and reports generations per second, cells per second, peak population, and
+ * peak heap use.
+ * <p/>
+ * Usage:
+ * <pre>
+ *     HeadlessRunner [--engine sparse|tiled|hashlife|hybrid|bounded|torus] [--generations N]
+ *                    [--step K] [--pattern NAME|FILE | --soup CELLS,SIZE,SEED] [--threads T]
+ *                    [--rule RULE] [--store MB]
+ * </pre>
+ * NAME is one of the names in Patterns.byName(). FILE is an RLE, Life 1.06, or plaintext pattern
+ * file read with PatternReader. A soup is CELLS random cells in a SIZE x SIZE square generated
+ * from SEED. Each step advances K generations with LifeEngine.step(), which lets HashLife jump
+ * many generations at once. T > 1 makes the tiled engine compute generations on T threads. The
+ * bounded and torus engines simulate a BoundedGameOfLifeModel.defaultSize square board centered
+ * on the origin. RULE is a rule in B/S notation such as B36/S23 (see LifeRule.parse()). Without
+ * --rule, the rule in an RLE file's header is used if there is one and B3/S23 otherwise.
+ * MB makes the tiled engine keep quiescent tiles in a TileStore with a memory budget of MB
+ * megabytes that spills to the temporary directory (see TiledGameOfLifeModel.setTileStore()).
+ * <p/>
+ * Run it with "./gradlew :life-core:run --args='--engine tiled --soup 200000,1000,1'".
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class HeadlessRunner {
+    private static final String usage = "usage: HeadlessRunner " +
+            "[--engine sparse|tiled|hashlife|hybrid|bounded|torus] [--generations N] " +
+            "[--step K] [--pattern NAME|FILE | --soup CELLS,SIZE,SEED] " +
+            "[--threads T] [--rule RULE] [--store MB]";
+
+    private LifeEngineType mEngineType = LifeEngineType.TILED_BITBOARD;
+    private long mGenerations = 1000;
+    private long mStep = 1;
+    private int mThreads = 1;
+    private long mStoreMegabytes;
+    private LifeRule mRule;
+    private String mPatternDescription = "shooter";
+    private int mPositions[][] = Patterns.shooterCellPositions;
+    private File mPatternFile;
+    private LifeEngine mEngine;
+    private double mLoadSeconds;
+
+    private HeadlessRunner() {
+    }
+
+    /**
+     * Runs the program and exits with status 0 on success, 1 if the pattern cannot be read, or 2
+     * if the arguments are invalid.
+     *
+     * @param args the command line arguments. See the class description.
+     */
+    public static void main(String args[]) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the program without exiting the JVM.
+     *
+     * @param args   the command line arguments. See the class description.
+     * @param out    the stream that receives the report (cannot be null)
+     * @param errors the stream that receives error messages (cannot be null)
+     * @return 0 on success, 1 if the pattern cannot be read, or 2 if the arguments are invalid
+     */
+    static int run(String args[], PrintStream out, PrintStream errors) {
+        final HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            errors.println(e.getMessage());
+            errors.println(usage);
+            return 2;
+        }
+        try {
+            runner.load();
+        } catch (IOException e) {
+            errors.println("cannot read pattern: " + e.getMessage());
+            return 1;
+        }
+        runner.simulate(out);
+        return 0;
+    }
+
+    private void parse(String args[]) {
+        for (int i = 0; i < args.length; i++) {
+            final String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            final String value = args[++i];
+            switch (option) {
+                case "--engine":
+                    mEngineType = parseEngineType(value);
+                    break;
+                case "--generations":
+                    mGenerations = parsePositiveLong(option, value);
+                    break;
+                case "--step":
+                    mStep = parsePositiveLong(option, value);
+                    break;
+                case "--threads":
+                    mThreads = (int) parsePositiveLong(option, value);
+                    break;
+                case "--pattern":
+                    mPatternDescription = value;
+                    mPositions = Patterns.byName().get(value);
+                    mPatternFile = (null == mPositions) ? new File(value) : null;
+                    break;
+                case "--store":
+                    mStoreMegabytes = parsePositiveLong(option, value);
+                    break;
+                case "--rule":
+                    mRule = LifeRule.parse(value);
+                    break;
+                case "--soup":
+                    mPatternDescription = "soup " + value;
+                    mPositions = soup(value);
+                    mPatternFile = null;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+    }
+
+    private static LifeEngineType parseEngineType(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "sparse":
+                return LifeEngineType.SPARSE_HASH;
+            case "tiled":
+                return LifeEngineType.TILED_BITBOARD;
+            case "hashlife":
+                return LifeEngineType.HASHLIFE;
+            case "hybrid":
+                return LifeEngineType.HYBRID;
+            case "bounded":
+                return LifeEngineType.BOUNDED_BOARD;
+            case "torus":
+                return LifeEngineType.TOROIDAL_BOARD;
+            default:
+                try {
+                    return LifeEngineType.valueOf(value.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("unknown engine " + value);
+                }
+        }
+    }
+
+    private static long parsePositiveLong(String option, String value) {
+        final long result;
+        try {
+            result = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " must be a number: " + value);
+        }
+        if (0 >= result) {
+            throw new IllegalArgumentException(option + " must be > 0: " + value);
+        }
+        return result;
+    }
+
+    private static int[][] soup(String value) {
+        final String parts[] = value.split(",");
+        if (3 != parts.length) {
+            throw new IllegalArgumentException("--soup must be CELLS,SIZE,SEED: " + value);
+        }
+        final int cells = (int) parsePositiveLong("--soup CELLS", parts[0]);
+        final int size = (int) parsePositiveLong("--soup SIZE", parts[1]);
+        final Random random;
+        try {
+            random = new Random(Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--soup SEED must be a number: " + parts[2]);
+        }
+        final int result[][] = new int[cells][];
+        for (int i = 0; i < cells; i++) {
+            result[i] = new int[]{random.nextInt(size) - size / 2, random.nextInt(size) - size / 2};
+        }
+        return result;
+    }
+
+    private void load() throws IOException {
+        final long start = System.nanoTime();
+        if (null == mPatternFile) {
+            mEngine = mEngineType.create(mPositions);
+        } else {
+            mEngine = mEngineType.create(Patterns.clearCellPositions);
+            final PatternReader reader = new PatternReader(mEngine, null);
+            reader.read(mPatternFile);
+            if (null != reader.getRule()) {
+                try {
+                    mEngine.setRule(LifeRule.parse(reader.getRule()));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("unsupported rule " + reader.getRule(), e);
+                }
+            }
+        }
+        if (null != mRule) {
+            mEngine.setRule(mRule);
+        }
+        mLoadSeconds = (System.nanoTime() - start) / 1e9;
+    }
+
+    private void simulate(PrintStream out) {
+        final Runtime runtime = Runtime.getRuntime();
+        final LifeEngine engine = mEngine;
+        if (engine instanceof TiledGameOfLifeModel && 1 < mThreads) {
+            ((TiledGameOfLifeModel) engine).setParallelism(mThreads);
+        }
+        final TileStore store = (engine instanceof TiledGameOfLifeModel && 0 < mStoreMegabytes) ?
+                new TileStore(mStoreMegabytes << 20,
+                        new File(System.getProperty("java.io.tmpdir"))) : null;
+        if (null != store) {
+            ((TiledGameOfLifeModel) engine).setTileStore(store);
+        }
+        final int initialPopulation = engine.getPopulation();
+        int peakPopulation = initialPopulation;
+        long peakHeapBytes = runtime.totalMemory() - runtime.freeMemory();
+        double cellGenerations = 0;
+
+        final long start = System.nanoTime();
+        long remaining = mGenerations;
+        while (0 < remaining) {
+            final long step = Math.min(mStep, remaining);
+            cellGenerations += (double) engine.getPopulation() * step;
+            engine.step(step);
+            remaining -= step;
+            peakPopulation = Math.max(peakPopulation, engine.getPopulation());
+            peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+        }
+        final double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+
+        out.println("engine: " + mEngineType);
+        out.println("pattern: " + mPatternDescription);
+        out.println("rule: " + engine.getRule());
+        out.println(String.format(Locale.ROOT, "load seconds: %.3f", mLoadSeconds));
+        out.println("initial population: " + initialPopulation);
+        out.println("generations: " + engine.getGeneration());
+        out.println("final population: " + engine.getPopulation());
+        out.println("peak population: " + peakPopulation);
+        out.println(String.format(Locale.ROOT, "seconds: %.3f", seconds));
+        out.println(String.format(Locale.ROOT, "generations/sec: %.1f", mGenerations / seconds));
+        out.println(String.format(Locale.ROOT, "cells/sec: %.0f", cellGenerations / seconds));
+        out.println(String.format(Locale.ROOT, "peak heap MB: %.1f",
+                peakHeapBytes / (1024.0 * 1024.0)));
+        if (null != store) {
+            out.println("stored tiles: " + store.size());
+            out.println(String.format(Locale.ROOT, "off-heap MB: %.1f",
+                    store.getDirectBytes() / (1024.0 * 1024.0)));
+            out.println(String.format(Locale.ROOT, "spilled MB: %.1f",
+                    store.getMappedBytes() / (1024.0 * 1024.0)));
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package edu.wright.gameoflife2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is a LifeEngine that divides the grid into regions of 64 x 64 positions and stores
+ * each region in whichever layout suits it (see CellRegion): regions with few cells keep a short
+ * array of cell positions, and crowded regions keep one bit per position. A region is promoted
+ * to the dense layout when its population exceeds promoteThreshold and demoted to the sparse
+ * layout when its population falls below demoteThreshold. The gap between the thresholds is
+ * hysteresis: a region whose population hovers around one threshold does not change layout every
+ * generation.
+ * <p/>
+ * Every region is computed the same way regardless of its layout or the layouts of its
+ * neighbors: its rows and the adjacent rows and columns of its eight neighbors are gathered into
+ * rows of bits, and the rows that have any occupied position nearby are evaluated 64 cells at a
+ * time with bitwise full adders as in TiledGameOfLifeModel. Rows without nearby cells are
+ * skipped, so a sparse region costs little more than its few occupied rows. The result is stored
+ * in the layout the region's new population calls for. Because the neighbors are read through
+ * the same questions in both layouts, births and deaths across the boundary between a sparse and
+ * a dense region need no special treatment.
+ * <p/>
+ * As in TiledGameOfLifeModel, a region whose 3x3 neighborhood did not change in the last
+ * generation keeps its cells without being computed, empty regions are added next to the
+ * occupied edges of changed regions, and empty regions with no occupied neighbors are removed.
+ * The memory and time spent on each part of the grid therefore follow the cheaper layout: a
+ * lone glider occupies a few bytes instead of a 1 KB tile, and a packed explosion is computed a
+ * word at a time instead of a cell at a time.
+ * <p/>
+ * This class supports the same "infinite" game area as GameOfLifeModel and produces identical
+ * generations.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class HybridGameOfLifeModel extends AbstractLifeEngine {
+    /** Regions with more cells than this use the dense layout: an occupancy of 1/32 */
+    public static final int promoteThreshold = 128;
+    /** Dense regions with fewer cells than this return to the sparse layout */
+    public static final int demoteThreshold = 32;
+    private static final int shift = CellRegion.shift;
+    private static final int size = CellRegion.size;
+    private static final int mask = CellRegion.mask;
+
+    private final LongObjectMap<CellRegion> mRegions = new LongObjectMap<>();
+    private final ArrayList<CellRegion> mRegionList = new ArrayList<>();
+    private final CellRegion.RowsPool mRowsPool = new CellRegion.RowsPool();
+    private final long[] mCenter = new long[size + 2];
+    private final long[] mWest = new long[size + 2];
+    private final long[] mEast = new long[size + 2];
+    private final long[] mNext = new long[size];
+    private int mPopulation;
+    private int mDenseRegionCount;
+
+    /**
+     * Constructs a HybridGameOfLifeModel with cells at all positions in initialPositions.
+     *
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    HybridGameOfLifeModel(final int initialPositions[][]) {
+        this.seed(initialPositions);
+    }
+
+    /**
+     * Update the state of all encapsulated cells by applying the logic (rules) of the Game of Life
+     * to every region. This happens in three passes:
+     * <ol>
+     * <li>An empty region is added next to every edge with live cells of a region that changed in
+     * the last generation because new cells may be born there.</li>
+     * <li>The next generation of every region whose neighborhood changed is prepared in the
+     * layout that its new population calls for, while all regions still expose the current
+     * generation.</li>
+     * <li>The prepared generation of every region becomes current, and empty regions that did not
+     * change and have no occupied neighbors are removed.</li>
+     * </ol>
+     * This method is called by update().
+     */
+    @Override
+    protected void computeNextGeneration() {
+        collectRegions();
+        for (int i = 0; i < mRegionList.size(); i++) {
+            final CellRegion region = mRegionList.get(i);
+            if (region.changed && 0 != region.population) {
+                addNeighborsForEdges(region);
+            }
+        }
+
+        collectRegions();
+        long evaluatedRowCount = 0;
+        for (int i = 0; i < mRegionList.size(); i++) {
+            evaluatedRowCount += prepareNextGeneration(mRegionList.get(i));
+        }
+
+        int population = 0;
+        int denseRegionCount = 0;
+        for (int i = 0; i < mRegionList.size(); i++) {
+            final CellRegion region = mRegionList.get(i);
+            region.commit(mRowsPool);
+            if (0 == region.population && !region.changed && !hasOccupiedNeighbor(region)) {
+                mRegions.remove(LongCellSet.pack(region.tileX, region.tileY));
+                region.release(mRowsPool);
+            } else if (region.isDense()) {
+                denseRegionCount += 1;
+            }
+            population += region.population;
+        }
+        mPopulation = population;
+        mDenseRegionCount = denseRegionCount;
+        countEvaluatedCells(evaluatedRowCount * size);
+    }
+
+    /**
+     * Marks every region as changed so that the next generation of every region is computed
+     * with the new rule instead of being kept.
+     */
+    @Override
+    protected void ruleChanged() {
+        for (int slot = 0; slot < mRegions.slotCount(); slot++) {
+            if (mRegions.isSlotOccupied(slot)) {
+                mRegions.slotValue(slot).changed = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of regions that use the dense layout
+     */
+    public int getDenseRegionCount() {
+        return mDenseRegionCount;
+    }
+
+    /**
+     * @return the number of regions, including empty regions kept next to occupied regions
+     */
+    public int getRegionCount() {
+        return mRegions.size();
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. This method does not
+     * mutate the model, and it does not allocate any memory.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPosition(CellVisitor visitor) {
+        for (int slot = 0; slot < mRegions.slotCount(); slot++) {
+            if (mRegions.isSlotOccupied(slot)) {
+                visitRegionIn(mRegions.slotValue(slot), Integer.MIN_VALUE, Integer.MIN_VALUE,
+                        Integer.MAX_VALUE, Integer.MAX_VALUE, visitor);
+            }
+        }
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. Only the
+     * regions that overlap the rectangle are examined.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor) {
+        if (left > right || top > bottom) {
+            return;
+        }
+        final int leftTile = left >> shift;
+        final int topTile = top >> shift;
+        final int rightTile = right >> shift;
+        final int bottomTile = bottom >> shift;
+        if ((long) (rightTile - leftTile + 1) * (bottomTile - topTile + 1) > mRegions.size()) {
+            // Fewer regions exist than the rectangle covers: examine the existing regions
+            for (int slot = 0; slot < mRegions.slotCount(); slot++) {
+                if (mRegions.isSlotOccupied(slot)) {
+                    visitRegionIn(mRegions.slotValue(slot), left, top, right, bottom, visitor);
+                }
+            }
+        } else {
+            for (int tileY = topTile; tileY <= bottomTile; tileY++) {
+                for (int tileX = leftTile; tileX <= rightTile; tileX++) {
+                    final CellRegion region = getRegion(tileX, tileY);
+                    if (null != region) {
+                        visitRegionIn(region, left, top, right, bottom, visitor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of cells in the game
+     */
+    @Override
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise
+     */
+    @Override
+    public boolean containsCellAt(int x, int y) {
+        final CellRegion region = getRegion(x >> shift, y >> shift);
+        return null != region && region.contains((y & mask) << shift | (x & mask));
+    }
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless. A sparse region that receives more than promoteThreshold
+     * cells becomes dense immediately.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    @Override
+    public void spawnCellAt(int x, int y) {
+        final CellRegion region = getOrAddRegion(x >> shift, y >> shift);
+        if (region.add((y & mask) << shift | (x & mask))) {
+            region.changed = true;
+            mPopulation += 1;
+            if (!region.isDense() && promoteThreshold < region.population) {
+                region.makeDense(mRowsPool);
+                mDenseRegionCount += 1;
+            }
+        }
+    }
+
+    private static void visitRegionIn(CellRegion region, int left, int top, int right,
+                                      int bottom, CellVisitor visitor) {
+        final int originX = region.tileX << shift;
+        final int originY = region.tileY << shift;
+        if (region.isDense()) {
+            for (int r = 0; r < size; r++) {
+                final int y = originY + r;
+                long row = region.rows[r];
+                if (y < top || y > bottom) {
+                    continue;
+                }
+                while (0 != row) {
+                    final int x = originX + Long.numberOfTrailingZeros(row);
+                    if (x >= left && x <= right) {
+                        visitor.visit(x, y);
+                    }
+                    row &= row - 1;
+                }
+            }
+        } else {
+            for (int i = 0; i < region.population; i++) {
+                final int x = originX + (region.cells[i] & mask);
+                final int y = originY + (region.cells[i] >>> shift);
+                if (x >= left && x <= right && y >= top && y <= bottom) {
+                    visitor.visit(x, y);
+                }
+            }
+        }
+    }
+
+    private CellRegion getRegion(int tileX, int tileY) {
+        return mRegions.get(LongCellSet.pack(tileX, tileY));
+    }
+
+    private CellRegion getOrAddRegion(int tileX, int tileY) {
+        final long key = LongCellSet.pack(tileX, tileY);
+        CellRegion result = mRegions.get(key);
+        if (null == result) {
+            result = new CellRegion(tileX, tileY);
+            mRegions.put(key, result);
+        }
+        return result;
+    }
+
+    private void collectRegions() {
+        mRegionList.clear();
+        for (int slot = 0; slot < mRegions.slotCount(); slot++) {
+            if (mRegions.isSlotOccupied(slot)) {
+                mRegionList.add(mRegions.slotValue(slot));
+            }
+        }
+    }
+
+    private boolean hasOccupiedNeighbor(CellRegion region) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                final CellRegion neighbor = getRegion(region.tileX + dx, region.tileY + dy);
+                if (null != neighbor && 0 != neighbor.population) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isChanged(CellRegion region) {
+        return null != region && region.changed;
+    }
+
+    private void addNeighborsForEdges(CellRegion region) {
+        final int tx = region.tileX;
+        final int ty = region.tileY;
+        final long top = region.rowAt(0);
+        final long bottom = region.rowAt(mask);
+        final long columns = region.occupiedColumns();
+
+        if (0 != top) getOrAddRegion(tx, ty - 1);
+        if (0 != bottom) getOrAddRegion(tx, ty + 1);
+        if (0 != (columns & 1L)) getOrAddRegion(tx - 1, ty);
+        if (0 > columns) getOrAddRegion(tx + 1, ty);
+        if (0 != (top & 1L)) getOrAddRegion(tx - 1, ty - 1);
+        if (0 > top) getOrAddRegion(tx + 1, ty - 1);
+        if (0 != (bottom & 1L)) getOrAddRegion(tx - 1, ty + 1);
+        if (0 > bottom) getOrAddRegion(tx + 1, ty + 1);
+    }
+
+    /**
+     * Prepares the next generation of region if its neighborhood changed in the last generation.
+     * Only the current generation of regions is read.
+     *
+     * @return the number of rows of 64 cells that were evaluated
+     */
+    private int prepareNextGeneration(CellRegion region) {
+        final int tx = region.tileX;
+        final int ty = region.tileY;
+        final int last = size + 1;
+
+        final CellRegion north = getRegion(tx, ty - 1);
+        final CellRegion south = getRegion(tx, ty + 1);
+        final CellRegion westRegion = getRegion(tx - 1, ty);
+        final CellRegion eastRegion = getRegion(tx + 1, ty);
+        final CellRegion northWest = getRegion(tx - 1, ty - 1);
+        final CellRegion northEast = getRegion(tx + 1, ty - 1);
+        final CellRegion southWest = getRegion(tx - 1, ty + 1);
+        final CellRegion southEast = getRegion(tx + 1, ty + 1);
+
+        if (!region.changed && !isChanged(north) && !isChanged(south) &&
+                !isChanged(westRegion) && !isChanged(eastRegion) && !isChanged(northWest) &&
+                !isChanged(northEast) && !isChanged(southWest) && !isChanged(southEast)) {
+            return 0;
+        }
+
+        final long[] center = mCenter;
+        final long[] west = mWest;
+        final long[] east = mEast;
+        region.copyRows(center);
+        center[0] = (null == north) ? 0 : north.rowAt(mask);
+        center[last] = (null == south) ? 0 : south.rowAt(0);
+        if (null == westRegion) {
+            Arrays.fill(west, 1, last, 0L);
+        } else {
+            westRegion.columnAt(mask, west, 0);
+        }
+        if (null == eastRegion) {
+            Arrays.fill(east, 1, last, 0L);
+        } else {
+            eastRegion.columnAt(0, east, mask);
+        }
+        west[0] = (null == northWest) ? 0 : northWest.rowAt(mask) >>> mask;
+        west[last] = (null == southWest) ? 0 : southWest.rowAt(0) >>> mask;
+        east[0] = (null == northEast) ? 0 : northEast.rowAt(mask) << mask;
+        east[last] = (null == southEast) ? 0 : southEast.rowAt(0) << mask;
+
+        final LifeRule rule = getRule();
+        final long[] next = mNext;
+        int population = 0;
+        int evaluatedRowCount = 0;
+        boolean isChanged = false;
+        for (int r = 0; r < size; r++) {
+            final long above = center[r];
+            final long row = center[r + 1];
+            final long below = center[r + 2];
+            if (0 == (above | row | below | west[r] | west[r + 1] | west[r + 2] | east[r] |
+                    east[r + 1] | east[r + 2])) {
+                // No cell is born without neighbors
+                next[r] = 0;
+                continue;
+            }
+
+            // The eight neighbor words: bit i of each word is one neighbor of cell i
+            final long nw = (above << 1) | west[r];
+            final long n = above;
+            final long ne = (above >>> 1) | east[r];
+            final long w = (row << 1) | west[r + 1];
+            final long e = (row >>> 1) | east[r + 1];
+            final long sw = (below << 1) | west[r + 2];
+            final long s = below;
+            final long se = (below >>> 1) | east[r + 2];
+
+            // Full adders reduce the eight one-bit neighbors to a count of ones, twos, fours,
+            // and eights
+            final long s0 = nw ^ n ^ ne;
+            final long c0 = (nw & n) | (ne & (nw ^ n));
+            final long s1 = w ^ e ^ sw;
+            final long c1 = (w & e) | (sw & (w ^ e));
+            final long s2 = s ^ se;
+            final long c2 = s & se;
+            final long ones = s0 ^ s1 ^ s2;
+            final long c3 = (s0 & s1) | (s2 & (s0 ^ s1));
+            final long t0 = c0 ^ c1 ^ c2;
+            final long c4 = (c0 & c1) | (c2 & (c0 ^ c1));
+            final long twos = t0 ^ c3;
+            final long c5 = t0 & c3;
+            final long fours = c4 ^ c5;
+            final long eights = c4 & c5;
+
+            next[r] = rule.nextRow(row, ones, twos, fours, eights);
+            population += Long.bitCount(next[r]);
+            isChanged |= next[r] != row;
+            evaluatedRowCount += 1;
+        }
+
+        region.nextPopulation = population;
+        region.nextChanged = isChanged;
+        // The thresholds differ so that regions near one do not change layout every generation
+        region.isNextDense = region.isDense() ? demoteThreshold <= population :
+                promoteThreshold < population;
+        region.prepare(next, mRowsPool);
+        return evaluatedRowCount;
+    }
+}
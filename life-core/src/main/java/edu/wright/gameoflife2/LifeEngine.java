@@ -0,0 +1,139 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This interface is implemented by every Game of Life simulation engine. Engines differ in how
+ * they store cells and compute generations (see LifeEngineType), but they all simulate the same
+ * "infinite" grid of integer cell coordinates and produce identical generations, so any engine
+ * can be displayed by GameOfLifeView, benchmarked, or replaced by another engine holding the same
+ * cells at any time. The exception is BoundedGameOfLifeModel, which simulates a finite board of
+ * that grid and matches the other engines only while the cells stay away from its edges.
+ * <p/>
+ * Every engine evaluates a LifeRule, which is Conway's B3/S23 unless setRule() is called.
+ * <p/>
+ * Engines are not thread safe. All methods of one engine must be called from one thread at a
+ * time.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public interface LifeEngine {
+    /**
+     * This interface is implemented by objects that visit the positions occupied by cells without
+     * requiring an object per position. See forEachPosition().
+     */
+    interface CellVisitor {
+        /**
+         * Called once for each visited position.
+         *
+         * @param x the x coordinate of an occupied position
+         * @param y the y coordinate of an occupied position
+         */
+        void visit(int x, int y);
+    }
+
+    /**
+     * Inserts a cell at every position in positions. Spawning a cell at coordinates that are
+     * already occupied by a cell is harmless.
+     *
+     * @param positions an array of arrays of integer coordinates. Each arrays of integer
+     *                  coordinates must contain exactly two integers.
+     */
+    void seed(int positions[][]);
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    void spawnCellAt(int x, int y);
+
+    /**
+     * Inserts new cells at the first count positions in coordinates. This is equivalent to
+     * calling spawnCellAt() for each position but lets engines amortize work across a batch, which
+     * matters when loading patterns with millions of cells.
+     *
+     * @param coordinates positions stored as {x0, y0, x1, y1, ...}
+     * @param count       the number of positions to spawn ( >= 0 and <= coordinates.length / 2)
+     */
+    void spawnCells(int coordinates[], int count);
+
+    /**
+     * Replaces the rule used to compute the following generations. The cells are not changed.
+     *
+     * @param rule the rule to use from now on (cannot be null)
+     */
+    void setRule(LifeRule rule);
+
+    /**
+     * @return the rule used to compute generations
+     */
+    LifeRule getRule();
+
+    /**
+     * Advances the game by one generation.
+     */
+    void update();
+
+    /**
+     * Advances the game by the specified number of generations.
+     *
+     * @param generations the number of generations to advance ( >= 0)
+     */
+    void step(long generations);
+
+    /**
+     * @return the number of generations the game has advanced since it was created
+     */
+    long getGeneration();
+
+    /**
+     * @return the number of positions whose next state was computed by the most recent update()
+     * or step(). Positions whose next state an engine reuses from earlier work without
+     * evaluating the rule, such as unchanged tiles or memoized HashLife results, are not counted.
+     * This measures how much work an engine does per generation independently of time.
+     */
+    long getEvaluatedCellCount();
+
+    /**
+     * @return the number of cells in the game
+     */
+    int getPopulation();
+
+    /**
+     * Computes the smallest rectangle that contains every cell.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any cell (in that order) if there are cells
+     * @return true if there are cells and bounds has been set and false otherwise
+     */
+    boolean getBounds(int bounds[]);
+
+    /**
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise
+     */
+    boolean containsCellAt(int x, int y);
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. The order of the visits
+     * is unspecified. The engine must not be mutated until this method returns.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    void forEachPosition(CellVisitor visitor);
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. The order
+     * of the visits is unspecified. The engine must not be mutated until this method returns.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor);
+}
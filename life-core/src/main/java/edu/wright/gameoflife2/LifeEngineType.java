@@ -0,0 +1,175 @@
+package edu.wright.gameoflife2;
+
+/**
+ * These are the available LifeEngine implementations. Each type creates new engines and can
+ * take over the cells, rule, and generation counter of any existing engine, so the engine used to
+ * simulate a game can be changed at any time without losing the game's state. The board types
+ * hold only the cells on their board, so changing to them discards cells beyond the edges (or
+ * wraps them around on a torus).
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public enum LifeEngineType {
+    /**
+     * GameOfLifeModel: a hash set of cell positions. Good for small and sparse patterns.
+     */
+    SPARSE_HASH {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new GameOfLifeModel(initialPositions);
+        }
+    },
+    /**
+     * TiledGameOfLifeModel: 64x64 bit tiles evaluated a row at a time. Good for dense patterns
+     * and random soups.
+     */
+    TILED_BITBOARD {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new TiledGameOfLifeModel(initialPositions);
+        }
+    },
+    /**
+     * HashLifeGameOfLifeModel: a memoized quadtree. Good for advancing regular patterns such as
+     * glider guns by huge numbers of generations.
+     */
+    HASHLIFE {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new HashLifeGameOfLifeModel(initialPositions);
+        }
+    },
+    /**
+     * HybridGameOfLifeModel: 64x64 regions that each hold either a list of cell positions or one
+     * bit per position, whichever their population favors. Good for patterns that mix dense
+     * areas with sparse debris such as escaping gliders.
+     */
+    HYBRID {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new HybridGameOfLifeModel(initialPositions);
+        }
+    },
+    /**
+     * BoundedGameOfLifeModel with dead edges: a flat array of bits for a board of
+     * BoundedGameOfLifeModel.defaultSize squared positions centered on the origin. Good for dense
+     * patterns that stay on the board.
+     */
+    BOUNDED_BOARD {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new BoundedGameOfLifeModel(BoundedGameOfLifeModel.Topology.DEAD_EDGES,
+                    initialPositions);
+        }
+    },
+    /**
+     * BoundedGameOfLifeModel as a torus: like BOUNDED_BOARD, but each edge of the board is
+     * adjacent to the opposite edge.
+     */
+    TOROIDAL_BOARD {
+        @Override
+        public LifeEngine create(int initialPositions[][]) {
+            return new BoundedGameOfLifeModel(BoundedGameOfLifeModel.Topology.TORUS,
+                    initialPositions);
+        }
+    };
+
+    /**
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     * @return a new engine of this type at generation 0 with cells at all positions in
+     * initialPositions
+     */
+    public abstract LifeEngine create(int initialPositions[][]);
+
+    /**
+     * @param engine an engine (cannot be null)
+     * @return the type of engine or null if engine was not created by any LifeEngineType
+     */
+    public static LifeEngineType of(LifeEngine engine) {
+        if (engine instanceof GameOfLifeModel) {
+            return SPARSE_HASH;
+        } else if (engine instanceof TiledGameOfLifeModel) {
+            return TILED_BITBOARD;
+        } else if (engine instanceof HashLifeGameOfLifeModel) {
+            return HASHLIFE;
+        } else if (engine instanceof HybridGameOfLifeModel) {
+            return HYBRID;
+        } else if (engine instanceof BoundedGameOfLifeModel) {
+            return (BoundedGameOfLifeModel.Topology.TORUS ==
+                    ((BoundedGameOfLifeModel) engine).getTopology()) ? TOROIDAL_BOARD :
+                    BOUNDED_BOARD;
+        }
+        return null;
+    }
+
+    /**
+     * @param source the engine whose state is copied (cannot be null). source is not mutated.
+     * @return a new engine of this type with the same cells, rule, and generation counter as
+     * source
+     */
+    public LifeEngine copyOf(LifeEngine source) {
+        final LifeEngine result = create(new int[0][]);
+        result.setRule(source.getRule());
+        final Spawner spawner = new Spawner(result, source.getPopulation());
+        source.forEachPosition(spawner);
+        spawner.flush();
+        ((AbstractLifeEngine) result).setGeneration(source.getGeneration());
+        return result;
+    }
+
+    /**
+     * @param snapshot the snapshot whose cells, rule, and generation are copied (cannot be null)
+     * @return a new engine of this type with the same cells, rule, and generation counter as
+     * snapshot
+     */
+    LifeEngine create(LifeSnapshot snapshot) {
+        final LifeEngine result = create(new int[0][]);
+        result.setRule(snapshot.getRule());
+        final Spawner spawner = new Spawner(result, snapshot.getPopulation());
+        snapshot.forEachPosition(spawner);
+        spawner.flush();
+        ((AbstractLifeEngine) result).setGeneration(snapshot.getGeneration());
+        return result;
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance spawns a cell in an engine at every visited position. Positions are passed to
+     * LifeEngine.spawnCells() in batches, so flush() must be called after the last visit.
+     */
+    private static class Spawner implements LifeEngine.CellVisitor {
+        private static final int batchSize = 1 << 16;
+        final LifeEngine mEngine;
+        final int mBatch[];
+        int mBatchLength;
+
+        /**
+         * @param engine     the engine in which cells are spawned (cannot be null)
+         * @param population the number of positions that will be visited, which limits the
+         *                   size of the batch
+         */
+        Spawner(LifeEngine engine, int population) {
+            mEngine = engine;
+            mBatch = new int[Math.max(1, Math.min(batchSize, population)) * 2];
+        }
+
+        @Override
+        public void visit(int x, int y) {
+            if (mBatch.length == mBatchLength) {
+                flush();
+            }
+            mBatch[mBatchLength++] = x;
+            mBatch[mBatchLength++] = y;
+        }
+
+        /**
+         * Spawns the cells at the positions visited since the last flush.
+         */
+        void flush() {
+            mEngine.spawnCells(mBatch, mBatchLength / 2);
+            mBatchLength = 0;
+        }
+    }
+}
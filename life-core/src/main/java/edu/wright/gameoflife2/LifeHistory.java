@@ -0,0 +1,403 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class retains a bounded window of consecutive past generations so that the user
+ * interface can step backward, jump to any retained generation, and replay forward without
+ * simulating again.
+ * <p/>
+ * Generations are stored in a ring buffer. Most generations are stored only as the births and
+ * deaths since the previous generation, which LifeSnapshot already records. Every
+ * keyframeInterval generations, and whenever the changes since the last keyframe add up to more
+ * cells than that keyframe holds, the whole snapshot is kept as a keyframe. The oldest
+ * generations are evicted when the estimated memory use exceeds the memory limit.
+ * <p/>
+ * getSnapshot() starts from whichever of the nearest keyframes and the most recently
+ * reconstructed snapshot is separated from the requested generation by the fewest changes,
+ * accumulates the net changes in hash sets, and applies them in a single merge. Births and
+ * deaths can be applied in either direction, so generations before a keyframe are reconstructed
+ * backward from it. The time spent seeking is proportional to the number of changes applied;
+ * only the final merge depends on the population.
+ * <p/>
+ * Instances are not thread safe. LifeSimulation uses its history from the user interface thread.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class LifeHistory {
+    public static final long defaultMemoryLimitBytes = 32L << 20;
+    public static final int defaultKeyframeInterval = 128;
+    private static final int entryOverheadBytes = 64;
+    private static final int bytesPerTile = 12;
+    private static final int initialCapacity = 64;
+    private static final long[] noCells = new long[0];
+
+    private final long mMemoryLimitBytes;
+    private final int mKeyframeInterval;
+    private Entry[] mEntries = new Entry[initialCapacity];
+    private int mFirst;
+    private int mCount;
+    private long mOldestGeneration;
+    private long mMemoryBytes;
+    private int mKeyframeCount;
+    private long mNewestKeyframeGeneration;
+    private long mChangesSinceKeyframe;
+    // The most recently reconstructed snapshot or null
+    private LifeSnapshot mCursor;
+
+    /**
+     * Constructs an empty history with defaultMemoryLimitBytes and defaultKeyframeInterval.
+     */
+    public LifeHistory() {
+        this(defaultMemoryLimitBytes, defaultKeyframeInterval);
+    }
+
+    /**
+     * Constructs an empty history.
+     *
+     * @param memoryLimitBytes the estimated memory use above which the oldest generations are
+     *                         evicted. The newest generation is always retained.
+     * @param keyframeInterval the largest number of generations between keyframes ( >= 1)
+     */
+    public LifeHistory(long memoryLimitBytes, int keyframeInterval) {
+        if (1 > keyframeInterval) {
+            throw new IllegalArgumentException("keyframeInterval must be >= 1");
+        }
+        mMemoryLimitBytes = memoryLimitBytes;
+        mKeyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Appends snapshot as the newest generation. If snapshot does not record the changes since
+     * the current newest generation (see LifeSnapshot.isSuccessorOf()), the history is cleared
+     * first and snapshot starts a new window. A snapshot of the current newest generation is
+     * ignored.
+     *
+     * @param snapshot the newest generation (cannot be null)
+     */
+    public void add(LifeSnapshot snapshot) {
+        if (!isEmpty() && getNewestGeneration() == snapshot.getGeneration()) {
+            return;
+        }
+        final boolean isSuccessor = !isEmpty() &&
+                snapshot.isSuccessorOf(getNewestGeneration(), snapshot.getEpoch());
+        if (!isSuccessor) {
+            clear();
+            mOldestGeneration = snapshot.getGeneration();
+        }
+        final long[] births = isSuccessor ? snapshot.births() : noCells;
+        final long[] deaths = isSuccessor ? snapshot.deaths() : noCells;
+        mChangesSinceKeyframe += births.length + deaths.length;
+        final boolean isKeyframe = !isSuccessor ||
+                mKeyframeInterval <= snapshot.getGeneration() - mNewestKeyframeGeneration ||
+                entry(mNewestKeyframeGeneration).mKeyframe.getPopulation() <
+                        mChangesSinceKeyframe ||
+                (mMemoryBytes > mMemoryLimitBytes && 1 == mKeyframeCount &&
+                        null != mEntries[mFirst].mKeyframe);
+        final Entry entry = new Entry(births, deaths, isKeyframe ? snapshot : null);
+        if (isKeyframe) {
+            mKeyframeCount += 1;
+            mNewestKeyframeGeneration = snapshot.getGeneration();
+            mChangesSinceKeyframe = 0;
+        }
+        if (mCount == mEntries.length) {
+            grow();
+        }
+        mEntries[(mFirst + mCount) % mEntries.length] = entry;
+        mCount += 1;
+        mMemoryBytes += entry.mBytes;
+        evict();
+    }
+
+    /**
+     * Discards every retained generation.
+     */
+    public void clear() {
+        Arrays.fill(mEntries, null);
+        mFirst = 0;
+        mCount = 0;
+        mMemoryBytes = 0;
+        mKeyframeCount = 0;
+        mChangesSinceKeyframe = 0;
+        mCursor = null;
+    }
+
+    /**
+     * Discards every retained generation after generation, for example before the simulation
+     * continues from generation with a different engine. Nothing happens if generation is not
+     * retained.
+     *
+     * @param generation the generation that becomes the newest
+     */
+    public void truncateAfter(long generation) {
+        if (!contains(generation)) {
+            return;
+        }
+        final LifeSnapshot newest = getSnapshot(generation);
+        while (getNewestGeneration() > generation) {
+            final int index = (mFirst + mCount - 1) % mEntries.length;
+            final Entry entry = mEntries[index];
+            if (null != entry.mKeyframe) {
+                mKeyframeCount -= 1;
+            }
+            mMemoryBytes -= entry.mBytes;
+            mEntries[index] = null;
+            mCount -= 1;
+        }
+        if (0 == mKeyframeCount) {
+            // The generations that remain were reconstructed backward from a discarded keyframe
+            final int index = (mFirst + mCount - 1) % mEntries.length;
+            final Entry entry = mEntries[index];
+            mEntries[index] = new Entry(entry.mBirths, entry.mDeaths, newest);
+            mMemoryBytes += mEntries[index].mBytes - entry.mBytes;
+            mKeyframeCount = 1;
+        }
+        mNewestKeyframeGeneration = generation;
+        while (null == entry(mNewestKeyframeGeneration).mKeyframe) {
+            mNewestKeyframeGeneration -= 1;
+        }
+        mChangesSinceKeyframe = changesBetween(mNewestKeyframeGeneration, generation);
+    }
+
+    /**
+     * @return true if and only if no generation is retained
+     */
+    public boolean isEmpty() {
+        return 0 == mCount;
+    }
+
+    /**
+     * @param generation a generation
+     * @return true if and only if getSnapshot() can reconstruct generation
+     */
+    public boolean contains(long generation) {
+        return 0 != mCount && generation >= mOldestGeneration &&
+                generation <= getNewestGeneration();
+    }
+
+    /**
+     * @return the oldest retained generation. The result is undefined if the history is empty.
+     */
+    public long getOldestGeneration() {
+        return mOldestGeneration;
+    }
+
+    /**
+     * @return the newest retained generation. The result is undefined if the history is empty.
+     */
+    public long getNewestGeneration() {
+        return mOldestGeneration + mCount - 1;
+    }
+
+    /**
+     * @return the number of retained generations stored as whole snapshots
+     */
+    public int getKeyframeCount() {
+        return mKeyframeCount;
+    }
+
+    /**
+     * @return the estimated number of bytes used by the retained generations. Keyframes may
+     * also be referenced elsewhere, for example while they are displayed.
+     */
+    public long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    /**
+     * @param generation the generation to reconstruct
+     * @return a snapshot of generation with the epoch of the snapshot it was reconstructed from,
+     * or null if generation is not retained. Reconstructed snapshots do not record births and
+     * deaths.
+     */
+    public LifeSnapshot getSnapshot(long generation) {
+        if (!contains(generation)) {
+            return null;
+        }
+        final LifeSnapshot keyframe = entry(generation).mKeyframe;
+        if (null != keyframe) {
+            mCursor = keyframe;
+            return keyframe;
+        }
+        if (null != mCursor && mCursor.getGeneration() == generation) {
+            return mCursor;
+        }
+
+        // Choose the retained snapshot separated from generation by the fewest changes
+        long keyframeBefore = generation;
+        while (keyframeBefore >= mOldestGeneration && null == entry(keyframeBefore).mKeyframe) {
+            keyframeBefore -= 1;
+        }
+        long keyframeAfter = generation;
+        while (keyframeAfter <= getNewestGeneration() &&
+                null == entry(keyframeAfter).mKeyframe) {
+            keyframeAfter += 1;
+        }
+        LifeSnapshot base = null;
+        long baseCost = Long.MAX_VALUE;
+        if (keyframeBefore >= mOldestGeneration) {
+            base = entry(keyframeBefore).mKeyframe;
+            baseCost = changesBetween(keyframeBefore, generation);
+        }
+        if (keyframeAfter <= getNewestGeneration() &&
+                changesBetween(generation, keyframeAfter) < baseCost) {
+            base = entry(keyframeAfter).mKeyframe;
+            baseCost = changesBetween(generation, keyframeAfter);
+        }
+        if (null != mCursor && contains(mCursor.getGeneration()) &&
+                changesBetween(Math.min(generation, mCursor.getGeneration()),
+                        Math.max(generation, mCursor.getGeneration())) < baseCost) {
+            base = mCursor;
+        }
+
+        mCursor = reconstruct(base, generation);
+        return mCursor;
+    }
+
+    /**
+     * @return the number of births and deaths recorded for the generations after from up to and
+     * including to
+     */
+    private long changesBetween(long from, long to) {
+        long result = 0;
+        for (long g = from + 1; g <= to; g++) {
+            final Entry entry = entry(g);
+            result += entry.mBirths.length + entry.mDeaths.length;
+        }
+        return result;
+    }
+
+    private LifeSnapshot reconstruct(LifeSnapshot base, long generation) {
+        final NetChanges changes = new NetChanges();
+        for (long g = base.getGeneration() + 1; g <= generation; g++) {
+            changes.apply(entry(g).mBirths, entry(g).mDeaths);
+        }
+        for (long g = base.getGeneration(); g > generation; g--) {
+            changes.apply(entry(g).mDeaths, entry(g).mBirths);
+        }
+        return LifeSnapshot.ofSortedCells(changes.merge(base.cells()), generation,
+                base.getEpoch(), base.getRule());
+    }
+
+    private Entry entry(long generation) {
+        return mEntries[(int) ((mFirst + generation - mOldestGeneration) % mEntries.length)];
+    }
+
+    private void grow() {
+        final Entry[] entries = new Entry[mEntries.length * 2];
+        for (int i = 0; i < mCount; i++) {
+            entries[i] = mEntries[(mFirst + i) % mEntries.length];
+        }
+        mEntries = entries;
+        mFirst = 0;
+    }
+
+    private void evict() {
+        while (mMemoryBytes > mMemoryLimitBytes && 1 < mCount) {
+            final Entry oldest = mEntries[mFirst];
+            if (null != oldest.mKeyframe) {
+                if (1 == mKeyframeCount) {
+                    // Every retained generation is reconstructed from the last keyframe
+                    return;
+                }
+                mKeyframeCount -= 1;
+            }
+            mMemoryBytes -= oldest.mBytes;
+            mEntries[mFirst] = null;
+            mFirst = (mFirst + 1) % mEntries.length;
+            mCount -= 1;
+            mOldestGeneration += 1;
+        }
+        if (null != mCursor && mCursor.getGeneration() < mOldestGeneration) {
+            mCursor = null;
+        }
+    }
+
+    /**
+     * Each instance is one retained generation: the births and deaths since the previous
+     * generation and, for keyframes, the whole snapshot.
+     */
+    private static class Entry {
+        final long[] mBirths;
+        final long[] mDeaths;
+        final LifeSnapshot mKeyframe;
+        final long mBytes;
+
+        Entry(long[] births, long[] deaths, LifeSnapshot keyframe) {
+            mBirths = births;
+            mDeaths = deaths;
+            mKeyframe = keyframe;
+            long bytes = entryOverheadBytes + 8L * (births.length + deaths.length);
+            if (null != keyframe) {
+                bytes += 8L * keyframe.getPopulation() + bytesPerTile * keyframe.getTileCount();
+            }
+            mBytes = bytes;
+        }
+    }
+
+    /**
+     * Each instance accumulates the cells added and removed by a sequence of births and deaths
+     * so that they can be applied to a snapshot at once.
+     */
+    private static class NetChanges {
+        final LongCellSet mAdded = new LongCellSet();
+        final LongCellSet mRemoved = new LongCellSet();
+
+        void apply(long[] additions, long[] removals) {
+            for (long cell : removals) {
+                if (!mAdded.remove(cell)) {
+                    mRemoved.add(cell);
+                }
+            }
+            for (long cell : additions) {
+                if (!mRemoved.remove(cell)) {
+                    mAdded.add(cell);
+                }
+            }
+        }
+
+        /**
+         * @param cells tile order keys in increasing order
+         * @return a new array of the keys in cells without the removed keys and with the added
+         * keys, in increasing order
+         */
+        long[] merge(long[] cells) {
+            final long[] added = sortedKeys(mAdded);
+            final long[] removed = sortedKeys(mRemoved);
+            final long[] result = new long[cells.length + added.length - removed.length];
+            int count = 0;
+            int a = 0;
+            int r = 0;
+            for (long cell : cells) {
+                while (a < added.length && added[a] < cell) {
+                    result[count++] = added[a++];
+                }
+                while (r < removed.length && removed[r] < cell) {
+                    r++;
+                }
+                if (r < removed.length && removed[r] == cell) {
+                    r++;
+                } else {
+                    result[count++] = cell;
+                }
+            }
+            while (a < added.length) {
+                result[count++] = added[a++];
+            }
+            return result;
+        }
+
+        private static long[] sortedKeys(LongCellSet set) {
+            final long[] result = new long[set.size()];
+            int count = 0;
+            for (int slot = 0; slot < set.slotCount(); slot++) {
+                if (set.isSlotOccupied(slot)) {
+                    result[count++] = set.slotKey(slot);
+                }
+            }
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
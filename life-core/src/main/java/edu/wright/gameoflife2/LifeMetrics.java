@@ -0,0 +1,335 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class records how long each generation takes to compute and draw along with what the
+ * generation did: its births, deaths, population, bounding box, and the number of positions the
+ * engine evaluated (see LifeEngine.getEvaluatedCellCount()). The newest capacity generations
+ * and the newest capacity frames are kept in ring buffers that are allocated once when the
+ * instance is constructed, so durations can be summarized as rolling percentiles.
+ * <p/>
+ * Neither recording nor querying allocates memory, so metrics can stay enabled in production
+ * builds. Percentiles are found with a selection algorithm in a preallocated scratch array
+ * instead of by sorting a copy of the samples.
+ * <p/>
+ * A Tracer can be set to mark the sections of work being measured in a platform trace, for
+ * example with android.os.Trace so that generations and frames appear in system traces.
+ * <p/>
+ * Generations are usually recorded by the simulation thread and frames by the user interface
+ * thread, so every method is synchronized. The lock is held only for a few array accesses
+ * (or a linear time selection for percentiles), and uncontended locks do not allocate.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class LifeMetrics {
+    public static final int defaultCapacity = 256;
+    /** The name of the trace section around computing one generation */
+    public static final String updateSection = "GameOfLife update";
+    /** The name of the trace section around drawing one frame */
+    public static final String drawSection = "GameOfLife draw";
+    private static final long nanosPerSecond = 1000000000L;
+
+    /**
+     * This interface is implemented by objects that forward the sections measured by LifeMetrics
+     * to a platform trace. Sections are properly nested on each thread.
+     */
+    public interface Tracer {
+        /**
+         * Called when a section of measured work begins on the calling thread.
+         *
+         * @param name one of the section name constants such as updateSection
+         */
+        void beginSection(String name);
+
+        /**
+         * Called when the most recently begun section on the calling thread ends.
+         */
+        void endSection();
+    }
+
+    /**
+     * This interface is implemented by objects that visit recorded generations without requiring
+     * an object per generation. See forEachGeneration().
+     */
+    public interface GenerationVisitor {
+        /**
+         * Called once for each retained generation from the oldest to the newest.
+         *
+         * @param generation         the generation counter after the generation was computed
+         * @param updateNanos        the time spent computing the generation in nanoseconds
+         * @param births             the number of cells born or -1 if unknown
+         * @param deaths             the number of cells that died or -1 if unknown
+         * @param population         the number of cells
+         * @param evaluatedCellCount the number of positions the engine evaluated
+         * @param bounds             the smallest x, smallest y, largest x, and largest y
+         *                           coordinates of any cell, or null if there are no cells. The
+         *                           array is reused for every visit and must not be modified.
+         */
+        void visit(long generation, long updateNanos, int births, int deaths, int population,
+                   long evaluatedCellCount, int bounds[]);
+    }
+
+    private final int mCapacity;
+    // Generation samples: sample n is stored at index n % mCapacity (4 ints per sample in
+    // mBounds)
+    private final long[] mGenerations;
+    private final long[] mUpdateNanos;
+    private final long[] mFinishNanos;
+    private final long[] mEvaluatedCellCounts;
+    private final int[] mBirths;
+    private final int[] mDeaths;
+    private final int[] mPopulations;
+    private final int[] mBounds;
+    private long mGenerationSampleCount;
+    // Frame samples: sample n is stored at index n % mCapacity
+    private final long[] mFrameNanos;
+    private long mFrameSampleCount;
+    private final long[] mScratch;
+    private final int[] mVisitedBounds = new int[4];
+    private volatile Tracer mTracer;
+
+    /**
+     * Constructs metrics that retain the newest defaultCapacity generations and frames.
+     */
+    public LifeMetrics() {
+        this(defaultCapacity);
+    }
+
+    /**
+     * @param capacity the number of generations and the number of frames retained ( >= 1)
+     */
+    public LifeMetrics(int capacity) {
+        if (1 > capacity) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        mCapacity = capacity;
+        mGenerations = new long[capacity];
+        mUpdateNanos = new long[capacity];
+        mFinishNanos = new long[capacity];
+        mEvaluatedCellCounts = new long[capacity];
+        mBirths = new int[capacity];
+        mDeaths = new int[capacity];
+        mPopulations = new int[capacity];
+        mBounds = new int[capacity * 4];
+        mFrameNanos = new long[capacity];
+        mScratch = new long[capacity];
+    }
+
+    /**
+     * @param tracer informed of the sections of measured work from now on (can be null)
+     */
+    public void setTracer(Tracer tracer) {
+        mTracer = tracer;
+    }
+
+    /**
+     * Begins a trace section if there is a Tracer. Every call must be followed by a call to
+     * endSection() on the same thread.
+     *
+     * @param name one of the section name constants such as updateSection
+     */
+    public void beginSection(String name) {
+        final Tracer tracer = mTracer;
+        if (null != tracer) {
+            tracer.beginSection(name);
+        }
+    }
+
+    /**
+     * Ends the trace section most recently begun on the calling thread.
+     */
+    public void endSection() {
+        final Tracer tracer = mTracer;
+        if (null != tracer) {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Records a computed generation.
+     *
+     * @param snapshot           a snapshot of the generation (cannot be null). Births and deaths
+     *                           are known if the snapshot recorded them.
+     * @param updateNanos        the time spent computing the generation in nanoseconds
+     * @param evaluatedCellCount the number of positions the engine evaluated
+     */
+    public void recordGeneration(LifeSnapshot snapshot, long updateNanos,
+                                 long evaluatedCellCount) {
+        final long births[] = snapshot.births();
+        final long deaths[] = snapshot.deaths();
+        synchronized (this) {
+            final int index = (int) (mGenerationSampleCount % mCapacity);
+            mGenerations[index] = snapshot.getGeneration();
+            mUpdateNanos[index] = updateNanos;
+            mFinishNanos[index] = System.nanoTime();
+            mEvaluatedCellCounts[index] = evaluatedCellCount;
+            mBirths[index] = (null == births) ? -1 : births.length;
+            mDeaths[index] = (null == deaths) ? -1 : deaths.length;
+            mPopulations[index] = snapshot.getPopulation();
+            if (!snapshot.getBounds(mVisitedBounds)) {
+                // Empty bounds: left > right
+                mVisitedBounds[0] = 0;
+                mVisitedBounds[2] = -1;
+            }
+            System.arraycopy(mVisitedBounds, 0, mBounds, index * 4, 4);
+            mGenerationSampleCount += 1;
+        }
+    }
+
+    /**
+     * Records a drawn frame.
+     *
+     * @param drawNanos the time spent drawing the frame in nanoseconds
+     */
+    public synchronized void recordFrame(long drawNanos) {
+        mFrameNanos[(int) (mFrameSampleCount % mCapacity)] = drawNanos;
+        mFrameSampleCount += 1;
+    }
+
+    /**
+     * Forgets every recorded generation and frame.
+     */
+    public synchronized void clear() {
+        mGenerationSampleCount = 0;
+        mFrameSampleCount = 0;
+    }
+
+    /**
+     * @return the number of generations recorded since construction or clear(), including
+     * those no longer retained
+     */
+    public synchronized long getGenerationSampleCount() {
+        return mGenerationSampleCount;
+    }
+
+    /**
+     * @return the number of frames recorded since construction or clear(), including those no
+     * longer retained
+     */
+    public synchronized long getFrameSampleCount() {
+        return mFrameSampleCount;
+    }
+
+    /**
+     * @param fraction the fraction of retained samples at or below the result ( >= 0 and <= 1),
+     *                 for example 0.5 for the median or 0.95 for the 95th percentile
+     * @return the nearest rank percentile of the time spent computing each retained generation
+     * in nanoseconds or 0 if no generation has been recorded
+     */
+    public synchronized long getUpdateNanos(double fraction) {
+        return percentile(mUpdateNanos, mGenerationSampleCount, fraction);
+    }
+
+    /**
+     * @param fraction the fraction of retained samples at or below the result ( >= 0 and <= 1)
+     * @return the nearest rank percentile of the time spent drawing each retained frame in
+     * nanoseconds or 0 if no frame has been recorded
+     */
+    public synchronized long getFrameNanos(double fraction) {
+        return percentile(mFrameNanos, mFrameSampleCount, fraction);
+    }
+
+    /**
+     * @return the rate at which the retained generations were completed, or 0 if fewer than two
+     * generations are retained. When generations are computed only as fast as they are
+     * displayed, this is the displayed generations per second.
+     */
+    public synchronized double getGenerationsPerSecond() {
+        final int count = (int) Math.min(mGenerationSampleCount, mCapacity);
+        if (2 > count) {
+            return 0;
+        }
+        final long newest = mFinishNanos[(int) ((mGenerationSampleCount - 1) % mCapacity)];
+        final long oldest = mFinishNanos[(int) ((mGenerationSampleCount - count) % mCapacity)];
+        final long elapsed = Math.max(1, newest - oldest);
+        return (count - 1) * (double) nanosPerSecond / elapsed;
+    }
+
+    /**
+     * Calls visitor.visit() once for each retained generation from the oldest to the newest.
+     * The metrics must not be used by visitor.
+     *
+     * @param visitor the object to be informed of each generation (cannot be null)
+     */
+    public synchronized void forEachGeneration(GenerationVisitor visitor) {
+        final int count = (int) Math.min(mGenerationSampleCount, mCapacity);
+        for (long n = mGenerationSampleCount - count; n < mGenerationSampleCount; n++) {
+            final int index = (int) (n % mCapacity);
+            System.arraycopy(mBounds, index * 4, mVisitedBounds, 0, 4);
+            visitor.visit(mGenerations[index], mUpdateNanos[index], mBirths[index],
+                    mDeaths[index], mPopulations[index], mEvaluatedCellCounts[index],
+                    (mVisitedBounds[0] > mVisitedBounds[2]) ? null : mVisitedBounds);
+        }
+    }
+
+    /**
+     * @return the population of the newest recorded generation or 0 if there is none
+     */
+    public synchronized int getPopulation() {
+        return (0 == mGenerationSampleCount) ? 0 :
+                mPopulations[(int) ((mGenerationSampleCount - 1) % mCapacity)];
+    }
+
+    /**
+     * @return the number of positions evaluated for the newest recorded generation or 0 if there
+     * is none
+     */
+    public synchronized long getEvaluatedCellCount() {
+        return (0 == mGenerationSampleCount) ? 0 :
+                mEvaluatedCellCounts[(int) ((mGenerationSampleCount - 1) % mCapacity)];
+    }
+
+    /**
+     * @return the nearest rank percentile of the first min(sampleCount, mCapacity) samples
+     */
+    private long percentile(long samples[], long sampleCount, double fraction) {
+        if (0 > fraction || 1 < fraction) {
+            throw new IllegalArgumentException("fraction must be >= 0 and <= 1");
+        }
+        final int count = (int) Math.min(sampleCount, mCapacity);
+        if (0 == count) {
+            return 0;
+        }
+        System.arraycopy(samples, 0, mScratch, 0, count);
+        final int rank = Math.max(0, (int) Math.ceil(fraction * count) - 1);
+        return select(mScratch, count, rank);
+    }
+
+    /**
+     * Finds the element that would be at index rank if the first count elements of values were
+     * sorted. This is Hoare's quickselect: see https://en.wikipedia.org/wiki/Quickselect
+     * The elements are reordered in place.
+     */
+    private static long select(long values[], int count, int rank) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            final long pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final long swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (rank <= j) {
+                high = j;
+            } else if (rank >= i) {
+                low = i;
+            } else {
+                break;
+            }
+        }
+        return values[rank];
+    }
+}
@@ -0,0 +1,344 @@
+package edu.wright.gameoflife2;
+
+/**
+ * Each instance of this class is an immutable outer totalistic Life-like rule: whether a cell
+ * is populated in the next generation depends only on whether it is populated now and on how
+ * many of its eight neighbors are populated. Rules are written in B/S notation, for example
+ * "B3/S23" for Conway's Game of Life, "B36/S23" for HighLife, or "B3678/S34678" for Day &amp;
+ * Night. See https://conwaylife.com/wiki/Rulestring
+ * <p/>
+ * A rule is compiled once, when it is parsed, into the forms the engines evaluate without
+ * testing the rule's neighbor counts while computing a generation:
+ * <ul>
+ * <li>a bit mask indexed by (2 * neighbors) + alive for engines that count neighbors per
+ * position (see getNextStates()),</li>
+ * <li>a bitwise formula that computes the next state of 64 cells at once from the bit planes of
+ * their neighbor counts (see nextRow()): hand written for B3/S23 and otherwise a multiplexer
+ * whose constant leaves encode the rule, and</li>
+ * <li>on first use, a table of the next state of the center of every 4x4 block of cells (see
+ * getCenterOfBlock()).</li>
+ * </ul>
+ * Rules in which cells are born with no neighbors (B0) are not supported because they would
+ * populate the whole infinite universe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class LifeRule {
+    /** The number of possible neighbor counts: 0 through 8 */
+    public static final int neighborCountLimit = 9;
+    /** Conway's Game of Life, B3/S23 */
+    public static final LifeRule conway;
+    private static final int conwayBirths = 1 << 3;
+    private static final int conwaySurvivals = (1 << 2) | (1 << 3);
+
+    static {
+        conway = new LifeRule(conwayBirths, conwaySurvivals);
+    }
+
+    // Bit n is set if cells with n neighbors are born or survive respectively
+    private final int mBirths;
+    private final int mSurvivals;
+    // Bit (2 * neighbors) + alive is set if such a cell is populated in the next generation
+    private final int mNextStates;
+    // Computes the next state of 64 cells at once. See nextRow().
+    private final RowEvaluator mRowEvaluator;
+    private volatile byte[] mCenterOfBlock;
+
+    private LifeRule(int births, int survivals) {
+        mBirths = births;
+        mSurvivals = survivals;
+        int nextStates = 0;
+        for (int n = 0; n < neighborCountLimit; n++) {
+            if (0 != (births & (1 << n))) {
+                nextStates |= 1 << (2 * n);
+            }
+            if (0 != (survivals & (1 << n))) {
+                nextStates |= 1 << (2 * n + 1);
+            }
+        }
+        mNextStates = nextStates;
+        mRowEvaluator = (conwayBirths == births && conwaySurvivals == survivals) ?
+                new ConwayRowEvaluator() : new MultiplexerRowEvaluator(births, survivals);
+    }
+
+    /**
+     * @param births    bit n is set if an unpopulated position with n neighbors becomes populated
+     *                  (bit 0 must not be set, and only bits 0 through 8 may be set)
+     * @param survivals bit n is set if a cell with n neighbors survives (only bits 0 through 8
+     *                  may be set)
+     * @return the rule with the specified births and survivals
+     */
+    public static LifeRule of(int births, int survivals) {
+        final int limit = (1 << neighborCountLimit) - 1;
+        if (0 != (births & ~limit) || 0 != (survivals & ~limit)) {
+            throw new IllegalArgumentException("neighbor counts must be 0 through 8");
+        }
+        if (0 != (births & 1)) {
+            throw new IllegalArgumentException("B0 rules are not supported");
+        }
+        if (conwayBirths == births && conwaySurvivals == survivals) {
+            return conway;
+        }
+        return new LifeRule(births, survivals);
+    }
+
+    /**
+     * Parses a rule in B/S notation such as "B3/S23". Letters may be upper or lower case, the
+     * parts may be in either order, and the older S/B notation without letters such as "23/3"
+     * (survivals first) is also accepted.
+     *
+     * @param rule the rule string (cannot be null)
+     * @return the rule
+     * @throws IllegalArgumentException if rule is not a valid rule string or is a B0 rule
+     */
+    public static LifeRule parse(String rule) {
+        final String trimmed = rule.trim();
+        final int slash = trimmed.indexOf('/');
+        if (0 > slash || slash != trimmed.lastIndexOf('/')) {
+            throw new IllegalArgumentException("expected a rule such as B3/S23: " + rule);
+        }
+        final String first = trimmed.substring(0, slash).trim();
+        final String second = trimmed.substring(slash + 1).trim();
+        int births;
+        int survivals;
+        if (startsWith(first, 'B') && startsWith(second, 'S')) {
+            births = counts(first.substring(1), rule);
+            survivals = counts(second.substring(1), rule);
+        } else if (startsWith(first, 'S') && startsWith(second, 'B')) {
+            survivals = counts(first.substring(1), rule);
+            births = counts(second.substring(1), rule);
+        } else {
+            survivals = counts(first, rule);
+            births = counts(second, rule);
+        }
+        return of(births, survivals);
+    }
+
+    private static boolean startsWith(String part, char letter) {
+        return !part.isEmpty() && Character.toUpperCase(part.charAt(0)) == letter;
+    }
+
+    private static int counts(String digits, String rule) {
+        int result = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            final int n = digits.charAt(i) - '0';
+            if (0 > n || neighborCountLimit <= n) {
+                throw new IllegalArgumentException("invalid neighbor count in rule " + rule);
+            }
+            result |= 1 << n;
+        }
+        return result;
+    }
+
+    /**
+     * @return bit n is set if an unpopulated position with n neighbors becomes populated
+     */
+    public int getBirths() {
+        return mBirths;
+    }
+
+    /**
+     * @return bit n is set if a cell with n neighbors survives
+     */
+    public int getSurvivals() {
+        return mSurvivals;
+    }
+
+    /**
+     * @return a mask in which bit (2 * neighbors) + alive is set if and only if a position with
+     * that many neighbors that is (1) or is not (0) populated is populated in the next generation
+     */
+    int getNextStates() {
+        return mNextStates;
+    }
+
+    /**
+     * Computes the next state of 64 cells at once from the bit planes of their neighbor counts.
+     *
+     * @param alive  bit i is set if cell i is populated
+     * @param ones   bit i is bit 0 of the neighbor count of cell i
+     * @param twos   bit i is bit 1 of the neighbor count of cell i
+     * @param fours  bit i is bit 2 of the neighbor count of cell i
+     * @param eights bit i is set if cell i has eight neighbors, in which case its bits in ones,
+     *               twos, and fours are clear
+     * @return bit i is set if cell i is populated in the next generation
+     */
+    long nextRow(long alive, long ones, long twos, long fours, long eights) {
+        return mRowEvaluator.nextRow(alive, ones, twos, fours, eights);
+    }
+
+    /**
+     * @return for each 4x4 block of cells encoded as 16 bits (bit r * 4 + c is the cell at row r
+     * and column c), the bits of the 2x2 center of the block one generation later (bit r * 2 + c
+     * is the cell at row r + 1 and column c + 1). The table is computed on first use and must
+     * not be modified.
+     */
+    byte[] getCenterOfBlock() {
+        byte[] result = mCenterOfBlock;
+        if (null == result) {
+            result = new byte[1 << 16];
+            for (int block = 0; block < result.length; block++) {
+                int bits = 0;
+                for (int r = 1; r <= 2; r++) {
+                    for (int c = 1; c <= 2; c++) {
+                        int count = 0;
+                        for (int dr = -1; dr <= 1; dr++) {
+                            for (int dc = -1; dc <= 1; dc++) {
+                                if ((0 != dr || 0 != dc) &&
+                                        0 != (block & (1 << ((r + dr) * 4 + c + dc)))) {
+                                    count += 1;
+                                }
+                            }
+                        }
+                        final int isAlive = (block >>> (r * 4 + c)) & 1;
+                        if (0 != ((mNextStates >>> (2 * count + isAlive)) & 1)) {
+                            bits |= 1 << ((r - 1) * 2 + (c - 1));
+                        }
+                    }
+                }
+                result[block] = (byte) bits;
+            }
+            // Racing threads compute identical tables, so either may be kept
+            mCenterOfBlock = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the rule in B/S notation, for example "B3/S23"
+     */
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder("B");
+        for (int n = 0; n < neighborCountLimit; n++) {
+            if (0 != (mBirths & (1 << n))) {
+                result.append(n);
+            }
+        }
+        result.append("/S");
+        for (int n = 0; n < neighborCountLimit; n++) {
+            if (0 != (mSurvivals & (1 << n))) {
+                result.append(n);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return Returns a hash code value for the object.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * mBirths + mSurvivals;
+    }
+
+    /**
+     * @param other the object to compare to the receiver.
+     * @return true if and only if other is a LifeRule with the same births and survivals
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LifeRule && mBirths == ((LifeRule) other).mBirths &&
+                mSurvivals == ((LifeRule) other).mSurvivals;
+    }
+
+    /**
+     * This class implements the Strategy Pattern. See https://en.wikipedia.org/wiki/Strategy_pattern
+     * Each rule chooses one evaluator when it is constructed, so the bitwise formula applied to
+     * every row of a generation never depends on a test of the rule's neighbor counts.
+     */
+    private abstract static class RowEvaluator {
+        /**
+         * See LifeRule.nextRow()
+         */
+        abstract long nextRow(long alive, long ones, long twos, long fours, long eights);
+    }
+
+    /**
+     * The formula for B3/S23: a cell is populated with three neighbors or when alive with two
+     * neighbors. Eight neighbors sets neither ones nor twos, so it needs no separate test.
+     */
+    private static final class ConwayRowEvaluator extends RowEvaluator {
+        @Override
+        long nextRow(long alive, long ones, long twos, long fours, long eights) {
+            return twos & ~fours & (ones | alive);
+        }
+    }
+
+    /**
+     * The formula for any other rule: each neighbor count selects its result through a
+     * multiplexer tree whose leaves are words with all bits set or clear as the rule requires,
+     * so every rule costs the same fixed sequence of bitwise operations.
+     */
+    private static final class MultiplexerRowEvaluator extends RowEvaluator {
+        // For each of births and survivals: the leaf for an even count and the exclusive or of
+        // that leaf with the leaf for the next odd count, and the exclusive or of the leaves for
+        // zero and eight neighbors
+        final long mBirth0;
+        final long mBirth01;
+        final long mBirth2;
+        final long mBirth23;
+        final long mBirth4;
+        final long mBirth45;
+        final long mBirth6;
+        final long mBirth67;
+        final long mBirth08;
+        final long mSurvival0;
+        final long mSurvival01;
+        final long mSurvival2;
+        final long mSurvival23;
+        final long mSurvival4;
+        final long mSurvival45;
+        final long mSurvival6;
+        final long mSurvival67;
+        final long mSurvival08;
+
+        MultiplexerRowEvaluator(int births, int survivals) {
+            mBirth0 = word(births, 0);
+            mBirth01 = word(births, 0) ^ word(births, 1);
+            mBirth2 = word(births, 2);
+            mBirth23 = word(births, 2) ^ word(births, 3);
+            mBirth4 = word(births, 4);
+            mBirth45 = word(births, 4) ^ word(births, 5);
+            mBirth6 = word(births, 6);
+            mBirth67 = word(births, 6) ^ word(births, 7);
+            mBirth08 = word(births, 0) ^ word(births, 8);
+            mSurvival0 = word(survivals, 0);
+            mSurvival01 = word(survivals, 0) ^ word(survivals, 1);
+            mSurvival2 = word(survivals, 2);
+            mSurvival23 = word(survivals, 2) ^ word(survivals, 3);
+            mSurvival4 = word(survivals, 4);
+            mSurvival45 = word(survivals, 4) ^ word(survivals, 5);
+            mSurvival6 = word(survivals, 6);
+            mSurvival67 = word(survivals, 6) ^ word(survivals, 7);
+            mSurvival08 = word(survivals, 0) ^ word(survivals, 8);
+        }
+
+        /**
+         * @return a word with every bit set if bit n of counts is set and no bits set otherwise
+         */
+        private static long word(int counts, int n) {
+            return -(long) ((counts >>> n) & 1);
+        }
+
+        @Override
+        long nextRow(long alive, long ones, long twos, long fours, long eights) {
+            final long b01 = mBirth0 ^ (mBirth01 & ones);
+            final long b23 = mBirth2 ^ (mBirth23 & ones);
+            final long b45 = mBirth4 ^ (mBirth45 & ones);
+            final long b67 = mBirth6 ^ (mBirth67 & ones);
+            final long b03 = b01 ^ ((b01 ^ b23) & twos);
+            final long b47 = b45 ^ ((b45 ^ b67) & twos);
+            final long births = b03 ^ ((b03 ^ b47) & fours) ^ (mBirth08 & eights);
+            final long s01 = mSurvival0 ^ (mSurvival01 & ones);
+            final long s23 = mSurvival2 ^ (mSurvival23 & ones);
+            final long s45 = mSurvival4 ^ (mSurvival45 & ones);
+            final long s67 = mSurvival6 ^ (mSurvival67 & ones);
+            final long s03 = s01 ^ ((s01 ^ s23) & twos);
+            final long s47 = s45 ^ ((s45 ^ s67) & twos);
+            final long survivals = s03 ^ ((s03 ^ s47) & fours) ^ (mSurvival08 & eights);
+            return births ^ ((births ^ survivals) & alive);
+        }
+    }
+}
@@ -0,0 +1,607 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class runs a LifeEngine on a dedicated simulation thread and hands immutable
+ * LifeSnapshot instances to the user interface thread.
+ * <p/>
+ * The engine is owned by the simulation thread: after setModel() the engine must not be used by
+ * any other thread. The simulation thread computes up to lookahead generations ahead of the
+ * displayed generation and queues a snapshot of each. Each call to advance() moves the next
+ * queued snapshot to the displayed snapshot, so playback stays smooth when the cost of single
+ * generations varies, and generation cost never blocks the user interface thread. Engines that
+ * replace the simulated engine for setEngineType() and setRule() are also created on the
+ * simulation thread, while the displayed cells stay on screen.
+ * <p/>
+ * getSnapshot() is lock-free and never waits for the simulation: it returns the newest complete
+ * snapshot published through an AtomicReference. The queue of future snapshots is also
+ * lock-free.
+ * <p/>
+ * Displayed generations are recorded in a LifeHistory. showGeneration() displays any retained
+ * generation without disturbing the engine. While an earlier generation is displayed, advance()
+ * replays the following generations from the history instead of simulating them, and the
+ * generations computed ahead are used again once the newest retained generation is reached.
+ * <p/>
+ * Displayed generations are also checked for cycles with a CycleDetector. Once the universe is
+ * found to repeat an earlier generation, no more generations are computed: advance() repeats the
+ * generations of the cycle instead, or does nothing at all if the universe stopped changing.
+ * getCyclePeriod() and getCycleStartGeneration() describe the detected cycle.
+ * <p/>
+ * The duration, births, deaths, population, bounds, and evaluated cells of every computed
+ * generation are recorded in the LifeMetrics returned by getMetrics(), and each computation is
+ * a LifeMetrics.updateSection trace section.
+ * <p/>
+ * Tiled engines can keep the tiles that stop changing out of the heap (see setTileStorage()),
+ * which lets long runs that leave debris behind continue without running out of memory. Tiles
+ * in or near the area passed to setResidentArea(), such as the displayed area, are never set
+ * aside. Tiled engines compute each generation on as many threads as there are processors
+ * unless setParallelism() says otherwise. The threads and TileStore of an engine are released
+ * when the engine is replaced or when release() is called.
+ * <p/>
+ * setModel(), setEngineType(), setRule(), setTileStorage(), setParallelism(), release(),
+ * showGeneration(), advance(), getHistory(), and the cycle accessors must all be called from one
+ * thread (the user interface thread). getSnapshot(), getMetrics(), and setResidentArea() can be
+ * called from any thread.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class LifeSimulation {
+    public static final int defaultLookahead = 4;
+    private static final long idleThreadTimeoutSeconds = 10;
+
+    private volatile int mLookahead;
+    private final AtomicReference<LifeSnapshot> mSnapshot = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<LifeSnapshot> mFutureSnapshots =
+            new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mFutureSnapshotCount = new AtomicInteger();
+    private final AtomicBoolean mIsFillPending = new AtomicBoolean();
+    private final Runnable mFillCommand = new FillCommand();
+    private final LifeHistory mHistory;
+    private final LifeMetrics mMetrics = new LifeMetrics();
+    private final CycleDetector mCycleDetector = new CycleDetector();
+    // The generations after mCycleStartGeneration up to the first repeated generation or null
+    private LifeSnapshot[] mCycle;
+    private long mCycleStartGeneration;
+    private volatile int mEpoch;
+    private LifeEngineType mEngineType;
+    // A negative budget means tiled engines do not store tiles
+    private long mTileMemoryBudgetBytes = -1;
+    private File mTileSpillDirectory;
+    private int mParallelism = Runtime.getRuntime().availableProcessors();
+    private final AtomicReference<int[]> mResidentArea = new AtomicReference<>();
+    // At most one simulation thread exists at a time. It runs commands in order and exits after
+    // being idle for idleThreadTimeoutSeconds, so an idle simulation holds no thread.
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(0, 1,
+            idleThreadTimeoutSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new SimulationThreadFactory());
+
+    // These are only accessed from the simulation thread
+    private LifeEngine mEngine;
+    private int mEngineEpoch;
+    private LifeSnapshot mEngineSnapshot;
+    private int[] mEngineResidentArea;
+
+    /**
+     * Constructs a simulation with no model that computes up to defaultLookahead generations
+     * ahead.
+     */
+    public LifeSimulation() {
+        this(defaultLookahead, new LifeHistory());
+    }
+
+    /**
+     * Constructs a simulation with no model and a LifeHistory with default limits.
+     *
+     * @param lookahead the maximum number of generations computed ahead of the displayed
+     *                  generation ( >= 1)
+     */
+    public LifeSimulation(int lookahead) {
+        this(lookahead, new LifeHistory());
+    }
+
+    /**
+     * Constructs a simulation with no model.
+     *
+     * @param lookahead the maximum number of generations computed ahead of the displayed
+     *                  generation ( >= 1)
+     * @param history   records the displayed generations (cannot be null)
+     */
+    public LifeSimulation(int lookahead, LifeHistory history) {
+        if (1 > lookahead) {
+            throw new IllegalArgumentException("lookahead must be >= 1");
+        }
+        mLookahead = lookahead;
+        mHistory = history;
+    }
+
+    /**
+     * Changes the number of generations computed ahead of the displayed generation. Displaying
+     * many generations per frame needs a deeper lookahead so that the simulation thread can keep
+     * computing while generations are displayed.
+     *
+     * @param lookahead the maximum number of generations computed ahead of the displayed
+     *                  generation ( >= 1)
+     */
+    public void setLookahead(int lookahead) {
+        if (1 > lookahead) {
+            throw new IllegalArgumentException("lookahead must be >= 1");
+        }
+        if (lookahead > mLookahead && null == mCycle) {
+            mLookahead = lookahead;
+            requestFill();
+        } else {
+            mLookahead = lookahead;
+        }
+    }
+
+    /**
+     * @return the maximum number of generations computed ahead of the displayed generation
+     */
+    public int getLookahead() {
+        return mLookahead;
+    }
+
+    /**
+     * @return the newest complete snapshot or null if there is no model. This method never
+     * waits for the simulation thread.
+     */
+    public LifeSnapshot getSnapshot() {
+        return mSnapshot.get();
+    }
+
+    /**
+     * @return the metrics of the generations computed by the simulation thread
+     */
+    public LifeMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * @return the type of the current model or null if there is no model or the type is unknown
+     */
+    public LifeEngineType getEngineType() {
+        return mEngineType;
+    }
+
+    /**
+     * @return the record of displayed generations. It must only be used from the thread that
+     * calls advance().
+     */
+    public LifeHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Makes every TiledGameOfLifeModel simulated from the next call to setModel(),
+     * setEngineType(), or setRule() on store its quiescent tiles in a new TileStore. See
+     * TiledGameOfLifeModel.setTileStore().
+     *
+     * @param memoryBudgetBytes the memory budget of each TileStore or a negative number to keep
+     *                          every tile on the heap
+     * @param spillDirectory    the spill directory of each TileStore or null
+     */
+    public void setTileStorage(long memoryBudgetBytes, File spillDirectory) {
+        mTileMemoryBudgetBytes = memoryBudgetBytes;
+        mTileSpillDirectory = spillDirectory;
+    }
+
+    /**
+     * Sets the number of threads each TiledGameOfLifeModel simulated from the next call to
+     * setModel(), setEngineType(), or setRule() on uses to compute generations. See
+     * TiledGameOfLifeModel.setParallelism().
+     *
+     * @param parallelism the number of threads ( >= 1). The default is
+     *                    Runtime.availableProcessors().
+     */
+    public void setParallelism(int parallelism) {
+        if (1 > parallelism) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        mParallelism = parallelism;
+    }
+
+    /**
+     * @return the number of threads tiled engines use to compute generations
+     */
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * Keeps the tiles in and near a rectangle on the heap from the next computed generation on.
+     * See TiledGameOfLifeModel.setResidentArea().
+     *
+     * @param left   the smallest x coordinate in the rectangle
+     * @param top    the smallest y coordinate in the rectangle
+     * @param right  the largest x coordinate in the rectangle ( >= left)
+     * @param bottom the largest y coordinate in the rectangle ( >= top)
+     */
+    public void setResidentArea(int left, int top, int right, int bottom) {
+        mResidentArea.set(new int[]{left, top, right, bottom});
+    }
+
+    /**
+     * Replaces the simulated engine. The current generation of model becomes the displayed
+     * snapshot immediately, and any generations computed ahead for the previous engine and the
+     * history are discarded. The snapshot of model is taken on the calling thread.
+     *
+     * @param model The engine to simulate (cannot be null). The caller must not use model after
+     *              calling this method.
+     */
+    public void setModel(LifeEngine model) {
+        setModel(model, LifeSnapshot.of(model, mEpoch));
+    }
+
+    /**
+     * Replaces the simulated engine like setModel(LifeEngine) but displays an existing snapshot
+     * of model, for example one taken on a background thread, so that the calling thread does no
+     * work proportional to the population.
+     *
+     * @param model    The engine to simulate (cannot be null). The caller must not use model
+     *                 after calling this method.
+     * @param snapshot a snapshot of model's current generation (cannot be null)
+     */
+    public void setModel(LifeEngine model, LifeSnapshot snapshot) {
+        mHistory.clear();
+        replaceModel(model, LifeEngineType.of(model), snapshot, snapshot.getRule());
+    }
+
+    /**
+     * Displays the cells of cells with a new epoch and rule and asks the simulation thread to
+     * simulate model from then on. The calling thread does no work proportional to the
+     * population: if model is null, the simulation thread creates an engine of type holding the
+     * cells and generation of cells that evaluates rule.
+     */
+    private void replaceModel(LifeEngine model, LifeEngineType type, LifeSnapshot cells,
+                              LifeRule rule) {
+        final int epoch = mEpoch + 1;
+        mEpoch = epoch;
+        mEngineType = type;
+        final LifeSnapshot snapshot = cells.withEpoch(epoch, rule);
+        mSnapshot.set(snapshot);
+        mHistory.add(snapshot);
+        mCycle = null;
+        mCycleDetector.clear();
+        mCycleDetector.add(snapshot);
+        execute(new ReplaceCommand(model, type, snapshot, mTileMemoryBudgetBytes,
+                mTileSpillDirectory, mParallelism));
+    }
+
+    /**
+     * Stops simulating and releases the threads and TileStore of the simulated engine, if any,
+     * for example when the user interface that displays the simulation is torn down. Generations
+     * computed ahead are discarded, but the displayed snapshot and the history are kept, and
+     * setModel() starts a new simulation.
+     */
+    public void release() {
+        mEpoch += 1;
+        execute(new ReleaseCommand());
+    }
+
+    /**
+     * Releases the threads and the TileStore of an engine that is no longer simulated. This must
+     * be called from the simulation thread.
+     */
+    private static void releaseEngine(LifeEngine engine) {
+        if (engine instanceof TiledGameOfLifeModel) {
+            final TiledGameOfLifeModel tiledEngine = (TiledGameOfLifeModel) engine;
+            tiledEngine.setParallelism(1);
+            final TileStore store = tiledEngine.getTileStore();
+            if (null != store) {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * Replaces the simulated engine with a new engine of the specified type holding the cells
+     * and generation of the displayed snapshot. Nothing is replaced if there is no model or if
+     * the model is already of the specified type. Retained generations after the displayed
+     * generation are discarded because the new engine continues from the displayed generation,
+     * and any detected cycle is forgotten. The new engine is created on the simulation thread.
+     *
+     * @param type the type of engine to use from now on (cannot be null)
+     */
+    public void setEngineType(LifeEngineType type) {
+        final LifeSnapshot snapshot = mSnapshot.get();
+        if (null != snapshot && type != mEngineType) {
+            mHistory.truncateAfter(snapshot.getGeneration());
+            replaceModel(null, type, snapshot, snapshot.getRule());
+        }
+    }
+
+    /**
+     * Replaces the simulated engine with a new engine of the same type holding the cells and
+     * generation of the displayed snapshot that evaluates rule. Nothing is replaced if there is
+     * no model or if the displayed snapshot already has the specified rule. As with
+     * setEngineType(), retained generations after the displayed generation are discarded.
+     *
+     * @param rule the rule to use from now on (cannot be null)
+     */
+    public void setRule(LifeRule rule) {
+        final LifeSnapshot snapshot = mSnapshot.get();
+        if (null != snapshot && !rule.equals(snapshot.getRule())) {
+            mHistory.truncateAfter(snapshot.getGeneration());
+            final LifeEngineType type = (null == mEngineType) ? LifeEngineType.SPARSE_HASH :
+                    mEngineType;
+            replaceModel(null, type, snapshot, rule);
+        }
+    }
+
+    /**
+     * @return the rule of the displayed snapshot or null if there is no model
+     */
+    public LifeRule getRule() {
+        final LifeSnapshot snapshot = mSnapshot.get();
+        return (null == snapshot) ? null : snapshot.getRule();
+    }
+
+    /**
+     * Displays a retained generation. The engine is not changed: advance() replays the
+     * generations after the displayed generation from the history until it reaches the newest
+     * retained generation and then continues the simulation.
+     *
+     * @param generation the generation to display
+     * @return true if generation is retained and is now displayed and false otherwise
+     */
+    public boolean showGeneration(long generation) {
+        final LifeSnapshot snapshot = mHistory.getSnapshot(generation);
+        if (null == snapshot) {
+            return false;
+        }
+        mSnapshot.set(snapshot);
+        return true;
+    }
+
+    /**
+     * Makes the next generation the displayed snapshot. The next generation is taken from the
+     * history if an earlier generation is displayed, from the detected cycle if there is one,
+     * and otherwise from the generations computed ahead, in which case the simulation thread is
+     * asked to compute more generations ahead.
+     *
+     * @return true if the displayed snapshot changed and false if the simulation thread has not
+     * yet computed the next generation or the universe no longer changes (see isIdle())
+     */
+    public boolean advance() {
+        final LifeSnapshot displayed = mSnapshot.get();
+        if (null != displayed && mHistory.contains(displayed.getGeneration() + 1)) {
+            mSnapshot.set(mHistory.getSnapshot(displayed.getGeneration() + 1));
+            return true;
+        }
+        if (null != mCycle) {
+            if (1 == mCycle.length) {
+                return false;
+            }
+            final long generation = displayed.getGeneration() + 1;
+            final LifeSnapshot next = mCycle[(int) ((generation - mCycleStartGeneration - 1) %
+                    mCycle.length)].withGeneration(generation);
+            mSnapshot.set(next);
+            mHistory.add(next);
+            return true;
+        }
+        final int epoch = mEpoch;
+        LifeSnapshot next = mFutureSnapshots.poll();
+        while (null != next && next.getEpoch() != epoch) {
+            mFutureSnapshotCount.decrementAndGet();
+            next = mFutureSnapshots.poll();
+        }
+        if (null != next) {
+            mFutureSnapshotCount.decrementAndGet();
+            mSnapshot.set(next);
+            mHistory.add(next);
+            detectCycle(next);
+        }
+        if (null == mCycle) {
+            requestFill();
+        }
+        return null != next;
+    }
+
+    /**
+     * @return true if and only if advance() will not change the displayed snapshot until the
+     * model is replaced because the universe no longer changes
+     */
+    public boolean isIdle() {
+        final LifeSnapshot displayed = mSnapshot.get();
+        return null != mCycle && 1 == mCycle.length &&
+                !mHistory.contains(displayed.getGeneration() + 1);
+    }
+
+    /**
+     * @return the number of generations after which the universe repeats itself: 1 for a still
+     * life, or 0 if no cycle has been detected
+     */
+    public int getCyclePeriod() {
+        return (null == mCycle) ? 0 : mCycle.length;
+    }
+
+    /**
+     * @return the first generation of the detected cycle, which the universe repeats every
+     * getCyclePeriod() generations. The result is undefined if no cycle has been detected.
+     */
+    public long getCycleStartGeneration() {
+        return mCycleStartGeneration;
+    }
+
+    /**
+     * Looks for an earlier generation with the same hash as next and, if its cells are the same,
+     * stops computing generations ahead and keeps the generations of the cycle so that
+     * advance() can repeat them.
+     */
+    private void detectCycle(LifeSnapshot next) {
+        final long start = mCycleDetector.add(next);
+        if (CycleDetector.noRepeat == start) {
+            return;
+        }
+        final LifeSnapshot first = mHistory.getSnapshot(start);
+        if (null == first || !Arrays.equals(first.cells(), next.cells())) {
+            // The start was evicted from the history or the hashes collided
+            return;
+        }
+        // Record the changes that reconstructed snapshots do not, all with the current epoch
+        LifeSnapshot previous = LifeSnapshot.ofSortedCells(first.cells(), start, next.getEpoch(),
+                next.getRule());
+        final LifeSnapshot[] cycle = new LifeSnapshot[(int) (next.getGeneration() - start)];
+        for (int i = 0; i < cycle.length - 1; i++) {
+            final LifeSnapshot snapshot = mHistory.getSnapshot(start + 1 + i);
+            cycle[i] = LifeSnapshot.ofSortedCells(snapshot.cells(), snapshot.getGeneration(),
+                    next.getEpoch(), next.getRule(), previous);
+            previous = cycle[i];
+        }
+        cycle[cycle.length - 1] = next;
+        mCycle = cycle;
+        mCycleStartGeneration = start;
+        discardFutureSnapshots();
+    }
+
+    /**
+     * Asks the simulation thread to compute generations ahead until lookahead snapshots are
+     * queued. Calling this method while the simulation thread is already doing so is harmless.
+     */
+    public void requestFill() {
+        if (null != mSnapshot.get() && mIsFillPending.compareAndSet(false, true)) {
+            execute(mFillCommand);
+        }
+    }
+
+    private void execute(Runnable command) {
+        mExecutor.execute(command);
+    }
+
+    private void discardFutureSnapshots() {
+        while (null != mFutureSnapshots.poll()) {
+            mFutureSnapshotCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * Each instance makes an engine the engine owned by the simulation thread, creating the
+     * engine from the displayed snapshot first if necessary. The threads and TileStore of the
+     * previous engine, if any, are released.
+     */
+    private class ReplaceCommand implements Runnable {
+        final LifeEngine mModel;
+        final LifeEngineType mType;
+        final LifeSnapshot mModelSnapshot;
+        final long mTileMemoryBudgetBytes;
+        final File mTileSpillDirectory;
+        final int mParallelism;
+
+        /**
+         * @param model    the engine to simulate or null to create an engine of type from
+         *                 snapshot
+         * @param type     the type of model
+         * @param snapshot the displayed snapshot of model's current generation
+         */
+        ReplaceCommand(LifeEngine model, LifeEngineType type, LifeSnapshot snapshot,
+                       long tileMemoryBudgetBytes, File tileSpillDirectory, int parallelism) {
+            mModel = model;
+            mType = type;
+            mModelSnapshot = snapshot;
+            mTileMemoryBudgetBytes = tileMemoryBudgetBytes;
+            mTileSpillDirectory = tileSpillDirectory;
+            mParallelism = parallelism;
+        }
+
+        @Override
+        public void run() {
+            if (mModelSnapshot.getEpoch() != mEpoch) {
+                // The engine was replaced again before this command ran
+                return;
+            }
+            final LifeEngine model = (null == mModel) ? mType.create(mModelSnapshot) : mModel;
+            if (model instanceof TiledGameOfLifeModel) {
+                final TiledGameOfLifeModel tiledModel = (TiledGameOfLifeModel) model;
+                tiledModel.setParallelism(mParallelism);
+                if (0 <= mTileMemoryBudgetBytes) {
+                    tiledModel.setTileStore(new TileStore(mTileMemoryBudgetBytes,
+                            mTileSpillDirectory));
+                }
+            }
+            if (mEngine != model) {
+                releaseEngine(mEngine);
+            }
+            mEngine = model;
+            mEngineResidentArea = null;
+            mEngineEpoch = mModelSnapshot.getEpoch();
+            mEngineSnapshot = mModelSnapshot;
+            discardFutureSnapshots();
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * Each instance releases the engine owned by the simulation thread.
+     */
+    private class ReleaseCommand implements Runnable {
+        @Override
+        public void run() {
+            releaseEngine(mEngine);
+            mEngine = null;
+            mEngineSnapshot = null;
+            mEngineResidentArea = null;
+            discardFutureSnapshots();
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * The single instance computes generations ahead until lookahead snapshots are queued or the
+     * engine is replaced.
+     */
+    private class FillCommand implements Runnable {
+        @Override
+        public void run() {
+            mIsFillPending.set(false);
+            final LifeEngine engine = mEngine;
+            if (null == engine) {
+                return;
+            }
+            final LifeMetrics metrics = mMetrics;
+            while (mFutureSnapshotCount.get() < mLookahead && mEngineEpoch == mEpoch) {
+                final int[] area = mResidentArea.get();
+                if (area != mEngineResidentArea && engine instanceof TiledGameOfLifeModel) {
+                    ((TiledGameOfLifeModel) engine).setResidentArea(area[0], area[1], area[2],
+                            area[3]);
+                    mEngineResidentArea = area;
+                }
+                metrics.beginSection(LifeMetrics.updateSection);
+                final long start = System.nanoTime();
+                engine.update();
+                final long updateNanos = System.nanoTime() - start;
+                metrics.endSection();
+                mEngineSnapshot = LifeSnapshot.of(engine, mEngineEpoch, mEngineSnapshot);
+                metrics.recordGeneration(mEngineSnapshot, updateNanos,
+                        engine.getEvaluatedCellCount());
+                mFutureSnapshots.add(mEngineSnapshot);
+                mFutureSnapshotCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Each instance creates low priority daemon threads so that the simulation never keeps the
+     * application alive or competes with the user interface thread.
+     */
+    private static class SimulationThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread result = new Thread(runnable, "GameOfLife simulation");
+            result.setDaemon(true);
+            result.setPriority(Thread.MIN_PRIORITY);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * Each instance of this class is an immutable copy of the cells of a LifeEngine at one
+ * generation. Snapshots are created by the simulation thread and handed to the user interface
+ * thread (see LifeSimulation), so they can be read from any thread without synchronization
+ * while the engine they were copied from continues to change.
+ * <p/>
+ * Cells are sorted into tiles of tileSize x tileSize positions, and the first cell of each tile
+ * is indexed, so forEachPositionIn() only examines the tiles that overlap the requested
+ * rectangle. The cost of drawing the visible part of a snapshot depends on the number of visible
+ * cells rather than on the population.
+ * <p/>
+ * A snapshot created from the snapshot of the previous generation of the same engine also
+ * records the births and deaths since that generation, so that structures derived from the cells
+ * such as DensityPyramid can be updated incrementally.
+ * <p/>
+ * Each snapshot has a Zobrist hash of its cells: the exclusive or of a pseudo random 64 bit
+ * value per occupied position. The hash of a snapshot that records births and deaths is derived
+ * from the hash of the previous generation and the changed cells, so only the changed cells are
+ * hashed. Finding the changed cells still merges both generations' cells, so creating such a
+ * snapshot takes time proportional to the population. See
+ * https://en.wikipedia.org/wiki/Zobrist_hashing
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class LifeSnapshot {
+    public static final int tileShift = 6;
+    public static final int tileSize = 1 << tileShift;
+    private static final int tileMask = tileSize - 1;
+    private static final int tileCoordinateBits = 32 - tileShift;
+    private static final long tileCoordinateMask = (1L << tileCoordinateBits) - 1;
+    private static final int maximumInitialCapacity = 1 << 16;
+
+    // Each cell is encoded by tileOrderKey(). The array is sorted so each tile is contiguous.
+    private final long[] mCells;
+    // mCells[mTileStarts[i]] up to mCells[mTileStarts[i + 1]] are the cells in tile mTileKeys[i]
+    private final long[] mTileKeys;
+    private final int[] mTileStarts;
+    private final long mGeneration;
+    private final int mEpoch;
+    private final LifeRule mRule;
+    // Tile order keys of the cells born and died since the previous generation or null
+    private long[] mBirths;
+    private long[] mDeaths;
+    private long mHash;
+
+    private LifeSnapshot(long[] cells, long generation, int epoch, LifeRule rule) {
+        int tileCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (0 == i || (cells[i] >> 2 * tileShift) != (cells[i - 1] >> 2 * tileShift)) {
+                tileCount++;
+            }
+        }
+        mTileKeys = new long[tileCount];
+        mTileStarts = new int[tileCount + 1];
+        tileCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (0 == i || (cells[i] >> 2 * tileShift) != (cells[i - 1] >> 2 * tileShift)) {
+                mTileKeys[tileCount] = cells[i] >> 2 * tileShift;
+                mTileStarts[tileCount] = i;
+                tileCount++;
+            }
+        }
+        mTileStarts[tileCount] = cells.length;
+        mCells = cells;
+        mGeneration = generation;
+        mEpoch = epoch;
+        mRule = rule;
+    }
+
+    private LifeSnapshot(LifeSnapshot source, long generation, int epoch, LifeRule rule,
+                         long[] births, long[] deaths) {
+        mCells = source.mCells;
+        mTileKeys = source.mTileKeys;
+        mTileStarts = source.mTileStarts;
+        mGeneration = generation;
+        mEpoch = epoch;
+        mRule = rule;
+        mBirths = births;
+        mDeaths = deaths;
+        mHash = source.mHash;
+    }
+
+    /**
+     * Encodes a position so that sorting encoded positions groups them by tile. The tile y
+     * coordinate is stored in the most significant bits, followed by the tile x coordinate,
+     * the row within the tile, and the column within the tile.
+     */
+    private static long tileOrderKey(int x, int y) {
+        return tileKey(x >> tileShift, y >> tileShift) << 2 * tileShift |
+                (y & tileMask) << tileShift | (x & tileMask);
+    }
+
+    private static long tileKey(int tileX, int tileY) {
+        return (long) tileY << tileCoordinateBits | (tileX & tileCoordinateMask);
+    }
+
+    private static int keyX(long key) {
+        final int tileX = ((int) (key >>> 2 * tileShift) << tileShift) >> tileShift;
+        return tileX << tileShift | (int) (key & tileMask);
+    }
+
+    private static int keyY(long key) {
+        final int tileY = (int) (key >> (2 * tileShift + tileCoordinateBits));
+        return tileY << tileShift | (int) ((key >>> tileShift) & tileMask);
+    }
+
+    /**
+     * Copies the cells of engine. This method does not change engine's internal state but must
+     * be called from the thread that owns engine.
+     *
+     * @param engine the engine to copy (cannot be null)
+     * @param epoch  identifies the engine for the receiver of the snapshot. See getEpoch().
+     * @return a new snapshot of engine's current generation
+     */
+    static LifeSnapshot of(LifeEngine engine, int epoch) {
+        return of(engine, epoch, null);
+    }
+
+    /**
+     * Copies the cells of engine. This method does not change engine's internal state but must
+     * be called from the thread that owns engine. If previous is a snapshot of the previous
+     * generation of engine with the same epoch, the births and deaths since previous are also
+     * recorded. See isSuccessorOf().
+     *
+     * @param engine   the engine to copy (cannot be null)
+     * @param epoch    identifies the engine for the receiver of the snapshot. See getEpoch().
+     * @param previous a snapshot of an earlier generation or null
+     * @return a new snapshot of engine's current generation
+     */
+    static LifeSnapshot of(LifeEngine engine, int epoch, LifeSnapshot previous) {
+        final CellCollector collector = new CellCollector(
+                Math.min(maximumInitialCapacity, engine.getPopulation()));
+        engine.forEachPosition(collector);
+        return ofSortedCells(sortByTile(collector.cells()), engine.getGeneration(), epoch,
+                engine.getRule(), previous);
+    }
+
+    /**
+     * Sorts tile order keys. Engines that store cells in tiles of tileSize x tileSize positions,
+     * such as TiledGameOfLifeModel, visit the cells of each tile together and in increasing
+     * order, so only the tiles need to be put in order: this takes time proportional to the
+     * population plus t log t for t tiles. Cells visited in any other order are sorted one by
+     * one.
+     *
+     * @param cells tile order keys in the order the engine visited them
+     * @return an array with the keys of cells in increasing order, which may be cells itself
+     */
+    private static long[] sortByTile(long[] cells) {
+        // A run is a sequence of increasing keys in one tile
+        int runCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (0 == i || cells[i] <= cells[i - 1] ||
+                    (cells[i] >> 2 * tileShift) != (cells[i - 1] >> 2 * tileShift)) {
+                runCount++;
+            }
+        }
+        final int[] runStarts = new int[runCount + 1];
+        final long[] runFirsts = new long[runCount];
+        runCount = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (0 == i || cells[i] <= cells[i - 1] ||
+                    (cells[i] >> 2 * tileShift) != (cells[i - 1] >> 2 * tileShift)) {
+                runStarts[runCount] = i;
+                runFirsts[runCount] = cells[i];
+                runCount++;
+            }
+        }
+        runStarts[runCount] = cells.length;
+
+        final long[] sortedFirsts = runFirsts.clone();
+        Arrays.sort(sortedFirsts);
+        for (int i = 1; i < runCount; i++) {
+            if ((sortedFirsts[i] >> 2 * tileShift) == (sortedFirsts[i - 1] >> 2 * tileShift)) {
+                // The cells of a tile were not visited together
+                Arrays.sort(cells);
+                return cells;
+            }
+        }
+        if (Arrays.equals(runFirsts, sortedFirsts)) {
+            return cells;
+        }
+        // Each run is a whole tile: copy the runs to the positions of their tiles in order
+        final int[] ranks = new int[runCount];
+        final int[] offsets = new int[runCount + 1];
+        for (int i = 0; i < runCount; i++) {
+            ranks[i] = Arrays.binarySearch(sortedFirsts, runFirsts[i]);
+            offsets[ranks[i] + 1] = runStarts[i + 1] - runStarts[i];
+        }
+        for (int i = 0; i < runCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        final long[] result = new long[cells.length];
+        for (int i = 0; i < runCount; i++) {
+            System.arraycopy(cells, runStarts[i], result, offsets[ranks[i]],
+                    runStarts[i + 1] - runStarts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param sortedCells tile order keys in increasing order such as those returned by cells().
+     *                    The array is used by the new snapshot and must not be modified.
+     * @param generation  the generation of the new snapshot
+     * @param epoch       the epoch of the new snapshot. See getEpoch().
+     * @param rule        the rule of the new snapshot (cannot be null)
+     * @return a new snapshot of sortedCells that does not record births and deaths
+     */
+    static LifeSnapshot ofSortedCells(long[] sortedCells, long generation, int epoch,
+                                      LifeRule rule) {
+        return ofSortedCells(sortedCells, generation, epoch, rule, null);
+    }
+
+    /**
+     * @param sortedCells tile order keys in increasing order such as those returned by cells().
+     *                    The array is used by the new snapshot and must not be modified.
+     * @param generation  the generation of the new snapshot
+     * @param epoch       the epoch of the new snapshot. See getEpoch().
+     * @param rule        the rule of the new snapshot (cannot be null)
+     * @param previous    a snapshot of an earlier generation or null. If it is a snapshot of the
+     *                    previous generation with the same epoch, the births and deaths since
+     *                    previous are recorded.
+     * @return a new snapshot of sortedCells
+     */
+    static LifeSnapshot ofSortedCells(long[] sortedCells, long generation, int epoch,
+                                      LifeRule rule, LifeSnapshot previous) {
+        final LifeSnapshot result = new LifeSnapshot(sortedCells, generation, epoch, rule);
+        if (null != previous && previous.mEpoch == epoch &&
+                previous.mGeneration + 1 == generation) {
+            result.recordChangesSince(previous);
+        } else {
+            result.mHash = hashOf(sortedCells);
+        }
+        return result;
+    }
+
+    /**
+     * @param generation the generation of the new snapshot
+     * @return a new snapshot with the cells, epoch, and recorded births and deaths of this
+     * snapshot but a different generation, for example to repeat the generations of a cycle
+     * without simulating them. The two snapshots share their arrays.
+     */
+    LifeSnapshot withGeneration(long generation) {
+        return new LifeSnapshot(this, generation, mEpoch, mRule, mBirths, mDeaths);
+    }
+
+    /**
+     * @param epoch the epoch of the new snapshot. See getEpoch().
+     * @param rule  the rule of the new snapshot (cannot be null)
+     * @return a new snapshot with the cells and generation of this snapshot that does not record
+     * births and deaths, for example to display the cells of this snapshot for a new engine. The
+     * two snapshots share their arrays, so this takes constant time.
+     */
+    LifeSnapshot withEpoch(int epoch, LifeRule rule) {
+        return new LifeSnapshot(this, mGeneration, epoch, rule, null, null);
+    }
+
+    private static long hashOf(long[] keys) {
+        long result = 0;
+        for (long key : keys) {
+            result ^= cellHash(key);
+        }
+        return result;
+    }
+
+    /**
+     * @return a pseudo random value determined by key: the SplitMix64 finalizer applied to key
+     */
+    private static long cellHash(long key) {
+        long z = key * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void recordChangesSince(LifeSnapshot previous) {
+        // Both cell arrays are sorted, so one merge finds every difference
+        final long[] oldCells = previous.mCells;
+        final long[] newCells = mCells;
+        final CellCollector births = new CellCollector(0);
+        final CellCollector deaths = new CellCollector(0);
+        int i = 0;
+        int j = 0;
+        while (i < oldCells.length || j < newCells.length) {
+            if (j == newCells.length || (i < oldCells.length && oldCells[i] < newCells[j])) {
+                deaths.add(oldCells[i++]);
+            } else if (i == oldCells.length || newCells[j] < oldCells[i]) {
+                births.add(newCells[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        mBirths = births.cells();
+        mDeaths = deaths.cells();
+        mHash = previous.mHash ^ hashOf(mBirths) ^ hashOf(mDeaths);
+    }
+
+    /**
+     * @return the tile order keys of the snapshot's cells in increasing order. The array must
+     * not be modified.
+     */
+    long[] cells() {
+        return mCells;
+    }
+
+    /**
+     * @return the tile order keys of the cells born since the previous generation in increasing
+     * order or null if the changes were not recorded. The array must not be modified.
+     */
+    long[] births() {
+        return mBirths;
+    }
+
+    /**
+     * @return the tile order keys of the cells that died since the previous generation in
+     * increasing order or null if the changes were not recorded. The array must not be modified.
+     */
+    long[] deaths() {
+        return mDeaths;
+    }
+
+    /**
+     * @return the generation of the engine when the snapshot was created
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return the rule of the engine when the snapshot was created
+     */
+    public LifeRule getRule() {
+        return mRule;
+    }
+
+    /**
+     * @return the value passed to of() when the snapshot was created. LifeSimulation uses
+     * epochs to discard snapshots of an engine that has since been replaced.
+     */
+    public int getEpoch() {
+        return mEpoch;
+    }
+
+    /**
+     * @param generation a generation
+     * @param epoch      an epoch
+     * @return true if and only if this snapshot recorded the births and deaths since a snapshot
+     * of generation with epoch, so that forEachBirth() and forEachDeath() can be used to update
+     * information derived from that snapshot
+     */
+    public boolean isSuccessorOf(long generation, int epoch) {
+        return null != mBirths && mEpoch == epoch && mGeneration == generation + 1;
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in this snapshot but not
+     * in the previous generation. Nothing is visited if the changes were not recorded.
+     *
+     * @param visitor the object to be informed of each position (cannot be null)
+     */
+    public void forEachBirth(LifeEngine.CellVisitor visitor) {
+        visitAll(mBirths, visitor);
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in the previous generation
+     * but not in this snapshot. Nothing is visited if the changes were not recorded.
+     *
+     * @param visitor the object to be informed of each position (cannot be null)
+     */
+    public void forEachDeath(LifeEngine.CellVisitor visitor) {
+        visitAll(mDeaths, visitor);
+    }
+
+    /**
+     * @return the Zobrist hash of the snapshot's cells. Snapshots with the same cells have the
+     * same hash regardless of their generation or epoch. Snapshots with different cells have
+     * the same hash with a probability of about 2^-64.
+     */
+    public long getHash() {
+        return mHash;
+    }
+
+    /**
+     * @return the number of cells in the snapshot
+     */
+    public int getPopulation() {
+        return mCells.length;
+    }
+
+    /**
+     * Computes the smallest rectangle that contains every cell. Only the cells of the tiles at
+     * the edges of the occupied tiles are examined, so this takes time proportional to the
+     * number of tiles rather than to the population. This method does not allocate memory.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any cell (in that order) if there are cells
+     * @return true if there are cells and bounds has been set and false otherwise
+     */
+    public boolean getBounds(int bounds[]) {
+        if (0 == mTileKeys.length) {
+            return false;
+        }
+        int leftTile = Integer.MAX_VALUE;
+        int rightTile = Integer.MIN_VALUE;
+        for (long tileKey : mTileKeys) {
+            final int tileX = keyX(tileKey << 2 * tileShift) >> tileShift;
+            leftTile = Math.min(leftTile, tileX);
+            rightTile = Math.max(rightTile, tileX);
+        }
+        // Tiles are sorted by tile y coordinate
+        final int topTile = keyY(mTileKeys[0] << 2 * tileShift) >> tileShift;
+        final int bottomTile = keyY(mTileKeys[mTileKeys.length - 1] << 2 * tileShift) >> tileShift;
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < mTileKeys.length; i++) {
+            final long tileKey = mTileKeys[i] << 2 * tileShift;
+            final int tileX = keyX(tileKey) >> tileShift;
+            final int tileY = keyY(tileKey) >> tileShift;
+            if (tileX == leftTile || tileX == rightTile || tileY == topTile ||
+                    tileY == bottomTile) {
+                for (int j = mTileStarts[i]; j < mTileStarts[i + 1]; j++) {
+                    final int x = keyX(mCells[j]);
+                    final int y = keyY(mCells[j]);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+        return true;
+    }
+
+    /**
+     * @return the number of tileSize x tileSize tiles that contain at least one cell
+     */
+    public int getTileCount() {
+        return mTileKeys.length;
+    }
+
+    /**
+     * Calls visitor.visit() once for each tile that contains at least one cell in the order the
+     * tiles are stored: by tile y coordinate and then by tile x coordinate.
+     *
+     * @param visitor the object to be informed of each tile (cannot be null)
+     */
+    void forEachTile(TileVisitor visitor) {
+        for (int i = 0; i < mTileKeys.length; i++) {
+            final long key = mTileKeys[i] << 2 * tileShift;
+            visitor.visit(keyX(key) >> tileShift, keyY(key) >> tileShift, mCells, mTileStarts[i],
+                    mTileStarts[i + 1]);
+        }
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in the snapshot.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    public void forEachPosition(LifeEngine.CellVisitor visitor) {
+        visitAll(mCells, visitor);
+    }
+
+    private static void visitAll(long[] keys, LifeEngine.CellVisitor visitor) {
+        if (null != keys) {
+            for (long key : keys) {
+                visitor.visit(keyX(key), keyY(key));
+            }
+        }
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. Only the
+     * tiles that overlap the rectangle are examined.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    public void forEachPositionIn(int left, int top, int right, int bottom,
+                                  LifeEngine.CellVisitor visitor) {
+        if (left > right || top > bottom) {
+            return;
+        }
+        final int leftTile = left >> tileShift;
+        final int topTile = top >> tileShift;
+        final int rightTile = right >> tileShift;
+        final int bottomTile = bottom >> tileShift;
+        if ((long) (rightTile - leftTile + 1) * (bottomTile - topTile + 1) > mTileKeys.length) {
+            // Fewer tiles exist than the rectangle covers: examine the existing tiles
+            for (int i = 0; i < mTileKeys.length; i++) {
+                final long first = mCells[mTileStarts[i]];
+                final int tileX = keyX(first) >> tileShift;
+                final int tileY = keyY(first) >> tileShift;
+                if (tileX >= leftTile && tileX <= rightTile && tileY >= topTile &&
+                        tileY <= bottomTile) {
+                    visitTileIn(i, left, top, right, bottom, visitor);
+                }
+            }
+        } else {
+            for (int tileY = topTile; tileY <= bottomTile; tileY++) {
+                for (int tileX = leftTile; tileX <= rightTile; tileX++) {
+                    final int i = Arrays.binarySearch(mTileKeys, tileKey(tileX, tileY));
+                    if (0 <= i) {
+                        visitTileIn(i, left, top, right, bottom, visitor);
+                    }
+                }
+            }
+        }
+    }
+
+    private void visitTileIn(int tile, int left, int top, int right, int bottom,
+                             LifeEngine.CellVisitor visitor) {
+        final int end = mTileStarts[tile + 1];
+        for (int i = mTileStarts[tile]; i < end; i++) {
+            final int x = keyX(mCells[i]);
+            final int y = keyY(mCells[i]);
+            if (x >= left && x <= right && y >= top && y <= bottom) {
+                visitor.visit(x, y);
+            }
+        }
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance appends the tile order keys of visited positions to a growing array.
+     */
+    private static class CellCollector implements LifeEngine.CellVisitor {
+        long[] mCells;
+        int mCount;
+
+        CellCollector(int initialCapacity) {
+            mCells = new long[Math.max(16, initialCapacity)];
+        }
+
+        @Override
+        public void visit(int x, int y) {
+            add(tileOrderKey(x, y));
+        }
+
+        void add(long key) {
+            if (mCount == mCells.length) {
+                mCells = Arrays.copyOf(mCells, mCells.length * 2);
+            }
+            mCells[mCount++] = key;
+        }
+
+        long[] cells() {
+            return (mCount == mCells.length) ? mCells : Arrays.copyOf(mCells, mCount);
+        }
+    }
+
+    /**
+     * This interface is implemented by classes that encode the cells of a snapshot tile by tile,
+     * such as SnapshotFile.
+     */
+    interface TileVisitor {
+        /**
+         * @param tileX the x coordinate of the tile's top left position divided by tileSize
+         * @param tileY the y coordinate of the tile's top left position divided by tileSize
+         * @param cells the snapshot's cells, which must not be modified. cells[start] up to
+         *              cells[end] are the tile's cells in increasing order. The low 2 * tileShift
+         *              bits of each are row * tileSize + column within the tile.
+         * @param start the index of the tile's first cell
+         * @param end   the index after the tile's last cell
+         */
+        void visit(int tileX, int tileY, long cells[], int start, int end);
+    }
+}
@@ -0,0 +1,188 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates a map from Game of Life grid positions to small counts. Positions are
+ * packed into longs exactly as by LongCellSet.pack(). It is used as the scratch "neighbor count"
+ * table while computing a generation: every live cell adds to the counts of its neighbors, and the
+ * next generation is then decided from the counts alone.
+ * <p/>
+ * The implementation is an open-addressing hash table with linear probing and a parallel array
+ * of byte counts. No objects are allocated per position. As with LongCellSet, the key 0 marks
+ * empty slots, so the count for position {0, 0} is stored separately, and positions are visited
+ * with slotCount(), isSlotOccupied(), slotKey(), and slotValue().
+ * <p/>
+ * Counts are expected to stay small (< 128). Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class LongCellCounts {
+    private static final int minimumCapacity = 16;
+    private static final float maximumLoadFactor = 0.6f;
+
+    private long[] mKeys;
+    private byte[] mValues;
+    private int mMask;
+    private int mShift;
+    private int mSize;
+    private int mResizeThreshold;
+    private boolean mContainsZero;
+    private byte mZeroValue;
+
+    /**
+     * Constructs an empty map with a small default capacity.
+     */
+    LongCellCounts() {
+        allocate(minimumCapacity);
+    }
+
+    /**
+     * @return the number of positions with a count
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds amount to the count stored for cell. Positions without a count are treated as if
+     * their count is 0.
+     *
+     * @param cell   a position produced by LongCellSet.pack()
+     * @param amount the amount to add
+     */
+    void increment(long cell, int amount) {
+        if (0 == cell) {
+            if (!mContainsZero) {
+                mContainsZero = true;
+                mSize += 1;
+            }
+            mZeroValue += amount;
+            return;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(cell);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == cell) {
+                mValues[index] += amount;
+                return;
+            }
+            index = (index + 1) & mMask;
+        }
+        keys[index] = cell;
+        mValues[index] = (byte) amount;
+        mSize += 1;
+        if (mSize > mResizeThreshold) {
+            rehash(mKeys.length << 1);
+        }
+    }
+
+    /**
+     * @param cell a position produced by LongCellSet.pack()
+     * @return the count stored for cell or 0 if there is none
+     */
+    int get(long cell) {
+        if (0 == cell) {
+            return mContainsZero ? mZeroValue : 0;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(cell);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == cell) {
+                return mValues[index];
+            }
+            index = (index + 1) & mMask;
+        }
+        return 0;
+    }
+
+    /**
+     * Removes all counts. The memory used by the map is kept for reuse unless it is much larger
+     * than the number of counts most recently stored, in which case a smaller table is allocated
+     * so that clearing does not stay expensive after a population shrinks.
+     */
+    void clear() {
+        final int neededCapacity = capacityFor(mSize);
+        if (mKeys.length > 8 * neededCapacity) {
+            allocate(Math.max(minimumCapacity, 2 * neededCapacity));
+        } else if (0 != mSize) {
+            Arrays.fill(mKeys, 0L);
+        }
+        mSize = 0;
+        mContainsZero = false;
+        mZeroValue = 0;
+    }
+
+    /**
+     * @return one more than the largest slot index that may be passed to isSlotOccupied(),
+     * slotKey(), and slotValue()
+     */
+    int slotCount() {
+        return mKeys.length + 1;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount()
+     * @return true if and only if slot holds a count
+     */
+    boolean isSlotOccupied(int slot) {
+        return (slot < mKeys.length) ? 0 != mKeys[slot] : mContainsZero;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the position stored in slot
+     */
+    long slotKey(int slot) {
+        return (slot < mKeys.length) ? mKeys[slot] : 0L;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the count stored in slot
+     */
+    int slotValue(int slot) {
+        return (slot < mKeys.length) ? mValues[slot] : mZeroValue;
+    }
+
+    private int indexFor(long cell) {
+        return (int) ((cell * 0x9E3779B97F4A7C15L) >>> mShift);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = minimumCapacity;
+        while (capacity * maximumLoadFactor < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new byte[capacity];
+        mMask = capacity - 1;
+        mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+        mResizeThreshold = (int) (capacity * maximumLoadFactor);
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = mKeys;
+        final byte[] oldValues = mValues;
+        allocate(newCapacity);
+        final long[] keys = mKeys;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (0 != key) {
+                int index = indexFor(key);
+                while (0 != keys[index]) {
+                    index = (index + 1) & mMask;
+                }
+                keys[index] = key;
+                mValues[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates a set of Game of Life grid positions. Each position is stored as a
+ * single primitive long with the x coordinate in the high 32 bits and the y coordinate in the low
+ * 32 bits. See pack(), unpackX(), and unpackY().
+ * <p/>
+ * The implementation is an open-addressing hash table with linear probing. No objects are
+ * allocated per position, and add(), contains(), and remove() never allocate except when add()
+ * must grow the table. The key 0 (the position {0, 0}) is used to mark empty slots in the table,
+ * so the presence of that one position is recorded separately.
+ * <p/>
+ * Positions are visited without allocation using the "slot" methods:
+ * <pre>
+ *     for (int slot = 0; slot &lt; set.slotCount(); slot++) {
+ *         if (set.isSlotOccupied(slot)) {
+ *             long cell = set.slotKey(slot);
+ *         }
+ *     }
+ * </pre>
+ * Instances are not thread safe. Slots must not be visited while the set is being mutated.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class LongCellSet {
+    private static final int minimumCapacity = 16;
+    private static final float maximumLoadFactor = 0.6f;
+
+    private long[] mKeys;
+    private int mMask;
+    private int mShift;
+    private int mSize;
+    private int mResizeThreshold;
+    private boolean mContainsZero;
+
+    /**
+     * Constructs an empty set with a small default capacity.
+     */
+    LongCellSet() {
+        this(minimumCapacity);
+    }
+
+    /**
+     * Constructs an empty set that can store at least expectedSize positions without growing.
+     *
+     * @param expectedSize the number of positions the set is expected to hold ( >= 0)
+     */
+    LongCellSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return the single long that identifies the position {x, y}
+     */
+    static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * @param cell a position produced by pack()
+     * @return the x coordinate of cell
+     */
+    static int unpackX(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    /**
+     * @param cell a position produced by pack()
+     * @return the y coordinate of cell
+     */
+    static int unpackY(long cell) {
+        return (int) cell;
+    }
+
+    /**
+     * @return the number of positions in the set
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return true if and only if the set contains no positions
+     */
+    boolean isEmpty() {
+        return 0 == mSize;
+    }
+
+    /**
+     * @param cell a position produced by pack()
+     * @return true if and only if cell is in the set
+     */
+    boolean contains(long cell) {
+        if (0 == cell) {
+            return mContainsZero;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(cell);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == cell) {
+                return true;
+            }
+            index = (index + 1) & mMask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds cell to the set.
+     *
+     * @param cell a position produced by pack()
+     * @return true if and only if cell was not already in the set
+     */
+    boolean add(long cell) {
+        if (0 == cell) {
+            if (mContainsZero) {
+                return false;
+            }
+            mContainsZero = true;
+            mSize += 1;
+            return true;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(cell);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == cell) {
+                return false;
+            }
+            index = (index + 1) & mMask;
+        }
+        keys[index] = cell;
+        mSize += 1;
+        if (mSize > mResizeThreshold) {
+            rehash(mKeys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes cell from the set. Removal uses backward shift deletion so no "tombstones" are
+     * left in the table and lookups stay short regardless of how many removals occur.
+     *
+     * @param cell a position produced by pack()
+     * @return true if and only if cell was in the set
+     */
+    boolean remove(long cell) {
+        if (0 == cell) {
+            if (!mContainsZero) {
+                return false;
+            }
+            mContainsZero = false;
+            mSize -= 1;
+            return true;
+        }
+        final long[] keys = mKeys;
+        final int mask = mMask;
+        int index = indexFor(cell);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == cell) {
+                // Shift following entries of the same probe run back into the freed slot
+                int gap = index;
+                int next = (gap + 1) & mask;
+                while (0 != (key = keys[next])) {
+                    final int home = indexFor(key);
+                    if (((next - home) & mask) >= ((next - gap) & mask)) {
+                        keys[gap] = key;
+                        gap = next;
+                    }
+                    next = (next + 1) & mask;
+                }
+                keys[gap] = 0;
+                mSize -= 1;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all positions from the set without releasing the memory used by the set.
+     */
+    void clear() {
+        if (0 != mSize) {
+            Arrays.fill(mKeys, 0L);
+            mSize = 0;
+            mContainsZero = false;
+        }
+    }
+
+    /**
+     * @return one more than the largest slot index that may be passed to isSlotOccupied() and
+     * slotKey()
+     */
+    int slotCount() {
+        return mKeys.length + 1;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount()
+     * @return true if and only if slot holds a position
+     */
+    boolean isSlotOccupied(int slot) {
+        return (slot < mKeys.length) ? 0 != mKeys[slot] : mContainsZero;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the position stored in slot
+     */
+    long slotKey(int slot) {
+        return (slot < mKeys.length) ? mKeys[slot] : 0L;
+    }
+
+    private int indexFor(long cell) {
+        // Fibonacci hashing spreads neighboring positions across the whole table
+        return (int) ((cell * 0x9E3779B97F4A7C15L) >>> mShift);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = minimumCapacity;
+        while (capacity * maximumLoadFactor < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mMask = capacity - 1;
+        mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+        mResizeThreshold = (int) (capacity * maximumLoadFactor);
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = mKeys;
+        allocate(newCapacity);
+        final long[] keys = mKeys;
+        for (long key : oldKeys) {
+            if (0 != key) {
+                int index = indexFor(key);
+                while (0 != keys[index]) {
+                    index = (index + 1) & mMask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class encapsulates a map from packed positions to int counts in which positions whose
+ * count returns to 0 are removed. Positions are packed into longs exactly as by
+ * LongCellSet.pack(). It is used by DensityPyramid to count the cells in blocks of the Game of
+ * Life grid, where counts rise and fall as cells are born and die.
+ * <p/>
+ * The implementation is an open-addressing hash table with linear probing and a parallel array
+ * of int counts. No objects are allocated per position. As with LongCellSet, the key 0 marks
+ * empty slots, so the count for position {0, 0} is stored separately, removal shifts following
+ * entries back instead of leaving tombstones, and positions are visited with slotCount(),
+ * isSlotOccupied(), slotKey(), and slotValue(). Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class LongIntCounts {
+    private static final int minimumCapacity = 16;
+    private static final float maximumLoadFactor = 0.6f;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    private int mShift;
+    private int mSize;
+    private int mResizeThreshold;
+    private int mZeroValue;
+
+    /**
+     * Constructs an empty map with a small default capacity.
+     */
+    LongIntCounts() {
+        allocate(minimumCapacity);
+    }
+
+    /**
+     * @return the number of positions with a count other than 0
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds amount to the count stored for position. Positions without a count are treated as if
+     * their count is 0, and a position is removed when its count becomes 0.
+     *
+     * @param position a position produced by LongCellSet.pack()
+     * @param amount   the amount to add
+     */
+    void increment(long position, int amount) {
+        if (0 == position) {
+            final int oldValue = mZeroValue;
+            mZeroValue += amount;
+            mSize += ((0 == mZeroValue) ? 0 : 1) - ((0 == oldValue) ? 0 : 1);
+            return;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(position);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == position) {
+                mValues[index] += amount;
+                if (0 == mValues[index]) {
+                    removeSlot(index);
+                }
+                return;
+            }
+            index = (index + 1) & mMask;
+        }
+        if (0 != amount) {
+            keys[index] = position;
+            mValues[index] = amount;
+            mSize += 1;
+            if (mSize > mResizeThreshold) {
+                rehash(mKeys.length << 1);
+            }
+        }
+    }
+
+    /**
+     * @param position a position produced by LongCellSet.pack()
+     * @return the count stored for position or 0 if there is none
+     */
+    int get(long position) {
+        if (0 == position) {
+            return mZeroValue;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(position);
+        long key;
+        while (0 != (key = keys[index])) {
+            if (key == position) {
+                return mValues[index];
+            }
+            index = (index + 1) & mMask;
+        }
+        return 0;
+    }
+
+    /**
+     * Removes all counts and releases the memory used by the map.
+     */
+    void clear() {
+        allocate(minimumCapacity);
+        mSize = 0;
+        mZeroValue = 0;
+    }
+
+    /**
+     * @return one more than the largest slot index that may be passed to isSlotOccupied(),
+     * slotKey(), and slotValue()
+     */
+    int slotCount() {
+        return mKeys.length + 1;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount()
+     * @return true if and only if slot holds a count
+     */
+    boolean isSlotOccupied(int slot) {
+        return (slot < mKeys.length) ? 0 != mKeys[slot] : 0 != mZeroValue;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the position stored in slot
+     */
+    long slotKey(int slot) {
+        return (slot < mKeys.length) ? mKeys[slot] : 0L;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the count stored in slot
+     */
+    int slotValue(int slot) {
+        return (slot < mKeys.length) ? mValues[slot] : mZeroValue;
+    }
+
+    private void removeSlot(int index) {
+        // Shift following entries of the same probe run back into the freed slot
+        final long[] keys = mKeys;
+        final int mask = mMask;
+        int gap = index;
+        int next = (gap + 1) & mask;
+        long key;
+        while (0 != (key = keys[next])) {
+            final int home = indexFor(key);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                mValues[gap] = mValues[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        mSize -= 1;
+    }
+
+    private int indexFor(long position) {
+        return (int) ((position * 0x9E3779B97F4A7C15L) >>> mShift);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+        mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+        mResizeThreshold = (int) (capacity * maximumLoadFactor);
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = mKeys;
+        final int[] oldValues = mValues;
+        allocate(newCapacity);
+        final long[] keys = mKeys;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (0 != key) {
+                int index = indexFor(key);
+                while (0 != keys[index]) {
+                    index = (index + 1) & mMask;
+                }
+                keys[index] = key;
+                mValues[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates a map from primitive long keys to objects. It is used to find the
+ * tiles of a tiled universe by their packed tile coordinates (see LongCellSet.pack()) without
+ * boxing a Long for every lookup.
+ * <p/>
+ * The implementation is an open-addressing hash table with linear probing. As with LongCellSet,
+ * the key 0 marks empty slots, so the value for key 0 is stored separately, and entries are
+ * visited with slotCount(), isSlotOccupied(), slotKey(), and slotValue(). Entries must not be
+ * visited while the map is being mutated.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @param <V> the type of the mapped values
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class LongObjectMap<V> {
+    private static final int minimumCapacity = 16;
+    private static final float maximumLoadFactor = 0.6f;
+
+    private long[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mShift;
+    private int mSize;
+    private int mResizeThreshold;
+    private Object mZeroValue;
+
+    /**
+     * Constructs an empty map with a small default capacity.
+     */
+    LongObjectMap() {
+        allocate(minimumCapacity);
+    }
+
+    /**
+     * @return the number of entries in the map
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @param key any long
+     * @return the value mapped to key or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (0 == key) {
+            return (V) mZeroValue;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(key);
+        long existing;
+        while (0 != (existing = keys[index])) {
+            if (existing == key) {
+                return (V) mValues[index];
+            }
+            index = (index + 1) & mMask;
+        }
+        return null;
+    }
+
+    /**
+     * Maps key to value replacing any existing mapping for key.
+     *
+     * @param key   any long
+     * @param value the value to be mapped (cannot be null)
+     */
+    void put(long key, V value) {
+        if (0 == key) {
+            if (null == mZeroValue) {
+                mSize += 1;
+            }
+            mZeroValue = value;
+            return;
+        }
+        final long[] keys = mKeys;
+        int index = indexFor(key);
+        long existing;
+        while (0 != (existing = keys[index])) {
+            if (existing == key) {
+                mValues[index] = value;
+                return;
+            }
+            index = (index + 1) & mMask;
+        }
+        keys[index] = key;
+        mValues[index] = value;
+        mSize += 1;
+        if (mSize > mResizeThreshold) {
+            rehash(mKeys.length << 1);
+        }
+    }
+
+    /**
+     * Removes the mapping for key if there is one.
+     *
+     * @param key any long
+     * @return the value that was mapped to key or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (0 == key) {
+            final V result = (V) mZeroValue;
+            if (null != result) {
+                mZeroValue = null;
+                mSize -= 1;
+            }
+            return result;
+        }
+        final long[] keys = mKeys;
+        final Object[] values = mValues;
+        final int mask = mMask;
+        int index = indexFor(key);
+        long existing;
+        while (0 != (existing = keys[index])) {
+            if (existing == key) {
+                final V result = (V) values[index];
+                // Shift following entries of the same probe run back into the freed slot
+                int gap = index;
+                int next = (gap + 1) & mask;
+                while (0 != (existing = keys[next])) {
+                    final int home = indexFor(existing);
+                    if (((next - home) & mask) >= ((next - gap) & mask)) {
+                        keys[gap] = existing;
+                        values[gap] = values[next];
+                        gap = next;
+                    }
+                    next = (next + 1) & mask;
+                }
+                keys[gap] = 0;
+                values[gap] = null;
+                mSize -= 1;
+                return result;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    void clear() {
+        if (0 != mSize) {
+            Arrays.fill(mKeys, 0L);
+            Arrays.fill(mValues, null);
+            mSize = 0;
+            mZeroValue = null;
+        }
+    }
+
+    /**
+     * @return one more than the largest slot index that may be passed to isSlotOccupied(),
+     * slotKey(), and slotValue()
+     */
+    int slotCount() {
+        return mKeys.length + 1;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount()
+     * @return true if and only if slot holds an entry
+     */
+    boolean isSlotOccupied(int slot) {
+        return (slot < mKeys.length) ? 0 != mKeys[slot] : null != mZeroValue;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the key stored in slot
+     */
+    long slotKey(int slot) {
+        return (slot < mKeys.length) ? mKeys[slot] : 0L;
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the value stored in slot
+     */
+    @SuppressWarnings("unchecked")
+    V slotValue(int slot) {
+        return (V) ((slot < mKeys.length) ? mValues[slot] : mZeroValue);
+    }
+
+    private int indexFor(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> mShift);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+        mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+        mResizeThreshold = (int) (capacity * maximumLoadFactor);
+    }
+
+    private void rehash(int newCapacity) {
+        final long[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+        allocate(newCapacity);
+        final long[] keys = mKeys;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (0 != key) {
+                int index = indexFor(key);
+                while (0 != keys[index]) {
+                    index = (index + 1) & mMask;
+                }
+                keys[index] = key;
+                mValues[index] = oldValues[i];
+            }
+        }
+    }
+}
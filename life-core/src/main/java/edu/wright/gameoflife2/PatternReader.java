@@ -0,0 +1,418 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class loads Game of Life patterns stored in the standard Run Length Encoded (RLE), Life
+ * 1.06, and plaintext (.cells) formats. See https://conwaylife.com/wiki/Run_Length_Encoded,
+ * https://conwaylife.com/wiki/Life_1.06, and https://conwaylife.com/wiki/Plaintext
+ * <p/>
+ * Patterns are parsed as a stream of bytes. Live cells are passed to a LifeEngine in batches with
+ * LifeEngine.spawnCells() as soon as they are parsed, so no intermediate array of positions is
+ * built and the memory used while loading is proportional to the engine's universe rather than to
+ * the size of the file. Files are memory mapped when possible.
+ * <p/>
+ * The format is detected from the content: a "#Life 1.06" header or a first line of coordinate
+ * pairs selects Life 1.06, an "x = ..." header selects RLE, and lines of '.', 'O', and '*'
+ * optionally preceded by '!' comment lines select plaintext. RLE and plaintext patterns are
+ * placed with their top left cell at {0, 0}. Life 1.06 coordinates are used as they are.
+ * <p/>
+ * Each instance reads one pattern.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class PatternReader {
+    /**
+     * The pattern file formats that can be read
+     */
+    public enum Format {
+        RLE,
+        LIFE_106,
+        PLAINTEXT
+    }
+
+    /**
+     * Implementations are informed about the progress of a PatternReader.
+     */
+    public interface ProgressListener {
+        /**
+         * This method is called periodically while a pattern is read and once after it has been
+         * read completely.
+         *
+         * @param bytesRead  the number of bytes of the pattern consumed so far
+         * @param totalBytes the size of the pattern in bytes or -1 if unknown
+         * @param cellCount  the number of live cells passed to the engine so far
+         */
+        void onProgress(long bytesRead, long totalBytes, long cellCount);
+    }
+
+    /** The number of cells passed to LifeEngine.spawnCells() at a time */
+    public static final int batchSize = 65536;
+    /** Progress is reported after at least this many bytes have been read since the last report */
+    public static final int progressInterval = 1 << 20;
+
+    private static final int bufferSize = 1 << 16;
+    private static final int maxRunLength = 1 << 30;
+    private static final int maxHeaderLength = 256;
+    private static final int noByte = -2;
+
+    private final LifeEngine mEngine;
+    private final ProgressListener mListener;
+    private final int mBatch[] = new int[batchSize * 2];
+    private int mBatchLength;
+    private long mCellCount;
+    private ByteBuffer mBuffer;
+    private InputStream mStream;
+    private long mBytesRead;
+    private long mTotalBytes = -1;
+    private long mNextProgressBytes = progressInterval;
+    private int mPushedBack = noByte;
+    private int mLine = 1;
+    private Format mFormat;
+    private String mRule;
+    private boolean mIsUsed;
+
+    /**
+     * @param engine   the engine that receives the pattern's live cells (cannot be null)
+     * @param listener informed about progress while reading (can be null)
+     */
+    public PatternReader(LifeEngine engine, ProgressListener listener) {
+        if (null == engine) {
+            throw new NullPointerException("engine");
+        }
+        mEngine = engine;
+        mListener = listener;
+    }
+
+    /**
+     * Memory maps file and reads the pattern it contains.
+     *
+     * @param file the pattern file
+     * @return the number of live cells passed to the engine
+     * @throws IOException if the file cannot be read or does not contain a supported pattern
+     */
+    public long read(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long size = channel.size();
+            if (Integer.MAX_VALUE < size) {
+                throw new IOException(file + " is too large to map");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Reads the pattern from the remaining bytes of buffer. The buffer's position is advanced past
+     * the consumed bytes.
+     *
+     * @param buffer contains the pattern, for example a MappedByteBuffer
+     * @return the number of live cells passed to the engine
+     * @throws IOException if buffer does not contain a supported pattern
+     */
+    public long read(ByteBuffer buffer) throws IOException {
+        begin(buffer.remaining());
+        mBuffer = buffer;
+        return parse();
+    }
+
+    /**
+     * Reads the pattern from stream until the end of the pattern or of the stream. The stream is
+     * not closed.
+     *
+     * @param stream     contains the pattern
+     * @param totalBytes the number of bytes in stream if known, otherwise -1. This is only used to
+     *                   report progress.
+     * @return the number of live cells passed to the engine
+     * @throws IOException if stream cannot be read or does not contain a supported pattern
+     */
+    public long read(InputStream stream, long totalBytes) throws IOException {
+        begin(totalBytes);
+        mStream = stream;
+        mBuffer = ByteBuffer.allocate(bufferSize);
+        mBuffer.limit(0);
+        return parse();
+    }
+
+    /**
+     * @return the detected format or null if nothing has been read or the pattern was empty
+     */
+    public Format getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * @return the rule given in an RLE header such as "B3/S23" or null if there was none
+     */
+    public String getRule() {
+        return mRule;
+    }
+
+    /**
+     * @return the number of live cells passed to the engine so far
+     */
+    public long getCellCount() {
+        return mCellCount;
+    }
+
+    private void begin(long totalBytes) {
+        if (mIsUsed) {
+            throw new IllegalStateException("each PatternReader reads one pattern");
+        }
+        mIsUsed = true;
+        mTotalBytes = totalBytes;
+    }
+
+    private long parse() throws IOException {
+        detectFormatAndParse();
+        flush();
+        if (null != mListener) {
+            mListener.onProgress(mBytesRead, mTotalBytes, mCellCount);
+        }
+        return mCellCount;
+    }
+
+    private void detectFormatAndParse() throws IOException {
+        while (true) {
+            final int c = next();
+            if (-1 == c) {
+                return;
+            } else if (isWhitespace(c)) {
+                continue;
+            }
+            if ('#' == c) {
+                final String line = readLine();
+                if (line.startsWith("Life 1.06")) {
+                    mFormat = Format.LIFE_106;
+                } else if (line.startsWith("Life")) {
+                    throw error("unsupported format #" + line);
+                }
+            } else if ('x' == c) {
+                mFormat = Format.RLE;
+                parseRleHeader(readLine());
+                parseRle();
+                return;
+            } else if (Format.LIFE_106 == mFormat || '-' == c || '+' == c || isDigit(c)) {
+                mFormat = Format.LIFE_106;
+                mPushedBack = c;
+                parseLife106();
+                return;
+            } else if ('!' == c || '.' == c || 'O' == c || '*' == c) {
+                mFormat = Format.PLAINTEXT;
+                mPushedBack = c;
+                parsePlaintext();
+                return;
+            } else if ('b' == c || 'o' == c || '$' == c) {
+                mFormat = Format.RLE;
+                mPushedBack = c;
+                parseRle();
+                return;
+            } else {
+                throw error("unrecognized pattern format");
+            }
+        }
+    }
+
+    private void parseRleHeader(String header) throws IOException {
+        // The 'x' was consumed by detectFormatAndParse(), e.g. " = 3, y = 3, rule = B3/S23"
+        for (String field : ("x" + header).split(",")) {
+            final int equals = field.indexOf('=');
+            if (0 > equals) {
+                throw error("malformed RLE header field \"" + field.trim() + "\"");
+            }
+            if ("rule".equals(field.substring(0, equals).trim())) {
+                mRule = field.substring(equals + 1).trim();
+            }
+        }
+    }
+
+    private void parseRle() throws IOException {
+        int x = 0;
+        int y = 0;
+        int runLength = 0;
+        while (true) {
+            final int c = next();
+            if (isDigit(c)) {
+                runLength = runLength * 10 + (c - '0');
+                if (maxRunLength < runLength) {
+                    throw error("run length too large");
+                }
+                continue;
+            }
+            if (isWhitespace(c)) {
+                // Lines may break between a run count and its tag
+                continue;
+            }
+            final int count = Math.max(1, runLength);
+            runLength = 0;
+            if ('b' == c) {
+                x += count;
+            } else if ('$' == c) {
+                x = 0;
+                y += count;
+            } else if ('!' == c || -1 == c) {
+                return;
+            } else if ('#' == c) {
+                readLine();
+            } else if (('a' <= c && 'z' >= c) || ('A' <= c && 'Z' >= c)) {
+                // 'o' is the live state. Other letters are states of multi-state rules.
+                for (int i = 0; i < count; i++) {
+                    spawn(x + i, y);
+                }
+                x += count;
+            } else {
+                throw error("unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private void parseLife106() throws IOException {
+        while (true) {
+            int c = next();
+            while (isWhitespace(c)) {
+                c = next();
+            }
+            if (-1 == c) {
+                return;
+            } else if ('#' == c) {
+                readLine();
+                continue;
+            }
+            mPushedBack = c;
+            final int x = readInt();
+            final int y = readInt();
+            spawn(x, y);
+        }
+    }
+
+    private int readInt() throws IOException {
+        int c = next();
+        while (' ' == c || '\t' == c) {
+            c = next();
+        }
+        final boolean isNegative = '-' == c;
+        if ('-' == c || '+' == c) {
+            c = next();
+        }
+        if (!isDigit(c)) {
+            throw error("expected \"x y\" coordinates");
+        }
+        long value = 0;
+        while (isDigit(c)) {
+            value = value * 10 + (c - '0');
+            if (Integer.MAX_VALUE < value - (isNegative ? 1 : 0)) {
+                throw error("coordinate out of range");
+            }
+            c = next();
+        }
+        mPushedBack = c;
+        return (int) (isNegative ? -value : value);
+    }
+
+    private void parsePlaintext() throws IOException {
+        int x = 0;
+        int y = 0;
+        while (true) {
+            final int c = next();
+            if (-1 == c) {
+                return;
+            } else if ('\n' == c) {
+                x = 0;
+                y += 1;
+            } else if ('!' == c && 0 == x) {
+                readLine();
+            } else if ('.' == c) {
+                x += 1;
+            } else if ('O' == c || '*' == c) {
+                spawn(x, y);
+                x += 1;
+            } else if (!isWhitespace(c)) {
+                throw error("unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    /**
+     * Consumes bytes up to and including the next line feed.
+     *
+     * @return at most the first maxHeaderLength characters of the consumed line without the line
+     * feed and any carriage return
+     */
+    private String readLine() throws IOException {
+        final StringBuilder line = new StringBuilder();
+        int c = next();
+        while (-1 != c && '\n' != c) {
+            if ('\r' != c && maxHeaderLength > line.length()) {
+                line.append((char) c);
+            }
+            c = next();
+        }
+        return line.toString();
+    }
+
+    private int next() throws IOException {
+        if (noByte != mPushedBack) {
+            final int c = mPushedBack;
+            mPushedBack = noByte;
+            return c;
+        }
+        if (!mBuffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        mBytesRead += 1;
+        final int c = mBuffer.get() & 0xff;
+        if ('\n' == c) {
+            mLine += 1;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        if (null == mStream) {
+            return false;
+        }
+        final int count = mStream.read(mBuffer.array(), 0, mBuffer.capacity());
+        if (0 >= count) {
+            return false;
+        }
+        mBuffer.position(0);
+        mBuffer.limit(count);
+        return true;
+    }
+
+    private void spawn(int x, int y) {
+        mBatch[mBatchLength++] = x;
+        mBatch[mBatchLength++] = y;
+        if (mBatch.length == mBatchLength) {
+            flush();
+            if (null != mListener && mNextProgressBytes <= mBytesRead) {
+                mNextProgressBytes = mBytesRead + progressInterval;
+                mListener.onProgress(mBytesRead, mTotalBytes, mCellCount);
+            }
+        }
+    }
+
+    private void flush() {
+        mEngine.spawnCells(mBatch, mBatchLength / 2);
+        mCellCount += mBatchLength / 2;
+        mBatchLength = 0;
+    }
+
+    private IOException error(String message) {
+        return new IOException("line " + mLine + ": " + message);
+    }
+
+    private static boolean isDigit(int c) {
+        return '0' <= c && '9' >= c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return ' ' == c || '\n' == c || '\r' == c || '\t' == c;
+    }
+}
@@ -0,0 +1,45 @@
+package edu.wright.gameoflife2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class provides traditional start configurations for the Game of Life as arrays of
+ * {x, y} cell coordinates suitable for LifeEngineType.create() and LifeEngine.seed(). They are
+ * used by the application's menu, by the headless runner, and by benchmarks.
+ * <p/>
+ * The arrays must not be modified.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class Patterns {
+    public static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+    public static final int smallExplosionsCellPositions[][] = {{0, 1}, {0, 2}, {1, 0}, {1, 1}, {1, 3}, {2, 1}, {2, 2},};
+    public static final int explosionsCellPositions[][] = {{0, 0}, {0, 1}, {0, 2}, {0, 3}, {0, 4}, {2, 0}, {2, 4}, {4, 0}, {4, 1}, {4, 2}, {4, 3}, {4, 4},};
+    public static final int fishCellPositions[][] = {{0, 1}, {0, 3}, {1, 0}, {2, 0}, {3, 0}, {3, 3}, {4, 0}, {4, 1}, {4, 2}};
+    public static final int tenInARowCellPositions[][] = {{-4, 0}, {-3, 0}, {-2, 0}, {-1, 0}, {0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0},};
+    public static final int pumpCellPositions[][] = {{0, 3}, {0, 4}, {0, 5}, {1, 0}, {1, 1}, {1, 5}, {2, 0}, {2, 1}, {2, 2}, {2, 3}, {2, 4}, {4, 0}, {4, 1}, {4, 2}, {4, 3}, {4, 4}, {5, 0}, {5, 1}, {5, 5}, {6, 3}, {6, 4}, {6, 5},};
+    public static final int shooterCellPositions[][] = {{0, 2}, {0, 3}, {1, 2}, {1, 3}, {8, 3}, {8, 4}, {9, 2}, {9, 4}, {10, 2}, {10, 3}, {16, 4}, {16, 5}, {16, 6}, {17, 4}, {18, 5}, {22, 1}, {22, 2}, {23, 0}, {23, 2}, {24, 0}, {24, 1}, {24, 12}, {24, 13}, {25, 12}, {25, 14}, {26, 12}, {34, 0}, {34, 1}, {35, 0}, {35, 1}, {35, 7}, {35, 8}, {35, 9}, {36, 7}, {37, 8},};
+    public static final int clearCellPositions[][] = {};
+
+    private Patterns() {
+    }
+
+    /**
+     * @return the start configurations keyed by short names such as "glider" and "shooter" in a
+     * stable order
+     */
+    public static Map<String, int[][]> byName() {
+        final Map<String, int[][]> map = new LinkedHashMap<>();
+        map.put("clear", clearCellPositions);
+        map.put("glider", gliderCellPositions);
+        map.put("small-explosion", smallExplosionsCellPositions);
+        map.put("explosion", explosionsCellPositions);
+        map.put("fish", fishCellPositions);
+        map.put("ten-in-a-row", tenInARowCellPositions);
+        map.put("pump", pumpCellPositions);
+        map.put("shooter", shooterCellPositions);
+        return map;
+    }
+}
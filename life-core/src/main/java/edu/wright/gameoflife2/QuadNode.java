@@ -0,0 +1,96 @@
+package edu.wright.gameoflife2;
+
+/**
+ * This class encapsulates one node of the quadtree used by HashLifeGameOfLifeModel. A node at
+ * level L represents a square of 2^L x 2^L cells divided into four level L-1 quadrants. Level 0
+ * nodes are single cells.
+ * <p/>
+ * Nodes are immutable apart from their memoized result, and they are canonical: there is at
+ * most one node with any particular four quadrants in a QuadNodeTable. As a result, identical
+ * regions anywhere in the universe and at any time share one node, equality is identity, and a
+ * result computed once for a node is reused everywhere the node appears.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class QuadNode {
+    final QuadNode nw;
+    final QuadNode ne;
+    final QuadNode sw;
+    final QuadNode se;
+    final int level;
+    final long population;
+    final long id;
+    final int hash;
+    /**
+     * For level 1 nodes, the four cells as bits: nw = 1, ne = 2, sw = 4, and se = 8
+     */
+    final int bits;
+
+    /**
+     * The memoized center of this node advanced 2^resultStep generations or null
+     */
+    QuadNode result;
+    int resultStep = -1;
+
+    /**
+     * Constructs a level 0 node (a single cell).
+     *
+     * @param isAlive true for a live cell and false for an empty cell
+     * @param id      an identifier unique among the nodes of one model
+     */
+    QuadNode(boolean isAlive, long id) {
+        this.nw = null;
+        this.ne = null;
+        this.sw = null;
+        this.se = null;
+        this.level = 0;
+        this.population = isAlive ? 1 : 0;
+        this.id = id;
+        this.hash = hashOf(id, id, id, id);
+        this.bits = isAlive ? 1 : 0;
+    }
+
+    /**
+     * Constructs a node with the specified quadrants which must all have the same level.
+     *
+     * @param nw the north west quadrant (cannot be null)
+     * @param ne the north east quadrant (cannot be null)
+     * @param sw the south west quadrant (cannot be null)
+     * @param se the south east quadrant (cannot be null)
+     * @param id an identifier unique among the nodes of one model
+     */
+    QuadNode(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se, long id) {
+        this.nw = nw;
+        this.ne = ne;
+        this.sw = sw;
+        this.se = se;
+        this.level = nw.level + 1;
+        this.population = nw.population + ne.population + sw.population + se.population;
+        this.id = id;
+        this.hash = hashOf(nw, ne, sw, se);
+        this.bits = (1 == level) ? (nw.bits | (ne.bits << 1) | (sw.bits << 2) | (se.bits << 3)) : 0;
+    }
+
+    /**
+     * @return the hash code that a node with quadrants nw, ne, sw, and se has
+     */
+    static int hashOf(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se) {
+        return hashOf(nw.id, ne.id, sw.id, se.id);
+    }
+
+    private static int hashOf(long nw, long ne, long sw, long se) {
+        long h = nw;
+        h = h * 0x9E3779B97F4A7C15L + ne;
+        h = h * 0x9E3779B97F4A7C15L + sw;
+        h = h * 0x9E3779B97F4A7C15L + se;
+        return (int) (h ^ (h >>> 29));
+    }
+
+    /**
+     * @return true if and only if this node has exactly the specified quadrants
+     */
+    boolean hasQuadrants(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se) {
+        return this.nw == nw && this.ne == ne && this.sw == sw && this.se == se;
+    }
+}
@@ -0,0 +1,118 @@
+package edu.wright.gameoflife2;
+
+import java.util.Arrays;
+
+/**
+ * This class encapsulates the set of canonical QuadNodes of level 2 and above used by one
+ * HashLifeGameOfLifeModel. Nodes are found by their four quadrants, so building a node that
+ * already exists returns the existing node instead.
+ * <p/>
+ * The implementation is an open-addressing hash table with linear probing. Nodes are never
+ * removed individually: the owning model discards the whole table and re-inserts only the nodes
+ * it still needs. See HashLifeGameOfLifeModel.collectGarbage().
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+final class QuadNodeTable {
+    private static final int minimumCapacity = 1024;
+    private static final float maximumLoadFactor = 0.6f;
+
+    private QuadNode[] mNodes;
+    private int mMask;
+    private int mSize;
+    private int mResizeThreshold;
+
+    /**
+     * Constructs an empty table.
+     */
+    QuadNodeTable() {
+        allocate(minimumCapacity);
+    }
+
+    /**
+     * @return the number of nodes in the table
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the node with the specified quadrants or null if the table does not contain one
+     */
+    QuadNode find(QuadNode nw, QuadNode ne, QuadNode sw, QuadNode se) {
+        final QuadNode[] nodes = mNodes;
+        int index = QuadNode.hashOf(nw, ne, sw, se) & mMask;
+        QuadNode node;
+        while (null != (node = nodes[index])) {
+            if (node.hasQuadrants(nw, ne, sw, se)) {
+                return node;
+            }
+            index = (index + 1) & mMask;
+        }
+        return null;
+    }
+
+    /**
+     * @param node any node (cannot be null)
+     * @return true if and only if the table contains node itself
+     */
+    boolean contains(QuadNode node) {
+        final QuadNode[] nodes = mNodes;
+        int index = node.hash & mMask;
+        QuadNode existing;
+        while (null != (existing = nodes[index])) {
+            if (existing == node) {
+                return true;
+            }
+            index = (index + 1) & mMask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds node to the table. The table must not already contain a node with the same quadrants.
+     *
+     * @param node the node to add (cannot be null)
+     */
+    void add(QuadNode node) {
+        int index = node.hash & mMask;
+        while (null != mNodes[index]) {
+            index = (index + 1) & mMask;
+        }
+        mNodes[index] = node;
+        mSize += 1;
+        if (mSize > mResizeThreshold) {
+            rehash(mNodes.length << 1);
+        }
+    }
+
+    /**
+     * Removes all nodes from the table and releases the memory they used.
+     */
+    void clear() {
+        allocate(minimumCapacity);
+        mSize = 0;
+    }
+
+    private void allocate(int capacity) {
+        mNodes = new QuadNode[capacity];
+        mMask = capacity - 1;
+        mResizeThreshold = (int) (capacity * maximumLoadFactor);
+    }
+
+    private void rehash(int newCapacity) {
+        final QuadNode[] oldNodes = mNodes;
+        allocate(newCapacity);
+        for (QuadNode node : oldNodes) {
+            if (null != node) {
+                int index = node.hash & mMask;
+                while (null != mNodes[index]) {
+                    index = (index + 1) & mMask;
+                }
+                mNodes[index] = node;
+            }
+        }
+        Arrays.fill(oldNodes, null);
+    }
+}
@@ -0,0 +1,190 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class saves snapshots to a SnapshotFile on a background thread and restores the most
+ * recently saved universe.
+ * <p/>
+ * save() never waits for the file system. If snapshots are saved faster than they can be
+ * written, only the newest unwritten snapshot is written. restore() returns the newest saved
+ * snapshot from memory when it is still available, for example when an Activity is recreated
+ * without its process being killed, and reads the file otherwise. Reading a large universe takes
+ * time proportional to its population, so restore(RestoreListener) does it on the background
+ * thread, after any pending write.
+ * <p/>
+ * save() and restore() can be called from any thread.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class SnapshotCheckpointer {
+    private static final long idleThreadTimeoutSeconds = 10;
+
+    private final File mFile;
+    private final AtomicReference<Checkpoint> mPendingCheckpoint = new AtomicReference<>();
+    private final Runnable mWriteCommand = new WriteCommand();
+    private volatile Checkpoint mLatestCheckpoint;
+    private volatile IOException mLastError;
+    // At most one writer thread exists at a time, and it exits after being idle
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(0, 1,
+            idleThreadTimeoutSeconds, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new WriterThreadFactory());
+
+    /**
+     * @param file the snapshot file to write and restore from (cannot be null)
+     */
+    public SnapshotCheckpointer(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Asks the background thread to write snapshot to the file. Saving the same snapshot again
+     * does nothing.
+     *
+     * @param snapshot   the snapshot to save (cannot be null)
+     * @param engineType the type of engine restore() creates from snapshot (cannot be null)
+     */
+    public void save(LifeSnapshot snapshot, LifeEngineType engineType) {
+        final Checkpoint latest = mLatestCheckpoint;
+        if (null != latest && latest.mSnapshot == snapshot && latest.mEngineType == engineType) {
+            return;
+        }
+        final Checkpoint checkpoint = new Checkpoint(snapshot, engineType);
+        mLatestCheckpoint = checkpoint;
+        if (null == mPendingCheckpoint.getAndSet(checkpoint)) {
+            mExecutor.execute(mWriteCommand);
+        }
+    }
+
+    /**
+     * @return a new engine with the cells and generation of the most recently saved snapshot or
+     * null if nothing has been saved
+     * @throws IOException if the file exists but cannot be read
+     */
+    public LifeEngine restore() throws IOException {
+        final Checkpoint latest = mLatestCheckpoint;
+        if (null != latest) {
+            return latest.mEngineType.create(latest.mSnapshot);
+        }
+        if (!mFile.exists()) {
+            return null;
+        }
+        return SnapshotFile.read(mFile);
+    }
+
+    /**
+     * Restores the most recently saved universe on the background thread and then informs
+     * listener on the background thread. Nothing is read from the file on the calling thread.
+     *
+     * @param listener informed of the restored universe (cannot be null). It is informed of null
+     *                 values if nothing has been saved or the file cannot be read, in which case
+     *                 getLastError() returns the reason.
+     */
+    public void restore(RestoreListener listener) {
+        mExecutor.execute(new RestoreCommand(listener));
+    }
+
+    /**
+     * @return the exception thrown by the most recent failed write or restore or null if none
+     * failed
+     */
+    public IOException getLastError() {
+        return mLastError;
+    }
+
+    /**
+     * This interface is implemented by objects that receive a universe restored in the
+     * background.
+     */
+    public interface RestoreListener {
+        /**
+         * Called on the checkpointer's background thread.
+         *
+         * @param engine   a new engine holding the restored universe or null if there is none
+         * @param snapshot a snapshot of engine's current generation or null if engine is null
+         */
+        void onRestored(LifeEngine engine, LifeSnapshot snapshot);
+    }
+
+    /**
+     * Each instance is an immutable pairing of a snapshot and the type of engine to restore it as.
+     */
+    private static class Checkpoint {
+        final LifeSnapshot mSnapshot;
+        final LifeEngineType mEngineType;
+
+        Checkpoint(LifeSnapshot snapshot, LifeEngineType engineType) {
+            mSnapshot = snapshot;
+            mEngineType = engineType;
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * The single instance writes the newest pending checkpoint.
+     */
+    private class WriteCommand implements Runnable {
+        @Override
+        public void run() {
+            final Checkpoint checkpoint = mPendingCheckpoint.getAndSet(null);
+            if (null == checkpoint) {
+                return;
+            }
+            try {
+                SnapshotFile.write(checkpoint.mSnapshot, checkpoint.mEngineType, mFile);
+            } catch (IOException e) {
+                mLastError = e;
+            }
+        }
+    }
+
+    /**
+     * This class implements the Command Pattern. See https://en.wikipedia.org/wiki/Command_pattern
+     * Each instance restores the most recently saved universe and informs a listener.
+     */
+    private class RestoreCommand implements Runnable {
+        final RestoreListener mListener;
+
+        RestoreCommand(RestoreListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void run() {
+            final Checkpoint latest = mLatestCheckpoint;
+            if (null != latest) {
+                mListener.onRestored(latest.mEngineType.create(latest.mSnapshot),
+                        latest.mSnapshot);
+                return;
+            }
+            LifeEngine engine = null;
+            try {
+                engine = restore();
+            } catch (IOException e) {
+                mLastError = e;
+            }
+            mListener.onRestored(engine, (null == engine) ? null : LifeSnapshot.of(engine, 0));
+        }
+    }
+
+    /**
+     * Each instance creates low priority daemon threads so that writing snapshots never keeps the
+     * application alive or competes with the user interface thread.
+     */
+    private static class WriterThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread result = new Thread(runnable, "GameOfLife checkpoint");
+            result.setDaemon(true);
+            result.setPriority(Thread.MIN_PRIORITY);
+            return result;
+        }
+    }
+}
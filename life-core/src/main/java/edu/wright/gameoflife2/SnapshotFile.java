@@ -0,0 +1,357 @@
+package edu.wright.gameoflife2;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * This class saves LifeSnapshot instances in a compact versioned binary format and restores
+ * them as engines, so that a universe survives the application's process being killed.
+ * <p/>
+ * The format is:
+ * <pre>
+ *     int      magic ("GOLS")
+ *     short    version
+ *     byte     length of the engine type name, followed by the name in ASCII
+ *     byte     length of the rule in B/S notation, followed by the rule in ASCII (version 2)
+ *     long     generation
+ *     int      population
+ *     int      tile count
+ *     tiles    in LifeSnapshot tile order, each:
+ *              varint  zig-zag encoded difference from the previous tile's y (first: from 0)
+ *              varint  zig-zag encoded difference from the previous tile's x (first: from 0)
+ *              varint  number of cells in the tile
+ *              either  64 longs, one bit per cell by row, if there are more than
+ *                      bitmapThreshold cells
+ *              or      for each cell in increasing order, row * tileSize + column as a varint
+ *                      for the first cell and as the difference from the previous cell - 1 for
+ *                      the others
+ *     int      CRC32 of all preceding bytes
+ * </pre>
+ * Multi-byte values are big-endian and varints are unsigned LEB128. Version 1 files, which have
+ * no rule, are read as B3/S23.
+ * <p/>
+ * Snapshots are written through NIO channels in fixed size chunks, so writing needs no memory
+ * proportional to the population. Files are written to a temporary file that then replaces the
+ * destination only after it has been forced to the storage device, so an interrupted write,
+ * crash, or power loss never damages an existing snapshot file.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class SnapshotFile {
+    public static final int magic = 0x474F4C53;
+    public static final int version = 2;
+    /** Tiles with more cells than this are stored as bitmaps */
+    public static final int bitmapThreshold = 384;
+
+    private static final int cellIndexMask = LifeSnapshot.tileSize * LifeSnapshot.tileSize - 1;
+    private static final int bitmapLongCount = LifeSnapshot.tileSize;
+    private static final int bufferSize = 1 << 16;
+    // Three varints of at most 5 bytes plus the larger of a bitmap and a list of cells
+    private static final int maximumTileBytes = 15 +
+            Math.max(bitmapLongCount * 8, bitmapThreshold * 2);
+    private static final int batchSize = 1 << 16;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * Writes snapshot to file, replacing file if it exists.
+     *
+     * @param snapshot   the snapshot to write (cannot be null)
+     * @param engineType the type of engine read() creates from the file (cannot be null)
+     * @param file       the destination
+     * @throws IOException if the file cannot be written. An existing file is left unchanged.
+     */
+    public static void write(LifeSnapshot snapshot, LifeEngineType engineType, File file)
+            throws IOException {
+        final File temporaryFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporaryFile)) {
+            write(snapshot, engineType, stream.getChannel());
+            // The bytes must reach the storage device before the rename can replace a good file
+            stream.getChannel().force(true);
+        } catch (IOException e) {
+            temporaryFile.delete();
+            throw e;
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            throw new IOException("cannot replace " + file);
+        }
+    }
+
+    /**
+     * Writes snapshot to channel. The channel is not closed.
+     *
+     * @param snapshot   the snapshot to write (cannot be null)
+     * @param engineType the type of engine read() creates from the written bytes (cannot be null)
+     * @param channel    the destination
+     * @throws IOException if channel cannot be written
+     */
+    public static void write(LifeSnapshot snapshot, LifeEngineType engineType,
+                             WritableByteChannel channel) throws IOException {
+        final TileWriter writer = new TileWriter(channel);
+        writer.writeHeader(snapshot, engineType);
+        snapshot.forEachTile(writer);
+        writer.finish();
+    }
+
+    /**
+     * Memory maps file and reads the snapshot it contains.
+     *
+     * @param file a file written by write()
+     * @return a new engine of the type passed to write() with the snapshot's cells, rule, and
+     * generation
+     * @throws IOException if file cannot be read or is not a valid snapshot file
+     */
+    public static LifeEngine read(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            final FileChannel channel = randomAccessFile.getChannel();
+            final long size = channel.size();
+            if (Integer.MAX_VALUE < size) {
+                throw new IOException(file + " is too large to map");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Reads a snapshot from the remaining bytes of buffer.
+     *
+     * @param buffer bytes written by write()
+     * @return a new engine of the type passed to write() with the snapshot's cells, rule, and
+     * generation
+     * @throws IOException if buffer does not contain a valid snapshot
+     */
+    public static LifeEngine read(ByteBuffer buffer) throws IOException {
+        if (4 > buffer.remaining()) {
+            throw new IOException("snapshot is truncated");
+        }
+        final ByteBuffer body = buffer.slice();
+        body.limit(body.limit() - 4);
+        final CRC32 checksum = new CRC32();
+        checksum.update(body.duplicate());
+        if ((int) checksum.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("snapshot checksum does not match");
+        }
+        try {
+            return readBody(body);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("snapshot is truncated");
+        }
+    }
+
+    private static LifeEngine readBody(ByteBuffer buffer) throws IOException {
+        if (magic != buffer.getInt()) {
+            throw new IOException("not a snapshot file");
+        }
+        final int fileVersion = buffer.getShort();
+        if (1 > fileVersion || version < fileVersion) {
+            throw new IOException("unsupported snapshot version " + fileVersion);
+        }
+        final LifeEngineType engineType;
+        try {
+            engineType = LifeEngineType.valueOf(getString(buffer));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("unknown engine type in snapshot");
+        }
+        LifeRule rule = LifeRule.conway;
+        if (2 <= fileVersion) {
+            try {
+                rule = LifeRule.parse(getString(buffer));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("invalid rule in snapshot");
+            }
+        }
+        final long generation = buffer.getLong();
+        final int population = buffer.getInt();
+        final int tileCount = buffer.getInt();
+
+        final LifeEngine engine = engineType.create(Patterns.clearCellPositions);
+        engine.setRule(rule);
+        final int batch[] = new int[batchSize * 2];
+        int batchLength = 0;
+        int cellCount = 0;
+        int tileX = 0;
+        int tileY = 0;
+        for (int tile = 0; tile < tileCount; tile++) {
+            tileY += zigZagDecode(getVarint(buffer));
+            tileX += zigZagDecode(getVarint(buffer));
+            final int left = tileX << LifeSnapshot.tileShift;
+            final int top = tileY << LifeSnapshot.tileShift;
+            final int count = getVarint(buffer);
+            if (0 >= count || LifeSnapshot.tileSize * LifeSnapshot.tileSize < count) {
+                throw new IOException("invalid snapshot tile");
+            }
+            if (batch.length < batchLength + count * 2) {
+                engine.spawnCells(batch, batchLength / 2);
+                batchLength = 0;
+            }
+            if (bitmapThreshold < count) {
+                for (int row = 0; row < bitmapLongCount; row++) {
+                    long bits = buffer.getLong();
+                    while (0 != bits) {
+                        batch[batchLength++] = left + Long.numberOfTrailingZeros(bits);
+                        batch[batchLength++] = top + row;
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                int index = -1;
+                for (int i = 0; i < count; i++) {
+                    index += getVarint(buffer) + 1;
+                    if (cellIndexMask < index) {
+                        throw new IOException("invalid snapshot tile");
+                    }
+                    batch[batchLength++] = left + (index & (LifeSnapshot.tileSize - 1));
+                    batch[batchLength++] = top + (index >> LifeSnapshot.tileShift);
+                }
+            }
+            cellCount += count;
+        }
+        engine.spawnCells(batch, batchLength / 2);
+        if (population != cellCount || buffer.hasRemaining()) {
+            throw new IOException("snapshot population does not match its cells");
+        }
+        ((AbstractLifeEngine) engine).setGeneration(generation);
+        return engine;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final byte ascii[] = new byte[buffer.get() & 0xff];
+        buffer.get(ascii);
+        return new String(ascii, StandardCharsets.US_ASCII);
+    }
+
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            result |= (b & 0x7f) << shift;
+            if (0 <= b) {
+                return result;
+            }
+        }
+        throw new IOException("invalid varint in snapshot");
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance encodes visited tiles into a fixed size buffer that is written to a channel
+     * whenever it may not have room for another tile. The first IOException is remembered and
+     * thrown by finish() because visitors cannot throw checked exceptions.
+     */
+    private static class TileWriter implements LifeSnapshot.TileVisitor {
+        private final WritableByteChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(bufferSize);
+        private final CRC32 mChecksum = new CRC32();
+        private final long mBitmap[] = new long[bitmapLongCount];
+        private int mTileX;
+        private int mTileY;
+        private IOException mError;
+
+        TileWriter(WritableByteChannel channel) {
+            mChannel = channel;
+        }
+
+        void writeHeader(LifeSnapshot snapshot, LifeEngineType engineType) {
+            mBuffer.putInt(magic);
+            mBuffer.putShort((short) version);
+            putString(engineType.name());
+            putString(snapshot.getRule().toString());
+            mBuffer.putLong(snapshot.getGeneration());
+            mBuffer.putInt(snapshot.getPopulation());
+            mBuffer.putInt(snapshot.getTileCount());
+        }
+
+        @Override
+        public void visit(int tileX, int tileY, long cells[], int start, int end) {
+            if (null != mError) {
+                return;
+            }
+            try {
+                if (maximumTileBytes > mBuffer.remaining()) {
+                    flush();
+                }
+            } catch (IOException e) {
+                mError = e;
+                return;
+            }
+            putVarint(zigZagEncode(tileY - mTileY));
+            putVarint(zigZagEncode(tileX - mTileX));
+            mTileX = tileX;
+            mTileY = tileY;
+            final int count = end - start;
+            putVarint(count);
+            if (bitmapThreshold < count) {
+                for (int i = start; i < end; i++) {
+                    final int index = (int) cells[i] & cellIndexMask;
+                    mBitmap[index >> LifeSnapshot.tileShift] |= 1L << (index & 63);
+                }
+                for (int row = 0; row < bitmapLongCount; row++) {
+                    mBuffer.putLong(mBitmap[row]);
+                    mBitmap[row] = 0;
+                }
+            } else {
+                int previous = -1;
+                for (int i = start; i < end; i++) {
+                    final int index = (int) cells[i] & cellIndexMask;
+                    putVarint(index - previous - 1);
+                    previous = index;
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (null != mError) {
+                throw mError;
+            }
+            flush();
+            mBuffer.putInt((int) mChecksum.getValue());
+            mBuffer.flip();
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+
+        private void flush() throws IOException {
+            mBuffer.flip();
+            mChecksum.update(mBuffer.duplicate());
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+
+        private void putString(String string) {
+            final byte ascii[] = string.getBytes(StandardCharsets.US_ASCII);
+            mBuffer.put((byte) ascii.length);
+            mBuffer.put(ascii);
+        }
+
+        private void putVarint(int value) {
+            while (0 != (value & ~0x7f)) {
+                mBuffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            mBuffer.put((byte) value);
+        }
+
+        private static int zigZagEncode(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package edu.wright.gameoflife2;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class stores the rows of 64 x 64 cell tiles outside of the Java heap so that a
+ * TiledGameOfLifeModel can set aside tiles that have stopped changing (see
+ * TiledGameOfLifeModel.setTileStore()). Stored tiles cost the garbage collector nothing, and
+ * they do not count against the heap limit that ends long runs with an OutOfMemoryError.
+ * <p/>
+ * Each tile is compressed by storing only its occupied rows after a long whose bit r is set if
+ * row r is occupied, so the debris left behind by an explosion takes a fraction of the 512 bytes
+ * of a BitTile row buffer. Compressed tiles are kept in blocks of 16, 32, ... 1024 bytes carved
+ * out of pages of pageSize bytes, and the blocks of removed tiles are reused for tiles that need
+ * blocks of the same size.
+ * <p/>
+ * Pages are direct ByteBuffers until the memory budget is used up. After that, pages are mapped
+ * from a spill file in the spill directory, if there is one, so the operating system keeps them
+ * on disk rather than in memory when memory is short. The spill file is deleted as soon as it
+ * is opened, so no file is left behind even if the process is killed. Java cannot unmap a
+ * MappedByteBuffer, so the file's disk space is only reclaimed once the file is closed and every
+ * page mapped from it has been garbage collected. When there is neither budget nor a spill file
+ * left, put() refuses further tiles and they simply stay on the heap.
+ * <p/>
+ * Instances are not thread safe.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public final class TileStore implements Closeable {
+    /** 16 MB: about 32000 typical tiles of debris */
+    public static final long defaultMemoryBudgetBytes = 16L << 20;
+    public static final int pageShift = 20;
+    public static final int pageSize = 1 << pageShift;
+    // Blocks are allocated and addressed in units of 1 << unitShift bytes
+    private static final int unitShift = 4;
+    private static final int smallestBlockShift = unitShift;
+    private static final int largestBlockShift = 10;
+    private static final int rowBytes = 8;
+
+    private final long mMemoryBudgetBytes;
+    private final File mSpillDirectory;
+    private final ArrayList<ByteBuffer> mPages = new ArrayList<>();
+    // New blocks are carved from mPages.get(mCurrentPage) starting at offset mPageEnd
+    private int mCurrentPage = -1;
+    private int mPageEnd = pageSize;
+    // Free block addresses per block size: mFreeBlocks[shift - smallestBlockShift]
+    private final int[][] mFreeBlocks = new int[largestBlockShift - smallestBlockShift + 1][];
+    private final int[] mFreeBlockCounts = new int[largestBlockShift - smallestBlockShift + 1];
+    // The address of each stored tile keyed by LongCellSet.pack(tileX, tileY)
+    private final LongIntMap mAddresses = new LongIntMap();
+    private long mDirectBytes;
+    private long mMappedBytes;
+    private long mStoredBytes;
+    private RandomAccessFile mSpillFile;
+    private IOException mSpillError;
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param memoryBudgetBytes the most memory to allocate for direct ByteBuffers ( >= 0)
+     * @param spillDirectory    the directory in which to create the spill file once the memory
+     *                          budget is used up, or null to keep every stored tile in memory
+     */
+    public TileStore(long memoryBudgetBytes, File spillDirectory) {
+        if (0 > memoryBudgetBytes) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be >= 0");
+        }
+        mMemoryBudgetBytes = memoryBudgetBytes;
+        mSpillDirectory = spillDirectory;
+        for (int i = 0; i < mFreeBlocks.length; i++) {
+            mFreeBlocks[i] = new int[16];
+        }
+    }
+
+    /**
+     * @return the number of stored tiles
+     */
+    public int size() {
+        return mAddresses.size();
+    }
+
+    /**
+     * @return the number of bytes of direct ByteBuffers allocated for pages
+     */
+    public long getDirectBytes() {
+        return mDirectBytes;
+    }
+
+    /**
+     * @return the number of bytes of pages mapped from the spill file
+     */
+    public long getMappedBytes() {
+        return mMappedBytes;
+    }
+
+    /**
+     * @return the number of bytes in the blocks of the stored tiles
+     */
+    public long getStoredBytes() {
+        return mStoredBytes;
+    }
+
+    /**
+     * @return the error that prevented the spill file from growing or null if there was none
+     */
+    public IOException getSpillError() {
+        return mSpillError;
+    }
+
+    /**
+     * Stores a copy of the rows of a tile, replacing any tile already stored at the same tile
+     * coordinates.
+     *
+     * @param tileX the x coordinate of the tile
+     * @param tileY the y coordinate of the tile
+     * @param rows  the rows of the tile: bit c of rows[r] is the cell at column c of row r
+     * @return true if the tile was stored and false if the store is full
+     */
+    boolean put(int tileX, int tileY, long rows[]) {
+        long occupiedRows = 0;
+        for (int r = 0; r < BitTile.size; r++) {
+            if (0 != rows[r]) {
+                occupiedRows |= 1L << r;
+            }
+        }
+        final int byteCount = rowBytes * (1 + Long.bitCount(occupiedRows));
+        final int address = allocate(blockShiftFor(byteCount));
+        if (0 > address) {
+            return false;
+        }
+        remove(tileX, tileY, null);
+        final ByteBuffer page = mPages.get(pageOf(address));
+        int offset = offsetOf(address);
+        page.putLong(offset, occupiedRows);
+        for (int r = 0; r < BitTile.size; r++) {
+            if (0 != rows[r]) {
+                offset += rowBytes;
+                page.putLong(offset, rows[r]);
+            }
+        }
+        mAddresses.put(LongCellSet.pack(tileX, tileY), address);
+        mStoredBytes += 1 << blockShiftFor(byteCount);
+        return true;
+    }
+
+    /**
+     * @param tileX the x coordinate of the tile
+     * @param tileY the y coordinate of the tile
+     * @return true if and only if a tile is stored at the tile coordinates
+     */
+    boolean contains(int tileX, int tileY) {
+        return LongIntMap.noValue != mAddresses.get(LongCellSet.pack(tileX, tileY));
+    }
+
+    /**
+     * @param tileX the x coordinate of the tile
+     * @param tileY the y coordinate of the tile
+     * @param r     a row of the tile ( >= 0 and < BitTile.size)
+     * @return row r of the tile stored at the tile coordinates or 0 if there is none
+     */
+    long rowAt(int tileX, int tileY, int r) {
+        final int address = mAddresses.get(LongCellSet.pack(tileX, tileY));
+        if (0 > address) {
+            return 0;
+        }
+        final ByteBuffer page = mPages.get(pageOf(address));
+        final int offset = offsetOf(address);
+        final long occupiedRows = page.getLong(offset);
+        if (0 == (occupiedRows & (1L << r))) {
+            return 0;
+        }
+        final int index = 1 + Long.bitCount(occupiedRows & ((1L << r) - 1));
+        return page.getLong(offset + rowBytes * index);
+    }
+
+    /**
+     * @param tileX the x coordinate of the tile
+     * @param tileY the y coordinate of the tile
+     * @param rows  receives the rows of the tile stored at the tile coordinates. rows is not
+     *              changed if no tile is stored there.
+     * @return true if a tile is stored at the tile coordinates and false otherwise
+     */
+    boolean get(int tileX, int tileY, long rows[]) {
+        final int address = mAddresses.get(LongCellSet.pack(tileX, tileY));
+        if (0 > address) {
+            return false;
+        }
+        read(address, rows);
+        return true;
+    }
+
+    /**
+     * Removes the tile stored at the tile coordinates, if any.
+     *
+     * @param tileX the x coordinate of the tile
+     * @param tileY the y coordinate of the tile
+     * @param rows  receives the rows of the removed tile, or null. rows is not changed if no
+     *              tile is stored at the tile coordinates.
+     * @return true if a tile was removed and false otherwise
+     */
+    boolean remove(int tileX, int tileY, long rows[]) {
+        final int address = mAddresses.remove(LongCellSet.pack(tileX, tileY));
+        if (0 > address) {
+            return false;
+        }
+        if (null != rows) {
+            read(address, rows);
+        }
+        final int blockShift = blockShiftFor(rowBytes *
+                (1 + Long.bitCount(mPages.get(pageOf(address)).getLong(offsetOf(address)))));
+        free(address, blockShift);
+        mStoredBytes -= 1 << blockShift;
+        return true;
+    }
+
+    /**
+     * @return one more than the largest slot index that may be passed to isSlotOccupied(),
+     * slotTileX(), slotTileY(), and readSlot()
+     */
+    int slotCount() {
+        return mAddresses.slotCount();
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount()
+     * @return true if and only if slot holds a tile
+     */
+    boolean isSlotOccupied(int slot) {
+        return mAddresses.isSlotOccupied(slot);
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the x coordinate of the tile stored in slot
+     */
+    int slotTileX(int slot) {
+        return LongCellSet.unpackX(mAddresses.slotKey(slot));
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @return the y coordinate of the tile stored in slot
+     */
+    int slotTileY(int slot) {
+        return LongCellSet.unpackY(mAddresses.slotKey(slot));
+    }
+
+    /**
+     * @param slot an index >= 0 and < slotCount() for which isSlotOccupied() returns true
+     * @param rows receives the rows of the tile stored in slot
+     */
+    void readSlot(int slot, long rows[]) {
+        read(mAddresses.slotValue(slot), rows);
+    }
+
+    /**
+     * Removes every tile. The pages are kept and reused for the tiles stored afterwards.
+     */
+    public void clear() {
+        mAddresses.clear();
+        Arrays.fill(mFreeBlockCounts, 0);
+        mCurrentPage = -1;
+        mPageEnd = pageSize;
+        mStoredBytes = 0;
+    }
+
+    /**
+     * Removes every tile, drops the store's references to every page, and closes the spill
+     * file. The memory of direct pages and the disk space of mapped pages are reclaimed later,
+     * when the garbage collector collects the dropped pages. The store can still be used
+     * afterwards and adds pages as needed.
+     */
+    @Override
+    public void close() {
+        clear();
+        mPages.clear();
+        mDirectBytes = 0;
+        mMappedBytes = 0;
+        if (null != mSpillFile) {
+            try {
+                mSpillFile.close();
+            } catch (IOException e) {
+                mSpillError = e;
+            }
+            mSpillFile = null;
+        }
+    }
+
+    private void read(int address, long rows[]) {
+        final ByteBuffer page = mPages.get(pageOf(address));
+        int offset = offsetOf(address);
+        long occupiedRows = page.getLong(offset);
+        for (int r = 0; r < BitTile.size; r++) {
+            if (0 != (occupiedRows & 1L)) {
+                offset += rowBytes;
+                rows[r] = page.getLong(offset);
+            } else {
+                rows[r] = 0;
+            }
+            occupiedRows >>>= 1;
+        }
+    }
+
+    private static int blockShiftFor(int byteCount) {
+        return Math.max(smallestBlockShift, 32 - Integer.numberOfLeadingZeros(byteCount - 1));
+    }
+
+    private static int pageOf(int address) {
+        return address >>> (pageShift - unitShift);
+    }
+
+    private static int offsetOf(int address) {
+        return (address & ((1 << (pageShift - unitShift)) - 1)) << unitShift;
+    }
+
+    /**
+     * @return the address of a free block of 1 << blockShift bytes or -1 if no page can be added
+     */
+    private int allocate(int blockShift) {
+        final int sizeClass = blockShift - smallestBlockShift;
+        if (0 < mFreeBlockCounts[sizeClass]) {
+            mFreeBlockCounts[sizeClass] -= 1;
+            return mFreeBlocks[sizeClass][mFreeBlockCounts[sizeClass]];
+        }
+        final int blockSize = 1 << blockShift;
+        if (mPageEnd + blockSize > pageSize && !nextPage()) {
+            return -1;
+        }
+        final int address = (mCurrentPage << (pageShift - unitShift)) | (mPageEnd >>> unitShift);
+        mPageEnd += blockSize;
+        return address;
+    }
+
+    private void free(int address, int blockShift) {
+        final int sizeClass = blockShift - smallestBlockShift;
+        if (mFreeBlockCounts[sizeClass] == mFreeBlocks[sizeClass].length) {
+            mFreeBlocks[sizeClass] = Arrays.copyOf(mFreeBlocks[sizeClass],
+                    mFreeBlocks[sizeClass].length * 2);
+        }
+        mFreeBlocks[sizeClass][mFreeBlockCounts[sizeClass]] = address;
+        mFreeBlockCounts[sizeClass] += 1;
+    }
+
+    /**
+     * Makes the next page the page from which new blocks are carved, reusing a page kept by
+     * clear() or else adding a direct page within the memory budget or a page of the spill file.
+     *
+     * @return true if there is a next page and false if no page can be added
+     */
+    private boolean nextPage() {
+        if (mCurrentPage + 1 == mPages.size()) {
+            // Addresses must be non-negative ints
+            if (pageOf(Integer.MAX_VALUE) == mPages.size()) {
+                return false;
+            }
+            final ByteBuffer page;
+            if (mDirectBytes + pageSize <= mMemoryBudgetBytes) {
+                page = ByteBuffer.allocateDirect(pageSize);
+                mDirectBytes += pageSize;
+            } else {
+                page = mapSpillPage();
+                if (null == page) {
+                    return false;
+                }
+                mMappedBytes += pageSize;
+            }
+            mPages.add(page.order(ByteOrder.nativeOrder()));
+        }
+        mCurrentPage += 1;
+        mPageEnd = 0;
+        return true;
+    }
+
+    /**
+     * @return a new page mapped from the end of the spill file or null if there is no spill
+     * directory or the file cannot grow
+     */
+    private ByteBuffer mapSpillPage() {
+        if (null == mSpillDirectory || null != mSpillError) {
+            return null;
+        }
+        try {
+            if (null == mSpillFile) {
+                final File file = File.createTempFile("tiles", ".spill", mSpillDirectory);
+                mSpillFile = new RandomAccessFile(file, "rw");
+                // The open file stays usable. Its space is reclaimed once it is closed and the
+                // pages mapped from it are garbage collected.
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            return mSpillFile.getChannel().map(FileChannel.MapMode.READ_WRITE, mMappedBytes,
+                    pageSize);
+        } catch (IOException e) {
+            mSpillError = e;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,897 @@
+package edu.wright.gameoflife2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class is a LifeEngine that stores the game grid as a sparse collection of BitTile
+ * instances. Each tile holds 64 x 64 cells as 64 longs, and only tiles that contain cells, or that
+ * may receive new cells in the next generation, are stored.
+ * <p/>
+ * Each generation is computed a whole tile row (64 cells) at a time: the eight neighbors of every
+ * cell in a row are obtained by shifting the rows above, below, and at the same position, with
+ * the bits that cross tile edges "carried" in from the adjacent tiles. The eight neighbor words
+ * are then summed with bitwise full adders, producing the neighbor count of all 64 cells as a few
+ * bit planes, and the rule is applied to those planes with the fixed sequence of bitwise
+ * operations that the LifeRule compiled when it was parsed (see LifeRule.nextRow()).
+ * There are no per-cell hash lookups, so dense patterns and random soups are much faster than
+ * with GameOfLifeModel.
+ * <p/>
+ * Because each tile's next generation depends only on the current generation of the tile and its
+ * neighbors, tiles can be computed in any order. When parallelism is enabled with
+ * setParallelism(), the tiles are divided into spatially contiguous groups that are computed
+ * concurrently on a ForkJoinPool. Births along tile borders need no special treatment because
+ * every tile that can receive a birth exists before any tile is computed, and the new generation
+ * is only published by the serial pass that follows. Results are therefore identical to serial
+ * updates. Universes with fewer tiles than the parallel threshold are always updated serially
+ * because the cost of coordinating threads would exceed the work.
+ * <p/>
+ * Long runs leave debris such as still lifes strewn over ever larger areas. With a TileStore
+ * (see setTileStore()), tiles whose neighborhood has not changed for getQuiescentGenerations()
+ * generations and that are outside the resident area (see setResidentArea()) are moved out of
+ * the heap into the store every few generations. A stored tile is loaded back as soon as a tile
+ * within two tiles of it changes, which is before any tile that reads it is computed, or when
+ * cells are spawned in it, the resident area reaches it, or the rule changes. Stored tiles are
+ * still visited by forEachPosition() and the other queries, so results are exactly the same.
+ * <p/>
+ * This class supports the same "infinite" game area as GameOfLifeModel and produces identical
+ * generations, so it can be used anywhere a LifeEngine is used, including by GameOfLifeView.
+ *
+ * @author Erik M. Buck
+ * @version %G%
+ */
+public class TiledGameOfLifeModel extends AbstractLifeEngine {
+    private static final int defaultParallelTileThreshold = 32;
+    private static final int tilesPerTask = 8;
+    /** Tiles unchanged for this many generations may be stored. See setTileStore(). */
+    public static final int defaultQuiescentGenerations = 256;
+    // Quiescent tiles are looked for once every this many generations
+    private static final int storePeriod = 64;
+    // Tiles this close to the resident area are not stored
+    private static final int residentMarginTiles = 2;
+    private static final Comparator<BitTile> tileOrder = new Comparator<BitTile>() {
+        @Override
+        public int compare(BitTile a, BitTile b) {
+            final int result = Integer.compare(a.tileY, b.tileY);
+            return (0 != result) ? result : Integer.compare(a.tileX, b.tileX);
+        }
+    };
+
+    private final LongObjectMap<BitTile> mTiles = new LongObjectMap<>();
+    private final ArrayList<BitTile> mTileList = new ArrayList<>();
+    private final ArrayList<BitTile> mFreeTiles = new ArrayList<>();
+    private final long[] mCenter = new long[BitTile.size + 2];
+    private final long[] mWest = new long[BitTile.size + 2];
+    private final long[] mEast = new long[BitTile.size + 2];
+    private int mPopulation;
+    private int mTileCount;
+    private int mComputedTileCount;
+    private ForkJoinPool mPool;
+    private int mParallelTileThreshold = defaultParallelTileThreshold;
+    private TileStore mTileStore;
+    private int mQuiescentGenerations = defaultQuiescentGenerations;
+    private int mGenerationsUntilStore = storePeriod;
+    private int mStoredPopulation;
+    private final long[] mStoredRows = new long[BitTile.size];
+    private boolean mHasResidentArea;
+    private int mResidentLeftTile;
+    private int mResidentTopTile;
+    private int mResidentRightTile;
+    private int mResidentBottomTile;
+
+    /**
+     * Constructs a TiledGameOfLifeModel with cells at all positions in initialPositions.
+     *
+     * @param initialPositions an array of arrays of integer coordinates. Each arrays of integer
+     *                         coordinates must contain exactly two integers.
+     */
+    TiledGameOfLifeModel(final int initialPositions[][]) {
+        this.seed(initialPositions);
+    }
+
+    /**
+     * Update the state of all encapsulated cells by applying the logic (rules) of the Game of Life
+     * to every tile. This happens in three passes:
+     * <ol>
+     * <li>An empty tile is added next to every edge with live cells of a tile that changed in the
+     * last generation because new cells may be born there. Stored tiles within two tiles of a
+     * tile that started changing are loaded because the tiles they neighbor may be
+     * computed.</li>
+     * <li>The next generation of every tile is chosen. A tile whose 3x3 tile neighborhood did not
+     * change in the last generation keeps its cells. A tile whose neighborhood is the same as two
+     * generations ago returns to its previous generation. Only the remaining tiles are computed,
+     * into each tile's spare row buffer, so the cost of a generation depends on how much of the
+     * universe is active rather than on the population. The population and changed flags of
+     * each tile's next generation are recorded at the same time. All tiles still expose the
+     * current generation while this happens, so tiles may be computed concurrently. See
+     * setParallelism().</li>
+     * <li>The chosen next generation of every tile becomes current by swapping buffers, and
+     * tiles that have been empty for three generations and have no occupied neighbors are
+     * recycled. Every storePeriod generations, quiescent tiles are moved to the TileStore, if
+     * any.</li>
+     * </ol>
+     * This method is called by update().
+     */
+    @Override
+    protected void computeNextGeneration() {
+        collectTiles();
+        for (int i = 0; i < mTileList.size(); i++) {
+            final BitTile tile = mTileList.get(i);
+            if (tile.changed) {
+                if (!tile.isActive) {
+                    // Tiles that were already changing have no stored tiles nearby
+                    tile.isActive = true;
+                    loadStoredTilesNear(tile);
+                }
+                addNeighborsForEdges(tile);
+            }
+        }
+
+        collectTiles();
+        int population = 0;
+        if (null != mPool && mTileList.size() >= mParallelTileThreshold) {
+            final NextRowsTask task = new NextRowsTask(this, 0, mTileList.size());
+            mPool.invoke(task);
+            population = task.mPopulation;
+        } else {
+            for (int i = 0; i < mTileList.size(); i++) {
+                population += prepareNextRows(mTileList.get(i), mCenter, mWest, mEast);
+            }
+        }
+
+        int computedTileCount = 0;
+        for (int i = 0; i < mTileList.size(); i++) {
+            final BitTile tile = mTileList.get(i);
+            switch (tile.nextAction) {
+                case BitTile.useNextRows:
+                    tile.useNextRows();
+                    computedTileCount += 1;
+                    break;
+                case BitTile.restorePreviousRows:
+                    tile.restorePreviousRows();
+                    break;
+                default:
+                    tile.keepRows();
+                    break;
+            }
+            tile.isActive &= tile.changed;
+            if (BitTile.keepRows != tile.nextAction) {
+                tile.quietGenerations = 0;
+            } else if (Integer.MAX_VALUE != tile.quietGenerations) {
+                tile.quietGenerations += 1;
+            }
+            if (0 == tile.population && !tile.changed && !tile.changedSinceTwo &&
+                    !hasOccupiedNeighbor(tile)) {
+                mTiles.remove(LongCellSet.pack(tile.tileX, tile.tileY));
+                mFreeTiles.add(tile);
+            }
+        }
+        mPopulation = population + mStoredPopulation;
+        mTileCount = mTileList.size();
+        mComputedTileCount = computedTileCount;
+        countEvaluatedCells((long) computedTileCount * BitTile.size * BitTile.size);
+
+        if (null != mTileStore && 0 == --mGenerationsUntilStore) {
+            mGenerationsUntilStore = storePeriod;
+            storeQuiescentTiles();
+        }
+    }
+
+    /**
+     * Marks every tile as changed so that the next generation of every tile is computed with the
+     * new rule instead of being reused from the current or previous generation.
+     */
+    @Override
+    protected void ruleChanged() {
+        loadStoredTilesIn(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE);
+        for (int slot = 0; slot < mTiles.slotCount(); slot++) {
+            if (mTiles.isSlotOccupied(slot)) {
+                final BitTile tile = mTiles.slotValue(slot);
+                tile.changed = true;
+                tile.changedSinceTwo = true;
+                tile.spawned = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of tiles examined by the most recent update()
+     */
+    public int getTileCount() {
+        return mTileCount;
+    }
+
+    /**
+     * @return the number of tiles whose next generation was computed by the most recent update()
+     */
+    public int getComputedTileCount() {
+        return mComputedTileCount;
+    }
+
+    /**
+     * @return the number of tiles that the most recent update() skipped because their
+     * neighborhood was unchanged or repeated the generation before last
+     */
+    public int getSkippedTileCount() {
+        return mTileCount - mComputedTileCount;
+    }
+
+    /**
+     * Sets the number of threads used to compute each generation. A parallelism of 1 (the
+     * default) computes every generation on the calling thread. Larger values create a
+     * ForkJoinPool with that many threads which is used whenever the universe has at least
+     * getParallelTileThreshold() tiles. Idle pool threads exit on their own, so a model that is
+     * discarded does not need to be shut down.
+     *
+     * @param parallelism the number of threads to use ( >= 1). Runtime.availableProcessors()
+     *                    is a reasonable choice.
+     */
+    public void setParallelism(int parallelism) {
+        if (1 > parallelism) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (getParallelism() != parallelism) {
+            if (null != mPool) {
+                mPool.shutdown();
+            }
+            mPool = (1 == parallelism) ? null : new ForkJoinPool(parallelism);
+        }
+    }
+
+    /**
+     * @return the number of threads used to compute each generation
+     */
+    public int getParallelism() {
+        return (null == mPool) ? 1 : mPool.getParallelism();
+    }
+
+    /**
+     * @param threshold the smallest number of tiles for which a generation is computed in
+     *                  parallel when parallelism is enabled ( >= 1)
+     */
+    public void setParallelTileThreshold(int threshold) {
+        mParallelTileThreshold = Math.max(1, threshold);
+    }
+
+    /**
+     * @return the smallest number of tiles for which a generation is computed in parallel
+     */
+    public int getParallelTileThreshold() {
+        return mParallelTileThreshold;
+    }
+
+    /**
+     * Moves tiles that stop changing out of the heap into store. Each tile is compressed and
+     * stored once it and its neighbors have kept their cells for getQuiescentGenerations()
+     * generations, unless it is near the resident area, and it is loaded again when activity
+     * comes near it. Tiles are kept on the heap when the store is full. Passing null loads every
+     * stored tile back.
+     *
+     * @param store an empty store that no other engine uses or null to keep every tile on the
+     *              heap. The store is owned by this model until another store is set.
+     */
+    public void setTileStore(TileStore store) {
+        loadStoredTilesIn(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE);
+        mTileStore = store;
+        if (null != store) {
+            store.clear();
+        }
+    }
+
+    /**
+     * @return the store set by setTileStore() or null if there is none
+     */
+    public TileStore getTileStore() {
+        return mTileStore;
+    }
+
+    /**
+     * @param generations the number of generations tiles and their neighbors must keep their
+     *                    cells before they are stored ( >= 1)
+     */
+    public void setQuiescentGenerations(int generations) {
+        if (1 > generations) {
+            throw new IllegalArgumentException("generations must be >= 1");
+        }
+        mQuiescentGenerations = generations;
+    }
+
+    /**
+     * @return the number of generations tiles must keep their cells before they are stored
+     */
+    public int getQuiescentGenerations() {
+        return mQuiescentGenerations;
+    }
+
+    /**
+     * Keeps the tiles in and near a rectangle on the heap, such as the part of the game that is
+     * displayed. Stored tiles in or near the rectangle are loaded immediately.
+     *
+     * @param left   the smallest x coordinate in the rectangle
+     * @param top    the smallest y coordinate in the rectangle
+     * @param right  the largest x coordinate in the rectangle ( >= left)
+     * @param bottom the largest y coordinate in the rectangle ( >= top)
+     */
+    public void setResidentArea(int left, int top, int right, int bottom) {
+        mHasResidentArea = true;
+        mResidentLeftTile = Math.max(Integer.MIN_VALUE + residentMarginTiles,
+                left >> BitTile.shift) - residentMarginTiles;
+        mResidentTopTile = Math.max(Integer.MIN_VALUE + residentMarginTiles,
+                top >> BitTile.shift) - residentMarginTiles;
+        mResidentRightTile = Math.min(Integer.MAX_VALUE - residentMarginTiles,
+                right >> BitTile.shift) + residentMarginTiles;
+        mResidentBottomTile = Math.min(Integer.MAX_VALUE - residentMarginTiles,
+                bottom >> BitTile.shift) + residentMarginTiles;
+        loadStoredTilesIn(mResidentLeftTile, mResidentTopTile, mResidentRightTile,
+                mResidentBottomTile);
+    }
+
+    /**
+     * @return the number of tiles in the TileStore
+     */
+    public int getStoredTileCount() {
+        return (null == mTileStore) ? 0 : mTileStore.size();
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell. This method does not
+     * mutate the model, and it does not allocate any memory.
+     *
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPosition(CellVisitor visitor) {
+        final LongObjectMap<BitTile> tiles = mTiles;
+        for (int slot = 0; slot < tiles.slotCount(); slot++) {
+            if (tiles.isSlotOccupied(slot)) {
+                final BitTile tile = tiles.slotValue(slot);
+                visitRows(tile.rows, tile.tileX, tile.tileY, visitor);
+            }
+        }
+        if (0 != getStoredTileCount()) {
+            final TileStore store = mTileStore;
+            for (int slot = 0; slot < store.slotCount(); slot++) {
+                if (store.isSlotOccupied(slot)) {
+                    store.readSlot(slot, mStoredRows);
+                    visitRows(mStoredRows, store.slotTileX(slot), store.slotTileY(slot),
+                            visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls visitor.visit() once for each position occupied by a cell in a rectangle. Only the
+     * tiles that overlap the rectangle are examined, and whole rows are masked to the rectangle
+     * before their cells are visited.
+     *
+     * @param left    the smallest x coordinate in the rectangle
+     * @param top     the smallest y coordinate in the rectangle
+     * @param right   the largest x coordinate in the rectangle
+     * @param bottom  the largest y coordinate in the rectangle
+     * @param visitor the object to be informed of each occupied position (cannot be null)
+     */
+    @Override
+    public void forEachPositionIn(int left, int top, int right, int bottom, CellVisitor visitor) {
+        if (left > right || top > bottom) {
+            return;
+        }
+        final int leftTile = left >> BitTile.shift;
+        final int topTile = top >> BitTile.shift;
+        final int rightTile = right >> BitTile.shift;
+        final int bottomTile = bottom >> BitTile.shift;
+        final int storedTileCount = getStoredTileCount();
+        if ((long) (rightTile - leftTile + 1) * (bottomTile - topTile + 1) >
+                mTiles.size() + storedTileCount) {
+            // Fewer tiles exist than the rectangle covers: examine the existing tiles
+            final LongObjectMap<BitTile> tiles = mTiles;
+            for (int slot = 0; slot < tiles.slotCount(); slot++) {
+                if (tiles.isSlotOccupied(slot)) {
+                    final BitTile tile = tiles.slotValue(slot);
+                    visitRowsIn(tile.rows, tile.tileX, tile.tileY, left, top, right, bottom,
+                            visitor);
+                }
+            }
+            final TileStore store = mTileStore;
+            for (int slot = 0; 0 != storedTileCount && slot < store.slotCount(); slot++) {
+                if (store.isSlotOccupied(slot)) {
+                    final int tileX = store.slotTileX(slot);
+                    final int tileY = store.slotTileY(slot);
+                    if (tileX >= leftTile && tileX <= rightTile && tileY >= topTile &&
+                            tileY <= bottomTile) {
+                        store.readSlot(slot, mStoredRows);
+                        visitRowsIn(mStoredRows, tileX, tileY, left, top, right, bottom,
+                                visitor);
+                    }
+                }
+            }
+        } else {
+            for (int tileY = topTile; tileY <= bottomTile; tileY++) {
+                for (int tileX = leftTile; tileX <= rightTile; tileX++) {
+                    final BitTile tile = getTile(tileX, tileY);
+                    if (null != tile) {
+                        visitRowsIn(tile.rows, tileX, tileY, left, top, right, bottom, visitor);
+                    } else if (0 != storedTileCount &&
+                            mTileStore.get(tileX, tileY, mStoredRows)) {
+                        visitRowsIn(mStoredRows, tileX, tileY, left, top, right, bottom,
+                                visitor);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the smallest rectangle that contains every cell by examining the occupied rows
+     * and columns of each tile rather than each cell.
+     *
+     * @param bounds an array of at least 4 ints that receives the smallest x, smallest y, largest
+     *               x, and largest y coordinates of any cell (in that order) if there are cells
+     * @return true if there are cells and bounds has been set and false otherwise
+     */
+    @Override
+    public boolean getBounds(int bounds[]) {
+        boolean isEmpty = true;
+        final LongObjectMap<BitTile> tiles = mTiles;
+        for (int slot = 0; slot < tiles.slotCount(); slot++) {
+            if (tiles.isSlotOccupied(slot)) {
+                final BitTile tile = tiles.slotValue(slot);
+                if (0 != tile.population) {
+                    addToBounds(tile.rows, tile.tileX, tile.tileY, bounds, isEmpty);
+                    isEmpty = false;
+                }
+            }
+        }
+        if (0 != getStoredTileCount()) {
+            final TileStore store = mTileStore;
+            for (int slot = 0; slot < store.slotCount(); slot++) {
+                if (store.isSlotOccupied(slot)) {
+                    // Only occupied tiles are stored
+                    store.readSlot(slot, mStoredRows);
+                    addToBounds(mStoredRows, store.slotTileX(slot), store.slotTileY(slot),
+                            bounds, isEmpty);
+                    isEmpty = false;
+                }
+            }
+        }
+        return !isEmpty;
+    }
+
+    /**
+     * Grows bounds to include the cells of an occupied tile.
+     *
+     * @param isEmpty true if bounds has not been set yet, in which case it is set to the bounds
+     *                of the tile
+     */
+    private static void addToBounds(long rows[], int tileX, int tileY, int bounds[],
+                                    boolean isEmpty) {
+        int firstRow = 0;
+        while (0 == rows[firstRow]) {
+            firstRow++;
+        }
+        int lastRow = BitTile.mask;
+        while (0 == rows[lastRow]) {
+            lastRow--;
+        }
+        long columns = 0;
+        for (long row : rows) {
+            columns |= row;
+        }
+        final int originX = tileX << BitTile.shift;
+        final int originY = tileY << BitTile.shift;
+        final int left = originX + Long.numberOfTrailingZeros(columns);
+        final int right = originX + BitTile.mask - Long.numberOfLeadingZeros(columns);
+        if (isEmpty) {
+            bounds[0] = left;
+            bounds[1] = originY + firstRow;
+            bounds[2] = right;
+            bounds[3] = originY + lastRow;
+        } else {
+            bounds[0] = Math.min(bounds[0], left);
+            bounds[1] = Math.min(bounds[1], originY + firstRow);
+            bounds[2] = Math.max(bounds[2], right);
+            bounds[3] = Math.max(bounds[3], originY + lastRow);
+        }
+    }
+
+    /**
+     * @return the number of cells in the game
+     */
+    @Override
+    public int getPopulation() {
+        return mPopulation;
+    }
+
+    /**
+     * This method does not change the game model's internal state.
+     *
+     * @param x an x coordinate in the game grid
+     * @param y a y coordinate in the game grid
+     * @return true if there is a cell at {x, y} and false otherwise
+     */
+    @Override
+    public boolean containsCellAt(int x, int y) {
+        final BitTile tile = mTiles.get(LongCellSet.pack(x >> BitTile.shift, y >> BitTile.shift));
+        final long row;
+        if (null != tile) {
+            row = tile.rows[y & BitTile.mask];
+        } else if (0 != getStoredTileCount()) {
+            row = mTileStore.rowAt(x >> BitTile.shift, y >> BitTile.shift, y & BitTile.mask);
+        } else {
+            return false;
+        }
+        return 0 != (row & (1L << (x & BitTile.mask)));
+    }
+
+    /**
+     * Inserts a new cell into the game at {x, y}. Spawning a cell at coordinates that are already
+     * occupied by a cell is harmless.
+     *
+     * @param x the x grid coordinate for the new cell
+     * @param y the y grid coordinate for the new cell
+     */
+    @Override
+    public void spawnCellAt(int x, int y) {
+        final BitTile tile = getOrAddTile(x >> BitTile.shift, y >> BitTile.shift);
+        final long bit = 1L << (x & BitTile.mask);
+        final int r = y & BitTile.mask;
+        if (0 == (tile.rows[r] & bit)) {
+            tile.rows[r] |= bit;
+            tile.population += 1;
+            tile.changed = true;
+            tile.changedSinceTwo = true;
+            tile.spawned = true;
+            mPopulation += 1;
+        }
+    }
+
+    private static void visitRows(long rows[], int tileX, int tileY, CellVisitor visitor) {
+        final int originX = tileX << BitTile.shift;
+        final int originY = tileY << BitTile.shift;
+        for (int r = 0; r < BitTile.size; r++) {
+            long row = rows[r];
+            while (0 != row) {
+                visitor.visit(originX + Long.numberOfTrailingZeros(row), originY + r);
+                row &= row - 1;
+            }
+        }
+    }
+
+    private static void visitRowsIn(long rows[], int tileX, int tileY, int left, int top,
+                                    int right, int bottom, CellVisitor visitor) {
+        final long originX = (long) tileX << BitTile.shift;
+        final long originY = (long) tileY << BitTile.shift;
+        final int firstRow = (int) Math.max(0, top - originY);
+        final int lastRow = (int) Math.min(BitTile.mask, bottom - originY);
+        final int firstColumn = (int) Math.max(0, left - originX);
+        final int lastColumn = (int) Math.min(BitTile.mask, right - originX);
+        if (firstRow > lastRow || firstColumn > lastColumn) {
+            return;
+        }
+        final long columnMask = (-1L << firstColumn) & (-1L >>> (BitTile.mask - lastColumn));
+        for (int r = firstRow; r <= lastRow; r++) {
+            long row = rows[r] & columnMask;
+            while (0 != row) {
+                visitor.visit((int) originX + Long.numberOfTrailingZeros(row), (int) originY + r);
+                row &= row - 1;
+            }
+        }
+    }
+
+    private BitTile getTile(int tileX, int tileY) {
+        return mTiles.get(LongCellSet.pack(tileX, tileY));
+    }
+
+    private BitTile getOrAddTile(int tileX, int tileY) {
+        final long key = LongCellSet.pack(tileX, tileY);
+        BitTile result = mTiles.get(key);
+        if (null == result) {
+            if (mFreeTiles.isEmpty()) {
+                result = new BitTile(tileX, tileY);
+            } else {
+                result = mFreeTiles.remove(mFreeTiles.size() - 1);
+                result.reset(tileX, tileY);
+            }
+            mTiles.put(key, result);
+            if (0 != getStoredTileCount() && mTileStore.remove(tileX, tileY, result.rows)) {
+                // The tile kept its cells for generations, so they are also the previous cells
+                System.arraycopy(result.rows, 0, result.previousRows, 0, BitTile.size);
+                result.population = result.countCells();
+                mStoredPopulation -= result.population;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the stored tiles within two tiles of tile: every tile whose next generation may be
+     * computed because tile changed reads tiles at most that far away.
+     */
+    private void loadStoredTilesNear(BitTile tile) {
+        if (0 == getStoredTileCount()) {
+            return;
+        }
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                if (mTileStore.contains(tile.tileX + dx, tile.tileY + dy)) {
+                    getOrAddTile(tile.tileX + dx, tile.tileY + dy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the stored tiles in a rectangle of tile coordinates.
+     */
+    private void loadStoredTilesIn(int leftTile, int topTile, int rightTile, int bottomTile) {
+        if (0 == getStoredTileCount()) {
+            return;
+        }
+        final TileStore store = mTileStore;
+        final long keys[] = new long[store.size()];
+        int count = 0;
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isSlotOccupied(slot)) {
+                final int tileX = store.slotTileX(slot);
+                final int tileY = store.slotTileY(slot);
+                if (tileX >= leftTile && tileX <= rightTile && tileY >= topTile &&
+                        tileY <= bottomTile) {
+                    keys[count++] = LongCellSet.pack(tileX, tileY);
+                }
+            }
+        }
+        // Loading removes tiles from the store, so the slots are not examined while loading
+        for (int i = 0; i < count; i++) {
+            getOrAddTile(LongCellSet.unpackX(keys[i]), LongCellSet.unpackY(keys[i]));
+        }
+    }
+
+    private boolean isQuiescent(BitTile tile) {
+        return null == tile || tile.quietGenerations >= mQuiescentGenerations;
+    }
+
+    private boolean isResident(BitTile tile) {
+        return mHasResidentArea && tile.tileX >= mResidentLeftTile &&
+                tile.tileX <= mResidentRightTile && tile.tileY >= mResidentTopTile &&
+                tile.tileY <= mResidentBottomTile;
+    }
+
+    /**
+     * @return true if every tile within two tiles of tile, including tile, has kept its cells
+     * for at least mQuiescentGenerations generations
+     */
+    private boolean isNeighborhoodQuiescent(BitTile tile) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                if (!isQuiescent(getTile(tile.tileX + dx, tile.tileY + dy))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves every occupied tile outside the resident area whose 5x5 tile neighborhood is
+     * quiescent to the TileStore until the store is full. A tile that changes later within two
+     * tiles of a stored tile therefore starts changing after the tile was stored, which is when
+     * computeNextGeneration() loads stored tiles near it, and a stored tile is unlikely to be
+     * loaded again soon.
+     */
+    private void storeQuiescentTiles() {
+        for (int i = 0; i < mTileList.size(); i++) {
+            final BitTile tile = mTileList.get(i);
+            if (0 == tile.population || tile.quietGenerations < mQuiescentGenerations ||
+                    isResident(tile) || tile != getTile(tile.tileX, tile.tileY) ||
+                    !isNeighborhoodQuiescent(tile)) {
+                continue;
+            }
+            if (!mTileStore.put(tile.tileX, tile.tileY, tile.rows)) {
+                return;
+            }
+            // The tile is not recycled: keeping its row buffers would keep them on the heap
+            mTiles.remove(LongCellSet.pack(tile.tileX, tile.tileY));
+            mStoredPopulation += tile.population;
+        }
+    }
+
+    /**
+     * Fills mTileList with every tile sorted by tile row and then tile column so that any range
+     * of the list is a spatially contiguous band of the universe.
+     */
+    private void collectTiles() {
+        mTileList.clear();
+        for (int slot = 0; slot < mTiles.slotCount(); slot++) {
+            if (mTiles.isSlotOccupied(slot)) {
+                mTileList.add(mTiles.slotValue(slot));
+            }
+        }
+        if (null != mPool && mTileList.size() >= mParallelTileThreshold) {
+            Collections.sort(mTileList, tileOrder);
+        }
+    }
+
+    private boolean hasOccupiedNeighbor(BitTile tile) {
+        final int tx = tile.tileX;
+        final int ty = tile.tileY;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                final BitTile neighbor = getTile(tx + dx, ty + dy);
+                if (null != neighbor && 0 != neighbor.population) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isChanged(BitTile tile) {
+        return null != tile && tile.changed;
+    }
+
+    private static boolean isChangedSinceTwo(BitTile tile) {
+        return null != tile && tile.changedSinceTwo;
+    }
+
+    private void addNeighborsForEdges(BitTile tile) {
+        final int tx = tile.tileX;
+        final int ty = tile.tileY;
+        final long top = tile.rows[0];
+        final long bottom = tile.rows[BitTile.mask];
+        final long columns = tile.occupiedColumns();
+
+        if (0 != top) getOrAddTile(tx, ty - 1);
+        if (0 != bottom) getOrAddTile(tx, ty + 1);
+        if (0 != (columns & 1L)) getOrAddTile(tx - 1, ty);
+        if (0 > columns) getOrAddTile(tx + 1, ty);
+        if (0 != (top & 1L)) getOrAddTile(tx - 1, ty - 1);
+        if (0 > top) getOrAddTile(tx + 1, ty - 1);
+        if (0 != (bottom & 1L)) getOrAddTile(tx - 1, ty + 1);
+        if (0 > bottom) getOrAddTile(tx + 1, ty + 1);
+    }
+
+    /**
+     * Chooses how the next generation of tile is obtained, sets tile.nextAction accordingly, and
+     * computes the next generation into tile.nextRows when it cannot be reused from the current
+     * or previous generation, and then calls tile.summarizeNext(). This method only reads the
+     * current generation of tiles and writes tile.nextAction, tile.nextRows, and the summary, so
+     * it may be called for different tiles concurrently as long as each call has its own scratch
+     * arrays.
+     *
+     * @param tile   the tile to compute (cannot be null)
+     * @param center scratch array of length BitTile.size + 2 that receives the tile's rows with
+     *               the adjacent rows of the tiles above and below at each end
+     * @param west   scratch array of length BitTile.size + 2 that receives the bits the west
+     *               neighbor tiles contribute to each row of center, shifted into bit 0
+     * @param east   scratch array of length BitTile.size + 2 that receives the bits the east
+     *               neighbor tiles contribute to each row of center, shifted into bit 63
+     * @return the population of the next generation of tile
+     */
+    private int prepareNextRows(BitTile tile, long[] center, long[] west, long[] east) {
+        final int tx = tile.tileX;
+        final int ty = tile.tileY;
+        final int last = BitTile.size + 1;
+
+        final BitTile north = getTile(tx, ty - 1);
+        final BitTile south = getTile(tx, ty + 1);
+        final BitTile westTile = getTile(tx - 1, ty);
+        final BitTile eastTile = getTile(tx + 1, ty);
+        final BitTile northWest = getTile(tx - 1, ty - 1);
+        final BitTile northEast = getTile(tx + 1, ty - 1);
+        final BitTile southWest = getTile(tx - 1, ty + 1);
+        final BitTile southEast = getTile(tx + 1, ty + 1);
+
+        if (!tile.changed && !isChanged(north) && !isChanged(south) && !isChanged(westTile) &&
+                !isChanged(eastTile) && !isChanged(northWest) && !isChanged(northEast) &&
+                !isChanged(southWest) && !isChanged(southEast)) {
+            tile.nextAction = BitTile.keepRows;
+            tile.summarizeNext();
+            return tile.nextPopulation;
+        }
+        if (!tile.changedSinceTwo && !isChangedSinceTwo(north) && !isChangedSinceTwo(south) &&
+                !isChangedSinceTwo(westTile) && !isChangedSinceTwo(eastTile) &&
+                !isChangedSinceTwo(northWest) && !isChangedSinceTwo(northEast) &&
+                !isChangedSinceTwo(southWest) && !isChangedSinceTwo(southEast)) {
+            tile.nextAction = BitTile.restorePreviousRows;
+            tile.summarizeNext();
+            return tile.nextPopulation;
+        }
+        tile.nextAction = BitTile.useNextRows;
+
+        center[0] = (null == north) ? 0 : north.rows[BitTile.mask];
+        center[last] = (null == south) ? 0 : south.rows[0];
+        System.arraycopy(tile.rows, 0, center, 1, BitTile.size);
+
+        west[0] = (null == northWest) ? 0 : northWest.rows[BitTile.mask] >>> BitTile.mask;
+        west[last] = (null == southWest) ? 0 : southWest.rows[0] >>> BitTile.mask;
+        east[0] = (null == northEast) ? 0 : northEast.rows[BitTile.mask] << BitTile.mask;
+        east[last] = (null == southEast) ? 0 : southEast.rows[0] << BitTile.mask;
+        for (int r = 0; r < BitTile.size; r++) {
+            west[r + 1] = (null == westTile) ? 0 : westTile.rows[r] >>> BitTile.mask;
+            east[r + 1] = (null == eastTile) ? 0 : eastTile.rows[r] << BitTile.mask;
+        }
+
+        final LifeRule rule = getRule();
+        final long[] next = tile.nextRows;
+        for (int r = 0; r < BitTile.size; r++) {
+            final long above = center[r];
+            final long row = center[r + 1];
+            final long below = center[r + 2];
+
+            // The eight neighbor words: bit i of each word is one neighbor of cell i
+            final long nw = (above << 1) | west[r];
+            final long n = above;
+            final long ne = (above >>> 1) | east[r];
+            final long w = (row << 1) | west[r + 1];
+            final long e = (row >>> 1) | east[r + 1];
+            final long sw = (below << 1) | west[r + 2];
+            final long s = below;
+            final long se = (below >>> 1) | east[r + 2];
+
+            // Full adders reduce the eight one-bit neighbors to a count of ones, twos, fours,
+            // and eights
+            final long s0 = nw ^ n ^ ne;
+            final long c0 = (nw & n) | (ne & (nw ^ n));
+            final long s1 = w ^ e ^ sw;
+            final long c1 = (w & e) | (sw & (w ^ e));
+            final long s2 = s ^ se;
+            final long c2 = s & se;
+            final long ones = s0 ^ s1 ^ s2;
+            final long c3 = (s0 & s1) | (s2 & (s0 ^ s1));
+            final long t0 = c0 ^ c1 ^ c2;
+            final long c4 = (c0 & c1) | (c2 & (c0 ^ c1));
+            final long twos = t0 ^ c3;
+            final long c5 = t0 & c3;
+            final long fours = c4 ^ c5;
+            final long eights = c4 & c5;
+
+            next[r] = rule.nextRow(row, ones, twos, fours, eights);
+        }
+        tile.summarizeNext();
+        return tile.nextPopulation;
+    }
+
+    /**
+     * This class implements the Command Pattern for ForkJoinPool. Each instance prepares the next
+     * generation of the tiles in a range of the model's tile list, splitting the range in half
+     * until each part is small enough to compute directly, and sums the populations of their
+     * next generations.
+     */
+    private static class NextRowsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final TiledGameOfLifeModel mModel;
+        final int mStart;
+        final int mEnd;
+        int mPopulation;
+
+        NextRowsTask(TiledGameOfLifeModel model, int start, int end) {
+            mModel = model;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= tilesPerTask) {
+                final long[] center = new long[BitTile.size + 2];
+                final long[] west = new long[BitTile.size + 2];
+                final long[] east = new long[BitTile.size + 2];
+                for (int i = mStart; i < mEnd; i++) {
+                    mPopulation += mModel.prepareNextRows(mModel.mTileList.get(i), center, west,
+                            east);
+                }
+            } else {
+                final int middle = (mStart + mEnd) >>> 1;
+                final NextRowsTask first = new NextRowsTask(mModel, mStart, middle);
+                final NextRowsTask second = new NextRowsTask(mModel, middle, mEnd);
+                invokeAll(first, second);
+                mPopulation = first.mPopulation + second.mPopulation;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for BoundedGameOfLifeModel, which will execute on the development machine
+ * (host).
+ */
+public class BoundedGameOfLifeModelTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    /**
+     * @return the generation after cells on board computed one cell at a time as a reference
+     */
+    private static Set<Long> referenceStep(Set<Long> cells, BoundedGameOfLifeModel board,
+                                           LifeRule rule) {
+        final boolean isTorus = BoundedGameOfLifeModel.Topology.TORUS == board.getTopology();
+        final Map<Long, Integer> counts = new HashMap<>();
+        for (int y = board.getTop(); y <= board.getBottom(); y++) {
+            for (int x = board.getLeft(); x <= board.getRight(); x++) {
+                counts.put(LongCellSet.pack(x, y), 0);
+            }
+        }
+        for (long cell : cells) {
+            final int x = LongCellSet.unpackX(cell);
+            final int y = LongCellSet.unpackY(cell);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    if (isTorus) {
+                        nx = board.getLeft() + Math.floorMod(nx - board.getLeft(),
+                                board.getWidth());
+                        ny = board.getTop() + Math.floorMod(ny - board.getTop(),
+                                board.getHeight());
+                    }
+                    final Integer count = counts.get(LongCellSet.pack(nx, ny));
+                    if ((0 != dx || 0 != dy) && null != count) {
+                        counts.put(LongCellSet.pack(nx, ny), count + 1);
+                    }
+                }
+            }
+        }
+        final Set<Long> result = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            final int mask = cells.contains(entry.getKey()) ? rule.getSurvivals() : rule.getBirths();
+            if (0 != (mask & (1 << entry.getValue()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void update_matchesReferenceAtTheEdges() {
+        final Random random = new Random(11);
+        // Widths below, at, and above a multiple of 64 exercise the carries between words
+        for (int width : new int[]{7, 64, 70, 130}) {
+            for (BoundedGameOfLifeModel.Topology topology :
+                    BoundedGameOfLifeModel.Topology.values()) {
+                for (String ruleString : new String[]{"B3/S23", "B36/S23", "B2/S"}) {
+                    final LifeRule rule = LifeRule.parse(ruleString);
+                    final BoundedGameOfLifeModel board =
+                            new BoundedGameOfLifeModel(width, 9, topology, new int[0][]);
+                    board.setRule(rule);
+                    for (int i = 0; i < width * 4; i++) {
+                        board.spawnCellAt(board.getLeft() + random.nextInt(width),
+                                board.getTop() + random.nextInt(9));
+                    }
+                    Set<Long> expected = positions(board);
+                    for (int generation = 0; generation < 6; generation++) {
+                        expected = referenceStep(expected, board, rule);
+                        board.update();
+                        final String description = width + " " + topology + " " + ruleString;
+                        assertEquals(description, expected, positions(board));
+                        assertEquals(description, expected.size(), board.getPopulation());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void torus_returnsGliderToItsStart() {
+        final BoundedGameOfLifeModel board = new BoundedGameOfLifeModel(70, 20,
+                BoundedGameOfLifeModel.Topology.TORUS, gliderCellPositions);
+        final Set<Long> start = positions(board);
+        // A glider moves one position diagonally every 4 generations
+        board.step(4 * 70 * 2);
+        assertEquals(start, positions(board));
+        assertTrue(board.containsCellAt(1, 0));
+        assertFalse(board.containsCellAt(1 + 70, 0));
+    }
+
+    @Test
+    public void deadEdges_matchSparseEngineInsideTheBoard() {
+        final Random random = new Random(3);
+        final int[][] soup = new int[5000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(160) - 80, random.nextInt(160) - 80};
+        }
+        final LifeEngine expected = LifeEngineType.SPARSE_HASH.create(soup);
+        final LifeEngine board = LifeEngineType.BOUNDED_BOARD.create(soup);
+        expected.step(50);
+        board.step(50);
+        assertEquals(positions(expected), positions(board));
+        final int expectedBounds[] = new int[4];
+        final int bounds[] = new int[4];
+        assertTrue(expected.getBounds(expectedBounds));
+        assertTrue(board.getBounds(bounds));
+        assertArrayEquals(expectedBounds, bounds);
+    }
+
+    @Test
+    public void spawnCellAt_discardsOrWrapsPositionsBeyondTheEdges() {
+        final BoundedGameOfLifeModel bounded = new BoundedGameOfLifeModel(10, 10,
+                BoundedGameOfLifeModel.Topology.DEAD_EDGES, new int[0][]);
+        final BoundedGameOfLifeModel torus = new BoundedGameOfLifeModel(10, 10,
+                BoundedGameOfLifeModel.Topology.TORUS, new int[0][]);
+        assertEquals(-5, bounded.getLeft());
+        assertEquals(4, bounded.getBottom());
+        for (BoundedGameOfLifeModel board : new BoundedGameOfLifeModel[]{bounded, torus}) {
+            board.spawnCellAt(5, 0);
+            board.spawnCellAt(Integer.MIN_VALUE, 2);
+        }
+        assertEquals(0, bounded.getPopulation());
+        assertEquals(2, torus.getPopulation());
+        assertTrue(torus.containsCellAt(-5, 0));
+        assertEquals(LifeEngineType.TOROIDAL_BOARD, LifeEngineType.of(torus));
+        assertEquals(LifeEngineType.BOUNDED_BOARD, LifeEngineType.of(bounded));
+    }
+}
@@ -0,0 +1,111 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for CellRaster, which will execute on the development machine (host).
+ */
+public class CellRasterTest {
+    private static final int live = 1;
+    private static final int empty = 0;
+
+    private static int[][] soup(long seed) {
+        final Random random = new Random(seed);
+        final int[][] result = new int[800][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new int[]{random.nextInt(120) - 60, random.nextInt(120) - 60};
+        }
+        return result;
+    }
+
+    private static int[] copyOfRegion(CellRaster raster) {
+        final int result[] = new int[raster.getWidth() * raster.getHeight()];
+        System.arraycopy(raster.getPixels(), 0, result, 0, result.length);
+        return result;
+    }
+
+    @Test
+    public void update_patchesChangesToMatchARedraw() {
+        final LifeEngine engine = new GameOfLifeModel(soup(5));
+        LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+        final CellRaster raster = new CellRaster(live, empty);
+        raster.update(snapshot, -40, -40, 40, 40);
+        final int left = raster.getLeft();
+        final int width = raster.getWidth();
+        for (int generation = 0; generation < 20; generation++) {
+            engine.update();
+            snapshot = LifeSnapshot.of(engine, 0, snapshot);
+            raster.clean();
+            raster.update(snapshot, -40, -40, 40, 40);
+            assertEquals(left, raster.getLeft());
+            assertEquals(width, raster.getWidth());
+
+            final CellRaster redrawn = new CellRaster(live, empty);
+            redrawn.update(snapshot, -40, -40, 40, 40);
+            assertArrayEquals(copyOfRegion(redrawn), copyOfRegion(raster));
+        }
+    }
+
+    @Test
+    public void dirtyRectangles_coverOnlyChangedBlocks() {
+        final int[][] blinker = {{10, 10}, {11, 10}, {12, 10}};
+        final LifeEngine engine = new GameOfLifeModel(blinker);
+        LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+        final CellRaster raster = new CellRaster(live, empty);
+        raster.update(snapshot, 0, 0, 200, 200);
+        final int bounds[] = new int[4];
+        assertTrue(raster.getDirtyBounds(bounds));
+        raster.clean();
+        assertFalse(raster.getDirtyBounds(bounds));
+
+        // Nothing changes for the same generation
+        raster.update(snapshot, 0, 0, 200, 200);
+        assertFalse(raster.getDirtyBounds(bounds));
+
+        engine.update();
+        snapshot = LifeSnapshot.of(engine, 0, snapshot);
+        raster.update(snapshot, 0, 0, 200, 200);
+        assertTrue(raster.getDirtyBounds(bounds));
+        assertArrayEquals(new int[]{10, 9, 12, 11}, bounds);
+        final List<int[]> rectangles = new ArrayList<>();
+        raster.forEachDirtyRectangle(new CellRaster.RectangleVisitor() {
+            @Override
+            public void visit(int left, int top, int right, int bottom) {
+                rectangles.add(new int[]{left, top, right, bottom});
+            }
+        });
+        assertEquals(1, rectangles.size());
+        assertArrayEquals(new int[]{0, 0, CellRaster.blockSize - 1, CellRaster.blockSize - 1},
+                rectangles.get(0));
+    }
+
+    @Test
+    public void update_redrawsWhenTheRegionMoves() {
+        final LifeEngine engine = new GameOfLifeModel(soup(9));
+        final LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+        final CellRaster raster = new CellRaster(live, empty);
+        raster.update(snapshot, -40, -40, 40, 40);
+        raster.clean();
+
+        // A small pan stays inside the margin
+        raster.update(snapshot, -30, -30, 50, 50);
+        assertEquals(-2 * CellRaster.blockSize, raster.getLeft());
+        final int bounds[] = new int[4];
+        assertFalse(raster.getDirtyBounds(bounds));
+
+        raster.update(snapshot, 1000, 1000, 1010, 1010);
+        assertTrue(1000 >= raster.getLeft() && 1010 <= raster.getRight());
+        assertTrue(raster.getDirtyBounds(bounds));
+        assertArrayEquals(new int[]{raster.getLeft(), raster.getTop(), raster.getRight(),
+                raster.getBottom()}, bounds);
+        for (int pixel : copyOfRegion(raster)) {
+            assertEquals(empty, pixel);
+        }
+    }
+}
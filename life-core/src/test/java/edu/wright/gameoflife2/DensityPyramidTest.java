@@ -0,0 +1,72 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DensityPyramid, which will execute on the development machine (host).
+ */
+public class DensityPyramidTest {
+    private static Map<Long, Integer> blocks(DensityPyramid pyramid, int level) {
+        final Map<Long, Integer> result = new HashMap<>();
+        pyramid.forEachBlockIn(level, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE, new DensityPyramid.BlockVisitor() {
+                    @Override
+                    public void visit(int blockX, int blockY, int population) {
+                        result.put(LongCellSet.pack(blockX, blockY), population);
+                    }
+                });
+        return result;
+    }
+
+    @Test
+    public void incrementalUpdate_matchesRebuild() {
+        final Random random = new Random(9);
+        final int[][] soup = new int[3000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(200) - 100, random.nextInt(200) - 100};
+        }
+        final LifeEngine engine = new TiledGameOfLifeModel(soup);
+        final DensityPyramid incremental = new DensityPyramid();
+        LifeSnapshot snapshot = LifeSnapshot.of(engine, 1);
+        incremental.update(snapshot);
+
+        for (int generation = 1; generation <= 30; generation++) {
+            engine.update();
+            final LifeSnapshot next = LifeSnapshot.of(engine, 1, snapshot);
+            assertTrue(next.isSuccessorOf(snapshot.getGeneration(), 1));
+            incremental.update(next);
+            snapshot = next;
+        }
+        final DensityPyramid rebuilt = new DensityPyramid();
+        rebuilt.update(LifeSnapshot.of(engine, 2));
+
+        for (int level = 1; level <= DensityPyramid.levelCount; level++) {
+            assertEquals(blocks(rebuilt, level), blocks(incremental, level));
+        }
+        int total = 0;
+        for (int population : blocks(incremental, DensityPyramid.levelCount).values()) {
+            total += population;
+        }
+        assertEquals(engine.getPopulation(), total);
+    }
+
+    @Test
+    public void getPopulation_countsAlignedBlocks() {
+        final DensityPyramid pyramid = new DensityPyramid();
+        pyramid.update(LifeSnapshot.of(new GameOfLifeModel(new int[][]{
+                {0, 0}, {1, 1}, {-1, -1}, {2, 0}, {3, 3}}), 0));
+
+        assertEquals(2, pyramid.getPopulation(1, 0, 0));
+        assertEquals(1, pyramid.getPopulation(1, -1, -1));
+        assertEquals(4, pyramid.getPopulation(2, 0, 0));
+        assertEquals(0, pyramid.getPopulation(2, 1, 0));
+        assertEquals(1, pyramid.getPopulation(DensityPyramid.levelCount, -1, -1));
+        assertEquals(2, blocks(pyramid, 2).size());
+    }
+}
@@ -0,0 +1,231 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for EvolutionCache, which will execute on the development machine (host).
+ */
+public class EvolutionCacheTest {
+
+    private static File newDirectory() throws Exception {
+        final File directory = File.createTempFile("evolution", "");
+        assertTrue(directory.delete());
+        return directory;
+    }
+
+    private static void deleteDirectory(File directory) {
+        final File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void engineAt_matchesSimulationAndStartsFromKeyframes() throws Exception {
+        final File directory = newDirectory();
+        try {
+            final LifeRule rule = LifeRule.parse("B36/S23");
+            final EvolutionCache cache = new EvolutionCache(directory, 1 << 20, 100);
+            final LifeEngine reference = LifeEngineType.SPARSE_HASH.create(
+                    Patterns.shooterCellPositions);
+            reference.setRule(rule);
+            reference.step(350);
+
+            final LifeEngine first = cache.engineAt(Patterns.shooterCellPositions, rule, 350,
+                    LifeEngineType.HASHLIFE);
+            assertEquals(LifeEngineType.HASHLIFE, LifeEngineType.of(first));
+            assertEquals(350, first.getGeneration());
+            assertEquals(rule, first.getRule());
+            assertEquals(positions(reference), positions(first));
+            assertEquals(3, cache.getKeyframeCount());
+            assertEquals(300, cache.getKeyframeGeneration(Patterns.shooterCellPositions, rule,
+                    350, LifeEngineType.SPARSE_HASH));
+            assertEquals(0, cache.getKeyframeGeneration(Patterns.shooterCellPositions,
+                    LifeRule.conway, 350, LifeEngineType.SPARSE_HASH));
+            assertEquals(0, cache.getKeyframeGeneration(Patterns.pumpCellPositions, rule, 350,
+                    LifeEngineType.SPARSE_HASH));
+            // The boards evolve differently, so they do not share the keyframes
+            assertEquals(0, cache.getKeyframeGeneration(Patterns.shooterCellPositions, rule,
+                    350, LifeEngineType.BOUNDED_BOARD));
+
+            // A new cache in the same directory finds the keyframes
+            final EvolutionCache reopened = new EvolutionCache(directory, 1 << 20, 100);
+            assertEquals(3, reopened.getKeyframeCount());
+            final LifeEngine second = reopened.engineAt(Patterns.shooterCellPositions, rule, 350,
+                    LifeEngineType.SPARSE_HASH);
+            assertEquals(positions(reference), positions(second));
+            assertEquals(0, reopened.engineAt(Patterns.shooterCellPositions, rule, 0,
+                    LifeEngineType.SPARSE_HASH).getGeneration());
+            assertNull(reopened.getLastError());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void engineAt_replacesUnreadableKeyframes() throws Exception {
+        final File directory = newDirectory();
+        try {
+            final EvolutionCache cache = new EvolutionCache(directory, 1 << 20, 10);
+            cache.engineAt(Patterns.pumpCellPositions, LifeRule.conway, 25,
+                    LifeEngineType.TILED_BITBOARD);
+            for (File file : directory.listFiles()) {
+                new FileOutputStream(file).close();
+            }
+            final LifeEngine reference = LifeEngineType.SPARSE_HASH.create(
+                    Patterns.pumpCellPositions);
+            reference.step(25);
+            final LifeEngine result = cache.engineAt(Patterns.pumpCellPositions, LifeRule.conway,
+                    25, LifeEngineType.TILED_BITBOARD);
+            assertEquals(positions(reference), positions(result));
+            assertNotNull(cache.getLastError());
+            assertEquals(2, cache.getKeyframeCount());
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void engineAt_evictsLeastRecentlyUsedKeyframes() throws Exception {
+        final File directory = newDirectory();
+        try {
+            final EvolutionCache unlimited = new EvolutionCache(directory, 1 << 20, 50);
+            unlimited.engineAt(Patterns.gliderCellPositions, LifeRule.conway, 50,
+                    LifeEngineType.SPARSE_HASH);
+            final long keyframeBytes = unlimited.getStoredBytes();
+            deleteDirectory(directory);
+
+            // Room for three glider keyframes
+            final EvolutionCache cache = new EvolutionCache(directory, 3 * keyframeBytes, 50);
+            cache.engineAt(Patterns.gliderCellPositions, LifeRule.conway, 150,
+                    LifeEngineType.SPARSE_HASH);
+            assertEquals(3, cache.getKeyframeCount());
+            // Using the oldest keyframe makes the keyframe of generation 100 least recently used
+            cache.engineAt(Patterns.gliderCellPositions, LifeRule.conway, 75,
+                    LifeEngineType.SPARSE_HASH);
+            cache.engineAt(Patterns.gliderCellPositions, LifeRule.conway, 200,
+                    LifeEngineType.SPARSE_HASH);
+            assertEquals(3, cache.getKeyframeCount());
+            assertTrue(cache.getStoredBytes() <= 3 * keyframeBytes);
+            assertEquals(50, cache.getKeyframeGeneration(Patterns.gliderCellPositions,
+                    LifeRule.conway, 149, LifeEngineType.SPARSE_HASH));
+            assertEquals(200, cache.getKeyframeGeneration(Patterns.gliderCellPositions,
+                    LifeRule.conway, 200, LifeEngineType.SPARSE_HASH));
+            assertEquals(3, directory.listFiles().length);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void engineAt_computesBoardsAndLongJumpsExactly() throws Exception {
+        final File directory = newDirectory();
+        try {
+            final EvolutionCache cache = new EvolutionCache(directory, 1 << 20, 100);
+            // A glider that reaches the edge of the boards
+            final int[][] glider = new int[Patterns.gliderCellPositions.length][];
+            for (int i = 0; i < glider.length; i++) {
+                glider[i] = new int[]{Patterns.gliderCellPositions[i][0] + 1000,
+                        Patterns.gliderCellPositions[i][1] + 1000};
+            }
+            for (LifeEngineType type : new LifeEngineType[]{LifeEngineType.BOUNDED_BOARD,
+                    LifeEngineType.TOROIDAL_BOARD}) {
+                final LifeEngine reference = type.create(glider);
+                reference.step(250);
+                final LifeEngine result = cache.engineAt(glider, LifeRule.conway, 250, type);
+                assertEquals(type, LifeEngineType.of(result));
+                assertEquals(positions(reference), positions(result));
+                assertEquals(200, cache.getKeyframeGeneration(glider, LifeRule.conway, 250,
+                        type));
+            }
+
+            // More than hashLifeIntervals intervals: only the last keyframe is written
+            final int generation = (EvolutionCache.hashLifeIntervals + 4) * 100 + 50;
+            final LifeEngine reference = LifeEngineType.TILED_BITBOARD.create(
+                    Patterns.shooterCellPositions);
+            reference.step(generation);
+            final int keyframeCount = cache.getKeyframeCount();
+            final LifeEngine result = cache.engineAt(Patterns.shooterCellPositions,
+                    LifeRule.conway, generation, LifeEngineType.SPARSE_HASH);
+            assertEquals(generation, result.getGeneration());
+            assertEquals(positions(reference), positions(result));
+            assertEquals(keyframeCount + 1, cache.getKeyframeCount());
+            assertEquals(generation - 50, cache.getKeyframeGeneration(
+                    Patterns.shooterCellPositions, LifeRule.conway, generation,
+                    LifeEngineType.HASHLIFE));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void cancelledJump_doesNotCallItsListener() throws Exception {
+        final File directory = newDirectory();
+        try {
+            final EvolutionCache cache = new EvolutionCache(directory, 1 << 20, 100);
+            final AtomicBoolean isCancelledJumpDone = new AtomicBoolean();
+            final EvolutionCache.Jump cancelled = cache.jump(Patterns.shooterCellPositions,
+                    LifeRule.conway, EvolutionCache.maximumBoardGeneration,
+                    LifeEngineType.BOUNDED_BOARD, new EvolutionCache.JumpListener() {
+                        @Override
+                        public void onJumped(LifeEngine engine) {
+                            isCancelledJumpDone.set(true);
+                        }
+                    });
+            cancelled.cancel();
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicReference<LifeEngine> jumped = new AtomicReference<>();
+            cache.jump(Patterns.gliderCellPositions, LifeRule.conway, 10,
+                    LifeEngineType.SPARSE_HASH, new EvolutionCache.JumpListener() {
+                        @Override
+                        public void onJumped(LifeEngine engine) {
+                            jumped.set(engine);
+                            latch.countDown();
+                        }
+                    });
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(10, jumped.get().getGeneration());
+            assertTrue(cancelled.isCancelled());
+            assertFalse(isCancelledJumpDone.get());
+            assertTrue(cache.getKeyframeGeneration(Patterns.shooterCellPositions,
+                    LifeRule.conway, EvolutionCache.maximumBoardGeneration,
+                    LifeEngineType.BOUNDED_BOARD) < EvolutionCache.maximumBoardGeneration);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void jump_rejectsGenerationsBeyondTheLimit() {
+        final EvolutionCache cache = new EvolutionCache(new File("unused"));
+        assertEquals(EvolutionCache.maximumGeneration,
+                EvolutionCache.getMaximumGeneration(LifeEngineType.HYBRID));
+        assertEquals(EvolutionCache.maximumBoardGeneration,
+                EvolutionCache.getMaximumGeneration(LifeEngineType.TOROIDAL_BOARD));
+        try {
+            cache.jump(Patterns.gliderCellPositions, LifeRule.conway,
+                    EvolutionCache.maximumBoardGeneration + 1, LifeEngineType.TOROIDAL_BOARD,
+                    new EvolutionCache.JumpListener() {
+                        @Override
+                        public void onJumped(LifeEngine engine) {
+                        }
+                    });
+            fail("accepted a generation beyond the limit");
+        } catch (IllegalArgumentException expected) {
+            // The generation is beyond what a board type computes
+        }
+    }
+}
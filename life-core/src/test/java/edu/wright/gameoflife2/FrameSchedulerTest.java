@@ -0,0 +1,93 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for FrameScheduler, which will execute on the development machine (host).
+ */
+public class FrameSchedulerTest {
+    private static final long frame = FrameScheduler.defaultFramePeriodNanos;
+
+    /**
+     * Runs frames firstFrame up to firstFrame + frameCount at the default refresh period in which
+     * each displayed generation takes costNanos, as the view's frame callback does.
+     *
+     * @return the total number of generations displayed
+     */
+    private static long runFrames(FrameScheduler scheduler, int firstFrame, int frameCount,
+                                  long costNanos) {
+        long displayed = 0;
+        for (int i = firstFrame; i < firstFrame + frameCount; i++) {
+            final int due = scheduler.beginFrame(i * frame);
+            int count = 0;
+            while (count < due && scheduler.hasTimeFor(count * costNanos)) {
+                count++;
+            }
+            scheduler.endFrame(count, count * costNanos);
+            displayed += count;
+        }
+        return displayed;
+    }
+
+    @Test
+    public void beginFrame_pacesGenerationsByPeriod() {
+        final FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setGenerationPeriodNanos(frame * 3);
+        // One generation is due immediately and then one every third frame
+        assertEquals(1 + 99 / 3, runFrames(scheduler, 0, 100, 1000));
+
+        scheduler.setGenerationPeriodNanos(0);
+        scheduler.restart();
+        assertEquals(100, runFrames(scheduler, 100, 100, 1000));
+        assertEquals(0, scheduler.getMissedFrameCount());
+    }
+
+    @Test
+    public void warp_growsToTheTargetRateWithinBudget() {
+        final FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setWarpGenerationsPerSecond(600);
+        runFrames(scheduler, 0, 60, 100000);
+        // 600 generations per second at 60 frames per second
+        final long displayed = runFrames(scheduler, 60, 60, 100000);
+        assertTrue(String.valueOf(displayed), 590 <= displayed && 610 >= displayed);
+
+        // Expensive generations are limited by the budget
+        scheduler.setWarpGenerationsPerSecond(Double.POSITIVE_INFINITY);
+        final long cost = FrameScheduler.defaultFrameBudgetNanos / 4;
+        runFrames(scheduler, 120, 60, cost);
+        assertEquals(4 * 60, runFrames(scheduler, 180, 60, cost));
+    }
+
+    @Test
+    public void missedFrames_halveTheGenerationLimit() {
+        final FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setWarpGenerationsPerSecond(Double.POSITIVE_INFINITY);
+        runFrames(scheduler, 0, 40, 1000);
+        final int limit = scheduler.getGenerationLimit();
+        assertTrue(20 < limit);
+
+        final long last = 39 * frame;
+        scheduler.beginFrame(last + 4 * frame);
+        scheduler.endFrame(1, 1000);
+        assertEquals(3, scheduler.getMissedFrameCount());
+        assertEquals(limit / 2, scheduler.getGenerationLimit());
+    }
+
+    @Test
+    public void framePeriod_adaptsToSlowerDisplays() {
+        final FrameScheduler scheduler = new FrameScheduler();
+        for (int i = 0; i < 200; i++) {
+            scheduler.beginFrame(i * frame * 2);
+            scheduler.endFrame(1, 1000);
+        }
+        final long missed = scheduler.getMissedFrameCount();
+        assertTrue(Math.abs(scheduler.getFramePeriodNanos() - 2 * frame) < frame / 10);
+        for (int i = 200; i < 300; i++) {
+            scheduler.beginFrame(i * frame * 2);
+            scheduler.endFrame(1, 1000);
+        }
+        assertEquals(missed, scheduler.getMissedFrameCount());
+    }
+}
@@ -0,0 +1,52 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GameOfLifeModel, which will execute on the development machine (host).
+ */
+public class GameOfLifeModelTest {
+    private static final int[][] blinkerCellPositions = {{-1, 0}, {0, 0}, {1, 0},};
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    @Test
+    public void blinker_oscillatesWithPeriodTwo() {
+        GameOfLifeModel model = new GameOfLifeModel(blinkerCellPositions);
+
+        model.update();
+        assertEquals(3, model.getPopulation());
+        assertTrue(model.containsCellAt(0, -1));
+        assertTrue(model.containsCellAt(0, 0));
+        assertTrue(model.containsCellAt(0, 1));
+        assertFalse(model.containsCellAt(-1, 0));
+
+        model.update();
+        assertEquals(3, model.getPopulation());
+        assertTrue(model.containsCellAt(-1, 0));
+        assertTrue(model.containsCellAt(1, 0));
+    }
+
+    @Test
+    public void glider_translatesDiagonallyEveryFourGenerations() {
+        GameOfLifeModel model = new GameOfLifeModel(gliderCellPositions);
+
+        for (int i = 0; i < 40; i++) {
+            model.update();
+        }
+        assertEquals(5, model.getPopulation());
+        for (int[] xy : gliderCellPositions) {
+            assertTrue(model.containsCellAt(xy[0] + 10, xy[1] + 10));
+        }
+    }
+
+    @Test
+    public void isolatedCell_dies() {
+        GameOfLifeModel model = new GameOfLifeModel(new int[][]{{0, 0}, {5, 5}});
+
+        model.update();
+        assertEquals(0, model.getPopulation());
+        assertEquals(0, model.getPositions().size());
+    }
+}
@@ -0,0 +1,54 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for HashLifeGameOfLifeModel, which will execute on the development machine
+ * (host).
+ */
+public class HashLifeGameOfLifeModelTest {
+    @Test
+    public void advance_matchesStepping() {
+        final HashLifeGameOfLifeModel jumped = new HashLifeGameOfLifeModel(
+                Patterns.shooterCellPositions);
+        final GameOfLifeModel stepped = new GameOfLifeModel(Patterns.shooterCellPositions);
+
+        jumped.advance(777);
+        for (int i = 0; i < 777; i++) {
+            stepped.update();
+        }
+
+        assertEquals(777, jumped.getGeneration());
+        assertEquals(stepped.getPopulation(), jumped.getPopulation());
+        assertEquals(positions(stepped), positions(jumped));
+    }
+
+    @Test
+    public void update_matchesSteppingWithTinyMemoCache() {
+        final HashLifeGameOfLifeModel model = new HashLifeGameOfLifeModel(
+                Patterns.shooterCellPositions, 64);
+        final GameOfLifeModel expected = new GameOfLifeModel(Patterns.shooterCellPositions);
+
+        for (int i = 0; i < 200; i++) {
+            model.update();
+            expected.update();
+        }
+        assertEquals(positions(expected), positions(model));
+    }
+
+    @Test
+    public void advanceMillionsOfGenerations_growsGunOutput() {
+        final HashLifeGameOfLifeModel model = new HashLifeGameOfLifeModel(
+                Patterns.shooterCellPositions);
+
+        model.advance(3000000);
+
+        // The gun emits one five cell glider every 30 generations and stays in place
+        assertEquals(3000000, model.getGeneration());
+        assertTrue(model.getPopulation() > 3000000 / 30 * 5);
+        assertTrue(model.getPopulationIn(-1, -1, 38, 15) >= 36);
+    }
+}
@@ -0,0 +1,66 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for HeadlessRunner, which will execute on the development machine (host).
+ */
+public class HeadlessRunnerTest {
+    @Test
+    public void run_reportsThroughputForSoup() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        final int status = HeadlessRunner.run(new String[]{"--engine", "sparse",
+                "--generations", "20", "--soup", "500,50,1"}, new PrintStream(out, true, "UTF-8"),
+                new PrintStream(errors, true, "UTF-8"));
+
+        final String report = out.toString("UTF-8");
+        assertEquals(0, status);
+        assertTrue(report.contains("engine: SPARSE_HASH"));
+        assertTrue(report.contains("generations: 20"));
+        assertTrue(report.contains("cells/sec: "));
+        assertTrue(report.contains("peak heap MB: "));
+    }
+
+    @Test
+    public void run_jumpsWithHashLifeSteps() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final int status = HeadlessRunner.run(new String[]{"--engine", "hashlife",
+                "--generations", "3000", "--step", "1000", "--pattern", "shooter"},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(new ByteArrayOutputStream()));
+
+        assertEquals(0, status);
+        assertTrue(out.toString("UTF-8").contains("generations: 3000"));
+    }
+
+    @Test
+    public void run_appliesRule() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        final int status = HeadlessRunner.run(new String[]{"--engine", "tiled",
+                "--generations", "10", "--soup", "500,50,1", "--rule", "b36/s23"},
+                new PrintStream(out, true, "UTF-8"), new PrintStream(new ByteArrayOutputStream()));
+
+        assertEquals(0, status);
+        assertTrue(out.toString("UTF-8").contains("rule: B36/S23"));
+    }
+
+    @Test
+    public void run_rejectsUnknownEngine() throws Exception {
+        final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+        final int status = HeadlessRunner.run(new String[]{"--engine", "quantum"},
+                new PrintStream(new ByteArrayOutputStream()),
+                new PrintStream(errors, true, "UTF-8"));
+
+        assertEquals(2, status);
+        assertTrue(errors.toString("UTF-8").contains("unknown engine quantum"));
+    }
+}
@@ -0,0 +1,121 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for HybridGameOfLifeModel, which will execute on the development machine
+ * (host).
+ */
+public class HybridGameOfLifeModelTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    /**
+     * @return a dense soup straddling region boundaries and gliders in otherwise empty regions
+     */
+    private static int[][] soupAndGliders(long seed) {
+        final Random random = new Random(seed);
+        final int[][] result = new int[3000 + 4 * gliderCellPositions.length][];
+        for (int i = 0; i < 3000; i++) {
+            result[i] = new int[]{random.nextInt(100) - 50, random.nextInt(100) - 50};
+        }
+        final int[][] offsets = {{300, 0}, {-300, 170}, {60, -400}, {-1000, -1000}};
+        for (int g = 0; g < offsets.length; g++) {
+            for (int i = 0; i < gliderCellPositions.length; i++) {
+                result[3000 + g * gliderCellPositions.length + i] = new int[]{
+                        gliderCellPositions[i][0] + offsets[g][0],
+                        gliderCellPositions[i][1] + offsets[g][1]};
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void update_matchesSparseEngineAcrossLayouts() {
+        for (String ruleString : new String[]{"B3/S23", "B36/S23"}) {
+            final int[][] cells = soupAndGliders(5);
+            final LifeEngine reference = LifeEngineType.SPARSE_HASH.create(cells);
+            final HybridGameOfLifeModel hybrid = new HybridGameOfLifeModel(cells);
+            reference.setRule(LifeRule.parse(ruleString));
+            hybrid.setRule(LifeRule.parse(ruleString));
+            for (int generation = 0; generation < 300; generation++) {
+                reference.update();
+                hybrid.update();
+                assertEquals(ruleString + " generation " + generation, positions(reference),
+                        positions(hybrid));
+                assertEquals(reference.getPopulation(), hybrid.getPopulation());
+            }
+        }
+    }
+
+    @Test
+    public void update_keepsSparsePatternsSparse() {
+        final HybridGameOfLifeModel model = new HybridGameOfLifeModel(gliderCellPositions);
+        for (int generation = 0; generation < 200; generation++) {
+            model.update();
+            assertEquals(0, model.getDenseRegionCount());
+        }
+        assertEquals(5, model.getPopulation());
+        // The glider has traveled 50 cells diagonally without leaving regions behind
+        assertTrue(model.containsCellAt(51, 50));
+        assertTrue(model.getRegionCount() <= 9);
+    }
+
+    /**
+     * @return blockCount still life blocks followed by singleCount isolated cells that die in
+     * the next generation, all in the region at the origin
+     */
+    private static int[][] blocksAndSingles(int blockCount, int singleCount) {
+        final int[][] result = new int[4 * blockCount + singleCount][];
+        for (int i = 0; i < blockCount; i++) {
+            final int x = (i % 16) * 4;
+            final int y = (i / 16) * 4;
+            result[4 * i] = new int[]{x, y};
+            result[4 * i + 1] = new int[]{x + 1, y};
+            result[4 * i + 2] = new int[]{x, y + 1};
+            result[4 * i + 3] = new int[]{x + 1, y + 1};
+        }
+        for (int i = 0; i < singleCount; i++) {
+            result[4 * blockCount + i] = new int[]{(i % 21) * 3, 30 + (i / 21) * 3};
+        }
+        return result;
+    }
+
+    @Test
+    public void update_promotesAndDemotesWithHysteresis() {
+        // 100 cells are between the thresholds: a sparse region stays sparse
+        final HybridGameOfLifeModel sparse = new HybridGameOfLifeModel(blocksAndSingles(25, 0));
+        sparse.update();
+        assertEquals(100, sparse.getPopulation());
+        assertEquals(0, sparse.getDenseRegionCount());
+
+        // A dense region that falls to 100 cells stays dense
+        final HybridGameOfLifeModel dense = new HybridGameOfLifeModel(blocksAndSingles(25, 40));
+        assertEquals(1, dense.getDenseRegionCount());
+        dense.update();
+        assertEquals(100, dense.getPopulation());
+        assertEquals(1, dense.getDenseRegionCount());
+
+        // A dense region that falls below demoteThreshold becomes sparse
+        final HybridGameOfLifeModel demoted = new HybridGameOfLifeModel(blocksAndSingles(5, 120));
+        assertEquals(1, demoted.getDenseRegionCount());
+        demoted.update();
+        assertEquals(20, demoted.getPopulation());
+        assertEquals(0, demoted.getDenseRegionCount());
+        assertEquals(positions(new HybridGameOfLifeModel(blocksAndSingles(5, 0))),
+                positions(demoted));
+
+        // A sparse region that grows beyond promoteThreshold becomes dense
+        final HybridGameOfLifeModel promoted = new HybridGameOfLifeModel(new int[][]{
+                {0, 0}, {1, 0}, {2, 0}});
+        assertEquals(0, promoted.getDenseRegionCount());
+        for (int[] position : blocksAndSingles(40, 0)) {
+            promoted.spawnCellAt(position[0], position[1] + 40);
+        }
+        assertEquals(1, promoted.getDenseRegionCount());
+    }
+}
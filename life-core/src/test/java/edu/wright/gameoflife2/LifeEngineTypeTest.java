@@ -0,0 +1,119 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeEngineType and the LifeEngine contract shared by every engine, which
+ * will execute on the development machine (host).
+ */
+public class LifeEngineTypeTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    @Test
+    public void copyOf_keepsCellsAndGenerationAcrossEngines() {
+        final LifeEngine expected = LifeEngineType.SPARSE_HASH.create(gliderCellPositions);
+        LifeEngine engine = LifeEngineType.SPARSE_HASH.create(gliderCellPositions);
+
+        for (LifeEngineType type : new LifeEngineType[]{LifeEngineType.TILED_BITBOARD,
+                LifeEngineType.HASHLIFE, LifeEngineType.SPARSE_HASH}) {
+            engine.step(13);
+            expected.step(13);
+            engine = type.copyOf(engine);
+            assertEquals(type, LifeEngineType.of(engine));
+            assertEquals(expected.getGeneration(), engine.getGeneration());
+            assertEquals(positions(expected), positions(engine));
+        }
+    }
+
+    @Test
+    public void boundsAndRegionQueries_agreeForAllEngines() {
+        final Random random = new Random(3);
+        final int[][] soup = new int[2000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(300) - 150, random.nextInt(200) - 100};
+        }
+        final LifeEngine expected = LifeEngineType.SPARSE_HASH.create(soup);
+        expected.step(20);
+        final int[] expectedBounds = new int[4];
+        assertTrue(expected.getBounds(expectedBounds));
+        final Set<Long> expectedRegion = new HashSet<>();
+        for (long cell : positions(expected)) {
+            final int x = LongCellSet.unpackX(cell);
+            final int y = LongCellSet.unpackY(cell);
+            if (x >= -70 && x <= 5 && y >= -3 && y <= 64) {
+                expectedRegion.add(cell);
+            }
+        }
+
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = type.create(soup);
+            engine.step(20);
+            final int[] bounds = new int[4];
+            assertTrue(engine.getBounds(bounds));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(expectedBounds[i], bounds[i]);
+            }
+            final Set<Long> region = new HashSet<>();
+            engine.forEachPositionIn(-70, -3, 5, 64, new LifeEngine.CellVisitor() {
+                @Override
+                public void visit(int x, int y) {
+                    region.add(LongCellSet.pack(x, y));
+                }
+            });
+            assertEquals(expectedRegion, region);
+        }
+    }
+
+    @Test
+    public void getEvaluatedCellCount_measuresWorkOfMostRecentUpdate() {
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = type.create(gliderCellPositions);
+            assertEquals(0, engine.getEvaluatedCellCount());
+            engine.update();
+            final long single = engine.getEvaluatedCellCount();
+            assertTrue(type.toString(), 5 <= single);
+            engine.step(3);
+            assertTrue(type.toString(), single <= engine.getEvaluatedCellCount());
+        }
+    }
+
+    @Test
+    public void emptyEngine_hasNoBounds() {
+        for (LifeEngineType type : LifeEngineType.values()) {
+            assertFalse(type.create(new int[0][]).getBounds(new int[4]));
+        }
+    }
+
+    @Test
+    public void spawnCells_matchesSpawnCellAtForAllEngines() {
+        final Random random = new Random(5);
+        final int coordinates[] = new int[3000 * 2];
+        for (int i = 0; i < coordinates.length; i++) {
+            // Widely spread values make HashLife grow its root during the batch
+            coordinates[i] = (0 == i % 7) ? random.nextInt() >> 4 : random.nextInt(64) - 32;
+        }
+        final int positions[][] = new int[coordinates.length / 2][];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new int[]{coordinates[i * 2], coordinates[i * 2 + 1]};
+        }
+
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = type.create(gliderCellPositions);
+            engine.spawnCells(coordinates, positions.length - 1);
+            engine.spawnCells(coordinates, 0);
+            final LifeEngine expected = type.create(gliderCellPositions);
+            for (int i = 0; i < positions.length - 1; i++) {
+                expected.spawnCellAt(positions[i][0], positions[i][1]);
+            }
+            assertEquals(positions(expected), positions(engine));
+            assertEquals(expected.getPopulation(), engine.getPopulation());
+        }
+    }
+}
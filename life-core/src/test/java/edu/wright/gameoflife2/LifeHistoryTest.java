@@ -0,0 +1,98 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeHistory, which will execute on the development machine (host).
+ */
+public class LifeHistoryTest {
+
+    /**
+     * @return snapshots of the first generationCount generations of a random soup, each
+     * recording the changes since the previous one
+     */
+    private static List<LifeSnapshot> soupGenerations(int generationCount) {
+        final Random random = new Random(17);
+        final int[][] soup = new int[600][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(50) - 25, random.nextInt(50) - 25};
+        }
+        final LifeEngine engine = new GameOfLifeModel(soup);
+        final List<LifeSnapshot> result = new ArrayList<>();
+        result.add(LifeSnapshot.of(engine, 1));
+        for (int i = 1; i < generationCount; i++) {
+            engine.update();
+            result.add(LifeSnapshot.of(engine, 1, result.get(i - 1)));
+        }
+        return result;
+    }
+
+    @Test
+    public void getSnapshot_reconstructsEveryRetainedGenerationInAnyOrder() {
+        final List<LifeSnapshot> generations = soupGenerations(200);
+        final LifeHistory history = new LifeHistory(Long.MAX_VALUE, 16);
+        for (LifeSnapshot snapshot : generations) {
+            history.add(snapshot);
+        }
+        assertEquals(0, history.getOldestGeneration());
+        assertEquals(199, history.getNewestGeneration());
+        assertTrue(history.getKeyframeCount() < generations.size());
+
+        final Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            final int generation = random.nextInt(200);
+            final LifeSnapshot snapshot = history.getSnapshot(generation);
+            assertEquals(generation, snapshot.getGeneration());
+            assertEquals(positions(generations.get(generation)), positions(snapshot));
+        }
+        assertNull(history.getSnapshot(200));
+    }
+
+    @Test
+    public void add_evictsOldestGenerationsAboveMemoryLimit() {
+        final List<LifeSnapshot> generations = soupGenerations(300);
+        final long memoryLimit = 64 * 1024;
+        final LifeHistory history = new LifeHistory(memoryLimit, 32);
+        for (LifeSnapshot snapshot : generations) {
+            history.add(snapshot);
+            // The newest keyframe and the changes after it are always retained
+            assertTrue(history.getMemoryBytes() <= memoryLimit ||
+                    1 == history.getKeyframeCount());
+        }
+
+        assertTrue(0 < history.getOldestGeneration());
+        assertEquals(299, history.getNewestGeneration());
+        for (long g = history.getOldestGeneration(); g <= 299; g++) {
+            assertEquals(positions(generations.get((int) g)), positions(history.getSnapshot(g)));
+        }
+        assertNull(history.getSnapshot(history.getOldestGeneration() - 1));
+    }
+
+    @Test
+    public void truncateAfter_keepsEarlierGenerationsReachable() {
+        final List<LifeSnapshot> generations = soupGenerations(100);
+        final LifeHistory history = new LifeHistory(Long.MAX_VALUE, 40);
+        for (LifeSnapshot snapshot : generations) {
+            history.add(snapshot);
+        }
+
+        history.truncateAfter(50);
+        assertEquals(50, history.getNewestGeneration());
+        for (int generation = 0; generation <= 50; generation++) {
+            assertEquals(positions(generations.get(generation)),
+                    positions(history.getSnapshot(generation)));
+        }
+
+        // A snapshot that does not continue the newest generation starts a new window
+        history.add(generations.get(70));
+        assertEquals(70, history.getOldestGeneration());
+        assertEquals(70, history.getNewestGeneration());
+    }
+}
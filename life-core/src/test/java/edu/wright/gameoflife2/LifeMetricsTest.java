@@ -0,0 +1,72 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeMetrics, which will execute on the development machine (host).
+ */
+public class LifeMetricsTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    @Test
+    public void percentiles_coverOnlyRetainedSamples() {
+        final LifeMetrics metrics = new LifeMetrics(100);
+        assertEquals(0, metrics.getFrameNanos(0.5));
+        // The first 100 samples are overwritten by the values 1 through 100 in shuffled order
+        for (int i = 0; i < 100; i++) {
+            metrics.recordFrame(1000000);
+        }
+        for (int i = 0; i < 100; i++) {
+            metrics.recordFrame(1 + (i * 37) % 100);
+        }
+
+        assertEquals(200, metrics.getFrameSampleCount());
+        assertEquals(1, metrics.getFrameNanos(0));
+        assertEquals(50, metrics.getFrameNanos(0.5));
+        assertEquals(95, metrics.getFrameNanos(0.95));
+        assertEquals(100, metrics.getFrameNanos(1));
+        metrics.clear();
+        assertEquals(0, metrics.getFrameNanos(0.95));
+    }
+
+    @Test
+    public void recordGeneration_keepsSnapshotMetricsInOrder() {
+        final LifeMetrics metrics = new LifeMetrics(4);
+        final LifeEngine engine = new GameOfLifeModel(gliderCellPositions);
+        LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+        for (int generation = 1; generation <= 6; generation++) {
+            engine.update();
+            snapshot = LifeSnapshot.of(engine, 0, snapshot);
+            metrics.recordGeneration(snapshot, generation * 10, engine.getEvaluatedCellCount());
+        }
+
+        final List<Long> generations = new ArrayList<>();
+        metrics.forEachGeneration(new LifeMetrics.GenerationVisitor() {
+            @Override
+            public void visit(long generation, long updateNanos, int births, int deaths,
+                              int population, long evaluatedCellCount, int bounds[]) {
+                generations.add(generation);
+                assertEquals(generation * 10, updateNanos);
+                assertEquals(5, population);
+                assertEquals(births, deaths);
+                assertTrue(0 < births);
+                assertTrue(population < evaluatedCellCount);
+                assertNotNull(bounds);
+                assertEquals(2, bounds[2] - bounds[0]);
+                assertEquals(2, bounds[3] - bounds[1]);
+            }
+        });
+        assertEquals(4, generations.size());
+        assertEquals(3L, (long) generations.get(0));
+        assertEquals(6L, (long) generations.get(3));
+        assertEquals(5, metrics.getPopulation());
+        assertEquals(engine.getEvaluatedCellCount(), metrics.getEvaluatedCellCount());
+        assertEquals(40, metrics.getUpdateNanos(0.5));
+        assertTrue(0 < metrics.getGenerationsPerSecond());
+    }
+}
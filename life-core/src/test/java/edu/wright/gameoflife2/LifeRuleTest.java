@@ -0,0 +1,120 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeRule and for rules other than Conway's in every engine, which will
+ * execute on the development machine (host).
+ */
+public class LifeRuleTest {
+
+    /**
+     * @return the generation after cells computed one cell at a time as a reference
+     */
+    private static Set<Long> referenceStep(Set<Long> cells, LifeRule rule) {
+        final Map<Long, Integer> counts = new HashMap<>();
+        for (long cell : cells) {
+            counts.put(cell, 0);
+        }
+        for (long cell : cells) {
+            final int x = LongCellSet.unpackX(cell);
+            final int y = LongCellSet.unpackY(cell);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (0 != dx || 0 != dy) {
+                        final long neighbor = LongCellSet.pack(x + dx, y + dy);
+                        final Integer count = counts.get(neighbor);
+                        counts.put(neighbor, (null == count) ? 1 : count + 1);
+                    }
+                }
+            }
+        }
+        final Set<Long> result = new HashSet<>();
+        for (Map.Entry<Long, Integer> entry : counts.entrySet()) {
+            final int mask = cells.contains(entry.getKey()) ? rule.getSurvivals() : rule.getBirths();
+            if (0 != (mask & (1 << entry.getValue()))) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void parse_acceptsCommonNotations() {
+        assertSame(LifeRule.conway, LifeRule.parse("B3/S23"));
+        assertSame(LifeRule.conway, LifeRule.parse("b3/s23"));
+        assertSame(LifeRule.conway, LifeRule.parse("S23/B3"));
+        assertSame(LifeRule.conway, LifeRule.parse("23/3"));
+        final LifeRule highLife = LifeRule.parse(" B36/S23 ");
+        assertEquals((1 << 3) | (1 << 6), highLife.getBirths());
+        assertEquals((1 << 2) | (1 << 3), highLife.getSurvivals());
+        assertEquals("B36/S23", highLife.toString());
+        assertEquals(highLife, LifeRule.parse(highLife.toString()));
+        assertEquals("B2/S", LifeRule.parse("B2/S").toString());
+    }
+
+    @Test
+    public void parse_rejectsInvalidRules() {
+        for (String rule : new String[]{"", "B3S23", "B3/S2/3", "B9/S23", "Bx/S23", "B03/S23"}) {
+            try {
+                LifeRule.parse(rule);
+                fail("accepted " + rule);
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void step_matchesReferenceForAllEnginesAndRules() {
+        final Random random = new Random(17);
+        final int[][] soup = new int[1500][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(80) - 100, random.nextInt(80) - 10};
+        }
+        for (String ruleString : new String[]{"B36/S23", "B3678/S34678", "B2/S", "B3/S012345678"}) {
+            final LifeRule rule = LifeRule.parse(ruleString);
+            Set<Long> expected = positions(LifeEngineType.SPARSE_HASH.create(soup));
+            for (int generation = 0; generation < 8; generation++) {
+                expected = referenceStep(expected, rule);
+            }
+            for (LifeEngineType type : LifeEngineType.values()) {
+                final LifeEngine engine = type.create(soup);
+                engine.setRule(rule);
+                engine.step(8);
+                assertEquals(ruleString + " " + type, expected, positions(engine));
+                assertEquals(rule, type.copyOf(engine).getRule());
+            }
+        }
+    }
+
+    @Test
+    public void setRule_takesEffectFromTheNextGeneration() {
+        final LifeRule highLife = LifeRule.parse("B36/S23");
+        final int[][] soup = new int[600][];
+        final Random random = new Random(23);
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(50), random.nextInt(50)};
+        }
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = type.create(soup);
+            engine.step(5);
+            Set<Long> expected = positions(engine);
+            engine.setRule(highLife);
+            engine.step(6);
+            for (int generation = 0; generation < 6; generation++) {
+                expected = referenceStep(expected, highLife);
+            }
+            assertEquals(type.toString(), expected, positions(engine));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeSimulation, which will execute on the development machine (host).
+ */
+public class LifeSimulationTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+    private static final int[][] blockCellPositions = {{0, 0}, {1, 0}, {0, 1}, {1, 1},};
+    private static final int[][] blinkerCellPositions = {{0, 0}, {1, 0}, {2, 0},};
+
+    private static void advanceTo(LifeSimulation simulation, long generation)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (simulation.getSnapshot().getGeneration() < generation) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            if (!simulation.advance()) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    public void advance_publishesEverySimulatedGenerationInOrder() throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation(3);
+        final LifeEngine expected = new GameOfLifeModel(gliderCellPositions);
+        simulation.setModel(new GameOfLifeModel(gliderCellPositions));
+        assertEquals(0, simulation.getSnapshot().getGeneration());
+
+        for (int generation = 1; generation <= 20; generation++) {
+            advanceTo(simulation, generation);
+            expected.update();
+            assertEquals(generation, simulation.getSnapshot().getGeneration());
+            assertEquals(positions(expected), positions(simulation.getSnapshot()));
+        }
+    }
+
+    @Test
+    public void advance_recordsMetricsOfComputedGenerations() throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation(2);
+        simulation.setModel(new TiledGameOfLifeModel(gliderCellPositions));
+
+        advanceTo(simulation, 10);
+
+        final LifeMetrics metrics = simulation.getMetrics();
+        assertTrue(10 <= metrics.getGenerationSampleCount());
+        assertEquals(5, metrics.getPopulation());
+        assertTrue(0 < metrics.getUpdateNanos(0.5));
+        // The tiled engine evaluates whole tiles
+        assertTrue(0 < metrics.getEvaluatedCellCount());
+        assertEquals(0, metrics.getEvaluatedCellCount() % (64 * 64));
+    }
+
+    @Test
+    public void parallelTiledEngine_matchesSerialEngine() throws InterruptedException {
+        final Random random = new Random(3);
+        final int[][] soup = new int[20000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(600) - 300, random.nextInt(600) - 300};
+        }
+        final LifeSimulation simulation = new LifeSimulation(2);
+        assertEquals(Runtime.getRuntime().availableProcessors(), simulation.getParallelism());
+        simulation.setParallelism(4);
+        final LifeEngine expected = new GameOfLifeModel(soup);
+        simulation.setModel(new TiledGameOfLifeModel(soup));
+
+        for (int generation = 1; generation <= 20; generation++) {
+            advanceTo(simulation, generation);
+            expected.update();
+            assertEquals(positions(expected), positions(simulation.getSnapshot()));
+        }
+    }
+
+    @Test
+    public void setModel_discardsGenerationsComputedForPreviousModel()
+            throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation();
+        simulation.setModel(new GameOfLifeModel(gliderCellPositions));
+        advanceTo(simulation, 5);
+
+        simulation.setModel(new GameOfLifeModel(blockCellPositions));
+        assertEquals(0, simulation.getSnapshot().getGeneration());
+        advanceTo(simulation, 1);
+        assertEquals(1, simulation.getSnapshot().getGeneration());
+        assertEquals(positions(new GameOfLifeModel(blockCellPositions)),
+                positions(simulation.getSnapshot()));
+    }
+
+    @Test
+    public void setEngineType_continuesFromDisplayedGeneration() throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation();
+        final LifeEngine expected = new GameOfLifeModel(gliderCellPositions);
+        simulation.setModel(new GameOfLifeModel(gliderCellPositions));
+        advanceTo(simulation, 7);
+
+        final LifeSnapshot displayed = simulation.getSnapshot();
+        simulation.setEngineType(LifeEngineType.TILED_BITBOARD);
+        assertEquals(LifeEngineType.TILED_BITBOARD, simulation.getEngineType());
+        assertEquals(7, simulation.getSnapshot().getGeneration());
+        // The engine is created on the simulation thread, so the displayed cells are not copied
+        assertSame(displayed.cells(), simulation.getSnapshot().cells());
+        advanceTo(simulation, 12);
+        expected.step(12);
+        assertEquals(positions(expected), positions(simulation.getSnapshot()));
+    }
+
+    @Test
+    public void setRule_continuesFromDisplayedGenerationWithTheRule() throws InterruptedException {
+        final LifeRule highLife = LifeRule.parse("B36/S23");
+        final LifeEngine expected = new GameOfLifeModel(Patterns.pumpCellPositions);
+        expected.step(5);
+        expected.setRule(highLife);
+        final LifeSimulation simulation = new LifeSimulation();
+        simulation.setModel(new GameOfLifeModel(Patterns.pumpCellPositions));
+        advanceTo(simulation, 5);
+
+        simulation.setRule(highLife);
+        assertEquals(highLife, simulation.getRule());
+        assertEquals(5, simulation.getSnapshot().getGeneration());
+        advanceTo(simulation, 30);
+        expected.step(25);
+        assertEquals(positions(expected), positions(simulation.getSnapshot()));
+        assertEquals(highLife, simulation.getSnapshot().getRule());
+    }
+
+    @Test
+    public void showGeneration_stepsBackAndReplaysWithoutDisturbingTheEngine()
+            throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation();
+        final LifeEngine expected = new GameOfLifeModel(gliderCellPositions);
+        simulation.setModel(new GameOfLifeModel(gliderCellPositions));
+        advanceTo(simulation, 10);
+
+        assertTrue(simulation.showGeneration(4));
+        assertFalse(simulation.showGeneration(11));
+        expected.step(4);
+        assertEquals(4, simulation.getSnapshot().getGeneration());
+        assertEquals(positions(expected), positions(simulation.getSnapshot()));
+
+        // Generations 5 to 10 are replayed from the history and 11 onward are simulated
+        for (int generation = 5; generation <= 15; generation++) {
+            advanceTo(simulation, generation);
+            expected.update();
+            assertEquals(generation, simulation.getSnapshot().getGeneration());
+            assertEquals(positions(expected), positions(simulation.getSnapshot()));
+        }
+        assertEquals(0, simulation.getHistory().getOldestGeneration());
+        assertEquals(15, simulation.getHistory().getNewestGeneration());
+    }
+
+    @Test
+    public void advance_repeatsDetectedCycleWithoutSimulating() throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation();
+        final LifeEngine expected = new GameOfLifeModel(blinkerCellPositions);
+        simulation.setModel(new GameOfLifeModel(blinkerCellPositions));
+        advanceTo(simulation, 2);
+        assertEquals(2, simulation.getCyclePeriod());
+        assertEquals(0, simulation.getCycleStartGeneration());
+        assertFalse(simulation.isIdle());
+        expected.step(2);
+
+        // Every later generation is available at once because none is computed
+        for (int generation = 3; generation <= 100; generation++) {
+            assertTrue(simulation.advance());
+            expected.update();
+            assertEquals(generation, simulation.getSnapshot().getGeneration());
+            assertEquals(positions(expected), positions(simulation.getSnapshot()));
+        }
+        assertTrue(simulation.showGeneration(50));
+        advanceTo(simulation, 101);
+        expected.update();
+        assertEquals(positions(expected), positions(simulation.getSnapshot()));
+    }
+
+    @Test
+    public void isIdle_onceUniverseStopsChanging() throws InterruptedException {
+        final LifeSimulation simulation = new LifeSimulation();
+        simulation.setModel(new GameOfLifeModel(gliderCellPositions));
+        advanceTo(simulation, 20);
+        // A glider moves, so its generations never repeat
+        assertEquals(0, simulation.getCyclePeriod());
+
+        // A pre-block becomes a block in generation 1
+        simulation.setModel(new GameOfLifeModel(new int[][]{{0, 0}, {1, 0}, {0, 1}}));
+        assertFalse(simulation.isIdle());
+        advanceTo(simulation, 2);
+        assertEquals(1, simulation.getCyclePeriod());
+        assertEquals(1, simulation.getCycleStartGeneration());
+        assertTrue(simulation.isIdle());
+        assertFalse(simulation.advance());
+        assertEquals(2, simulation.getSnapshot().getGeneration());
+    }
+
+    private static void awaitClosed(TileStore store) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (0 != store.getDirectBytes()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void replacedAndReleasedEngines_closeTheirTileStores() throws InterruptedException {
+        // A glider keeps the universe changing while a distant block is stored
+        final int[][] cells = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},
+                {1000, 1000}, {1001, 1000}, {1000, 1001}, {1001, 1001}};
+        final LifeSimulation simulation = new LifeSimulation();
+        simulation.setTileStorage(TileStore.pageSize, null);
+
+        final TiledGameOfLifeModel replaced = new TiledGameOfLifeModel(cells);
+        replaced.setQuiescentGenerations(1);
+        simulation.setModel(replaced);
+        advanceTo(simulation, 70);
+        final TileStore replacedStore = replaced.getTileStore();
+        assertEquals(1, replacedStore.size());
+        assertTrue(0 < replacedStore.getDirectBytes());
+        simulation.setModel(new GameOfLifeModel(cells));
+        awaitClosed(replacedStore);
+
+        final TiledGameOfLifeModel released = new TiledGameOfLifeModel(cells);
+        released.setQuiescentGenerations(1);
+        simulation.setModel(released);
+        advanceTo(simulation, 70);
+        final TileStore releasedStore = released.getTileStore();
+        assertTrue(0 < releasedStore.getDirectBytes());
+        simulation.release();
+        awaitClosed(releasedStore);
+        assertEquals(70, simulation.getSnapshot().getGeneration());
+    }
+}
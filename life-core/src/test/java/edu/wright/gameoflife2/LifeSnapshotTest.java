@@ -0,0 +1,124 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LifeSnapshot, which will execute on the development machine (host).
+ */
+public class LifeSnapshotTest {
+    private static final int[][] cornerCellPositions = {{0, 0}, {-1, -1}, {63, 63}, {64, 64},
+            {Integer.MAX_VALUE, Integer.MIN_VALUE}, {Integer.MIN_VALUE, Integer.MAX_VALUE},};
+
+    private static class Collector implements LifeEngine.CellVisitor {
+        final Set<Long> mCells = new HashSet<>();
+
+        @Override
+        public void visit(int x, int y) {
+            mCells.add(LongCellSet.pack(x, y));
+        }
+    }
+
+    @Test
+    public void forEachPosition_preservesExtremeCoordinates() {
+        final LifeEngine engine = new GameOfLifeModel(cornerCellPositions);
+        final Collector expected = new Collector();
+        engine.forEachPosition(expected);
+        final Collector actual = new Collector();
+        final LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+        snapshot.forEachPosition(actual);
+
+        assertEquals(expected.mCells, actual.mCells);
+        assertEquals(cornerCellPositions.length, snapshot.getPopulation());
+        assertEquals(5, snapshot.getTileCount());
+    }
+
+    @Test
+    public void of_sortsTheCellsOfEveryEngineType() {
+        final Random random = new Random(3);
+        final int[][] soup = new int[4000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(600) - 300, random.nextInt(600) - 300};
+        }
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = type.create(soup);
+            engine.step(3);
+            final Collector expected = new Collector();
+            engine.forEachPosition(expected);
+            final LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+            final Collector actual = new Collector();
+            snapshot.forEachPosition(actual);
+            assertEquals(expected.mCells, actual.mCells);
+            final long[] cells = snapshot.cells();
+            for (int i = 1; i < cells.length; i++) {
+                assertTrue(type.name(), cells[i - 1] < cells[i]);
+            }
+        }
+    }
+
+    @Test
+    public void getBounds_matchesEngineBounds() {
+        final Random random = new Random(9);
+        final int[][] soup = new int[3000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(700) - 450, random.nextInt(300) - 20};
+        }
+        for (int[][] positions : new int[][][]{soup, cornerCellPositions}) {
+            final LifeEngine engine = new GameOfLifeModel(positions);
+            final int expected[] = new int[4];
+            final int actual[] = new int[4];
+            assertTrue(engine.getBounds(expected));
+            assertTrue(LifeSnapshot.of(engine, 0).getBounds(actual));
+            assertArrayEquals(expected, actual);
+        }
+        assertFalse(LifeSnapshot.of(new GameOfLifeModel(new int[0][]), 0).getBounds(
+                new int[4]));
+    }
+
+    @Test
+    public void forEachPositionIn_matchesFilteredPositions() {
+        final Random random = new Random(5);
+        final int[][] soup = new int[5000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(1000) - 500, random.nextInt(1000) - 500};
+        }
+        final LifeEngine engine = new GameOfLifeModel(soup);
+        final LifeSnapshot snapshot = LifeSnapshot.of(engine, 0);
+
+        for (int[] rectangle : new int[][]{{-70, -3, 5, 64}, {-1000, -1000, 1000, 1000},
+                {1, 1, 1, 1}, {-64, -64, -1, -1}, {100, 100, 99, 99}}) {
+            final Collector expected = new Collector();
+            engine.forEachPositionIn(rectangle[0], rectangle[1], rectangle[2], rectangle[3],
+                    expected);
+            final Collector actual = new Collector();
+            snapshot.forEachPositionIn(rectangle[0], rectangle[1], rectangle[2], rectangle[3],
+                    actual);
+            assertEquals(expected.mCells, actual.mCells);
+        }
+    }
+
+    @Test
+    public void getHash_isUpdatedFromBirthsAndDeaths() {
+        final Random random = new Random(11);
+        final int[][] soup = new int[400][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(40) - 20, random.nextInt(40) - 20};
+        }
+        final LifeEngine engine = new GameOfLifeModel(soup);
+        LifeSnapshot previous = LifeSnapshot.of(engine, 1);
+        for (int generation = 1; generation <= 50; generation++) {
+            engine.update();
+            final LifeSnapshot snapshot = LifeSnapshot.of(engine, 1, previous);
+            assertTrue(snapshot.isSuccessorOf(previous.getGeneration(), 1));
+            assertEquals(LifeSnapshot.of(engine, 2).getHash(), snapshot.getHash());
+            previous = snapshot;
+        }
+        assertEquals(0, LifeSnapshot.of(new GameOfLifeModel(Patterns.clearCellPositions), 1)
+                .getHash());
+    }
+}
@@ -0,0 +1,47 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LongCellSet, which will execute on the development machine (host).
+ */
+public class LongCellSetTest {
+    @Test
+    public void pack_roundTripsNegativeCoordinates() {
+        long cell = LongCellSet.pack(-7, Integer.MIN_VALUE);
+        assertEquals(-7, LongCellSet.unpackX(cell));
+        assertEquals(Integer.MIN_VALUE, LongCellSet.unpackY(cell));
+    }
+
+    @Test
+    public void addRemoveContains_matchesHashSet() {
+        final Random random = new Random(42);
+        final LongCellSet set = new LongCellSet();
+        final Set<Long> expected = new HashSet<>();
+
+        for (int i = 0; i < 20000; i++) {
+            long cell = LongCellSet.pack(random.nextInt(64) - 32, random.nextInt(64) - 32);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(cell), set.add(cell));
+            } else {
+                assertEquals(expected.remove(cell), set.remove(cell));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        int visited = 0;
+        for (int slot = 0; slot < set.slotCount(); slot++) {
+            if (set.isSlotOccupied(slot)) {
+                assertTrue(expected.contains(set.slotKey(slot)));
+                visited++;
+            }
+        }
+        assertEquals(expected.size(), visited);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PatternReader, which will execute on the development machine (host).
+ */
+public class PatternReaderTest {
+    private static final int[][] gliderCellPositions = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},};
+
+    private static LifeEngine read(String text, PatternReader.Format expectedFormat)
+            throws IOException {
+        final LifeEngine engine = new GameOfLifeModel(Patterns.clearCellPositions);
+        final PatternReader reader = new PatternReader(engine, null);
+        reader.read(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(expectedFormat, reader.getFormat());
+        return engine;
+    }
+
+    @Test
+    public void read_parsesEveryFormat() throws Exception {
+        final Set<Long> glider = positions(new GameOfLifeModel(gliderCellPositions));
+
+        assertEquals(glider, positions(read("#N Glider\r\nx = 3, y = 3, rule = B3/S23\r\n" +
+                "bo$2bo$3o!\r\n", PatternReader.Format.RLE)));
+        assertEquals(glider, positions(read("#Life 1.06\n1 0\n2 1\n2 2\n1 2\n0 2\n",
+                PatternReader.Format.LIFE_106)));
+        assertEquals(glider, positions(read("# no header\n1 0\n 2 1\n+2 2\n1\t2\n0 2",
+                PatternReader.Format.LIFE_106)));
+        assertEquals(glider, positions(read("!Name: Glider\n.O.\n..O\nOOO\n",
+                PatternReader.Format.PLAINTEXT)));
+        assertEquals(positions(new GameOfLifeModel(new int[][]{{-3, 7}})),
+                positions(read("-3 7", PatternReader.Format.LIFE_106)));
+        assertEquals(0, read("", null).getPopulation());
+    }
+
+    @Test
+    public void read_keepsRunCountsBeforeLineBreaks() throws Exception {
+        final LifeEngine row = read("x = 12, y = 1\n12\no!", PatternReader.Format.RLE);
+        assertEquals(12, row.getPopulation());
+        assertTrue(row.containsCellAt(11, 0));
+        assertEquals(positions(new GameOfLifeModel(new int[][]{{0, 0}, {3, 2}})),
+                positions(read("x = 4, y = 3\no2\r\n$3\n bo!", PatternReader.Format.RLE)));
+    }
+
+    @Test
+    public void read_reportsRuleAndSkipsBlankRows() throws Exception {
+        final LifeEngine engine = new GameOfLifeModel(Patterns.clearCellPositions);
+        final PatternReader reader = new PatternReader(engine, null);
+
+        reader.read(new ByteArrayInputStream("x = 4, y = 5, rule = B36/S23\n2o2$\n3bo!"
+                .getBytes(StandardCharsets.US_ASCII)), -1);
+
+        assertEquals("B36/S23", reader.getRule());
+        assertEquals(3, reader.getCellCount());
+        assertEquals(positions(new GameOfLifeModel(new int[][]{{0, 0}, {1, 0}, {3, 2}})),
+                positions(engine));
+    }
+
+    @Test
+    public void read_streamsLargePatternsInBatchesWithProgress() throws Exception {
+        // 1000 rows of 150 cells: more than one batch and more than one progress interval
+        final StringBuilder text = new StringBuilder("#Life 1.06\n");
+        for (int y = 0; y < 1000; y++) {
+            for (int x = 0; x < 150; x++) {
+                text.append(x).append(' ').append(-y).append('\n');
+            }
+        }
+        final File file = File.createTempFile("pattern", ".lif");
+        file.deleteOnExit();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        final List<long[]> reports = new ArrayList<>();
+        final LifeEngine engine = LifeEngineType.TILED_BITBOARD.create(Patterns.clearCellPositions);
+
+        final long count = new PatternReader(engine, new PatternReader.ProgressListener() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes, long cellCount) {
+                reports.add(new long[]{bytesRead, totalBytes, cellCount});
+            }
+        }).read(file);
+
+        assertEquals(150000, count);
+        assertEquals(150000, engine.getPopulation());
+        assertTrue(engine.containsCellAt(149, -999));
+        assertTrue(1 < reports.size());
+        final long last[] = reports.get(reports.size() - 1);
+        assertEquals(file.length(), last[0]);
+        assertEquals(file.length(), last[1]);
+        assertEquals(150000, last[2]);
+    }
+
+    @Test
+    public void read_rejectsMalformedPatterns() {
+        for (String text : new String[]{"hello", "#Life 1.05\n*..", "1 2\n3\n4 5",
+                "x = 2, y = 1\n2o?", ".O\n.X"}) {
+            try {
+                read(text, null);
+                fail("expected IOException for " + text);
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("line "));
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for SnapshotFile and SnapshotCheckpointer, which will execute on the
+ * development machine (host).
+ */
+public class SnapshotFileTest {
+
+    private static byte[] bytes(LifeSnapshot snapshot, LifeEngineType type) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        SnapshotFile.write(snapshot, type, Channels.newChannel(stream));
+        return stream.toByteArray();
+    }
+
+    /**
+     * @return an engine with a dense block, which is stored as a bitmap, and sparse cells spread
+     * over tiles with negative and distant coordinates, which are stored as lists
+     */
+    private static LifeEngine mixedEngine(LifeEngineType type) {
+        final Random random = new Random(11);
+        final LifeEngine engine = type.create(Patterns.shooterCellPositions);
+        for (int i = 0; i < 5000; i++) {
+            engine.spawnCellAt(random.nextInt(100) - 200, random.nextInt(100) - 200);
+        }
+        for (int i = 0; i < 300; i++) {
+            engine.spawnCellAt(random.nextInt() >> 8, random.nextInt() >> 8);
+        }
+        engine.step(7);
+        return engine;
+    }
+
+    @Test
+    public void writeThenRead_restoresCellsGenerationAndType() throws Exception {
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = mixedEngine(type);
+            final LifeSnapshot snapshot = LifeSnapshot.of(engine, 1);
+
+            final LifeEngine restored = SnapshotFile.read(ByteBuffer.wrap(bytes(snapshot, type)));
+
+            assertEquals(type, LifeEngineType.of(restored));
+            assertEquals(7, restored.getGeneration());
+            assertEquals(positions(engine), positions(restored));
+            restored.update();
+            engine.update();
+            assertEquals(positions(engine), positions(restored));
+        }
+    }
+
+    @Test
+    public void writeThenRead_restoresRule() throws Exception {
+        final LifeRule highLife = LifeRule.parse("B36/S23");
+        for (LifeEngineType type : LifeEngineType.values()) {
+            final LifeEngine engine = mixedEngine(type);
+            engine.setRule(highLife);
+
+            final LifeEngine restored = SnapshotFile.read(
+                    ByteBuffer.wrap(bytes(LifeSnapshot.of(engine, 1), type)));
+
+            assertEquals(highLife, restored.getRule());
+            restored.step(3);
+            engine.step(3);
+            assertEquals(positions(engine), positions(restored));
+        }
+    }
+
+    @Test
+    public void write_isCompact() throws Exception {
+        final LifeEngine engine = mixedEngine(LifeEngineType.TILED_BITBOARD);
+
+        final byte data[] = bytes(LifeSnapshot.of(engine, 1), LifeEngineType.TILED_BITBOARD);
+
+        // Far less than the 8 bytes per cell of packed coordinates
+        assertTrue(data.length < engine.getPopulation() * 2);
+    }
+
+    @Test
+    public void read_rejectsDamagedData() throws Exception {
+        final byte data[] = bytes(LifeSnapshot.of(mixedEngine(LifeEngineType.SPARSE_HASH), 1),
+                LifeEngineType.SPARSE_HASH);
+        final byte damaged[] = data.clone();
+        damaged[data.length / 2] ^= 1;
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(damaged),
+                ByteBuffer.wrap(data, 0, data.length - 10), ByteBuffer.wrap(new byte[2])}) {
+            try {
+                SnapshotFile.read(buffer);
+                fail("expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void checkpointer_restoresFromMemoryOrFile() throws Exception {
+        final File file = File.createTempFile("universe", ".snapshot");
+        assertTrue(file.delete());
+        file.deleteOnExit();
+        final LifeEngine engine = mixedEngine(LifeEngineType.HASHLIFE);
+        final SnapshotCheckpointer checkpointer = new SnapshotCheckpointer(file);
+        assertNull(checkpointer.restore());
+
+        checkpointer.save(LifeSnapshot.of(engine, 1), LifeEngineType.HASHLIFE);
+        assertEquals(positions(engine), positions(checkpointer.restore()));
+        for (int i = 0; i < 200 && !file.exists(); i++) {
+            Thread.sleep(10);
+        }
+
+        final LifeEngine restored = new SnapshotCheckpointer(file).restore();
+        assertEquals(LifeEngineType.HASHLIFE, LifeEngineType.of(restored));
+        assertEquals(engine.getGeneration(), restored.getGeneration());
+        assertEquals(positions(engine), positions(restored));
+        assertNull(checkpointer.getLastError());
+    }
+
+    @Test
+    public void checkpointer_restoresInTheBackground() throws Exception {
+        final File file = File.createTempFile("universe", ".snapshot");
+        file.deleteOnExit();
+        final LifeEngine engine = mixedEngine(LifeEngineType.TILED_BITBOARD);
+        SnapshotFile.write(LifeSnapshot.of(engine, 1), LifeEngineType.TILED_BITBOARD, file);
+        final SnapshotCheckpointer checkpointer = new SnapshotCheckpointer(file);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<LifeEngine> restored = new AtomicReference<>();
+        final AtomicReference<LifeSnapshot> snapshot = new AtomicReference<>();
+        checkpointer.restore(new SnapshotCheckpointer.RestoreListener() {
+            @Override
+            public void onRestored(LifeEngine restoredEngine, LifeSnapshot restoredSnapshot) {
+                restored.set(restoredEngine);
+                snapshot.set(restoredSnapshot);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(LifeEngineType.TILED_BITBOARD, LifeEngineType.of(restored.get()));
+        assertEquals(positions(engine), positions(restored.get()));
+        assertEquals(positions(engine), positions(snapshot.get()));
+        assertEquals(engine.getGeneration(), snapshot.get().getGeneration());
+
+        // Nothing to restore
+        assertTrue(file.delete());
+        final CountDownLatch emptyLatch = new CountDownLatch(1);
+        new SnapshotCheckpointer(file).restore(new SnapshotCheckpointer.RestoreListener() {
+            @Override
+            public void onRestored(LifeEngine restoredEngine, LifeSnapshot restoredSnapshot) {
+                if (null == restoredEngine && null == restoredSnapshot) {
+                    emptyLatch.countDown();
+                }
+            }
+        });
+        assertTrue(emptyLatch.await(10, TimeUnit.SECONDS));
+    }
+}
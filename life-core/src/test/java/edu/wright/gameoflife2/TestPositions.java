@@ -0,0 +1,49 @@
+package edu.wright.gameoflife2;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class collects the occupied positions of engines and snapshots so that unit tests can
+ * compare them regardless of the order in which they are visited.
+ */
+final class TestPositions {
+
+    private TestPositions() {
+    }
+
+    /**
+     * @return the positions of the cells of engine, each packed with LongCellSet.pack()
+     */
+    static Set<Long> positions(LifeEngine engine) {
+        final Set<Long> result = new HashSet<>();
+        engine.forEachPosition(new Collector(result));
+        return result;
+    }
+
+    /**
+     * @return the positions of the cells of snapshot, each packed with LongCellSet.pack()
+     */
+    static Set<Long> positions(LifeSnapshot snapshot) {
+        final Set<Long> result = new HashSet<>();
+        snapshot.forEachPosition(new Collector(result));
+        return result;
+    }
+
+    /**
+     * This class implements the Visitor Pattern. See https://en.wikipedia.org/wiki/Visitor_pattern
+     * Each instance adds every visited position to a set.
+     */
+    private static class Collector implements LifeEngine.CellVisitor {
+        final Set<Long> mPositions;
+
+        Collector(Set<Long> positions) {
+            mPositions = positions;
+        }
+
+        @Override
+        public void visit(int x, int y) {
+            mPositions.add(LongCellSet.pack(x, y));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TileStore, which will execute on the development machine (host).
+ */
+public class TileStoreTest {
+    private static long[] randomRows(Random random, int occupiedRowCount) {
+        final long[] result = new long[BitTile.size];
+        for (int i = 0; i < occupiedRowCount; i++) {
+            result[random.nextInt(BitTile.size)] = random.nextLong() | 1L;
+        }
+        return result;
+    }
+
+    @Test
+    public void put_storesTilesOfEverySize() {
+        final Random random = new Random(1);
+        final TileStore store = new TileStore(TileStore.pageSize, null);
+        final long[][] tiles = new long[200][];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = randomRows(random, i % 70);
+            assertTrue(store.put(i - 100, -i, tiles[i]));
+        }
+        assertEquals(tiles.length, store.size());
+
+        final long[] rows = new long[BitTile.size];
+        for (int i = 0; i < tiles.length; i++) {
+            assertTrue(store.get(i - 100, -i, rows));
+            assertArrayEquals(tiles[i], rows);
+            assertEquals(tiles[i][5], store.rowAt(i - 100, -i, 5));
+        }
+        assertFalse(store.get(1, 1, rows));
+        assertEquals(0, store.rowAt(1, 1, 5));
+
+        // Replacing and removing tiles frees their blocks for reuse
+        final long storedBytes = store.getStoredBytes();
+        for (int i = 0; i < tiles.length; i++) {
+            assertTrue(store.put(i - 100, -i, tiles[i]));
+        }
+        assertEquals(storedBytes, store.getStoredBytes());
+        assertEquals(TileStore.pageSize, store.getDirectBytes());
+        for (int i = 0; i < tiles.length; i++) {
+            assertTrue(store.remove(i - 100, -i, rows));
+            assertArrayEquals(tiles[i], rows);
+        }
+        assertEquals(0, store.size());
+        assertEquals(0, store.getStoredBytes());
+    }
+
+    @Test
+    public void put_replacesTilesWithDifferentSizes() {
+        final Random random = new Random(2);
+        final TileStore store = new TileStore(TileStore.pageSize, null);
+        final long[] rows = new long[BitTile.size];
+        // Tile {0, 0} has the packed key 0, which is stored apart from the other keys
+        for (int[] tile : new int[][]{{0, 0}, {3, -7}}) {
+            final long[] small = randomRows(random, 2);
+            final long[] large = randomRows(random, 60);
+            assertTrue(store.put(tile[0], tile[1], small));
+            assertTrue(store.put(tile[0], tile[1], large));
+            assertTrue(store.contains(tile[0], tile[1]));
+            assertTrue(store.get(tile[0], tile[1], rows));
+            assertArrayEquals(large, rows);
+            assertTrue(store.put(tile[0], tile[1], small));
+            assertTrue(store.get(tile[0], tile[1], rows));
+            assertArrayEquals(small, rows);
+        }
+        assertEquals(2, store.size());
+        int occupiedSlots = 0;
+        for (int slot = 0; slot < store.slotCount(); slot++) {
+            if (store.isSlotOccupied(slot)) {
+                occupiedSlots += 1;
+            }
+        }
+        assertEquals(2, occupiedSlots);
+        assertTrue(store.remove(0, 0, null));
+        assertFalse(store.contains(0, 0));
+        assertFalse(store.remove(0, 0, null));
+        assertTrue(store.contains(3, -7));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void put_spillsBeyondTheMemoryBudget() throws Exception {
+        final File directory = File.createTempFile("tiles", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+        final TileStore store = new TileStore(TileStore.pageSize, directory);
+        final long[] rows = new long[BitTile.size];
+        for (int r = 0; r < rows.length; r++) {
+            rows[r] = ~(long) r;
+        }
+        // Tiles with every row occupied take 1024 bytes, so three pages are needed
+        for (int i = 0; i < 2 * TileStore.pageSize / 1024 + 1; i++) {
+            assertTrue(store.put(i, 0, rows));
+        }
+        assertEquals(TileStore.pageSize, store.getDirectBytes());
+        assertEquals(2 * TileStore.pageSize, store.getMappedBytes());
+        assertNull(store.getSpillError());
+        // The spill file is deleted as soon as it is opened
+        assertEquals(0, directory.list().length);
+
+        final long[] result = new long[BitTile.size];
+        assertTrue(store.get(2 * TileStore.pageSize / 1024, 0, result));
+        assertArrayEquals(rows, result);
+        store.close();
+        assertEquals(0, store.size());
+        assertTrue(directory.delete());
+    }
+
+    @Test
+    public void put_refusesTilesWhenFull() {
+        final TileStore store = new TileStore(0, null);
+        assertFalse(store.put(0, 0, new long[BitTile.size]));
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,168 @@
+package edu.wright.gameoflife2;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static edu.wright.gameoflife2.TestPositions.positions;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for TiledGameOfLifeModel, which will execute on the development machine (host).
+ */
+public class TiledGameOfLifeModelTest {
+    @Test
+    public void randomSoupAcrossTileEdges_matchesGameOfLifeModel() {
+        final Random random = new Random(7);
+        final int[][] soup = new int[3000][];
+        for (int i = 0; i < soup.length; i++) {
+            // Centered on the origin so the soup spans negative and positive tile coordinates
+            soup[i] = new int[]{random.nextInt(160) - 80, random.nextInt(160) - 80};
+        }
+        final GameOfLifeModel expected = new GameOfLifeModel(soup);
+        final LifeEngine actual = new TiledGameOfLifeModel(soup);
+
+        for (int generation = 0; generation < 100; generation++) {
+            expected.update();
+            actual.update();
+            assertEquals(expected.getPopulation(), actual.getPopulation());
+            assertEquals(positions(expected), positions(actual));
+        }
+    }
+
+    @Test
+    public void parallelUpdate_matchesSerialUpdate() {
+        final Random random = new Random(11);
+        final int[][] soup = new int[20000][];
+        for (int i = 0; i < soup.length; i++) {
+            soup[i] = new int[]{random.nextInt(400) - 200, random.nextInt(400) - 200};
+        }
+        final TiledGameOfLifeModel serial = new TiledGameOfLifeModel(soup);
+        final TiledGameOfLifeModel parallel = new TiledGameOfLifeModel(soup);
+        parallel.setParallelism(4);
+        parallel.setParallelTileThreshold(1);
+
+        for (int generation = 0; generation < 50; generation++) {
+            serial.update();
+            parallel.update();
+        }
+        assertEquals(serial.getPopulation(), parallel.getPopulation());
+        assertEquals(positions(serial), positions(parallel));
+    }
+
+    @Test
+    public void stableAndPeriodTwoTiles_areSkipped() {
+        // A block (still life) and, three tiles away, a blinker (period 2)
+        final GameOfLifeModel expected = new GameOfLifeModel(new int[][]{
+                {10, 10}, {11, 10}, {10, 11}, {11, 11}, {200, 10}, {201, 10}, {202, 10}});
+        final TiledGameOfLifeModel model = new TiledGameOfLifeModel(new int[][]{
+                {10, 10}, {11, 10}, {10, 11}, {11, 11}, {200, 10}, {201, 10}, {202, 10}});
+
+        for (int generation = 0; generation < 5; generation++) {
+            expected.update();
+            model.update();
+        }
+        assertEquals(positions(expected), positions(model));
+        assertTrue(0 < model.getTileCount());
+        assertEquals(0, model.getComputedTileCount());
+        assertEquals(model.getTileCount(), model.getSkippedTileCount());
+    }
+
+    @Test
+    public void isolatedSpawnedCells_stayDead() {
+        // Each cell is alone in its tile, so the empty generation after it dies equals the empty
+        // buffer that preceded the spawn. That must not be mistaken for a period 2 neighborhood.
+        final TiledGameOfLifeModel model = new TiledGameOfLifeModel(
+                new int[][]{{0, 0}, {1000, -1000}});
+        for (int generation = 0; generation < 4; generation++) {
+            model.update();
+            assertEquals(0, model.getPopulation());
+            model.spawnCellAt(500, 500);
+            model.update();
+            assertEquals(0, model.getPopulation());
+        }
+    }
+
+    @Test
+    public void containsCellAt_findsCellsInNegativeTiles() {
+        final LifeEngine model = new TiledGameOfLifeModel(new int[][]{{-1, -1}, {-64, 63}});
+
+        assertTrue(model.containsCellAt(-1, -1));
+        assertTrue(model.containsCellAt(-64, 63));
+        assertFalse(model.containsCellAt(-65, 63));
+        assertEquals(2, model.getPopulation());
+    }
+
+    @Test
+    public void storedTiles_matchModelWithoutStore() {
+        // Blocks scattered over several tiles and a glider that reaches the block at {200, 200}
+        // after about 800 generations, long after that block has been stored
+        final int[][] cells = {{1, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 2},
+                {200, 200}, {201, 200}, {200, 201}, {201, 201},
+                {-500, 300}, {-499, 300}, {-500, 301}, {-499, 301},
+                {1000, -1000}, {1001, -1000}, {1000, -999}, {1001, -999},
+                {63, -70}, {64, -70}, {63, -69}, {64, -69}};
+        final TiledGameOfLifeModel expected = new TiledGameOfLifeModel(cells);
+        final TiledGameOfLifeModel actual = new TiledGameOfLifeModel(cells);
+        actual.setTileStore(new TileStore(TileStore.pageSize, null));
+        actual.setQuiescentGenerations(8);
+        // The block at {63, -70} stays on the heap
+        actual.setResidentArea(0, -100, 10, -90);
+
+        int largestStoredTileCount = 0;
+        final int bounds[] = new int[4];
+        final int expectedBounds[] = new int[4];
+        for (int generation = 0; generation < 1000; generation++) {
+            expected.update();
+            actual.update();
+            largestStoredTileCount = Math.max(largestStoredTileCount,
+                    actual.getStoredTileCount());
+            assertEquals(expected.getPopulation(), actual.getPopulation());
+            if (0 == generation % 50) {
+                assertEquals(positions(expected), positions(actual));
+                assertEquals(expected.getBounds(expectedBounds), actual.getBounds(bounds));
+                assertArrayEquals(expectedBounds, bounds);
+                assertTrue(actual.containsCellAt(-500, 300));
+            }
+        }
+        assertEquals(3, largestStoredTileCount);
+        assertTrue(actual.containsCellAt(63, -70));
+        assertEquals(positions(expected), positions(actual));
+
+        // Changing the rule must compute every tile again
+        expected.setRule(LifeRule.parse("B2/S"));
+        actual.setRule(LifeRule.parse("B2/S"));
+        for (int generation = 0; generation < 5; generation++) {
+            expected.update();
+            actual.update();
+        }
+        assertEquals(0, actual.getStoredTileCount());
+        assertEquals(positions(expected), positions(actual));
+    }
+
+    @Test
+    public void spawnCellAt_loadsStoredTile() {
+        final TiledGameOfLifeModel model = new TiledGameOfLifeModel(new int[][]{
+                {10, 10}, {11, 10}, {10, 11}, {11, 11}});
+        model.setTileStore(new TileStore(TileStore.pageSize, null));
+        model.setQuiescentGenerations(1);
+        for (int generation = 0; generation < 64; generation++) {
+            model.update();
+        }
+        assertEquals(1, model.getStoredTileCount());
+        assertEquals(4, model.getPopulation());
+
+        // Three cells next to the block form a beehive-like shape that changes the block
+        model.spawnCellAt(12, 12);
+        model.spawnCellAt(13, 12);
+        assertEquals(0, model.getStoredTileCount());
+        assertEquals(6, model.getPopulation());
+        final GameOfLifeModel expected = new GameOfLifeModel(new int[][]{
+                {10, 10}, {11, 10}, {10, 11}, {11, 11}, {12, 12}, {13, 12}});
+        for (int generation = 0; generation < 20; generation++) {
+            expected.update();
+            model.update();
+        }
+        assertEquals(positions(expected), positions(model));
+    }
+}